@@ -2,11 +2,14 @@ package com.contrastsecurity.cassandra.migration;
 
 import com.contrastsecurity.cassandra.migration.action.Initialize;
 import com.contrastsecurity.cassandra.migration.action.Migrate;
+import com.contrastsecurity.cassandra.migration.action.RestampChecksums;
 import com.contrastsecurity.cassandra.migration.action.Validate;
 import com.contrastsecurity.cassandra.migration.config.Keyspace;
 import com.contrastsecurity.cassandra.migration.config.MigrationConfigs;
 import com.contrastsecurity.cassandra.migration.config.ScriptsLocations;
+import com.contrastsecurity.cassandra.migration.dao.MigrationProgressDAO;
 import com.contrastsecurity.cassandra.migration.dao.SchemaVersionDAO;
+import com.contrastsecurity.cassandra.migration.dao.StatementMetricsDAO;
 import com.contrastsecurity.cassandra.migration.info.MigrationInfoService;
 import com.contrastsecurity.cassandra.migration.logging.Log;
 import com.contrastsecurity.cassandra.migration.logging.LogFactory;
@@ -21,10 +24,19 @@ import com.datastax.oss.driver.api.core.metadata.Node;
 import com.datastax.oss.driver.api.core.metadata.schema.KeyspaceMetadata;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.Collection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-public class CassandraMigration {
+public class CassandraMigration implements Closeable {
 
     private static final Log LOG = LogFactory.getLog(CassandraMigration.class);
 
@@ -33,6 +45,29 @@ public class CassandraMigration {
     private MigrationConfigs configs;
     private CqlSession session;
 
+    /**
+     * The resolver kept across actions while filesystem locations are watched. {@code null} if none.
+     */
+    private CompositeMigrationResolver watchingResolver;
+
+    /**
+     * Runs the body of background migrations after {@link #migrate()} returned, one at a time. Its thread is a daemon
+     * thread, so that it never keeps the JVM alive: a background migration interrupted by the exit runs again on the
+     * next migration run. It is shut down on {@link #close()}.
+     */
+    private final ThreadPoolExecutor backgroundExecutor = createBackgroundExecutor();
+
+    /**
+     * The background migrations submitted last. As they run one at a time, the previous ones are done once these are.
+     * {@code null} if none were submitted.
+     */
+    private Future<?> lastBackgroundMigrations;
+
+    /**
+     * The number of actions and background migrations using the session. It is closed when none uses it anymore.
+     */
+    private int sessionUsers;
+
     public CassandraMigration() {
         this.keyspace = new Keyspace();
         this.configs = new MigrationConfigs();
@@ -69,8 +104,57 @@ public class CassandraMigration {
         return configs;
     }
 
-    private MigrationResolver createMigrationResolver() {
-        return new CompositeMigrationResolver(classLoader, new ScriptsLocations(configs.getScriptsLocations()), configs.getEncoding());
+    /**
+     * Creates the DAO of the migration history of the keyspace, as configured.
+     *
+     * @param session The session.
+     * @return The DAO.
+     */
+    private SchemaVersionDAO createSchemaVersionDAO(CqlSession session) {
+        return new SchemaVersionDAO(session, getConfigsOfKeyspace());
+    }
+
+    /**
+     * Creates the DAO recording the statement metrics of Cql migrations, if they are recorded.
+     *
+     * @param session The session.
+     * @return The DAO. {@code null} if statement metrics aren't recorded.
+     */
+    private StatementMetricsDAO createStatementMetricsDAO(CqlSession session) {
+        return configs.isStatementMetrics() ? new StatementMetricsDAO(session, getConfigsOfKeyspace()) : null;
+    }
+
+    /**
+     * @return The configuration, applied to the keyspace to migrate.
+     */
+    private MigrationConfigs getConfigsOfKeyspace() {
+        return configs.getKeyspace() == keyspace ? configs : configs.withKeyspace(keyspace);
+    }
+
+    private synchronized MigrationResolver createMigrationResolver() {
+        if (!configs.isWatch()) {
+            return new CompositeMigrationResolver(classLoader, new ScriptsLocations(configs.getScriptsLocations()), configs);
+        }
+
+        if (watchingResolver == null) {
+            watchingResolver =
+                    new CompositeMigrationResolver(classLoader, new ScriptsLocations(configs.getScriptsLocations()), configs);
+        }
+        return watchingResolver;
+    }
+
+    /**
+     * Stops watching the filesystem locations of the migrations, when enabled through {@link MigrationConfigs#setWatch},
+     * and lets the background thread exit once the submitted background migrations are done.
+     *
+     * @throws IOException when the locations could not be unwatched.
+     */
+    public synchronized void close() throws IOException {
+        backgroundExecutor.shutdown();
+        if (watchingResolver != null) {
+            watchingResolver.close();
+            watchingResolver = null;
+        }
     }
 
     public int migrate() {
@@ -79,22 +163,94 @@ public class CassandraMigration {
                 new Initialize().run(session, keyspace);
 
                 MigrationResolver migrationResolver = createMigrationResolver();
-                SchemaVersionDAO schemaVersionDAO = new SchemaVersionDAO(session, keyspace);
-                Migrate migrate = new Migrate(migrationResolver, configs.getTarget(), schemaVersionDAO, session,
-                        keyspace.getCluster().getUsername(), configs.isAllowOutOfOrder());
-
-                return migrate.run();
+                SchemaVersionDAO schemaVersionDAO = createSchemaVersionDAO(session);
+                Migrate migrate = new Migrate(migrationResolver, configs.getTarget(), schemaVersionDAO,
+                        new MigrationProgressDAO(session, getConfigsOfKeyspace()), createStatementMetricsDAO(session),
+                        session, keyspace.getCluster().getUsername(), configs.isAllowOutOfOrder(), configs.getAsyncTimeout());
+
+                int migrationSuccessCount = migrate.run();
+                if (!migrate.getBackgroundMigrations().isEmpty()) {
+                    runInBackground(migrate);
+                }
+                return migrationSuccessCount;
             }
         });
     }
 
+    /**
+     * Waits for the background migrations submitted by {@link #migrate()} to complete.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The unit of the timeout.
+     * @return {@code true} if they completed, {@code false} if the timeout elapsed first.
+     * @throws InterruptedException when interrupted while waiting.
+     */
+    public boolean awaitBackgroundMigrations(long timeout, TimeUnit unit) throws InterruptedException {
+        Future<?> backgroundMigrations;
+        synchronized (this) {
+            backgroundMigrations = lastBackgroundMigrations;
+        }
+        if (backgroundMigrations == null) {
+            return true;
+        }
+        try {
+            backgroundMigrations.get(timeout, unit);
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException | CancellationException e) {
+            // Failures are logged by the background migrations themselves.
+        }
+        return true;
+    }
+
+    /**
+     * Runs the body of the background migrations of this migration run on the background executor. The session stays
+     * open until they are done.
+     *
+     * @param migrate The migration run.
+     */
+    private void runInBackground(final Migrate migrate) {
+        synchronized (this) {
+            sessionUsers++;
+        }
+        try {
+            Future<?> backgroundMigrations = backgroundExecutor.submit(() -> {
+                try {
+                    migrate.runBackgroundMigrations();
+                } catch (Exception e) {
+                    LOG.error("Background migrations of keyspace " + keyspace.getName() + " failed", e);
+                } finally {
+                    releaseSession();
+                }
+            });
+            synchronized (this) {
+                lastBackgroundMigrations = backgroundMigrations;
+            }
+        } catch (RuntimeException e) {
+            releaseSession();
+            throw e;
+        }
+    }
+
+    private static ThreadPoolExecutor createBackgroundExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), runnable -> {
+                    Thread thread = new Thread(runnable, "cassandra-migration-background");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     public MigrationInfoService info() {
         return execute(new Action<MigrationInfoService>() {
             public MigrationInfoService execute(CqlSession session) {
                 MigrationResolver migrationResolver = createMigrationResolver();
-                SchemaVersionDAO schemaVersionDAO = new SchemaVersionDAO(session, keyspace);
+                SchemaVersionDAO schemaVersionDAO = createSchemaVersionDAO(session);
                 MigrationInfoService migrationInfoService =
-                        new MigrationInfoService(migrationResolver, schemaVersionDAO, configs.getTarget(), false, true);
+                        new MigrationInfoService(migrationResolver, schemaVersionDAO,
+                                createStatementMetricsDAO(session), configs.getTarget(), false, true);
                 migrationInfoService.refresh();
 
                 return migrationInfoService;
@@ -107,7 +263,7 @@ public class CassandraMigration {
             @Override
             public String execute(CqlSession session) {
                 MigrationResolver migrationResolver = createMigrationResolver();
-                SchemaVersionDAO schemaVersionDao = new SchemaVersionDAO(session, keyspace);
+                SchemaVersionDAO schemaVersionDao = createSchemaVersionDAO(session);
                 Validate validate = new Validate(migrationResolver, schemaVersionDao, configs.getTarget(), true, false);
                 return validate.run();
             }
@@ -118,6 +274,24 @@ public class CassandraMigration {
         }
     }
 
+    /**
+     * Records the checksums of the applied cql and data migrations with the configured checksum algorithm, after
+     * switching algorithms. Migrations whose script changed since they were applied are left untouched.
+     *
+     * @return The number of restamped migrations.
+     */
+    public int restampChecksums() {
+        return execute(new Action<Integer>() {
+            public Integer execute(CqlSession session) {
+                MigrationResolver migrationResolver = createMigrationResolver();
+                SchemaVersionDAO schemaVersionDAO = createSchemaVersionDAO(session);
+                RestampChecksums restampChecksums =
+                        new RestampChecksums(migrationResolver, schemaVersionDAO, configs.getTarget(), classLoader);
+                return restampChecksums.run();
+            }
+        });
+    }
+
     public void baseline() {
         //TODO
         throw new NotImplementedException();
@@ -138,39 +312,26 @@ public class CassandraMigration {
     }
 
     <T> T execute(Action<T> action) {
-        T result;
-
         VersionPrinter.printVersion(classLoader);
-        try {
-            if (null == keyspace)
-                throw new IllegalArgumentException("Unable to establish Cassandra session. Keyspace is not configured.");
-
-
-            if (session == null) {
-
-                if (null == keyspace.getCluster())
-                    throw new IllegalArgumentException("Unable to establish Cassandra session. Cluster is not configured.");
-
-                CqlSessionBuilder cqlSessionBuilder = new CqlSessionBuilder()
-                        .withKeyspace(keyspace.getName());
-                if (null != keyspace.getCluster().getUsername() && !keyspace.getCluster().getUsername().trim().isEmpty()) {
-                    if (null != keyspace.getCluster().getPassword() && !keyspace.getCluster().getPassword().trim().isEmpty()) {
-                        cqlSessionBuilder.withAuthCredentials(keyspace.getCluster().getUsername(),
-                                keyspace.getCluster().getPassword());
-                    } else {
-                        throw new IllegalArgumentException("Password must be provided with username.");
-                    }
-                }
-                if (StringUtils.hasText(keyspace.getCluster().getLocalDatacenter())) {
-                    cqlSessionBuilder.withLocalDatacenter(keyspace.getCluster().getLocalDatacenter());
+        if (null == keyspace)
+            throw new IllegalArgumentException("Unable to establish Cassandra session. Keyspace is not configured.");
+
+        CqlSession actionSession;
+        synchronized (this) {
+            sessionUsers++;
+            try {
+                if (session == null) {
+                    session = createSession();
                 }
-                for (String contactPoint : keyspace.getCluster().getContactpoints()) {
-                    cqlSessionBuilder.addContactPoint(new InetSocketAddress(contactPoint, keyspace.getCluster().getPort()));
-                }
-                session = cqlSessionBuilder.build();
+            } catch (RuntimeException e) {
+                sessionUsers--;
+                throw e;
             }
+            actionSession = session;
+        }
 
-            Metadata metadata = session.getMetadata();
+        try {
+            Metadata metadata = actionSession.getMetadata();
             LOG.info(getConnectionInfo(metadata));
 
             if (null == keyspace.getName() || keyspace.getName().trim().length() == 0)
@@ -182,20 +343,60 @@ public class CassandraMigration {
                     keyspaceExists = true;
             }
             if (keyspaceExists)
-                session.execute("USE " + keyspace.getName());
+                actionSession.execute("USE " + keyspace.getName());
             else
                 throw new CassandraMigrationException("Keyspace: " + keyspace.getName() + " does not exist.");
 
-            result = action.execute(session);
+            return action.execute(actionSession);
         } finally {
-            if (null != session && !session.isClosed())
-                try {
-                    session.close();
-                } catch (Exception e) {
-                    LOG.warn("Error closing Cassandra session");
-                }
+            releaseSession();
+        }
+    }
+
+    /**
+     * Connects to the cluster of the keyspace.
+     *
+     * @return The new session.
+     */
+    private CqlSession createSession() {
+        if (null == keyspace.getCluster())
+            throw new IllegalArgumentException("Unable to establish Cassandra session. Cluster is not configured.");
+
+        CqlSessionBuilder cqlSessionBuilder = new CqlSessionBuilder()
+                .withKeyspace(keyspace.getName());
+        if (null != keyspace.getCluster().getUsername() && !keyspace.getCluster().getUsername().trim().isEmpty()) {
+            if (null != keyspace.getCluster().getPassword() && !keyspace.getCluster().getPassword().trim().isEmpty()) {
+                cqlSessionBuilder.withAuthCredentials(keyspace.getCluster().getUsername(),
+                        keyspace.getCluster().getPassword());
+            } else {
+                throw new IllegalArgumentException("Password must be provided with username.");
+            }
+        }
+        if (StringUtils.hasText(keyspace.getCluster().getLocalDatacenter())) {
+            cqlSessionBuilder.withLocalDatacenter(keyspace.getCluster().getLocalDatacenter());
+        }
+        for (String contactPoint : keyspace.getCluster().getContactpoints()) {
+            cqlSessionBuilder.addContactPoint(new InetSocketAddress(contactPoint, keyspace.getCluster().getPort()));
         }
-        return result;
+        return cqlSessionBuilder.build();
+    }
+
+    /**
+     * Closes the session once neither an action nor a background migration uses it.
+     */
+    private synchronized void releaseSession() {
+        sessionUsers--;
+        if (sessionUsers > 0) {
+            return;
+        }
+        if (null != session && !session.isClosed())
+            try {
+                session.close();
+            } catch (Exception e) {
+                LOG.warn("Error closing Cassandra session");
+            }
+        // The next action connects again instead of using the closed session.
+        session = null;
     }
 
     interface Action<T> {
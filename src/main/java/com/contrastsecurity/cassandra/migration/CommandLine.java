@@ -21,6 +21,11 @@ public class CommandLine {
 	 */
 	public static final String VALIDATE = "validate";
 
+	/**
+	 * command to trigger restamp checksums action
+	 */
+	public static final String RESTAMP_CHECKSUMS = "restampChecksums";
+
 	/**
 	 * logging support
 	 */
@@ -49,6 +54,8 @@ public class CommandLine {
 			cm.migrate();
 		} else if (VALIDATE.equalsIgnoreCase(operation)) {
 			cm.validate();
+		} else if (RESTAMP_CHECKSUMS.equalsIgnoreCase(operation)) {
+			cm.restampChecksums();
 		}
 	}
 
@@ -92,6 +99,7 @@ public class CommandLine {
 		LOG.info("========");
 		LOG.info("migrate  : Migrates the database");
 		LOG.info("validate : Validates the applied migrations against the available ones");
+		LOG.info("restampChecksums : Records the checksums of the applied migrations with the configured algorithm");
 		LOG.info("");
 		LOG.info("Add -X to print debug output");
 		LOG.info("Add -q to suppress all output, except for errors and warnings");
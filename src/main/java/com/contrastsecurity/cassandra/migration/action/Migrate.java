@@ -1,19 +1,51 @@
 package com.contrastsecurity.cassandra.migration.action;
 
 import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.dao.MigrationProgressDAO;
 import com.contrastsecurity.cassandra.migration.dao.SchemaVersionDAO;
+import com.contrastsecurity.cassandra.migration.dao.StatementMetricsDAO;
 import com.contrastsecurity.cassandra.migration.info.*;
 import com.contrastsecurity.cassandra.migration.logging.Log;
 import com.contrastsecurity.cassandra.migration.logging.LogFactory;
+import com.contrastsecurity.cassandra.migration.resolver.AsyncMigrationExecutor;
+import com.contrastsecurity.cassandra.migration.resolver.BackgroundMigrationExecutor;
+import com.contrastsecurity.cassandra.migration.resolver.MeasuredMigrationExecutor;
 import com.contrastsecurity.cassandra.migration.resolver.MigrationExecutor;
 import com.contrastsecurity.cassandra.migration.resolver.MigrationResolver;
+import com.contrastsecurity.cassandra.migration.resolver.ResumableMigrationExecutor;
 import com.contrastsecurity.cassandra.migration.utils.StopWatch;
 import com.contrastsecurity.cassandra.migration.utils.TimeFormat;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Migrate {
     private static final Log LOG = LogFactory.getLog(Migrate.class);
 
+    /**
+     * The time the lease of a background migration lasts unless renewed, in seconds. Another instance takes over the
+     * migration once the lease of its owner expired.
+     */
+    private static final int LEASE_SECONDS = 60;
+
+    /**
+     * The interval between the renewals of the lease of a running background migration, in seconds.
+     */
+    private static final int LEASE_RENEWAL_SECONDS = LEASE_SECONDS / 3;
+
     private final MigrationVersion target;
     private final SchemaVersionDAO schemaVersionDAO;
     private final MigrationResolver migrationResolver;
@@ -21,9 +53,56 @@ public class Migrate {
     private final String user;
     private final boolean allowOutOfOrder;
 
+    /**
+     * The progress of resumable migrations. {@code null} if their progress isn't saved.
+     */
+    private final MigrationProgressDAO migrationProgressDAO;
+
+    /**
+     * The time an asynchronous migration may take before it is cancelled, in seconds. 0 for no limit.
+     */
+    private final long asyncTimeout;
+
+    /**
+     * The recorded statement metrics of Cql migrations. {@code null} if they aren't recorded.
+     */
+    private final StatementMetricsDAO statementMetricsDAO;
+
+    /**
+     * The background migrations whose body is still to run, once {@link #run()} returned.
+     */
+    private final List<MigrationInfo> backgroundMigrations = new ArrayList<>();
+
+    /**
+     * Identifies this migration run as the owner of the leases of the background migrations it runs.
+     */
+    private final String leaseOwner = UUID.randomUUID().toString();
+
     public Migrate(MigrationResolver migrationResolver, MigrationVersion target, SchemaVersionDAO schemaVersionDAO,
                    CqlSession session, String user, boolean allowOutOfOrder) {
+        this(migrationResolver, target, schemaVersionDAO, null, session, user, allowOutOfOrder);
+    }
+
+    public Migrate(MigrationResolver migrationResolver, MigrationVersion target, SchemaVersionDAO schemaVersionDAO,
+                   MigrationProgressDAO migrationProgressDAO, CqlSession session, String user,
+                   boolean allowOutOfOrder) {
+        this(migrationResolver, target, schemaVersionDAO, migrationProgressDAO, session, user, allowOutOfOrder, 0);
+    }
+
+    public Migrate(MigrationResolver migrationResolver, MigrationVersion target, SchemaVersionDAO schemaVersionDAO,
+                   MigrationProgressDAO migrationProgressDAO, CqlSession session, String user,
+                   boolean allowOutOfOrder, long asyncTimeout) {
+        this(migrationResolver, target, schemaVersionDAO, migrationProgressDAO, null, session, user, allowOutOfOrder,
+                asyncTimeout);
+    }
+
+    public Migrate(MigrationResolver migrationResolver, MigrationVersion target, SchemaVersionDAO schemaVersionDAO,
+                   MigrationProgressDAO migrationProgressDAO, StatementMetricsDAO statementMetricsDAO,
+                   CqlSession session, String user, boolean allowOutOfOrder, long asyncTimeout) {
+        this.asyncTimeout = asyncTimeout;
+        this.statementMetricsDAO = statementMetricsDAO;
         this.migrationResolver = migrationResolver;
+        this.migrationProgressDAO = migrationProgressDAO;
         this.schemaVersionDAO = schemaVersionDAO;
         this.session = session;
         this.target = target;
@@ -37,11 +116,18 @@ public class Migrate {
 
         int migrationSuccessCount = 0;
         boolean firstTimeMigration = schemaVersionDAO.versionNotFound();
+        MigrationInfoService infoService =
+                new MigrationInfoService(migrationResolver, schemaVersionDAO, target, allowOutOfOrder, true);
+        MigrationVersion appliedVersion = null;
         while (true) {
             final boolean firstRun = migrationSuccessCount == 0;
 
-            MigrationInfoService infoService = new MigrationInfoService(migrationResolver, schemaVersionDAO, target, allowOutOfOrder, true);
-            infoService.refresh();
+            if (appliedVersion == null) {
+                infoService.refresh();
+            } else {
+                // Only the history from the migration just applied on may have changed.
+                infoService.refreshFrom(appliedVersion);
+            }
 
             MigrationVersion currentSchemaVersion = MigrationVersion.EMPTY;
             if (infoService.current() != null) {
@@ -93,6 +179,7 @@ public class Migrate {
                 //no more migrations
                 break;
             }
+            appliedVersion = mv;
 
             migrationSuccessCount++;
         }
@@ -101,9 +188,211 @@ public class Migrate {
 
         logSummary(migrationSuccessCount, stopWatch.getTotalTimeMillis());
 
+        // Includes the background migrations interrupted during a previous run.
+        backgroundMigrations.clear();
+        for (MigrationInfo migration : infoService.withState(MigrationState.RUNNING)) {
+            if (migration.getResolvedMigration().getExecutor() instanceof BackgroundMigrationExecutor) {
+                backgroundMigrations.add(migration);
+            }
+        }
+        if (!backgroundMigrations.isEmpty()) {
+            LOG.info(backgroundMigrations.size() + " background migration(s) of keyspace "
+                    + schemaVersionDAO.getKeyspace().getName() + " to run after this migration run");
+        }
+
         return migrationSuccessCount;
     }
 
+    /**
+     * @return The background migrations whose body is still to run, in version order.
+     */
+    public List<MigrationInfo> getBackgroundMigrations() {
+        return Collections.unmodifiableList(backgroundMigrations);
+    }
+
+    /**
+     * Runs the body of the background migrations left by {@link #run()}, one at a time and in version order. Each one
+     * is recorded as {@link MigrationState#COMPLETED} once done. A failed background migration is recorded as failed,
+     * unless it is resumable, in which case it stays {@link MigrationState#RUNNING} and resumes on the next run.
+     * <p>When progress is saved, the body of a background migration only runs once this run claimed its lease, which
+     * it renews while the body runs. A background migration whose lease is held by another instance is left to it,
+     * and so is one whose lease was lost while its body ran: it is not recorded as completed, and its body can stop
+     * early through {@link com.contrastsecurity.cassandra.migration.api.MigrationProgress#isCancelled()}.</p>
+     *
+     * @return The number of completed background migrations.
+     * @throws CassandraMigrationException when a background migration failed.
+     */
+    public int runBackgroundMigrations() {
+        int completedCount = 0;
+        ScheduledExecutorService leaseRenewals = null;
+        try {
+            for (MigrationInfo migration : backgroundMigrations) {
+                MigrationVersion version = migration.getVersion();
+                if (migrationProgressDAO == null) {
+                    runBackgroundMigration(migration, null);
+                    completedCount++;
+                    continue;
+                }
+
+                if (!migrationProgressDAO.claimLease(version, leaseOwner, LEASE_SECONDS)) {
+                    LOG.info("Background migration of keyspace " + schemaVersionDAO.getKeyspace().getName()
+                            + " to version " + version + " is running on another instance");
+                    continue;
+                }
+                AtomicBoolean leaseLost = new AtomicBoolean();
+                ScheduledFuture<?> leaseRenewal = null;
+                try {
+                    // Another instance may have completed it between the migration run and the claim.
+                    AppliedMigration appliedMigration = schemaVersionDAO.findAppliedMigration(version);
+                    if (appliedMigration != null && appliedMigration.getStatus() == MigrationState.COMPLETED) {
+                        LOG.info("Background migration of keyspace " + schemaVersionDAO.getKeyspace().getName()
+                                + " to version " + version + " was completed by another instance");
+                        continue;
+                    }
+                    if (leaseRenewals == null) {
+                        leaseRenewals = createLeaseRenewals();
+                    }
+                    leaseRenewal = scheduleLeaseRenewal(leaseRenewals, version, leaseLost);
+                    if (runBackgroundMigration(migration, leaseLost)) {
+                        completedCount++;
+                    }
+                } finally {
+                    if (leaseRenewal != null) {
+                        leaseRenewal.cancel(false);
+                    }
+                    if (!leaseLost.get()) {
+                        releaseLease(version);
+                    }
+                }
+            }
+        } finally {
+            if (leaseRenewals != null) {
+                leaseRenewals.shutdownNow();
+            }
+        }
+        backgroundMigrations.clear();
+        return completedCount;
+    }
+
+    /**
+     * Runs the body of this background migration, and records its outcome unless its lease was lost meanwhile. Before
+     * recording it as completed, the lease is renewed one last time to check that this run still holds it.
+     *
+     * @param migration The background migration.
+     * @param leaseLost Set once the lease of the background migration was lost. {@code null} if it isn't leased.
+     * @return {@code true} if it was recorded as completed, {@code false} if its lease was lost.
+     * @throws CassandraMigrationException when the background migration failed.
+     */
+    private boolean runBackgroundMigration(MigrationInfo migration, AtomicBoolean leaseLost) {
+        MigrationVersion version = migration.getVersion();
+        LOG.info("Running background migration of keyspace " + schemaVersionDAO.getKeyspace().getName()
+                + " to version " + version + " - " + migration.getDescription());
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.start();
+
+        BackgroundMigrationExecutor migrationExecutor =
+                (BackgroundMigrationExecutor) migration.getResolvedMigration().getExecutor();
+        boolean resumable = migrationExecutor.isResumable() && migrationProgressDAO != null;
+        int preparationTime = migration.getExecutionTime() == null ? 0 : migration.getExecutionTime();
+        try {
+            if (resumable) {
+                ((ResumableMigrationExecutor) migrationExecutor).execute(session,
+                        leaseLost == null ? migrationProgressDAO.load(version)
+                                : migrationProgressDAO.load(version, leaseLost::get));
+            } else {
+                migrationExecutor.execute(session);
+            }
+        } catch (Exception e) {
+            stopWatch.stop();
+            if (leaseLost != null && leaseLost.get()) {
+                LOG.error("Background migration of keyspace " + schemaVersionDAO.getKeyspace().getName()
+                        + " to version " + version + " failed after losing its lease: it is left to the instance"
+                        + " holding it now.");
+            } else if (resumable) {
+                LOG.error("Background migration of keyspace " + schemaVersionDAO.getKeyspace().getName()
+                        + " to version " + version + " failed! Its progress is saved in "
+                        + migrationProgressDAO.getTableName() + " and it will resume on the next run.");
+            } else {
+                schemaVersionDAO.updateStatus(version, null, false,
+                        preparationTime + (int) stopWatch.getTotalTimeMillis());
+                LOG.error("Background migration of keyspace " + schemaVersionDAO.getKeyspace().getName()
+                        + " to version " + version + " failed!");
+            }
+            throw new CassandraMigrationException("Unable to apply background migration", e);
+        }
+        stopWatch.stop();
+        if (leaseLost != null
+                && (leaseLost.get() || !migrationProgressDAO.renewLease(version, leaseOwner, LEASE_SECONDS))) {
+            leaseLost.set(true);
+            LOG.warn("Background migration of keyspace " + schemaVersionDAO.getKeyspace().getName()
+                    + " to version " + version + " lost its lease while running: it is not recorded as completed,"
+                    + " and is left to the instance holding the lease now");
+            return false;
+        }
+        schemaVersionDAO.updateStatus(version, MigrationState.COMPLETED, true,
+                preparationTime + (int) stopWatch.getTotalTimeMillis());
+        if (resumable) {
+            migrationProgressDAO.clear(version);
+        }
+        LOG.info("Completed background migration of keyspace " + schemaVersionDAO.getKeyspace().getName()
+                + " to version " + version + " (execution time "
+                + TimeFormat.format(stopWatch.getTotalTimeMillis()) + ")");
+        return true;
+    }
+
+    /**
+     * @return The scheduler renewing the leases of the background migrations, on a daemon thread.
+     */
+    private static ScheduledExecutorService createLeaseRenewals() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cassandra-migration-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Renews the lease of this background migration periodically, until cancelled or lost.
+     *
+     * @param leaseRenewals The scheduler of the renewals.
+     * @param version       The version of the background migration.
+     * @param leaseLost     Set once a renewal found the lease lost.
+     * @return The periodic renewal.
+     */
+    private ScheduledFuture<?> scheduleLeaseRenewal(ScheduledExecutorService leaseRenewals,
+                                                    final MigrationVersion version, final AtomicBoolean leaseLost) {
+        return leaseRenewals.scheduleWithFixedDelay(() -> {
+            if (leaseLost.get()) {
+                return;
+            }
+            try {
+                if (!migrationProgressDAO.renewLease(version, leaseOwner, LEASE_SECONDS)) {
+                    leaseLost.set(true);
+                    LOG.warn("Lost the lease of background migration of keyspace "
+                            + schemaVersionDAO.getKeyspace().getName() + " to version " + version
+                            + ": another instance may run it as well");
+                }
+            } catch (DriverException e) {
+                LOG.warn("Unable to renew the lease of background migration to version " + version + ": "
+                        + e.getMessage());
+            }
+        }, LEASE_RENEWAL_SECONDS, LEASE_RENEWAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Releases the lease of this background migration. Failing to release it is logged, as the lease expires anyway.
+     *
+     * @param version The version of the background migration.
+     */
+    private void releaseLease(MigrationVersion version) {
+        try {
+            migrationProgressDAO.releaseLease(version, leaseOwner);
+        } catch (DriverException e) {
+            LOG.warn("Unable to release the lease of background migration to version " + version + " in "
+                    + migrationProgressDAO.getTableName() + ": " + e.getMessage());
+        }
+    }
+
     private MigrationVersion applyMigration(final MigrationInfo migration, boolean isOutOfOrder, boolean firstTimeMigration) {
         MigrationVersion version = migration.getVersion();
         LOG.info("Migrating keyspace " + schemaVersionDAO.getKeyspace().getName() + " to version " + version + " - " + migration.getDescription() +
@@ -111,10 +400,28 @@ public class Migrate {
         StopWatch stopWatch = new StopWatch();
         stopWatch.start();
 
+        final MigrationExecutor migrationExecutor = migration.getResolvedMigration().getExecutor();
+        final boolean background = migrationExecutor instanceof BackgroundMigrationExecutor;
+        // The body of a background migration resumes later: only its prerequisites run here.
+        final boolean resumable = !background
+                && migrationExecutor instanceof ResumableMigrationExecutor && migrationProgressDAO != null;
+        final List<StatementMetrics> statementMetrics =
+                migrationExecutor instanceof MeasuredMigrationExecutor && statementMetricsDAO != null
+                        ? new ArrayList<StatementMetrics>()
+                        : null;
         try {
-            final MigrationExecutor migrationExecutor = migration.getResolvedMigration().getExecutor();
             try {
-                migrationExecutor.execute(session);
+                if (background) {
+                    ((BackgroundMigrationExecutor) migrationExecutor).prepare(session);
+                } else if (resumable) {
+                    ((ResumableMigrationExecutor) migrationExecutor).execute(session, migrationProgressDAO.load(version));
+                } else if (migrationExecutor instanceof AsyncMigrationExecutor) {
+                    awaitMigration(((AsyncMigrationExecutor) migrationExecutor).executeAsync(session), version);
+                } else if (statementMetrics != null) {
+                    ((MeasuredMigrationExecutor) migrationExecutor).execute(session, statementMetrics);
+                } else {
+                    migrationExecutor.execute(session);
+                }
             } catch (Exception e) {
                 throw new CassandraMigrationException("Unable to apply migration", e);
             }
@@ -122,17 +429,24 @@ public class Migrate {
                     schemaVersionDAO.getKeyspace().getName() + " to version " + version);
         } catch (CassandraMigrationException e) {
             stopWatch.stop();
+            if (resumable) {
+                // Not recorded as failed: the migration stays pending and resumes from its progress on the next run.
+                LOG.error("Migration of keyspace " + schemaVersionDAO.getKeyspace().getName() + " to version "
+                        + version + " failed! Its progress is saved in " + migrationProgressDAO.getTableName()
+                        + " and it will resume on the next run.");
+                throw e;
+            }
             int executionTime = (int) stopWatch.getTotalTimeMillis();
             if (firstTimeMigration) {
-                AppliedMigration appliedMigration = new AppliedMigration(version, migration.getDescription(),
-                        migration.getType(), migration.getScript(), migration.getChecksum(), user, executionTime, true, firstTimeMigration);
+                AppliedMigration appliedMigration = createAppliedMigration(migration, executionTime, true, firstTimeMigration);
                 schemaVersionDAO.addAppliedMigration(appliedMigration);
+                saveStatementMetrics(version, statementMetrics);
                 LOG.error("Failed applying migration but since migration is being run first time it will be ignored", e);
                 return version;
             }
-            AppliedMigration appliedMigration = new AppliedMigration(version, migration.getDescription(),
-                    migration.getType(), migration.getScript(), migration.getChecksum(), user, executionTime, false);
+            AppliedMigration appliedMigration = createAppliedMigration(migration, executionTime, false, false);
             schemaVersionDAO.addAppliedMigration(appliedMigration);
+            saveStatementMetrics(version, statementMetrics);
             String failedMsg = "Migration of keyspace " + schemaVersionDAO.getKeyspace().getName() +
                     " to version " + version + " failed!";
             LOG.error(failedMsg + " Please restore backups and roll back database and code!");
@@ -142,13 +456,87 @@ public class Migrate {
         stopWatch.stop();
         int executionTime = (int) stopWatch.getTotalTimeMillis();
 
-        AppliedMigration appliedMigration = new AppliedMigration(version, migration.getDescription(),
-                migration.getType(), migration.getScript(), migration.getChecksum(), user, executionTime, true);
+        AppliedMigration appliedMigration = createAppliedMigration(migration, executionTime, true, false);
+        if (background) {
+            appliedMigration.setStatus(MigrationState.RUNNING);
+        }
         schemaVersionDAO.addAppliedMigration(appliedMigration);
+        if (resumable) {
+            migrationProgressDAO.clear(version);
+        }
+        saveStatementMetrics(version, statementMetrics);
 
         return version;
     }
 
+    /**
+     * Saves the statement metrics of this migration. Failing to save them is logged, as the migration itself is
+     * already recorded.
+     *
+     * @param version The version of the migration.
+     * @param metrics The metrics of its executed statements. {@code null} if they weren't measured.
+     */
+    private void saveStatementMetrics(MigrationVersion version, List<StatementMetrics> metrics) {
+        if (metrics == null) {
+            return;
+        }
+        try {
+            statementMetricsDAO.save(version, metrics);
+        } catch (DriverException e) {
+            LOG.warn("Unable to save the statement metrics of migration to version " + version + " in "
+                    + statementMetricsDAO.getTableName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Waits for this asynchronous migration, cancelling it if it takes longer than the timeout or the wait is
+     * interrupted.
+     *
+     * @param migration The stage of the migration.
+     * @param version   The version of the migration.
+     * @throws CassandraMigrationException when the migration failed, timed out or the wait was interrupted.
+     */
+    private void awaitMigration(CompletionStage<Void> migration, MigrationVersion version) {
+        CompletableFuture<Void> future = migration.toCompletableFuture();
+        try {
+            if (asyncTimeout > 0) {
+                future.get(asyncTimeout, TimeUnit.SECONDS);
+            } else {
+                future.get();
+            }
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new CassandraMigrationException("Migration to version " + version + " did not complete within "
+                    + asyncTimeout + "s and was cancelled", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CassandraMigrationException("Interrupted while applying migration to version " + version, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CassandraMigrationException) {
+                throw (CassandraMigrationException) e.getCause();
+            }
+            throw new CassandraMigrationException("Migration failed !", e.getCause());
+        }
+    }
+
+    /**
+     * Creates the metadata table entry for this migration.
+     *
+     * @param migration     The migration that was applied.
+     * @param executionTime The execution time (in millis) of this migration.
+     * @param success       Flag indicating whether the migration was successful or not.
+     * @param ignored       Flag indicating whether the migration failure can be ignored.
+     * @return The applied migration.
+     */
+    private AppliedMigration createAppliedMigration(MigrationInfo migration, int executionTime, boolean success,
+                                                    boolean ignored) {
+        ResolvedMigration resolvedMigration = migration.getResolvedMigration();
+        return new AppliedMigration(migration.getVersion(), migration.getDescription(), migration.getType(),
+                migration.getScript(), migration.getChecksum(), resolvedMigration.getChecksumAlgorithm(),
+                resolvedMigration.getChecksumValue(), user, executionTime, success, ignored);
+    }
+
     /**
      * Logs the summary of this migration run.
      *
@@ -0,0 +1,112 @@
+package com.contrastsecurity.cassandra.migration.action;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.api.ChecksumAlgorithm;
+import com.contrastsecurity.cassandra.migration.dao.SchemaVersionDAO;
+import com.contrastsecurity.cassandra.migration.info.AppliedMigration;
+import com.contrastsecurity.cassandra.migration.info.MigrationInfo;
+import com.contrastsecurity.cassandra.migration.info.MigrationInfoService;
+import com.contrastsecurity.cassandra.migration.info.MigrationVersion;
+import com.contrastsecurity.cassandra.migration.info.ResolvedMigration;
+import com.contrastsecurity.cassandra.migration.logging.Log;
+import com.contrastsecurity.cassandra.migration.logging.LogFactory;
+import com.contrastsecurity.cassandra.migration.resolver.ChecksumMigrationExecutor;
+import com.contrastsecurity.cassandra.migration.resolver.MigrationResolver;
+import com.contrastsecurity.cassandra.migration.utils.StopWatch;
+import com.contrastsecurity.cassandra.migration.utils.TimeFormat;
+import com.contrastsecurity.cassandra.migration.utils.checksum.ChecksumAlgorithms;
+
+/**
+ * Records the checksums of applied cql and data migrations with the configured checksum algorithm. A migration is
+ * only restamped if its script still matches the checksum recorded with the previous algorithm, so that modified
+ * scripts keep failing validation.
+ */
+public class RestampChecksums {
+    private static final Log LOG = LogFactory.getLog(RestampChecksums.class);
+
+    private final MigrationResolver migrationResolver;
+    private final SchemaVersionDAO schemaVersionDAO;
+    private final MigrationVersion target;
+    private final ClassLoader classLoader;
+
+    public RestampChecksums(MigrationResolver migrationResolver, SchemaVersionDAO schemaVersionDAO,
+                            MigrationVersion target, ClassLoader classLoader) {
+        this.migrationResolver = migrationResolver;
+        this.schemaVersionDAO = schemaVersionDAO;
+        this.target = target;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Restamps the checksums of the applied migrations.
+     *
+     * @return The number of restamped migrations.
+     */
+    public int run() {
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.start();
+
+        MigrationInfoService infoService = new MigrationInfoService(migrationResolver, schemaVersionDAO, target, true, true);
+        infoService.refresh();
+
+        int restampedCount = 0;
+        for (MigrationInfo migrationInfo : infoService.applied()) {
+            if (restamp(migrationInfo)) {
+                restampedCount++;
+            }
+        }
+
+        stopWatch.stop();
+        LOG.info(String.format("Restamped checksums of %d migrations (execution time %s)", restampedCount,
+                TimeFormat.format(stopWatch.getTotalTimeMillis())));
+        return restampedCount;
+    }
+
+    /**
+     * Restamps the checksum of this migration, if it was recorded with another algorithm.
+     *
+     * @param migrationInfo The applied migration.
+     * @return {@code true} if it was restamped.
+     */
+    private boolean restamp(MigrationInfo migrationInfo) {
+        ResolvedMigration resolvedMigration = migrationInfo.getResolvedMigration();
+        AppliedMigration appliedMigration = migrationInfo.getAppliedMigration();
+        if (resolvedMigration == null || appliedMigration == null
+                || resolvedMigration.getChecksumAlgorithm() == null
+                || appliedMigration.getChecksum() == null
+                || !(resolvedMigration.getExecutor() instanceof ChecksumMigrationExecutor)) {
+            return false;
+        }
+
+        String appliedAlgorithm = appliedMigration.getChecksumAlgorithm() == null
+                ? ChecksumAlgorithms.CRC32
+                : appliedMigration.getChecksumAlgorithm();
+        if (appliedAlgorithm.equalsIgnoreCase(resolvedMigration.getChecksumAlgorithm())
+                && appliedMigration.getChecksumValue() != null) {
+            return false;
+        }
+
+        MigrationVersion version = appliedMigration.getVersion();
+        ChecksumAlgorithm previousAlgorithm;
+        try {
+            previousAlgorithm = ChecksumAlgorithms.forName(appliedAlgorithm, classLoader);
+        } catch (CassandraMigrationException e) {
+            LOG.warn("Unable to restamp migration " + version + ": " + e.getMessage());
+            return false;
+        }
+
+        int previousChecksum = (int) ((ChecksumMigrationExecutor) resolvedMigration.getExecutor())
+                .calculateChecksum(previousAlgorithm);
+        if (previousChecksum != appliedMigration.getChecksum()) {
+            LOG.warn("Not restamping migration " + version + ": the script was modified since it was applied ("
+                    + appliedAlgorithm + " checksum mismatch)");
+            return false;
+        }
+
+        schemaVersionDAO.updateChecksum(version, resolvedMigration.getChecksum(),
+                resolvedMigration.getChecksumAlgorithm(), resolvedMigration.getChecksumValue());
+        LOG.info("Restamped checksum of migration " + version + " (" + appliedAlgorithm + " -> "
+                + resolvedMigration.getChecksumAlgorithm() + ")");
+        return true;
+    }
+}
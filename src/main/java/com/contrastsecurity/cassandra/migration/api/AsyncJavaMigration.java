@@ -0,0 +1,43 @@
+package com.contrastsecurity.cassandra.migration.api;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A Java migration chaining asynchronous calls, eg: {@code session.executeAsync(...)}, without blocking a thread
+ * while they run. The migration is applied once the returned stage completes, and fails if it completes exceptionally.
+ * <p>The stage is cancelled when the migration takes longer than the configured timeout
+ * ({@code cassandra.migration.java.asynctimeout}) or the migration run is interrupted. Cancelling a stage doesn't stop
+ * the stages it depends on: long migrations should check {@code toCompletableFuture().isCancelled()} on the stage
+ * they returned before chaining more work.</p>
+ */
+public interface AsyncJavaMigration extends JavaMigration {
+    /**
+     * Starts this migration.
+     *
+     * @param session The session.
+     * @return The stage completing once the migration is done.
+     * @throws Exception when the migration could not be started.
+     */
+    CompletionStage<Void> migrateAsync(CqlSession session) throws Exception;
+
+    /**
+     * Executes this migration, waiting for it to complete.
+     *
+     * @param session The session.
+     * @throws Exception when the migration failed.
+     */
+    @Override
+    default void migrate(CqlSession session) throws Exception {
+        try {
+            migrateAsync(session).toCompletableFuture().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.contrastsecurity.cassandra.migration.api;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+
+/**
+ * A Java migration whose body runs in the background, so that a long data migration doesn't hold up the migration
+ * run. Its prerequisites ({@link #prepare(CqlSession)}) are applied inline, the migration is then recorded as
+ * {@code RUNNING}, and its body ({@link #migrate(CqlSession)}) runs once {@code CassandraMigration.migrate()} has
+ * returned. It is recorded as {@code COMPLETED} when the body succeeds, and as failed otherwise.
+ * <p>A background migration that is also a {@link ResumableJavaMigration} resumes from its progress when its body
+ * fails, on the next migration run.</p>
+ */
+public interface BackgroundJavaMigration extends JavaMigration {
+    /**
+     * Applies the prerequisites of this migration inline, eg: creates the tables its body fills.
+     *
+     * @param session The session.
+     * @throws Exception when the prerequisites could not be applied. The migration is then recorded as failed.
+     */
+    default void prepare(CqlSession session) throws Exception {
+    }
+}
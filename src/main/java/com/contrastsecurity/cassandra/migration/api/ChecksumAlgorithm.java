@@ -0,0 +1,23 @@
+package com.contrastsecurity.cassandra.migration.api;
+
+import java.util.zip.Checksum;
+
+/**
+ * Algorithm used to compute the checksum of migration scripts.
+ * <p>Additional algorithms can be plugged in by listing their implementation class in
+ * {@code META-INF/services/com.contrastsecurity.cassandra.migration.api.ChecksumAlgorithm}. The algorithm name is
+ * recorded alongside every checksum in the metadata table, so it must never change once released.</p>
+ */
+public interface ChecksumAlgorithm {
+    /**
+     * @return The unique name of this algorithm (eg: CRC32C), as recorded in the metadata table.
+     */
+    String getName();
+
+    /**
+     * Creates a new checksum instance. Checksum values wider than 64 bits are not supported.
+     *
+     * @return A new, reset, checksum.
+     */
+    Checksum newChecksum();
+}
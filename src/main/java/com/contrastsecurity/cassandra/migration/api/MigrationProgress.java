@@ -0,0 +1,65 @@
+package com.contrastsecurity.cassandra.migration.api;
+
+import java.util.Set;
+
+/**
+ * The progress of a {@link ResumableJavaMigration}, kept across runs until the migration succeeds. Implementations
+ * are thread-safe.
+ */
+public interface MigrationProgress {
+    /**
+     * Retrieves the value of a checkpoint, eg: the last processed key.
+     *
+     * @param name The name of the checkpoint.
+     * @return The value saved by this run or a previous one. {@code null} if none.
+     */
+    String getCheckpoint(String name);
+
+    /**
+     * Saves the value of a checkpoint, replacing the previous one.
+     *
+     * @param name  The name of the checkpoint.
+     * @param value The value.
+     */
+    void saveCheckpoint(String name, String value);
+
+    /**
+     * Checks whether a unit of work, eg: a token range, was completed by this run or a previous one.
+     *
+     * @param unit The name of the unit of work.
+     * @return {@code true} if it was.
+     */
+    boolean isCompleted(String unit);
+
+    /**
+     * Records that a unit of work is completed, so that it is skipped if the migration is run again.
+     *
+     * @param unit The name of the unit of work.
+     */
+    void complete(String unit);
+
+    /**
+     * @return The names of the units of work completed by this run or a previous one.
+     */
+    Set<String> getCompleted();
+
+    /**
+     * Checks whether this run should stop, eg: because the lease of the background migration was lost to another
+     * instance. Long migrations check it between units of work, and return without starting the next ones: the
+     * migration is not recorded as completed, and resumes on the instance holding the lease.
+     *
+     * @return {@code true} if this run should stop.
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * Creates a progress that is not saved, for migrations executed without a progress table.
+     *
+     * @return The progress.
+     */
+    static MigrationProgress transientProgress() {
+        return new TransientMigrationProgress();
+    }
+}
@@ -0,0 +1,30 @@
+package com.contrastsecurity.cassandra.migration.api;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+
+/**
+ * A Java migration that can resume where a failed run stopped. Its progress (checkpoints and completed units of work)
+ * is saved in a progress table while it runs, handed back to the next run if it fails, and dropped once it succeeds.
+ * A failed resumable migration is not recorded as failed: it stays pending until a run completes it.
+ */
+public interface ResumableJavaMigration extends JavaMigration {
+    /**
+     * Executes this migration.
+     *
+     * @param session  The session.
+     * @param progress The progress saved by previous runs.
+     * @throws Exception when the migration failed. Its progress is kept.
+     */
+    void migrate(CqlSession session, MigrationProgress progress) throws Exception;
+
+    /**
+     * Executes this migration from the start, without saving its progress.
+     *
+     * @param session The session.
+     * @throws Exception when the migration failed.
+     */
+    @Override
+    default void migrate(CqlSession session) throws Exception {
+        migrate(session, MigrationProgress.transientProgress());
+    }
+}
@@ -0,0 +1,386 @@
+package com.contrastsecurity.cassandra.migration.api;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.logging.Log;
+import com.contrastsecurity.cassandra.migration.logging.LogFactory;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.metadata.schema.ColumnMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata;
+import com.datastax.oss.driver.api.core.metadata.token.TokenRange;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A migration copying the rows of a table into another one, eg: to change its primary key. The source table is
+ * scanned by token ranges with a {@link TokenRangeScanner}: several ranges are paged concurrently, and their rows
+ * mapped on the threads of the scanner. The mapped rows are inserted with prepared statements through a
+ * {@link ThrottledWriteExecutor}, which bounds the writes in flight.
+ * <p>Each token range is recorded as completed in the progress of the migration once all its rows are written, so
+ * that a failed copy resumes with the ranges it didn't complete, as long as the token ring and the number of
+ * {@link TokenRangeScanner#setSplits(int) splits} are unchanged.</p>
+ * <pre>
+ * public class V7__CopyUsersByEmail extends TableCopyMigration {
+ *     public V7__CopyUsersByEmail() {
+ *         super("users", "users_by_email");
+ *     }
+ * }
+ * </pre>
+ * Without a {@link RowMapper row mapper}, the columns of the target table are copied from the source columns with
+ * the same name.
+ */
+public abstract class TableCopyMigration implements ResumableJavaMigration {
+    private static final Log LOG = LogFactory.getLog(TableCopyMigration.class);
+
+    /**
+     * The prefix of the units of work of the token ranges, in the progress of the migration.
+     */
+    private static final String RANGE_UNIT = "range:";
+
+    /**
+     * The interval between two progress reports, in milliseconds.
+     */
+    private static final long REPORT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * Maps the rows of the source table to the rows of the target table.
+     */
+    public interface RowMapper {
+        /**
+         * Maps this row. Called concurrently.
+         *
+         * @param row The row of the source table.
+         * @return The values of the columns of the target row, by column name. {@code null} to skip this row.
+         * @throws Exception when the row could not be mapped. The copy is aborted.
+         */
+        Map<String, Object> map(Row row) throws Exception;
+    }
+
+    /**
+     * The source table, optionally qualified with its keyspace.
+     */
+    private final String sourceTable;
+
+    /**
+     * The target table, optionally qualified with its keyspace.
+     */
+    private final String targetTable;
+
+    /**
+     * The row mapper. {@code null} to copy the columns with the same name.
+     */
+    private final RowMapper rowMapper;
+
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsSkipped = new AtomicLong();
+    private final AtomicLong rangesCompleted = new AtomicLong();
+
+    /**
+     * @param sourceTable The source table, optionally qualified with its keyspace.
+     * @param targetTable The target table, optionally qualified with its keyspace.
+     */
+    protected TableCopyMigration(String sourceTable, String targetTable) {
+        this(sourceTable, targetTable, null);
+    }
+
+    /**
+     * @param sourceTable The source table, optionally qualified with its keyspace.
+     * @param targetTable The target table, optionally qualified with its keyspace.
+     * @param rowMapper   The row mapper. {@code null} to copy the columns with the same name.
+     */
+    protected TableCopyMigration(String sourceTable, String targetTable, RowMapper rowMapper) {
+        this.sourceTable = sourceTable;
+        this.targetTable = targetTable;
+        this.rowMapper = rowMapper;
+    }
+
+    /**
+     * Creates the scanner of the source table. Override to tune its concurrency, consistency level, ...
+     *
+     * @param session The session.
+     * @return The scanner.
+     */
+    protected TokenRangeScanner createScanner(CqlSession session) {
+        return new TokenRangeScanner(session);
+    }
+
+    /**
+     * Creates the executor of the writes to the target table. Override to tune its rate, writes in flight, ...
+     *
+     * @param session The session.
+     * @return The executor.
+     */
+    protected ThrottledWriteExecutor createWriter(CqlSession session) {
+        return new ThrottledWriteExecutor(session);
+    }
+
+    @Override
+    public void migrate(CqlSession session, MigrationProgress progress) throws Exception {
+        TableMetadata source = getTable(session, sourceTable);
+        TableMetadata target = getTable(session, targetTable);
+        String sourceName = qualifiedName(source);
+        String targetName = qualifiedName(target);
+
+        String selectedColumns;
+        RowMapper mapper;
+        if (rowMapper == null) {
+            List<String> columns = commonColumns(source, target);
+            selectedColumns = columnList(columns);
+            mapper = row -> copyColumns(row, columns);
+        } else {
+            selectedColumns = "*";
+            mapper = rowMapper;
+        }
+
+        int resumedRanges = 0;
+        for (String unit : progress.getCompleted()) {
+            if (unit.startsWith(RANGE_UNIT)) {
+                resumedRanges++;
+            }
+        }
+        LOG.info("Copying " + sourceName + " to " + targetName
+                + (resumedRanges > 0 ? ", resuming after " + resumedRanges + " completed token ranges" : ""));
+
+        long start = System.currentTimeMillis();
+        AtomicLong lastReport = new AtomicLong(start);
+        ConcurrentMap<List<String>, PreparedStatement> inserts = new ConcurrentHashMap<>();
+        // The rows of a range are handled by the thread that started it.
+        ThreadLocal<RangeWrites> rangeWrites = new ThreadLocal<>();
+        try (ThrottledWriteExecutor writer = createWriter(session)) {
+            createScanner(session).scan(source.getKeyspace().asCql(true), source.getName().asCql(true),
+                    selectedColumns, new TokenRangeScanner.RowHandler() {
+                        @Override
+                        public boolean startRange(TokenRange range) {
+                            if (progress.isCompleted(RANGE_UNIT + range) || progress.isCancelled()) {
+                                return false;
+                            }
+                            rangeWrites.set(new RangeWrites());
+                            return true;
+                        }
+
+                        @Override
+                        public void handle(Row row) throws Exception {
+                            rowsRead.incrementAndGet();
+                            Map<String, Object> values = mapper.map(row);
+                            if (values == null) {
+                                rowsSkipped.incrementAndGet();
+                                return;
+                            }
+                            List<String> columns = new ArrayList<>(values.keySet());
+                            PreparedStatement insert = inserts.computeIfAbsent(columns,
+                                    key -> session.prepare(insertQuery(targetName, key)));
+                            RangeWrites writes = rangeWrites.get();
+                            writes.started();
+                            writer.execute(insert.bind(values.values().toArray()).setIdempotent(true))
+                                    .whenComplete((result, error) -> {
+                                        if (error == null) {
+                                            rowsWritten.incrementAndGet();
+                                        }
+                                        writes.finished(error);
+                                    });
+                        }
+
+                        @Override
+                        public void endRange(TokenRange range) throws Exception {
+                            RangeWrites writes = rangeWrites.get();
+                            rangeWrites.remove();
+                            writes.await(range);
+                            progress.complete(RANGE_UNIT + range);
+                            rangesCompleted.incrementAndGet();
+                            report(sourceName, targetName, start, lastReport);
+                        }
+                    });
+            writer.flush();
+        }
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        LOG.info("Copied " + rowsWritten.get() + " rows of " + sourceName + " to " + targetName + " in "
+                + rangesCompleted.get() + " token ranges (" + rowsSkipped.get() + " rows skipped, "
+                + (rowsWritten.get() * 1000 / elapsed) + " rows/s)");
+    }
+
+    /**
+     * @return The number of rows read from the source table by this run, including rows read again when retrying a
+     * token range.
+     */
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    /**
+     * @return The number of rows written to the target table by this run.
+     */
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    /**
+     * @return The number of rows skipped by the row mapper in this run.
+     */
+    public long getRowsSkipped() {
+        return rowsSkipped.get();
+    }
+
+    /**
+     * @return The number of token ranges completed by this run.
+     */
+    public long getRangesCompleted() {
+        return rangesCompleted.get();
+    }
+
+    /**
+     * Logs the progress of the copy, at most every {@link #REPORT_INTERVAL_MILLIS}.
+     */
+    private void report(String sourceName, String targetName, long start, AtomicLong lastReport) {
+        long now = System.currentTimeMillis();
+        long last = lastReport.get();
+        if (now - last < REPORT_INTERVAL_MILLIS || !lastReport.compareAndSet(last, now)) {
+            return;
+        }
+        LOG.info("Copying " + sourceName + " to " + targetName + ": " + rangesCompleted.get() + " token ranges and "
+                + rowsWritten.get() + " rows copied (" + (rowsWritten.get() * 1000 / Math.max(1, now - start))
+                + " rows/s)");
+    }
+
+    /**
+     * @param session The session.
+     * @param table   The table, optionally qualified with its keyspace.
+     * @return The metadata of the table.
+     * @throws CassandraMigrationException when the table is unknown.
+     */
+    private static TableMetadata getTable(CqlSession session, String table) {
+        String[] name = splitName(table);
+        CqlIdentifier keyspace = name[0] == null
+                ? session.getKeyspace().orElseThrow(() ->
+                new CassandraMigrationException("No keyspace to find table " + table + " in"))
+                : CqlIdentifier.fromCql(name[0]);
+        return session.getMetadata().getKeyspace(keyspace)
+                .flatMap(keyspaceMetadata -> keyspaceMetadata.getTable(CqlIdentifier.fromCql(name[1])))
+                .orElseThrow(() -> new CassandraMigrationException("Unknown table: " + table));
+    }
+
+    /**
+     * Splits this table name into its keyspace and table.
+     *
+     * @param table The table, optionally qualified with its keyspace.
+     * @return The keyspace ({@code null} if not qualified) and the table.
+     */
+    /* private -> for testing */
+    static String[] splitName(String table) {
+        int dot = table.indexOf('.');
+        if (table.startsWith("\"")) {
+            int quote = table.indexOf('"', 1);
+            while (quote >= 0 && quote + 1 < table.length() && table.charAt(quote + 1) == '"') {
+                quote = table.indexOf('"', quote + 2);
+            }
+            dot = quote < 0 ? -1 : table.indexOf('.', quote);
+        }
+        return dot < 0
+                ? new String[]{null, table}
+                : new String[]{table.substring(0, dot), table.substring(dot + 1)};
+    }
+
+    /**
+     * @return The columns of the target table that are in the source table, in the order of the target table.
+     * @throws CassandraMigrationException when a primary key column of the target table isn't in the source table.
+     */
+    private static List<String> commonColumns(TableMetadata source, TableMetadata target) {
+        List<String> columns = new ArrayList<>();
+        for (ColumnMetadata column : target.getColumns().values()) {
+            if (source.getColumn(column.getName()).isPresent()) {
+                columns.add(column.getName().asInternal());
+            } else if (target.getPrimaryKey().contains(column)) {
+                throw new CassandraMigrationException("Unable to copy " + qualifiedName(source) + " to "
+                        + qualifiedName(target) + ": the source has no column " + column.getName().asCql(true)
+                        + ". Use a row mapper.");
+            }
+        }
+        return columns;
+    }
+
+    private static Map<String, Object> copyColumns(Row row, List<String> columns) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String column : columns) {
+            values.put(column, row.getObject(CqlIdentifier.fromInternal(column)));
+        }
+        return values;
+    }
+
+    /**
+     * @param columns The names of the columns.
+     * @return The columns, as in a SELECT clause.
+     */
+    private static String columnList(List<String> columns) {
+        StringBuilder list = new StringBuilder();
+        for (String column : columns) {
+            if (list.length() > 0) {
+                list.append(", ");
+            }
+            list.append(CqlIdentifier.fromInternal(column).asCql(true));
+        }
+        return list.toString();
+    }
+
+    /**
+     * @param table   The qualified target table.
+     * @param columns The names of the columns.
+     * @return The INSERT statement of these columns.
+     */
+    /* private -> for testing */
+    static String insertQuery(String table, List<String> columns) {
+        StringBuilder markers = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            markers.append(i == 0 ? "?" : ", ?");
+        }
+        return "INSERT INTO " + table + " (" + columnList(columns) + ") VALUES (" + markers + ")";
+    }
+
+    private static String qualifiedName(TableMetadata table) {
+        return table.getKeyspace().asCql(true) + "." + table.getName().asCql(true);
+    }
+
+    /**
+     * The writes of a token range still in flight.
+     */
+    private static final class RangeWrites {
+        private int pending;
+        private Throwable failure;
+
+        synchronized void started() {
+            pending++;
+        }
+
+        synchronized void finished(Throwable error) {
+            if (error != null && failure == null) {
+                failure = error;
+            }
+            if (--pending == 0) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Waits for the writes of this range.
+         *
+         * @throws CassandraMigrationException when one of them failed.
+         */
+        synchronized void await(TokenRange range) throws InterruptedException {
+            while (pending > 0) {
+                wait();
+            }
+            if (failure != null) {
+                throw new CassandraMigrationException("Unable to copy token range " + range, failure);
+            }
+        }
+    }
+}
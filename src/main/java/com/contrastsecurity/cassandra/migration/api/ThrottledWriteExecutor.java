@@ -0,0 +1,426 @@
+package com.contrastsecurity.cassandra.migration.api;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.logging.Log;
+import com.contrastsecurity.cassandra.migration.logging.LogFactory;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.servererrors.OverloadedException;
+import com.datastax.oss.driver.api.core.servererrors.ReadTimeoutException;
+import com.datastax.oss.driver.api.core.servererrors.UnavailableException;
+import com.datastax.oss.driver.api.core.servererrors.WriteTimeoutException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Executes the writes of data migrations asynchronously, without overloading the cluster.
+ * <ul>
+ * <li>The rate of writes is limited to {@link #setMaxOpsPerSecond(double) maxOpsPerSecond}, and the number of writes
+ * in flight to {@link #setMaxInFlight(int) maxInFlight}: {@link #execute(Statement)} blocks the caller until both
+ * allow another write.</li>
+ * <li>The rate adapts to the cluster: it is halved when a write times out, is rejected as overloaded or takes longer
+ * than {@link #setTargetLatencyMillis(long) targetLatencyMillis}, and increases again by a tenth of the maximum rate
+ * per second of fast writes. Writes already in flight when the rate was halved don't halve it again.</li>
+ * <li>Idempotent statements failing with a timeout, unavailable or overloaded error are retried, up to
+ * {@link #setMaxAttempts(int) maxAttempts} times.</li>
+ * </ul>
+ * <p>The executor is configured before its first write: the setters throw an {@link IllegalStateException} once it
+ * started. {@link #execute(Statement)} can be called from several threads, but not concurrently with
+ * {@link #flush()}.</p>
+ * <pre>
+ * try (ThrottledWriteExecutor writer = new ThrottledWriteExecutor(session).setMaxOpsPerSecond(2000)) {
+ *     for (...) {
+ *         writer.execute(insert.bind(...).setIdempotent(true));
+ *     }
+ *     writer.flush();
+ * }
+ * </pre>
+ */
+public class ThrottledWriteExecutor implements AutoCloseable {
+    private static final Log LOG = LogFactory.getLog(ThrottledWriteExecutor.class);
+
+    private final CqlSession session;
+
+    /**
+     * The maximum number of writes per second. (default: 1000)
+     */
+    private volatile double maxOpsPerSecond = 1000;
+
+    /**
+     * The minimum number of writes per second the rate can be reduced to, capped at the maximum. (default: 10)
+     */
+    private volatile double minOpsPerSecond = 10;
+
+    /**
+     * The maximum number of writes in flight. (default: 64)
+     */
+    private int maxInFlight = 64;
+
+    /**
+     * The number of attempts of idempotent writes. (default: 3)
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * The latency above which a write slows the rate down, in milliseconds. (default: 100)
+     */
+    private volatile long targetLatencyMillis = 100;
+
+    /**
+     * The permits of the writes in flight, and their number. Created on first use.
+     */
+    private Semaphore inFlight;
+    private int inFlightPermits;
+
+    /**
+     * The current rate, in writes per second.
+     */
+    private double currentOpsPerSecond = -1;
+
+    /**
+     * The time at which the rate allows the next write, in nanos.
+     */
+    private long nextWriteNanos;
+
+    /**
+     * The time of the last rate increase, in nanos.
+     */
+    private long lastIncreaseNanos;
+
+    /**
+     * The time of the last rate decrease, in nanos.
+     */
+    private long lastDecreaseNanos;
+
+    /**
+     * The scheduler of the retries. Created on the first retry.
+     */
+    private ScheduledExecutorService retryScheduler;
+
+    /**
+     * The first write failure since the last flush. {@code null} if none.
+     */
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong slowDownCount = new AtomicLong();
+    private final AtomicLong throttledNanos = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+
+    public ThrottledWriteExecutor(CqlSession session) {
+        this.session = session;
+    }
+
+    public synchronized ThrottledWriteExecutor setMaxOpsPerSecond(double maxOpsPerSecond) {
+        checkNotStarted();
+        if (!(maxOpsPerSecond > 0) || Double.isInfinite(maxOpsPerSecond)) {
+            throw new IllegalArgumentException("maxOpsPerSecond must be positive: " + maxOpsPerSecond);
+        }
+        this.maxOpsPerSecond = maxOpsPerSecond;
+        return this;
+    }
+
+    public synchronized ThrottledWriteExecutor setMinOpsPerSecond(double minOpsPerSecond) {
+        checkNotStarted();
+        if (!(minOpsPerSecond > 0) || Double.isInfinite(minOpsPerSecond)) {
+            throw new IllegalArgumentException("minOpsPerSecond must be positive: " + minOpsPerSecond);
+        }
+        this.minOpsPerSecond = minOpsPerSecond;
+        return this;
+    }
+
+    public synchronized ThrottledWriteExecutor setMaxInFlight(int maxInFlight) {
+        checkNotStarted();
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public synchronized ThrottledWriteExecutor setMaxAttempts(int maxAttempts) {
+        checkNotStarted();
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public synchronized ThrottledWriteExecutor setTargetLatencyMillis(long targetLatencyMillis) {
+        checkNotStarted();
+        if (targetLatencyMillis < 0) {
+            throw new IllegalArgumentException("targetLatencyMillis must not be negative: " + targetLatencyMillis);
+        }
+        this.targetLatencyMillis = targetLatencyMillis;
+        return this;
+    }
+
+    /**
+     * @throws IllegalStateException when this executor already started, as the permits of the writes in flight and
+     *                               the rate were initialized from its configuration.
+     */
+    private void checkNotStarted() {
+        if (inFlight != null) {
+            throw new IllegalStateException("Unable to configure a ThrottledWriteExecutor once started");
+        }
+    }
+
+    /**
+     * Executes this write asynchronously, once the rate and the writes in flight allow it.
+     *
+     * @param statement The write. Retried on transient errors if it is idempotent.
+     * @return The result of the write.
+     * @throws CassandraMigrationException when interrupted while waiting.
+     */
+    public CompletionStage<AsyncResultSet> execute(Statement<?> statement) {
+        try {
+            long waitStart = System.nanoTime();
+            getInFlight().acquire();
+            TimeUnit.NANOSECONDS.sleep(reserveRate());
+            throttledNanos.addAndGet(System.nanoTime() - waitStart);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CassandraMigrationException("Interrupted while waiting to write", e);
+        }
+
+        CompletableFuture<AsyncResultSet> result = new CompletableFuture<>();
+        attempt(statement, 1, result);
+        return result;
+    }
+
+    /**
+     * Waits for the writes in flight to complete. The callbacks attached to their results have run by then, as a
+     * write only frees its slot once its result is completed.
+     * <p>Must not be called concurrently with {@link #execute(Statement)}: the writes started while it waits are not
+     * guaranteed to be waited for, nor their failures to be reported by this flush.</p>
+     *
+     * @throws CassandraMigrationException when a write failed since the last flush, or when interrupted.
+     */
+    public void flush() {
+        Semaphore permits = getInFlight();
+        try {
+            permits.acquire(inFlightPermits);
+            permits.release(inFlightPermits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CassandraMigrationException("Interrupted while waiting for writes", e);
+        }
+        Throwable failure = firstFailure.getAndSet(null);
+        if (failure != null) {
+            throw new CassandraMigrationException("Write failed: " + failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Waits for the writes in flight to complete, and stops retrying.
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            synchronized (this) {
+                if (retryScheduler != null) {
+                    retryScheduler.shutdownNow();
+                }
+            }
+            LOG.info("Writes: " + completedCount.get() + " completed, " + failedCount.get() + " failed, "
+                    + retryCount.get() + " retried, " + slowDownCount.get() + " slowdowns, "
+                    + TimeUnit.NANOSECONDS.toMillis(throttledNanos.get()) + " ms throttled");
+        }
+    }
+
+    /**
+     * @return The number of writes completed successfully.
+     */
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * @return The number of writes that failed, after retries.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * @return The number of retries.
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * @return The number of times the rate was reduced because of slow or failed writes.
+     */
+    public long getSlowDownCount() {
+        return slowDownCount.get();
+    }
+
+    /**
+     * @return The total time callers waited for the rate or the writes in flight, in milliseconds.
+     */
+    public long getThrottledMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(throttledNanos.get());
+    }
+
+    /**
+     * @return The average number of writes completed per second since this executor was created.
+     */
+    public double getThroughput() {
+        long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+        return completedCount.get() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return The current rate limit, in writes per second.
+     */
+    public synchronized double getCurrentOpsPerSecond() {
+        return currentOpsPerSecond < 0 ? maxOpsPerSecond : currentOpsPerSecond;
+    }
+
+    private synchronized ScheduledExecutorService getRetryScheduler() {
+        if (retryScheduler == null) {
+            retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "throttled-write-retry");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return retryScheduler;
+    }
+
+    private synchronized Semaphore getInFlight() {
+        if (inFlight == null) {
+            inFlightPermits = maxInFlight;
+            inFlight = new Semaphore(inFlightPermits);
+        }
+        return inFlight;
+    }
+
+    /**
+     * Executes an attempt of this write, completing the result or retrying it.
+     */
+    private void attempt(Statement<?> statement, int attempt, CompletableFuture<AsyncResultSet> result) {
+        long start = System.nanoTime();
+        CompletionStage<AsyncResultSet> execution;
+        try {
+            execution = session.executeAsync(statement);
+        } catch (RuntimeException e) {
+            execution = failedStage(e);
+        }
+        execution.whenComplete((resultSet, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            boolean transientError = cause != null && isTransient(cause);
+            onLatency(start, System.nanoTime(), transientError);
+
+            if (cause == null) {
+                completedCount.incrementAndGet();
+                result.complete(resultSet);
+                inFlight.release();
+            } else if (transientError && attempt < maxAttempts && Boolean.TRUE.equals(statement.isIdempotent())) {
+                retryCount.incrementAndGet();
+                getRetryScheduler().schedule(() -> retry(statement, attempt + 1, result),
+                        targetLatencyMillis * attempt, TimeUnit.MILLISECONDS);
+            } else {
+                failedCount.incrementAndGet();
+                firstFailure.compareAndSet(null, cause);
+                result.completeExceptionally(cause);
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Retries this write once the rate allows it, scheduling the attempt instead of waiting so that the scheduler
+     * thread stays free for the other retries. The write keeps its in-flight permit.
+     */
+    private void retry(Statement<?> statement, int attempt, CompletableFuture<AsyncResultSet> result) {
+        long waitNanos = reserveRate();
+        if (waitNanos > 0) {
+            getRetryScheduler().schedule(() -> attempt(statement, attempt, result), waitNanos, TimeUnit.NANOSECONDS);
+        } else {
+            attempt(statement, attempt, result);
+        }
+    }
+
+    /**
+     * Reserves the next slot of the current rate.
+     *
+     * @return The time until the reserved slot, in nanos. 0 if the write can go now.
+     */
+    private synchronized long reserveRate() {
+        long now = System.nanoTime();
+        if (currentOpsPerSecond < 0) {
+            currentOpsPerSecond = maxOpsPerSecond;
+            nextWriteNanos = now;
+            lastIncreaseNanos = now;
+            lastDecreaseNanos = now;
+        }
+        long writeNanos = Math.max(nextWriteNanos, now);
+        nextWriteNanos = writeNanos + (long) (1e9 / currentOpsPerSecond);
+        return writeNanos - now;
+    }
+
+    /**
+     * Adapts the rate to the latency of a write: multiplicative decrease on slow or failed writes, additive increase
+     * otherwise. A write started before the last decrease doesn't decrease the rate again, so a burst of slow writes
+     * halves it once per round trip.
+     *
+     * @param startNanos     The time the write was sent, in nanos.
+     * @param now            The time it completed, in nanos.
+     * @param transientError Whether it failed with a transient error.
+     */
+    private synchronized void onLatency(long startNanos, long now, boolean transientError) {
+        if (transientError || now - startNanos > TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis)) {
+            if (startNanos - lastDecreaseNanos < 0) {
+                return;
+            }
+            double reduced = Math.max(Math.min(minOpsPerSecond, maxOpsPerSecond), currentOpsPerSecond / 2);
+            if (reduced < currentOpsPerSecond) {
+                slowDownCount.incrementAndGet();
+                LOG.debug("Slowing writes down to " + (long) reduced + " ops/s");
+            }
+            currentOpsPerSecond = reduced;
+            lastIncreaseNanos = now;
+            lastDecreaseNanos = now;
+        } else if (now - lastIncreaseNanos >= TimeUnit.SECONDS.toNanos(1)) {
+            currentOpsPerSecond = Math.min(maxOpsPerSecond, currentOpsPerSecond + maxOpsPerSecond / 10);
+            lastIncreaseNanos = now;
+        }
+    }
+
+    /**
+     * @param error A write error.
+     * @return {@code true} if the write may succeed if retried.
+     */
+    private static boolean isTransient(Throwable error) {
+        return error instanceof DriverTimeoutException
+                || error instanceof WriteTimeoutException
+                || error instanceof ReadTimeoutException
+                || error instanceof UnavailableException
+                || error instanceof OverloadedException;
+    }
+
+    private static CompletionStage<AsyncResultSet> failedStage(Throwable error) {
+        CompletableFuture<AsyncResultSet> failed = new CompletableFuture<>();
+        failed.completeExceptionally(error);
+        return failed;
+    }
+}
@@ -0,0 +1,332 @@
+package com.contrastsecurity.cassandra.migration.api;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.logging.Log;
+import com.contrastsecurity.cassandra.migration.logging.LogFactory;
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverException;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import com.datastax.oss.driver.api.core.metadata.schema.ColumnMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata;
+import com.datastax.oss.driver.api.core.metadata.token.TokenRange;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scans a whole table for data migrations, by splitting the token ring into ranges and paging through several ranges
+ * concurrently. Each range query is routed to a replica of its range.
+ * <p>Rows are delivered at least once: a range failing with a driver error is scanned again from its start, up to
+ * {@link #setMaxAttempts(int) maxAttempts} times. The handler is called concurrently from several threads, and
+ * should be idempotent.</p>
+ * <p>The next page of a range is fetched asynchronously while the rows of the current page are handled.</p>
+ * <pre>
+ * long count = new TokenRangeScanner(session)
+ *         .setConcurrency(16)
+ *         .scan("ks", "users", "id, email", row -&gt; ...);
+ * </pre>
+ */
+public class TokenRangeScanner {
+    private static final Log LOG = LogFactory.getLog(TokenRangeScanner.class);
+
+    /**
+     * Handles the rows of a scan.
+     */
+    public interface RowHandler {
+        /**
+         * Handles this row. Called concurrently for rows of different ranges.
+         *
+         * @param row The row.
+         * @throws Exception when the row could not be handled. The scan is aborted.
+         */
+        void handle(Row row) throws Exception;
+
+        /**
+         * Called before scanning a range, on the thread that then handles its rows.
+         *
+         * @param range The range.
+         * @return {@code false} to skip this range, eg: when a previous run completed it.
+         * @throws Exception when the scan should be aborted.
+         */
+        default boolean startRange(TokenRange range) throws Exception {
+            return true;
+        }
+
+        /**
+         * Called once all the rows of a range were handled, on the thread that handled them.
+         *
+         * @param range The range.
+         * @throws Exception when the scan should be aborted.
+         */
+        default void endRange(TokenRange range) throws Exception {
+        }
+    }
+
+    private final CqlSession session;
+
+    /**
+     * The number of ranges the token ring is split into. (default: 64)
+     */
+    private int splits = 64;
+
+    /**
+     * The number of ranges scanned concurrently. (default: 8)
+     */
+    private int concurrency = 8;
+
+    /**
+     * The number of attempts to scan a range. (default: 3)
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * The number of rows fetched per page. (default: 1000)
+     */
+    private int pageSize = 1000;
+
+    /**
+     * The consistency level of the range queries. {@code null} for the one of the execution profile.
+     */
+    private ConsistencyLevel consistencyLevel;
+
+    /**
+     * The execution profile of the range queries. {@code null} for the default one.
+     */
+    private String executionProfile;
+
+    public TokenRangeScanner(CqlSession session) {
+        this.session = session;
+    }
+
+    public TokenRangeScanner setSplits(int splits) {
+        this.splits = splits;
+        return this;
+    }
+
+    public TokenRangeScanner setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    public TokenRangeScanner setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public TokenRangeScanner setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public TokenRangeScanner setConsistencyLevel(ConsistencyLevel consistencyLevel) {
+        this.consistencyLevel = consistencyLevel;
+        return this;
+    }
+
+    public TokenRangeScanner setExecutionProfile(String executionProfile) {
+        this.executionProfile = executionProfile;
+        return this;
+    }
+
+    /**
+     * Scans all the rows of this table.
+     *
+     * @param keyspace The keyspace of the table.
+     * @param table    The table.
+     * @param columns  The selected columns, as in a SELECT clause.
+     * @param handler  The handler of the rows.
+     * @return The number of rows handled, including rows handled again when retrying a range.
+     * @throws CassandraMigrationException when the table is unknown, a range could not be scanned or the handler
+     *                                     failed.
+     */
+    public long scan(String keyspace, String table, String columns, RowHandler handler) {
+        TokenMap tokenMap = session.getMetadata().getTokenMap().orElseThrow(() ->
+                new CassandraMigrationException("Token metadata is disabled: unable to split " + keyspace + "." + table));
+        TableMetadata tableMetadata = session.getMetadata().getKeyspace(keyspace)
+                .flatMap(keyspaceMetadata -> keyspaceMetadata.getTable(table))
+                .orElseThrow(() -> new CassandraMigrationException("Unknown table: " + keyspace + "." + table));
+
+        String qualifiedTable = tableMetadata.getKeyspace().asCql(true) + "." + tableMetadata.getName().asCql(true);
+        String token = tokenFunction(tableMetadata.getPartitionKey());
+        PreparedStatement rangeQuery = session.prepare("SELECT " + columns + " FROM " + qualifiedTable
+                + " WHERE " + token + " > ? AND " + token + " <= ?");
+        PreparedStatement tailQuery = session.prepare("SELECT " + columns + " FROM " + qualifiedTable
+                + " WHERE " + token + " > ?");
+        PreparedStatement fullQuery = session.prepare("SELECT " + columns + " FROM " + qualifiedTable);
+
+        List<TokenRange> ranges = split(tokenMap.getTokenRanges(), splits);
+        // Spreads the concurrent ranges over the nodes, as consecutive ranges often share replicas.
+        Collections.shuffle(ranges);
+        LOG.info("Scanning " + qualifiedTable + " in " + ranges.size() + " token ranges, " + concurrency
+                + " at a time");
+
+        AtomicLong rowCount = new AtomicLong();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, concurrency), runnable -> {
+            Thread thread = new Thread(runnable, "token-range-scanner-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> scans = new ArrayList<>();
+            for (TokenRange range : ranges) {
+                scans.add(executor.submit(() -> {
+                    scanRange(range, rangeQuery, tailQuery, fullQuery, handler, rowCount);
+                    return null;
+                }));
+            }
+            for (Future<?> scan : scans) {
+                scan.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CassandraMigrationException("Interrupted while scanning " + qualifiedTable, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CassandraMigrationException) {
+                throw (CassandraMigrationException) e.getCause();
+            }
+            throw new CassandraMigrationException("Unable to scan " + qualifiedTable, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return rowCount.get();
+    }
+
+    /**
+     * Scans this range, retrying it on driver errors.
+     */
+    private void scanRange(TokenRange range, PreparedStatement rangeQuery, PreparedStatement tailQuery,
+                           PreparedStatement fullQuery, RowHandler handler, AtomicLong rowCount) throws Exception {
+        if (!handler.startRange(range)) {
+            LOG.debug("Skipping token range " + range);
+            return;
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                AsyncResultSet page = await(session.executeAsync(bind(range, rangeQuery, tailQuery, fullQuery)));
+                while (true) {
+                    CompletionStage<AsyncResultSet> nextPage = page.hasMorePages() ? page.fetchNextPage() : null;
+                    for (Row row : page.currentPage()) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedException();
+                        }
+                        handler.handle(row);
+                        rowCount.incrementAndGet();
+                    }
+                    if (nextPage == null) {
+                        break;
+                    }
+                    page = await(nextPage);
+                }
+                handler.endRange(range);
+                return;
+            } catch (DriverException e) {
+                if (attempt >= maxAttempts) {
+                    throw new CassandraMigrationException("Unable to scan token range " + range + " after "
+                            + attempt + " attempts", e);
+                }
+                LOG.warn("Scanning token range " + range + " failed (attempt " + attempt + " of " + maxAttempts
+                        + "), retrying: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Waits for this page.
+     *
+     * @throws DriverException when it could not be fetched.
+     */
+    private static AsyncResultSet await(CompletionStage<AsyncResultSet> page) throws Exception {
+        try {
+            return page.toCompletableFuture().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Binds the query of this range, routed to its replicas.
+     */
+    private BoundStatement bind(TokenRange range, PreparedStatement rangeQuery, PreparedStatement tailQuery,
+                                PreparedStatement fullQuery) {
+        BoundStatement statement;
+        int compared = range.getEnd().compareTo(range.getStart());
+        if (compared > 0) {
+            statement = rangeQuery.bind().setToken(0, range.getStart()).setToken(1, range.getEnd());
+        } else if (compared == 0) {
+            statement = fullQuery.bind();
+        } else {
+            // The end of the ring: the range ends at the minimum token.
+            statement = tailQuery.bind().setToken(0, range.getStart());
+        }
+        statement = statement.setRoutingToken(range.getEnd()).setPageSize(pageSize);
+        if (consistencyLevel != null) {
+            statement = statement.setConsistencyLevel(consistencyLevel);
+        }
+        if (executionProfile != null) {
+            statement = statement.setExecutionProfileName(executionProfile);
+        }
+        return statement;
+    }
+
+    /**
+     * @param partitionKey The partition key columns.
+     * @return The CQL token function of this partition key.
+     */
+    private static String tokenFunction(List<ColumnMetadata> partitionKey) {
+        StringBuilder token = new StringBuilder("token(");
+        for (int i = 0; i < partitionKey.size(); i++) {
+            if (i > 0) {
+                token.append(", ");
+            }
+            CqlIdentifier name = partitionKey.get(i).getName();
+            token.append(name.asCql(true));
+        }
+        return token.append(")").toString();
+    }
+
+    /**
+     * Splits these ranges of the token ring into about this number of ranges that don't wrap around the ring.
+     *
+     * @param ranges The ranges covering the ring.
+     * @param splits The number of ranges wanted.
+     * @return The split ranges, in ring order. A range from a token to itself covers the whole ring.
+     */
+    /* private -> for testing */
+    static List<TokenRange> split(Collection<TokenRange> ranges, int splits) {
+        int splitsPerRange = Math.max(1, (splits + ranges.size() - 1) / Math.max(1, ranges.size()));
+        List<TokenRange> split = new ArrayList<>();
+        for (TokenRange range : ranges) {
+            if (range.getStart().equals(range.getEnd())) {
+                // The whole ring of a single token cluster, which the driver considers empty.
+                split.add(range);
+                continue;
+            }
+            for (TokenRange piece : splitsPerRange == 1
+                    ? Collections.singletonList(range)
+                    : range.splitEvenly(splitsPerRange)) {
+                split.addAll(piece.unwrap());
+            }
+        }
+        Collections.sort(split);
+        return split;
+    }
+}
@@ -0,0 +1,40 @@
+package com.contrastsecurity.cassandra.migration.api;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Progress kept in memory only, lost when the migration fails.
+ */
+class TransientMigrationProgress implements MigrationProgress {
+    private final ConcurrentMap<String, String> checkpoints = new ConcurrentHashMap<>();
+    private final Set<String> completed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    @Override
+    public String getCheckpoint(String name) {
+        return checkpoints.get(name);
+    }
+
+    @Override
+    public void saveCheckpoint(String name, String value) {
+        checkpoints.put(name, value);
+    }
+
+    @Override
+    public boolean isCompleted(String unit) {
+        return completed.contains(unit);
+    }
+
+    @Override
+    public void complete(String unit) {
+        completed.add(unit);
+    }
+
+    @Override
+    public Set<String> getCompleted() {
+        return Collections.unmodifiableSet(new HashSet<>(completed));
+    }
+}
@@ -0,0 +1,18 @@
+package com.contrastsecurity.cassandra.migration.config;
+
+/**
+ * The layout of the table recording the applied migrations.
+ */
+public enum HistoryLayout {
+    /**
+     * One partition per version in the schema_migration table. Reading the history scans the whole table and
+     * versions are sorted client-side.
+     */
+    V1,
+
+    /**
+     * The history of a keyspace in a single partition of the schema_migration_v2 table, clustered by the sort key of
+     * the versions, so that the history is read in version order and version ranges are partition slices.
+     */
+    V2
+}
@@ -4,7 +4,9 @@ import com.contrastsecurity.cassandra.migration.info.MigrationVersion;
 import com.contrastsecurity.cassandra.migration.utils.StringUtils;
 import com.datastax.oss.driver.api.core.DefaultConsistencyLevel;
 
-public class MigrationConfigs {
+import java.io.File;
+
+public class MigrationConfigs implements Cloneable {
 
     public MigrationConfigs() {
         String scriptsEncodingP = System.getProperty(MigrationProperty.SCRIPTS_ENCODING.getName());
@@ -24,6 +26,46 @@ public class MigrationConfigs {
         if(allowOutOfOrderProp != null && allowOutOfOrderProp.trim().length() != 0) {
             setAllowOutOfOrder(allowOutOfOrderProp);
         }
+
+        String statementCacheP = System.getProperty(MigrationProperty.STATEMENT_CACHE.getName());
+        if (null != statementCacheP && statementCacheP.trim().length() != 0)
+            this.statementCacheDir = statementCacheP;
+
+        String resolverParallelismP = System.getProperty(MigrationProperty.RESOLVER_PARALLELISM.getName());
+        if (null != resolverParallelismP && resolverParallelismP.trim().length() != 0)
+            setResolverParallelism(Integer.parseInt(resolverParallelismP.trim()));
+
+        String checksumManifestP = System.getProperty(MigrationProperty.CHECKSUM_MANIFEST.getName());
+        if (null != checksumManifestP && checksumManifestP.trim().length() != 0)
+            this.checksumManifest = Boolean.parseBoolean(checksumManifestP);
+
+        String checksumManifestDirP = System.getProperty(MigrationProperty.CHECKSUM_MANIFEST_DIR.getName());
+        if (null != checksumManifestDirP && checksumManifestDirP.trim().length() != 0)
+            this.checksumManifestDir = checksumManifestDirP.trim();
+
+        String checksumAlgorithmP = System.getProperty(MigrationProperty.CHECKSUM_ALGORITHM.getName());
+        if (null != checksumAlgorithmP && checksumAlgorithmP.trim().length() != 0)
+            this.checksumAlgorithm = checksumAlgorithmP.trim();
+
+        String watchP = System.getProperty(MigrationProperty.WATCH.getName());
+        if (null != watchP && watchP.trim().length() != 0)
+            this.watch = Boolean.parseBoolean(watchP);
+
+        String historyLayoutP = System.getProperty(MigrationProperty.HISTORY_LAYOUT.getName());
+        if (null != historyLayoutP && historyLayoutP.trim().length() != 0)
+            this.historyLayout = HistoryLayout.valueOf(historyLayoutP.trim().toUpperCase());
+
+        String historyKeyspaceP = System.getProperty(MigrationProperty.HISTORY_KEYSPACE.getName());
+        if (null != historyKeyspaceP && historyKeyspaceP.trim().length() != 0)
+            this.historyKeyspace = historyKeyspaceP.trim();
+
+        String asyncTimeoutP = System.getProperty(MigrationProperty.ASYNC_TIMEOUT.getName());
+        if (null != asyncTimeoutP && asyncTimeoutP.trim().length() != 0)
+            this.asyncTimeout = Long.parseLong(asyncTimeoutP.trim());
+
+        String statementMetricsP = System.getProperty(MigrationProperty.STATEMENT_METRICS.getName());
+        if (null != statementMetricsP && statementMetricsP.trim().length() != 0)
+            this.statementMetrics = Boolean.parseBoolean(statementMetricsP.trim());
     }
 
     private Keyspace keyspace;
@@ -54,10 +96,95 @@ public class MigrationConfigs {
 
     private String tablePrefix;
 
+    /**
+     * Directory of the persistent cache of parsed CQL statements (default: none, the cache is disabled)
+     */
+    private String statementCacheDir;
+
+    /**
+     * Number of threads resolving and checksumming migrations (default: 1, sequential resolution)
+     */
+    private int resolverParallelism = 1;
+
+    /**
+     * Keep a size/mtime checksum manifest in filesystem locations to skip re-checksumming unchanged scripts (default: false)
+     */
+    private boolean checksumManifest = false;
+
+    /**
+     * Directory of the checksum manifests of filesystem locations (default: cassandra-migration-checksums in the
+     * temporary directory)
+     */
+    private String checksumManifestDir =
+            new File(System.getProperty("java.io.tmpdir"), "cassandra-migration-checksums").getPath();
+
+    /**
+     * The algorithm used to compute the checksum of Cql migration scripts (default: CRC32)
+     */
+    private String checksumAlgorithm = "CRC32";
+
+    /**
+     * Watch filesystem locations for changes and only resolve changed scripts again (default: false)
+     */
+    private boolean watch = false;
+
+    /**
+     * The layout of the table recording the applied migrations (default: V1)
+     */
+    private HistoryLayout historyLayout = HistoryLayout.V1;
+
+    /**
+     * The control keyspace recording the applied migrations of many keyspaces (default: none, each keyspace records
+     * its own)
+     */
+    private String historyKeyspace;
+
+    /**
+     * The time an asynchronous Java migration may take, in seconds, before it is cancelled (default: 0, no limit)
+     */
+    private long asyncTimeout = 0;
+
+    /**
+     * Record the latency and execution info of each statement of Cql migrations alongside the migration history
+     * (default: false)
+     */
+    private boolean statementMetrics = false;
+
     public MigrationConfigs(Keyspace keyspace) {
         this.keyspace = keyspace;
     }
 
+    /**
+     * Creates a configuration holding only this encoding, for the resolvers created without a full configuration.
+     *
+     * @param encoding The encoding of Cql migrations.
+     * @return The configuration.
+     */
+    public static MigrationConfigs forEncoding(String encoding) {
+        MigrationConfigs configs = new MigrationConfigs(null);
+        configs.setEncoding(encoding);
+        return configs;
+    }
+
+    /**
+     * Copies this configuration, applied to another keyspace. This configuration is left unchanged. All the fields
+     * are copied, so that settings added later are copied too.
+     *
+     * @param keyspace The keyspace to migrate.
+     * @return The copy.
+     */
+    public MigrationConfigs withKeyspace(Keyspace keyspace) {
+        MigrationConfigs configs;
+        try {
+            configs = (MigrationConfigs) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        configs.keyspace = keyspace;
+        configs.scriptsLocations = scriptsLocations == null ? null : scriptsLocations.clone();
+        return configs;
+    }
+
     public String getTablePrefix() {
         return tablePrefix;
     }
@@ -106,6 +233,136 @@ public class MigrationConfigs {
         this.target = MigrationVersion.fromVersion(target);
     }
 
+    public String getStatementCacheDir() {
+        return statementCacheDir;
+    }
+
+    /**
+     * Enables the persistent cache of parsed CQL statements.
+     * @param statementCacheDir Directory holding the cache files, {@code null} to disable the cache
+     */
+    public void setStatementCacheDir(String statementCacheDir) {
+        this.statementCacheDir = statementCacheDir;
+    }
+
+    public int getResolverParallelism() {
+        return resolverParallelism;
+    }
+
+    /**
+     * Number of threads resolving and checksumming migrations. (default: 1, sequential resolution)
+     * @param resolverParallelism Number of threads, at least 1
+     */
+    public void setResolverParallelism(int resolverParallelism) {
+        if (resolverParallelism < 1) {
+            throw new IllegalArgumentException("Resolver parallelism must be at least 1: " + resolverParallelism);
+        }
+        this.resolverParallelism = resolverParallelism;
+    }
+
+    public boolean isChecksumManifest() {
+        return checksumManifest;
+    }
+
+    /**
+     * Keeps a size/mtime checksum manifest of filesystem locations in the checksum manifest directory, so that
+     * unchanged scripts are not read again to compute their checksum. (default: false)
+     * @param checksumManifest Whether the manifest is used
+     */
+    public void setChecksumManifest(boolean checksumManifest) {
+        this.checksumManifest = checksumManifest;
+    }
+
+    public String getChecksumManifestDir() {
+        return checksumManifestDir;
+    }
+
+    /**
+     * Sets the directory the checksum manifests of filesystem locations are kept in, one file per location, outside
+     * of the migration scripts. (default: cassandra-migration-checksums in the temporary directory)
+     * @param checksumManifestDir The directory, created if missing
+     */
+    public void setChecksumManifestDir(String checksumManifestDir) {
+        this.checksumManifestDir = checksumManifestDir;
+    }
+
+    public String getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    /**
+     * Sets the algorithm used to compute the checksum of Cql migration scripts: CRC32, CRC32C, CRC64 or the name of
+     * a ChecksumAlgorithm registered as a service. (default: CRC32)
+     * @param checksumAlgorithm The name of the algorithm
+     */
+    public void setChecksumAlgorithm(String checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    public boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * Watches filesystem locations for changes, so that a long-running process resolving migrations repeatedly
+     * through the same CassandraMigration only resolves created, modified and deleted scripts again. (default: false)
+     * @param watch Whether filesystem locations are watched
+     */
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    public HistoryLayout getHistoryLayout() {
+        return historyLayout;
+    }
+
+    /**
+     * Sets the layout of the table recording the applied migrations. (default: V1)
+     * @param historyLayout The layout
+     */
+    public void setHistoryLayout(HistoryLayout historyLayout) {
+        this.historyLayout = historyLayout;
+    }
+
+    public String getHistoryKeyspace() {
+        return historyKeyspace;
+    }
+
+    /**
+     * Sets the control keyspace recording the applied migrations of many keyspaces, each in its own partition of a
+     * {@link HistoryLayout#V2} table. The control keyspace must exist. (default: none)
+     * @param historyKeyspace The name of the control keyspace
+     */
+    public void setHistoryKeyspace(String historyKeyspace) {
+        this.historyKeyspace = historyKeyspace;
+    }
+
+    public long getAsyncTimeout() {
+        return asyncTimeout;
+    }
+
+    /**
+     * Sets the time an asynchronous Java migration may take before it is cancelled and recorded as failed.
+     * (default: 0, no limit)
+     * @param asyncTimeout The timeout, in seconds. 0 for no limit
+     */
+    public void setAsyncTimeout(long asyncTimeout) {
+        this.asyncTimeout = asyncTimeout;
+    }
+
+    public boolean isStatementMetrics() {
+        return statementMetrics;
+    }
+
+    /**
+     * Records the latency, coordinator, retries and schema agreement of each statement of Cql migrations in a side
+     * table of the history keyspace, keyed by version. (default: false)
+     * @param statementMetrics Whether statement metrics are recorded
+     */
+    public void setStatementMetrics(boolean statementMetrics) {
+        this.statementMetrics = statementMetrics;
+    }
+
     public String getExecutionProfile() {
         return executionProfile;
     }
@@ -146,7 +403,17 @@ public class MigrationConfigs {
         SCRIPTS_LOCATIONS("cassandra.migration.scripts.locations", "Locations of the migration scripts in CSV format"),
         ALLOW_OUTOFORDER("cassandra.migration.scripts.allowoutoforder", "Allow out of order migration"),
         TARGET_VERSION("cassandra.migration.version.target", "The target version. Migrations with a higher version number will be ignored."),
-        EXECUTION_PROFILE("cassandra.migration.execution.profile", "Execution Profile");
+        EXECUTION_PROFILE("cassandra.migration.execution.profile", "Execution Profile"),
+        STATEMENT_CACHE("cassandra.migration.scripts.statementcache", "Directory of the persistent cache of parsed CQL statements"),
+        RESOLVER_PARALLELISM("cassandra.migration.scripts.resolverparallelism", "Number of threads resolving and checksumming migrations"),
+        CHECKSUM_MANIFEST("cassandra.migration.scripts.checksummanifest", "Keep a size/mtime checksum manifest of filesystem locations"),
+        CHECKSUM_MANIFEST_DIR("cassandra.migration.scripts.checksummanifestdir", "Directory of the checksum manifests of filesystem locations"),
+        CHECKSUM_ALGORITHM("cassandra.migration.scripts.checksumalgorithm", "Algorithm used to compute the checksum of migration scripts"),
+        WATCH("cassandra.migration.scripts.watch", "Watch filesystem locations and only resolve changed scripts again"),
+        HISTORY_LAYOUT("cassandra.migration.history.layout", "Layout of the table recording the applied migrations: V1 or V2"),
+        HISTORY_KEYSPACE("cassandra.migration.history.keyspace", "Control keyspace recording the applied migrations of many keyspaces"),
+        ASYNC_TIMEOUT("cassandra.migration.java.asynctimeout", "Time in seconds an asynchronous Java migration may take before it is cancelled"),
+        STATEMENT_METRICS("cassandra.migration.history.statementmetrics", "Record the execution metrics of each statement of Cql migrations");
 
         private String name;
         private String description;
@@ -19,5 +19,10 @@ public enum MigrationType {
     /**
      * The type for Java driver migration
      */
-    JAVA_DRIVER
+    JAVA_DRIVER,
+
+    /**
+     * The type for data-load migration of a .csv or .jsonl file
+     */
+    DATA
 }
@@ -0,0 +1,261 @@
+package com.contrastsecurity.cassandra.migration.dao;
+
+import com.contrastsecurity.cassandra.migration.api.MigrationProgress;
+import com.contrastsecurity.cassandra.migration.config.MigrationConfigs;
+import com.contrastsecurity.cassandra.migration.info.MigrationVersion;
+import com.contrastsecurity.cassandra.migration.logging.Log;
+import com.contrastsecurity.cassandra.migration.logging.LogFactory;
+import com.contrastsecurity.cassandra.migration.utils.CachePrepareStatement;
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BooleanSupplier;
+
+import static com.contrastsecurity.cassandra.migration.utils.Ensure.notNull;
+import static java.lang.String.format;
+
+/**
+ * Saves the progress of resumable migrations in a side table, with one partition per keyspace and version. The table
+ * is in the history keyspace if one is configured, and is created on first use. The partition also holds the lease of
+ * the instance running the body of a background migration.
+ */
+public class MigrationProgressDAO {
+    private static final Log LOG = LogFactory.getLog(MigrationProgressDAO.class);
+
+    /**
+     * The name of the table that keeps the progress of the migrations.
+     */
+    private static final String PROGRESS_CF = "migration_progress";
+
+    /**
+     * The kinds of progress rows.
+     */
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String COMPLETED = "completed";
+    private static final String LEASE = "lease";
+
+    /**
+     * The name of the lease row, whose value is the owner of the lease.
+     */
+    private static final String LEASE_OWNER = "owner";
+
+    private static final String CREATE_PROGRESS_CF = "CREATE TABLE IF NOT EXISTS %s"
+            + " (keyspace_name text, version text, kind text, name text, value text, updated_on timestamp,"
+            + " PRIMARY KEY ((keyspace_name, version), kind, name))";
+    private static final String SELECT_PROGRESS = "select kind, name, value from %s "
+            + "where keyspace_name = ? and version = ?";
+    private static final String SAVE_PROGRESS = "insert into %s (keyspace_name, version, kind, name, value, updated_on) "
+            + "values (?, ?, ?, ?, ?, dateOf(now()))";
+    private static final String DELETE_PROGRESS = "delete from %s "
+            + "where keyspace_name = ? and version = ? and kind in (?, ?)";
+    private static final String CLAIM_LEASE = "update %s using ttl ? set value = ?, updated_on = dateOf(now()) "
+            + "where keyspace_name = ? and version = ? and kind = ? and name = ? if value = null";
+    private static final String RENEW_LEASE = "update %s using ttl ? set value = ?, updated_on = dateOf(now()) "
+            + "where keyspace_name = ? and version = ? and kind = ? and name = ? if value = ?";
+    private static final String RELEASE_LEASE = "delete from %s "
+            + "where keyspace_name = ? and version = ? and kind = ? and name = ? if value = ?";
+
+    private final CqlSession session;
+    private final CachePrepareStatement cachePs;
+    private final String keyspaceName;
+    private final String historyKeyspaceName;
+    private final String tableName;
+    private final String executionProfileName;
+    private final ConsistencyLevel consistencyLevel;
+
+    /**
+     * Whether the table is known to exist.
+     */
+    private volatile boolean tableCreated;
+
+    public MigrationProgressDAO(CqlSession session, MigrationConfigs configuration) {
+        this.session = notNull(session, "session");
+        this.cachePs = new CachePrepareStatement(session);
+        this.keyspaceName = configuration.getKeyspace().getName();
+        this.historyKeyspaceName = configuration.getHistoryKeyspace() == null
+                ? keyspaceName
+                : configuration.getHistoryKeyspace();
+        String tablePrefix = configuration.getTablePrefix();
+        this.tableName = tablePrefix == null || tablePrefix.isEmpty()
+                ? PROGRESS_CF
+                : format("%s_%s", tablePrefix, PROGRESS_CF);
+        this.executionProfileName = configuration.getExecutionProfile();
+        this.consistencyLevel = configuration.getConsistencyLevel();
+    }
+
+    /**
+     * Loads the progress saved for this migration by previous runs.
+     *
+     * @param version The version of the migration.
+     * @return The progress, saving its changes to the table.
+     */
+    public MigrationProgress load(MigrationVersion version) {
+        return load(version, () -> false);
+    }
+
+    /**
+     * Loads the progress saved for this migration by previous runs, for a run that may be cancelled.
+     *
+     * @param version   The version of the migration.
+     * @param cancelled Tells whether the run should stop (see {@link MigrationProgress#isCancelled()}).
+     * @return The progress, saving its changes to the table.
+     */
+    public MigrationProgress load(MigrationVersion version, BooleanSupplier cancelled) {
+        createTableIfNotExists();
+        PersistentMigrationProgress progress = new PersistentMigrationProgress(version.getVersion(), cancelled);
+        ResultSet rows = execute(cachePs.prepare(format(SELECT_PROGRESS, getTableName()))
+                .bind(keyspaceName, version.getVersion()));
+        for (Row row : rows) {
+            if (COMPLETED.equals(row.getString("kind"))) {
+                progress.completed.add(row.getString("name"));
+            } else if (CHECKPOINT.equals(row.getString("kind"))) {
+                progress.checkpoints.put(row.getString("name"), row.getString("value"));
+            }
+        }
+        if (!progress.checkpoints.isEmpty() || !progress.completed.isEmpty()) {
+            LOG.info("Resuming migration to version " + version + " from " + progress.checkpoints.size()
+                    + " checkpoints and " + progress.completed.size() + " completed units of work");
+        }
+        return progress;
+    }
+
+    /**
+     * Drops the progress of this migration, once it succeeded. Its lease is left to its owner, who releases it.
+     *
+     * @param version The version of the migration.
+     */
+    public void clear(MigrationVersion version) {
+        if (!tableCreated && !tableExists()) {
+            return;
+        }
+        execute(cachePs.prepare(format(DELETE_PROGRESS, getTableName()))
+                .bind(keyspaceName, version.getVersion(), CHECKPOINT, COMPLETED));
+    }
+
+    /**
+     * Claims the lease of this migration, so that a single instance runs its body. The lease expires unless renewed,
+     * so that another instance takes over the migration when its owner died.
+     *
+     * @param version The version of the migration.
+     * @param owner   The identifier of the claiming instance.
+     * @param seconds The time the lease lasts, in seconds.
+     * @return {@code true} if claimed, {@code false} if another instance holds the lease and it has not expired.
+     */
+    public boolean claimLease(MigrationVersion version, String owner, int seconds) {
+        createTableIfNotExists();
+        return execute(cachePs.prepare(format(CLAIM_LEASE, getTableName()))
+                .bind(seconds, owner, keyspaceName, version.getVersion(), LEASE, LEASE_OWNER)).wasApplied();
+    }
+
+    /**
+     * Extends the lease of this migration by another period, while its owner still holds it.
+     *
+     * @param version The version of the migration.
+     * @param owner   The identifier of the owner of the lease.
+     * @param seconds The time the lease lasts from now, in seconds.
+     * @return {@code true} if renewed, {@code false} if the lease expired and was lost.
+     */
+    public boolean renewLease(MigrationVersion version, String owner, int seconds) {
+        return execute(cachePs.prepare(format(RENEW_LEASE, getTableName()))
+                .bind(seconds, owner, keyspaceName, version.getVersion(), LEASE, LEASE_OWNER, owner)).wasApplied();
+    }
+
+    /**
+     * Releases the lease of this migration, if its owner still holds it, so that another instance can run it at once.
+     *
+     * @param version The version of the migration.
+     * @param owner   The identifier of the owner of the lease.
+     */
+    public void releaseLease(MigrationVersion version, String owner) {
+        execute(cachePs.prepare(format(RELEASE_LEASE, getTableName()))
+                .bind(keyspaceName, version.getVersion(), LEASE, LEASE_OWNER, owner));
+    }
+
+    /**
+     * @return The name of the progress table, qualified with its keyspace.
+     */
+    public String getTableName() {
+        return historyKeyspaceName + "." + tableName;
+    }
+
+    private void createTableIfNotExists() {
+        if (tableCreated) {
+            return;
+        }
+        if (!tableExists()) {
+            execute(SimpleStatement.newInstance(format(CREATE_PROGRESS_CF, getTableName())));
+        }
+        tableCreated = true;
+    }
+
+    private boolean tableExists() {
+        return session.getMetadata()
+                .getKeyspace(historyKeyspaceName)
+                .map(keyspaceMetadata -> keyspaceMetadata.getTable(tableName).isPresent())
+                .orElse(false);
+    }
+
+    private ResultSet execute(Statement<?> statement) {
+        return session.execute(statement
+                .setExecutionProfileName(executionProfileName)
+                .setConsistencyLevel(consistencyLevel));
+    }
+
+    /**
+     * Progress of a migration, written through to the progress table.
+     */
+    private class PersistentMigrationProgress implements MigrationProgress {
+        private final String version;
+        private final BooleanSupplier cancelled;
+        private final ConcurrentMap<String, String> checkpoints = new ConcurrentHashMap<>();
+        private final Set<String> completed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        PersistentMigrationProgress(String version, BooleanSupplier cancelled) {
+            this.version = version;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public String getCheckpoint(String name) {
+            return checkpoints.get(name);
+        }
+
+        @Override
+        public void saveCheckpoint(String name, String value) {
+            execute(cachePs.prepare(format(SAVE_PROGRESS, getTableName()))
+                    .bind(keyspaceName, version, CHECKPOINT, name, value));
+            checkpoints.put(name, value);
+        }
+
+        @Override
+        public boolean isCompleted(String unit) {
+            return completed.contains(unit);
+        }
+
+        @Override
+        public void complete(String unit) {
+            execute(cachePs.prepare(format(SAVE_PROGRESS, getTableName()))
+                    .bind(keyspaceName, version, COMPLETED, unit, null));
+            completed.add(unit);
+        }
+
+        @Override
+        public Set<String> getCompleted() {
+            return Collections.unmodifiableSet(new HashSet<>(completed));
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled.getAsBoolean();
+        }
+    }
+}
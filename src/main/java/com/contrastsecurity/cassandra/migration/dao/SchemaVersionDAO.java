@@ -1,10 +1,12 @@
 package com.contrastsecurity.cassandra.migration.dao;
 
 import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.config.HistoryLayout;
 import com.contrastsecurity.cassandra.migration.config.Keyspace;
 import com.contrastsecurity.cassandra.migration.config.MigrationConfigs;
 import com.contrastsecurity.cassandra.migration.config.MigrationType;
 import com.contrastsecurity.cassandra.migration.info.AppliedMigration;
+import com.contrastsecurity.cassandra.migration.info.MigrationState;
 import com.contrastsecurity.cassandra.migration.info.MigrationVersion;
 import com.contrastsecurity.cassandra.migration.logging.Log;
 import com.contrastsecurity.cassandra.migration.logging.LogFactory;
@@ -15,7 +17,11 @@ import com.datastax.oss.driver.api.core.DriverException;
 import com.datastax.oss.driver.api.core.cql.*;
 import com.datastax.oss.driver.api.core.metadata.Metadata;
 
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 
 import static com.contrastsecurity.cassandra.migration.utils.Ensure.notNull;
 import static java.lang.String.format;
@@ -26,12 +32,19 @@ public class SchemaVersionDAO {
     private static final String COUNTS_TABLE_NAME_SUFFIX = "_counts";
     private final Keyspace keyspace;
     private final String tableName;
+    private final String tableNameV1;
     private final String keyspaceName;
+    /**
+     * The keyspace holding the migration table: the control keyspace when the history of many keyspaces is
+     * centralized, {@link #keyspaceName} otherwise.
+     */
+    private final String historyKeyspaceName;
     private final String tableCountName;
     private final String tableMigrationVersion = MigrationVersion.TABLE;
     private final String executionProfileName;
     private final CachePrepareStatement cachePs;
     private final CqlSession session;
+    private final HistoryLayout historyLayout;
     private ConsistencyLevel consistencyLevel = ConsistencyLevel.QUORUM;
 
     /**
@@ -44,7 +57,58 @@ public class SchemaVersionDAO {
     private static final String CREATE_MIGRATION_CF = "CREATE TABLE IF NOT EXISTS %s"
             + " (version_rank int, installed_rank int, version text, description text,"
             + " script text, checksum int, type text, installed_by text, installed_on timestamp, "
-            + " execution_time int, success boolean, ignored boolean, PRIMARY KEY (version))";
+            + " execution_time int, success boolean, ignored boolean, checksum_algorithm text, checksum_value bigint,"
+            + " status text, PRIMARY KEY (version))";
+
+    /**
+     * The name of the table that manages the migration scripts in the {@link HistoryLayout#V2} layout.
+     */
+    private static final String SCHEMA_V2_CF = "schema_migration_v2";
+    /**
+     * Statement used to create the {@link HistoryLayout#V2} table: the history of a keyspace is a single partition
+     * clustered by the sort key of the versions (see {@link MigrationVersion#getSortKey()}). The number of installed
+     * migrations and the current version are static columns of that partition, in place of the counters and the
+     * migration_version tables.
+     */
+    private static final String CREATE_MIGRATION_V2_CF = "CREATE TABLE IF NOT EXISTS %s"
+            + " (keyspace_name text, version_key blob, version_rank int, installed_rank int, version text,"
+            + " description text, script text, checksum int, type text, installed_by text, installed_on timestamp,"
+            + " execution_time int, success boolean, ignored boolean, checksum_algorithm text, checksum_value bigint,"
+            + " status text, installed_count int static, current_version text static,"
+            + " PRIMARY KEY ((keyspace_name), version_key)) WITH CLUSTERING ORDER BY (version_key ASC)";
+
+    /**
+     * Statements used to add the static columns to {@link HistoryLayout#V2} tables created without them.
+     */
+    private static final String ADD_INSTALLED_COUNT_COLUMN = "ALTER TABLE %s ADD installed_count int static";
+    private static final String ADD_CURRENT_VERSION_COLUMN = "ALTER TABLE %s ADD current_version text static";
+
+    /**
+     * The number of rows copied per batch when upgrading the history to the {@link HistoryLayout#V2} layout.
+     */
+    private static final int UPGRADE_BATCH_SIZE = 50;
+
+    /**
+     * The maximum number of attempts of a lightweight transaction on the static columns of the
+     * {@link HistoryLayout#V2} history partition, which fails when another instance wrote them concurrently.
+     */
+    private static final int MAX_STATE_UPDATE_ATTEMPTS = 10;
+
+    /**
+     * The maximum number of history partitions read concurrently by {@link #findLatestAppliedMigrations(Collection)}.
+     */
+    private static final int MAX_CONCURRENT_READS = 64;
+
+    /**
+     * Statements used to add the checksum algorithm columns to tables created by older versions.
+     */
+    private static final String ADD_CHECKSUM_ALGORITHM_COLUMN = "ALTER TABLE %s ADD checksum_algorithm text";
+    private static final String ADD_CHECKSUM_VALUE_COLUMN = "ALTER TABLE %s ADD checksum_value bigint";
+
+    /**
+     * Statement used to add the status column of background migrations to tables created by older versions.
+     */
+    private static final String ADD_STATUS_COLUMN = "ALTER TABLE %s ADD status text";
 
     /**
      * Statement used to create the table that knows the current version
@@ -60,12 +124,43 @@ public class SchemaVersionDAO {
      */
     private static final String ADD_MIGRATION = "insert into %s"
             + "(version_rank, installed_rank, version, description, " +
-              "type, script, checksum, installed_on, installed_by, execution_time, success, ignored) values" +
-            "(?, ?, ?, ?, ?, ?, ?, dateOf(now()), ?, ?, ?, ?)";
+              "type, script, checksum, checksum_algorithm, checksum_value, installed_on, installed_by, execution_time, " +
+              "success, ignored, status) values" +
+            "(?, ?, ?, ?, ?, ?, ?, ?, ?, dateOf(now()), ?, ?, ?, ?, ?)";
     private static final String UPDATE_MIGRATION_COUNT = "update %s " +
             "set count = count + 1 where name = 'installed_rank'";
     private static final String UPDATE_MIGRATION_VERSION_RANK = "update %s " +
             "set version_rank = ? where version = ?";
+    private static final String UPDATE_MIGRATION_CHECKSUM = "update %s " +
+            "set checksum = ?, checksum_algorithm = ?, checksum_value = ? where version = ?";
+    private static final String ADD_MIGRATION_V2 = "insert into %s"
+            + "(keyspace_name, version_key, version_rank, installed_rank, version, description, " +
+              "type, script, checksum, checksum_algorithm, checksum_value, installed_on, installed_by, execution_time, " +
+              "success, ignored, status) values" +
+            "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, dateOf(now()), ?, ?, ?, ?, ?)";
+    private static final String UPDATE_MIGRATION_VERSION_RANK_V2 = "update %s " +
+            "set version_rank = ? where keyspace_name = ? and version_key = ?";
+    private static final String UPDATE_MIGRATION_STATUS = "update %s " +
+            "set status = ?, success = ?, execution_time = ? where version = ?";
+    private static final String UPDATE_MIGRATION_STATUS_V2 = "update %s " +
+            "set status = ?, success = ?, execution_time = ? where keyspace_name = ? and version_key = ?";
+    private static final String UPDATE_MIGRATION_CHECKSUM_V2 = "update %s " +
+            "set checksum = ?, checksum_algorithm = ?, checksum_value = ? where keyspace_name = ? and version_key = ?";
+    private static final String COPY_MIGRATION_V2 = "insert into %s"
+            + "(keyspace_name, version_key, version_rank, installed_rank, version, description, " +
+              "type, script, checksum, checksum_algorithm, checksum_value, installed_on, installed_by, execution_time, " +
+              "success, ignored, status) values" +
+            "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_STATE_V2 = "select installed_count, current_version from %s " +
+            "where keyspace_name = ? limit 1";
+    private static final String UPDATE_INSTALLED_COUNT_V2 = "update %s set installed_count = ? " +
+            "where keyspace_name = ? if installed_count = ?";
+    private static final String INIT_STATE_V2 = "update %s set installed_count = ?, current_version = ? " +
+            "where keyspace_name = ? if installed_count = null";
+    private static final String UPDATE_CURRENT_VERSION_V2 = "update %s set current_version = ? " +
+            "where keyspace_name = ? if installed_count = ?";
+    private static final String SELECT_RANKS_V2 = "select installed_count, version_key, version, version_rank " +
+            "from %s where keyspace_name = ?";
     private static final String SELECT_COUNT_MIGRATION = "select count from %s " +
             "where name = 'installed_rank'";
     private static final String SELECT_MIGRATION = "select version, version_rank from %s";
@@ -75,11 +170,31 @@ public class SchemaVersionDAO {
     /**
      * The query that retrieves current schema version
      */
-    private static final String VERSION_QUERY = "select version_rank, installed_rank, version, description, " +
-            "type, script, checksum, installed_on, installed_by, execution_time, success, ignored from %s";
+    private static final String VERSION_COLUMNS = "version_rank, installed_rank, version, description, " +
+            "type, script, checksum, checksum_algorithm, checksum_value, installed_on, installed_by, execution_time, " +
+            "success, ignored";
+    private static final String VERSION_QUERY = "select " + VERSION_COLUMNS + ", status from %s";
+    private static final String SINGLE_VERSION_QUERY = VERSION_QUERY + " where version = ?";
+
+    /**
+     * The columns of the {@link HistoryLayout#V1} migration table since its first release, and those added later,
+     * which tables not migrated since then lack.
+     */
+    private static final String V1_COLUMNS = "version_rank, installed_rank, version, description, type, script, " +
+            "checksum, installed_on, installed_by, execution_time, success, ignored";
+    private static final String[] ADDED_V1_COLUMNS = {"checksum_algorithm", "checksum_value", "status"};
 
     private static final String MIGRATION_VERSION_QUERY = "select version from %s";
 
+    /**
+     * The queries that retrieve the applied migrations of a keyspace, or a version range of them, in the
+     * {@link HistoryLayout#V2} layout.
+     */
+    private static final String VERSION_QUERY_V2 = VERSION_QUERY + " where keyspace_name = ?";
+    private static final String LATEST_VERSION_QUERY_V2 = VERSION_QUERY_V2 + " order by version_key desc limit 1";
+    private static final String VERSIONS_AFTER_QUERY_V2 = VERSION_QUERY_V2 + " and version_key > ?";
+    private static final String SINGLE_VERSION_QUERY_V2 = VERSION_QUERY_V2 + " and version_key = ?";
+
 
     public SchemaVersionDAO(CqlSession session, Keyspace keyspace) {
         this(session, new MigrationConfigs(keyspace));
@@ -98,10 +213,20 @@ public class SchemaVersionDAO {
                 session.getMetadata().getNodes().size() > 1 ? ConsistencyLevel.ALL :  ConsistencyLevel.ONE;
         this.keyspaceName = keyspace.getName();
         this.executionProfileName = configuration.getExecutionProfile();
-        this.tableName = createTableName(configuration.getTablePrefix(), SCHEMA_CF);
+        this.historyKeyspaceName = configuration.getHistoryKeyspace() == null
+                ? keyspaceName
+                : configuration.getHistoryKeyspace();
+        // A control keyspace partitions the history by keyspace, which only the V2 layout does.
+        this.historyLayout = isCentralized() ? HistoryLayout.V2 : configuration.getHistoryLayout();
+        this.tableName = createTableName(configuration.getTablePrefix(),
+                historyLayout == HistoryLayout.V2 ? SCHEMA_V2_CF : SCHEMA_CF);
+        this.tableNameV1 = createTableName(configuration.getTablePrefix(), SCHEMA_CF);
         this.tableCountName = createTableName(configuration.getTablePrefix(), SCHEMA_CF + COUNTS_TABLE_NAME_SUFFIX);
         createKeyspaceIfRequired();
         useKeyspace();
+        if (isCentralized() && !session.getMetadata().getKeyspace(historyKeyspaceName).isPresent()) {
+            throw new CassandraMigrationException(format("History keyspace %s does not exist.", historyKeyspaceName));
+        }
         ensureSchemaTable();
     }
 
@@ -109,6 +234,13 @@ public class SchemaVersionDAO {
         return this.keyspace;
     }
 
+    /**
+     * @return {@code true} if the migration table is in a control keyspace recording the history of many keyspaces.
+     */
+    public boolean isCentralized() {
+        return !historyKeyspaceName.equals(keyspaceName);
+    }
+
     public void createTablesIfNotExist() {
         if (tablesExist()) {
             return;
@@ -124,6 +256,10 @@ public class SchemaVersionDAO {
     public void addAppliedMigration(AppliedMigration appliedMigration) {
         createTablesIfNotExist();
         MigrationVersion version = appliedMigration.getVersion();
+        if (historyLayout == HistoryLayout.V2) {
+            addAppliedMigrationV2(appliedMigration);
+            return;
+        }
         int versionRank = calculateVersionRank(version);
         PreparedStatement addMigrationStatement = cachePs.prepare(format(ADD_MIGRATION, getTableName()));
         BoundStatement boundStatement = addMigrationStatement.bind(versionRank,
@@ -133,16 +269,105 @@ public class SchemaVersionDAO {
                 appliedMigration.getType().name(),
                 appliedMigration.getScript(),
                 appliedMigration.getChecksum(),
+                appliedMigration.getChecksumAlgorithm(),
+                appliedMigration.getChecksumValue(),
                 appliedMigration.getInstalledBy(),
                 appliedMigration.getExecutionTime(),
                 appliedMigration.isSuccess(),
-                appliedMigration.isIgnored());
+                appliedMigration.isIgnored(),
+                appliedMigration.getStatus() == null ? null : appliedMigration.getStatus().name());
         executeStatement(boundStatement, this.consistencyLevel);
         LOG.debug("Schema version table " + tableName + " successfully updated to reflect changes");
     }
 
+    /**
+     * Inserts the result of the migration into the {@link HistoryLayout#V2} migration table. The version rank is
+     * derived from the history partition as read, and the row is inserted with the ranks of the higher versions
+     * shifted, in a single-partition batch conditional on the installed count that was read. The batch also claims
+     * the next installed rank, so it is only applied if no other migration was recorded since: otherwise the
+     * partition is read again.
+     *
+     * @param appliedMigration the migration that was executed
+     */
+    private void addAppliedMigrationV2(AppliedMigration appliedMigration) {
+        MigrationVersion version = appliedMigration.getVersion();
+        PreparedStatement selectRanks = cachePs.prepare(format(SELECT_RANKS_V2, getTableName()));
+        PreparedStatement updateInstalledCount = cachePs.prepare(format(UPDATE_INSTALLED_COUNT_V2, getTableName()));
+        PreparedStatement addMigrationStatement = cachePs.prepare(format(ADD_MIGRATION_V2, getTableName()));
+        PreparedStatement updateRank = cachePs.prepare(format(UPDATE_MIGRATION_VERSION_RANK_V2, getTableName()));
+        for (int attempt = 0; attempt < MAX_STATE_UPDATE_ATTEMPTS; attempt++) {
+            Integer installedCount = null;
+            int versionRank = 1;
+            List<BoundStatement> shiftedRanks = new ArrayList<>();
+            for (Row row : executeStatement(selectRanks.bind(keyspaceName), consistencyLevel)) {
+                installedCount = getInstalledCount(row);
+                if (row.isNull("version")) {
+                    // Partition holding only its static columns.
+                    continue;
+                }
+                int comparison = MigrationVersion.fromVersion(row.getString("version")).compareTo(version);
+                if (comparison < 0) {
+                    versionRank++;
+                } else if (comparison > 0) {
+                    shiftedRanks.add(updateRank.bind(row.getInt("version_rank") + 1, keyspaceName,
+                            row.getByteBuffer("version_key")));
+                }
+            }
+            int installedRank = installedCount == null ? 1 : installedCount + 1;
+
+            BatchStatementBuilder batch = BatchStatement.builder(BatchType.UNLOGGED);
+            batch.addStatement(updateInstalledCount.bind(installedRank, keyspaceName, installedCount));
+            batch.addStatement(bindAppliedMigrationV2(addMigrationStatement, appliedMigration, versionRank,
+                    installedRank));
+            for (BoundStatement shiftedRank : shiftedRanks) {
+                batch.addStatement(shiftedRank);
+            }
+            if (executeStatement(batch.build(), consistencyLevel).wasApplied()) {
+                LOG.debug("Schema version table " + tableName + " successfully updated to reflect changes");
+                return;
+            }
+        }
+        throw new CassandraMigrationException("Unable to record version " + version + " in " + tableName
+                + " after " + MAX_STATE_UPDATE_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * Binds the insert of this migration into the {@link HistoryLayout#V2} migration table.
+     *
+     * @param addMigrationStatement The insert statement.
+     * @param appliedMigration      The migration that was executed.
+     * @param versionRank           Its version rank.
+     * @param installedRank         Its installed rank.
+     * @return The bound insert.
+     */
+    private BoundStatement bindAppliedMigrationV2(PreparedStatement addMigrationStatement,
+                                                  AppliedMigration appliedMigration, int versionRank,
+                                                  int installedRank) {
+        MigrationVersion version = appliedMigration.getVersion();
+        return addMigrationStatement.bind(keyspaceName,
+                ByteBuffer.wrap(version.getSortKey()),
+                versionRank,
+                installedRank,
+                version.toString(),
+                appliedMigration.getDescription(),
+                appliedMigration.getType().name(),
+                appliedMigration.getScript(),
+                appliedMigration.getChecksum(),
+                appliedMigration.getChecksumAlgorithm(),
+                appliedMigration.getChecksumValue(),
+                appliedMigration.getInstalledBy(),
+                appliedMigration.getExecutionTime(),
+                appliedMigration.isSuccess(),
+                appliedMigration.isIgnored(),
+                appliedMigration.getStatus() == null ? null : appliedMigration.getStatus().name());
+    }
+
     public void addMigrationVersion(String version) {
         createTablesIfNotExist();
+        if (historyLayout == HistoryLayout.V2) {
+            updateMigrationVersion(version);
+            return;
+        }
         PreparedStatement addMigrationStatement = cachePs.prepare(format(ADD_MIGRATION_VERSION, getTableMigrationVersion()));
         BoundStatement boundStatement = addMigrationStatement.bind(version);
         executeStatement(boundStatement, this.consistencyLevel);
@@ -150,12 +375,36 @@ public class SchemaVersionDAO {
     }
 
     public void updateMigrationVersion(String version) {
+        if (historyLayout == HistoryLayout.V2) {
+            updateMigrationVersionV2(version);
+            return;
+        }
         PreparedStatement updateMigrationVersion = cachePs.prepare(format(UPDATE_MIGRATION_VERSION, getTableMigrationVersion()));
         BoundStatement boundStatement = updateMigrationVersion.bind(version);
         executeStatement(boundStatement, this.consistencyLevel);
         LOG.debug("Updated schema version to " + version);
     }
 
+    /**
+     * Updates the current version in the {@link HistoryLayout#V2} history partition, with a lightweight transaction
+     * conditional on the installed count like every other write of its static columns.
+     *
+     * @param version The current version.
+     */
+    private void updateMigrationVersionV2(String version) {
+        PreparedStatement updateCurrentVersion = cachePs.prepare(format(UPDATE_CURRENT_VERSION_V2, getTableName()));
+        for (int attempt = 0; attempt < MAX_STATE_UPDATE_ATTEMPTS; attempt++) {
+            Integer installedCount = getInstalledCount(findStateV2());
+            if (executeStatement(updateCurrentVersion.bind(version, keyspaceName, installedCount),
+                    consistencyLevel).wasApplied()) {
+                LOG.debug("Updated schema version to " + version);
+                return;
+            }
+        }
+        throw new CassandraMigrationException("Unable to update the schema version of " + tableName + " to "
+                + version + " after " + MAX_STATE_UPDATE_ATTEMPTS + " attempts");
+    }
+
     /**
      * Retrieve the applied migrations from the metadata table.
      *
@@ -165,9 +414,157 @@ public class SchemaVersionDAO {
         if (!tablesExist()) {
             return new ArrayList<>();
         }
-        ResultSet resultSet = executeStatement(format(VERSION_QUERY, getTableName()));
+        if (historyLayout == HistoryLayout.V2) {
+            return toAppliedMigrations(executeStatement(
+                    cachePs.prepare(format(VERSION_QUERY_V2, getTableName())).bind(keyspaceName), consistencyLevel));
+        }
+        return toAppliedMigrations(executeStatement(format(VERSION_QUERY, getTableName())));
+    }
+
+    /**
+     * Retrieves the applied migration of this version, eg: to read the current status of a background migration.
+     *
+     * @param version The version.
+     * @return The applied migration, or {@code null} if none.
+     */
+    public AppliedMigration findAppliedMigration(MigrationVersion version) {
+        if (!tablesExist()) {
+            return null;
+        }
+        List<AppliedMigration> appliedMigrations;
+        if (historyLayout == HistoryLayout.V2) {
+            appliedMigrations = toAppliedMigrations(executeStatement(
+                    cachePs.prepare(format(SINGLE_VERSION_QUERY_V2, getTableName()))
+                            .bind(keyspaceName, ByteBuffer.wrap(version.getSortKey())),
+                    consistencyLevel));
+        } else {
+            appliedMigrations = toAppliedMigrations(executeStatement(
+                    cachePs.prepare(format(SINGLE_VERSION_QUERY, getTableName())).bind(version.toString()),
+                    consistencyLevel));
+        }
+        return appliedMigrations.isEmpty() ? null : appliedMigrations.get(0);
+    }
+
+    /**
+     * Retrieves the applied migration with the highest version. With the {@link HistoryLayout#V2} layout, this reads
+     * only the last row of the history partition.
+     *
+     * @return The applied migration, or {@code null} if none.
+     */
+    public AppliedMigration findLatestAppliedMigration() {
+        if (!tablesExist()) {
+            return null;
+        }
+        if (historyLayout == HistoryLayout.V2) {
+            List<AppliedMigration> latest = toAppliedMigrations(executeStatement(
+                    cachePs.prepare(format(LATEST_VERSION_QUERY_V2, getTableName())).bind(keyspaceName),
+                    consistencyLevel));
+            return latest.isEmpty() ? null : latest.get(0);
+        }
+
+        AppliedMigration latest = null;
+        for (AppliedMigration appliedMigration : findAppliedMigrations()) {
+            if (latest == null || appliedMigration.getVersion().compareTo(latest.getVersion()) > 0) {
+                latest = appliedMigration;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Retrieves the applied migrations with a version higher than this one. With the {@link HistoryLayout#V2} layout,
+     * this reads only the matching slice of the history partition.
+     *
+     * @param version The version to start after.
+     * @return The applied migrations, sorted by version.
+     */
+    public List<AppliedMigration> findAppliedMigrationsAfter(MigrationVersion version) {
+        if (!tablesExist()) {
+            return new ArrayList<>();
+        }
+        if (historyLayout == HistoryLayout.V2) {
+            return toAppliedMigrations(executeStatement(
+                    cachePs.prepare(format(VERSIONS_AFTER_QUERY_V2, getTableName()))
+                            .bind(keyspaceName, ByteBuffer.wrap(version.getSortKey())),
+                    consistencyLevel));
+        }
+
+        List<AppliedMigration> appliedMigrations = new ArrayList<>();
+        for (AppliedMigration appliedMigration : findAppliedMigrations()) {
+            if (appliedMigration.getVersion().compareTo(version) > 0) {
+                appliedMigrations.add(appliedMigration);
+            }
+        }
+        Collections.sort(appliedMigrations);
+        return appliedMigrations;
+    }
+
+    /**
+     * Retrieves the applied migration with the highest version of each of these keyspaces from the control keyspace.
+     * Each keyspace is a single-partition read, and the reads are issued concurrently.
+     *
+     * @param keyspaceNames The names of the keyspaces.
+     * @return The applied migrations by keyspace name, in the order of the keyspaces. Keyspaces without applied
+     * migrations are absent.
+     * @throws CassandraMigrationException if the history isn't centralized or could not be read.
+     */
+    public Map<String, AppliedMigration> findLatestAppliedMigrations(Collection<String> keyspaceNames) {
+        if (!isCentralized()) {
+            throw new CassandraMigrationException("The history of keyspace " + keyspaceName
+                    + " isn't recorded in a history keyspace");
+        }
+        Map<String, AppliedMigration> latestMigrations = new LinkedHashMap<>();
+        if (!tablesExist()) {
+            return latestMigrations;
+        }
+
+        PreparedStatement latestVersionQuery = cachePs.prepare(format(LATEST_VERSION_QUERY_V2, getTableName()));
+        Semaphore inFlight = new Semaphore(MAX_CONCURRENT_READS);
+        Map<String, CompletableFuture<List<AppliedMigration>>> reads = new LinkedHashMap<>();
+        try {
+            for (String name : keyspaceNames) {
+                inFlight.acquire();
+                CompletableFuture<List<AppliedMigration>> read;
+                try {
+                    read = session
+                            .executeAsync(withOptions(latestVersionQuery.bind(name), consistencyLevel))
+                            .thenApply(resultSet -> toAppliedMigrations(resultSet.currentPage()))
+                            .toCompletableFuture();
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                read.whenComplete((migrations, error) -> inFlight.release());
+                reads.put(name, read);
+            }
+            for (Map.Entry<String, CompletableFuture<List<AppliedMigration>>> read : reads.entrySet()) {
+                List<AppliedMigration> migrations = read.getValue().get();
+                if (!migrations.isEmpty()) {
+                    latestMigrations.put(read.getKey(), migrations.get(0));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CassandraMigrationException("Interrupted while reading the history of " + historyKeyspaceName, e);
+        } catch (ExecutionException e) {
+            throw new CassandraMigrationException("Unable to read the history of " + historyKeyspaceName, e.getCause());
+        }
+        return latestMigrations;
+    }
+
+    /**
+     * Maps these rows of the migration table.
+     *
+     * @param rows The rows.
+     * @return The applied migrations, in row order.
+     */
+    private List<AppliedMigration> toAppliedMigrations(Iterable<Row> rows) {
         List<AppliedMigration> resultsList = new ArrayList<>();
-        for (Row row : resultSet) {
+        for (Row row : rows) {
+            if (row.isNull("version")) {
+                // V2 partition holding only its static columns.
+                continue;
+            }
             resultsList.add(new AppliedMigration(
                     row.getInt("version_rank"),
                     row.getInt("installed_rank"),
@@ -176,20 +573,73 @@ public class SchemaVersionDAO {
                     MigrationType.valueOf(row.getString("type")),
                     row.getString("script"),
                     row.isNull("checksum") ? null : row.getInt("checksum"),
+                    row.getString("checksum_algorithm"),
+                    row.isNull("checksum_value") ? null : row.getLong("checksum_value"),
                     Date.from(row.getInstant("installed_on")),
                     row.getString("installed_by"),
                     row.getInt("execution_time"),
                     row.getBoolean("success"),
                     row.getBoolean("ignored")
             ));
+            if (!row.isNull("status")) {
+                resultsList.get(resultsList.size() - 1).setStatus(MigrationState.valueOf(row.getString("status")));
+            }
         }
         return resultsList;
     }
 
+    /**
+     * Records the outcome of the body of this background migration.
+     *
+     * @param version       The version of the background migration.
+     * @param status        Its new state: {@link MigrationState#RUNNING} or {@link MigrationState#COMPLETED}.
+     *                      {@code null} when it failed.
+     * @param success       Whether it succeeded, or is still running.
+     * @param executionTime The execution time (in millis) of its prerequisites and body.
+     */
+    public void updateStatus(MigrationVersion version, MigrationState status, boolean success, int executionTime) {
+        String statusName = status == null ? null : status.name();
+        if (historyLayout == HistoryLayout.V2) {
+            executeStatement(cachePs.prepare(format(UPDATE_MIGRATION_STATUS_V2, getTableName())).bind(statusName,
+                    success, executionTime, keyspaceName, ByteBuffer.wrap(version.getSortKey())), consistencyLevel);
+        } else {
+            executeStatement(cachePs.prepare(format(UPDATE_MIGRATION_STATUS, getTableName())).bind(statusName,
+                    success, executionTime, version.toString()), consistencyLevel);
+        }
+        LOG.debug("Recorded version " + version + " as " + (status == null ? "failed" : status.name()));
+    }
+
+    /**
+     * Records a new checksum for this applied migration.
+     *
+     * @param version           The version of the applied migration.
+     * @param checksum          The checksum, truncated to 32 bits.
+     * @param checksumAlgorithm The name of the algorithm the checksum was computed with.
+     * @param checksumValue     The full checksum value.
+     */
+    public void updateChecksum(MigrationVersion version, int checksum, String checksumAlgorithm, long checksumValue) {
+        if (historyLayout == HistoryLayout.V2) {
+            PreparedStatement updateChecksumStatement =
+                    cachePs.prepare(format(UPDATE_MIGRATION_CHECKSUM_V2, getTableName()));
+            executeStatement(updateChecksumStatement.bind(checksum, checksumAlgorithm, checksumValue, keyspaceName,
+                    ByteBuffer.wrap(version.getSortKey())), this.consistencyLevel);
+            LOG.debug("Restamped checksum of version " + version + " with " + checksumAlgorithm);
+            return;
+        }
+        PreparedStatement updateChecksumStatement = cachePs.prepare(format(UPDATE_MIGRATION_CHECKSUM, getTableName()));
+        executeStatement(updateChecksumStatement.bind(checksum, checksumAlgorithm, checksumValue, version.toString()),
+                this.consistencyLevel);
+        LOG.debug("Restamped checksum of version " + version + " with " + checksumAlgorithm);
+    }
+
     public boolean versionNotFound() {
         if (!tablesExist()) {
             return true;
         }
+        if (historyLayout == HistoryLayout.V2) {
+            Row state = findStateV2();
+            return state == null || state.isNull("current_version");
+        }
         ResultSet resultSet = executeStatement(format(MIGRATION_VERSION_QUERY, getTableMigrationVersion()));
         return resultSet.all().isEmpty();
     }
@@ -207,6 +657,22 @@ public class SchemaVersionDAO {
         return (int) result.one().getLong("count");
     }
 
+    /**
+     * @return The static columns of the {@link HistoryLayout#V2} history partition, or {@code null} if it is empty.
+     */
+    private Row findStateV2() {
+        return executeStatement(cachePs.prepare(format(SELECT_STATE_V2, getTableName())).bind(keyspaceName),
+                consistencyLevel).one();
+    }
+
+    /**
+     * @param state A row of the {@link HistoryLayout#V2} history partition. {@code null} if it is empty.
+     * @return The number of migrations installed in the partition, or {@code null} if not initialized.
+     */
+    private static Integer getInstalledCount(Row state) {
+        return state == null || state.isNull("installed_count") ? null : state.getInt("installed_count");
+    }
+
     static class MigrationMetaHolder {
         private final int versionRank;
 
@@ -257,14 +723,19 @@ public class SchemaVersionDAO {
 
         return migrationVersions.size() + 1;
     }
+
     private ResultSet executeStatement(String statement) throws DriverException {
         return executeStatement(SimpleStatement.newInstance(statement), this.consistencyLevel);
     }
 
     private ResultSet executeStatement(Statement<?> statement, ConsistencyLevel consistencyLevel) throws DriverException {
-        return session.execute(statement
+        return session.execute(withOptions(statement, consistencyLevel));
+    }
+
+    private Statement<?> withOptions(Statement<?> statement, ConsistencyLevel consistencyLevel) {
+        return statement
                 .setExecutionProfileName(executionProfileName)
-                .setConsistencyLevel(consistencyLevel));
+                .setConsistencyLevel(consistencyLevel);
     }
 
     private void useKeyspace() {
@@ -295,20 +766,170 @@ public class SchemaVersionDAO {
      */
     private void ensureSchemaTable() {
         if (tablesExist()) {
+            addChecksumColumnsIfRequired();
+            if (historyLayout == HistoryLayout.V2) {
+                addStaticColumnsIfRequired();
+                upgradeFromV1IfRequired();
+            }
             return;
         }
         createSchemaTable();
+        if (historyLayout == HistoryLayout.V2) {
+            upgradeFromV1IfRequired();
+        }
+    }
+
+    /**
+     * Adds the static columns to a {@link HistoryLayout#V2} table created without them.
+     */
+    private void addStaticColumnsIfRequired() {
+        if (!isColumnExisting("installed_count")) {
+            LOG.info("Adding column installed_count to " + tableName);
+            executeStatement(format(ADD_INSTALLED_COUNT_COLUMN, getTableName()));
+        }
+        if (!isColumnExisting("current_version")) {
+            LOG.info("Adding column current_version to " + tableName);
+            executeStatement(format(ADD_CURRENT_VERSION_COLUMN, getTableName()));
+        }
+    }
+
+    /**
+     * Initializes the static columns of the {@link HistoryLayout#V2} history partition, once. The history recorded
+     * in the {@link HistoryLayout#V1} tables is copied first, and the static columns are written last: they mark the
+     * copy as complete, so a copy interrupted by a crash is done again by the next run. The copy is idempotent, and
+     * the initialization is a lightweight transaction, so concurrent upgrades are harmless.
+     */
+    private void upgradeFromV1IfRequired() {
+        Row state = findStateV2();
+        if (state != null && !state.isNull("installed_count")) {
+            return;
+        }
+
+        Metadata metadata = session.getMetadata();
+        if (isTableExisting(metadata, keyspaceName, tableNameV1)) {
+            copyV1History();
+        }
+
+        int installedCount = 0;
+        for (AppliedMigration appliedMigration : findAppliedMigrations()) {
+            installedCount = Math.max(installedCount, appliedMigration.getInstalledRank());
+        }
+        String currentVersion = state == null ? null : state.getString("current_version");
+        if (currentVersion == null && isTableExisting(metadata, keyspaceName, tableMigrationVersion)) {
+            MigrationVersion latest = null;
+            for (Row row : executeStatement(format(MIGRATION_VERSION_QUERY, getTableMigrationVersion()))) {
+                MigrationVersion version = MigrationVersion.fromVersion(row.getString("version"));
+                if (latest == null || version.compareTo(latest) > 0) {
+                    latest = version;
+                }
+            }
+            currentVersion = latest == null ? null : latest.getVersion();
+        }
+
+        executeStatement(cachePs.prepare(format(INIT_STATE_V2, getTableName()))
+                .bind(installedCount, currentVersion, keyspaceName), consistencyLevel);
+    }
+
+    /**
+     * Copies the rows of the {@link HistoryLayout#V1} migration table to the {@link HistoryLayout#V2} history
+     * partition, in single-partition batches. The columns added to the V1 table after its first release are copied
+     * as {@code null} when the table lacks them.
+     */
+    private void copyV1History() {
+        LOG.info("Upgrading the migration history of " + tableNameV1 + " to " + tableName);
+        StringBuilder v1Query = new StringBuilder("select ").append(V1_COLUMNS);
+        for (String column : ADDED_V1_COLUMNS) {
+            if (isColumnExisting(keyspaceName, tableNameV1, column)) {
+                v1Query.append(", ").append(column);
+            }
+        }
+        ResultSet v1Rows = executeStatement(v1Query.append(" from ").append(tableNameV1).toString());
+        PreparedStatement copyMigration = cachePs.prepare(format(COPY_MIGRATION_V2, getTableName()));
+
+        BatchStatementBuilder batch = BatchStatement.builder(BatchType.UNLOGGED);
+        int copied = 0;
+        for (Row row : v1Rows) {
+            MigrationVersion version = MigrationVersion.fromVersion(row.getString("version"));
+            batch.addStatement(copyMigration.bind(keyspaceName,
+                    ByteBuffer.wrap(version.getSortKey()),
+                    row.getInt("version_rank"),
+                    row.getInt("installed_rank"),
+                    version.toString(),
+                    row.getString("description"),
+                    row.getString("type"),
+                    row.getString("script"),
+                    row.isNull("checksum") ? null : row.getInt("checksum"),
+                    hasValue(row, "checksum_algorithm") ? row.getString("checksum_algorithm") : null,
+                    hasValue(row, "checksum_value") ? row.getLong("checksum_value") : null,
+                    row.getInstant("installed_on"),
+                    row.getString("installed_by"),
+                    row.getInt("execution_time"),
+                    row.getBoolean("success"),
+                    row.getBoolean("ignored"),
+                    hasValue(row, "status") ? row.getString("status") : null));
+            copied++;
+            if (batch.getStatementsCount() == UPGRADE_BATCH_SIZE) {
+                executeStatement(batch.build(), consistencyLevel);
+                batch = BatchStatement.builder(BatchType.UNLOGGED);
+            }
+        }
+        if (batch.getStatementsCount() > 0) {
+            executeStatement(batch.build(), consistencyLevel);
+        }
+        LOG.info("Copied " + copied + " migrations from " + tableNameV1 + " to " + tableName);
+    }
+
+    /**
+     * @param row    The row.
+     * @param column The name of the column.
+     * @return {@code true} if the row has this column and its value isn't null.
+     */
+    private static boolean hasValue(Row row, String column) {
+        return row.getColumnDefinitions().contains(column) && !row.isNull(column);
+    }
+
+    /**
+     * Adds the checksum algorithm and status columns to a migration table created by an older version.
+     */
+    private void addChecksumColumnsIfRequired() {
+        if (!isColumnExisting("status")) {
+            LOG.info("Adding column status to " + tableName);
+            executeStatement(format(ADD_STATUS_COLUMN, getTableName()));
+        }
+        if (!isColumnExisting("checksum_algorithm")) {
+            LOG.info("Adding column checksum_algorithm to " + tableName);
+            executeStatement(format(ADD_CHECKSUM_ALGORITHM_COLUMN, getTableName()));
+        }
+        if (!isColumnExisting("checksum_value")) {
+            LOG.info("Adding column checksum_value to " + tableName);
+            executeStatement(format(ADD_CHECKSUM_VALUE_COLUMN, getTableName()));
+        }
+    }
+
+    private boolean isColumnExisting(String columnName) {
+        return isColumnExisting(historyKeyspaceName, tableName, columnName);
+    }
+
+    private boolean isColumnExisting(String keyspaceName, String tableName, String columnName) {
+        return session.getMetadata()
+                .getKeyspace(keyspaceName)
+                .flatMap(keyspaceMetadata -> keyspaceMetadata.getTable(tableName))
+                .map(tableMetadata -> tableMetadata.getColumn(columnName).isPresent())
+                .orElse(false);
     }
 
     private boolean tablesExist() {
         Metadata metadata = session.getMetadata();
 
-        return isTableExisting(metadata, tableName)
-                && isTableExisting(metadata, tableCountName)
-                && isTableExisting(metadata, tableMigrationVersion);
+        if (historyLayout == HistoryLayout.V2) {
+            return isTableExisting(metadata, historyKeyspaceName, tableName);
+        }
+        return isTableExisting(metadata, keyspaceName, tableName)
+                && isTableExisting(metadata, keyspaceName, tableCountName)
+                && isTableExisting(metadata, keyspaceName, tableMigrationVersion);
     }
 
-    private boolean isTableExisting(Metadata metadata, String tableName) {
+    private boolean isTableExisting(Metadata metadata, String keyspaceName, String tableName) {
         return metadata
                 .getKeyspace(keyspaceName)
                 .map(keyspaceMetadata -> keyspaceMetadata.getTable(tableName).isPresent())
@@ -316,6 +937,10 @@ public class SchemaVersionDAO {
     }
 
     private void createSchemaTable() {
+        if (historyLayout == HistoryLayout.V2) {
+            executeStatement(format(CREATE_MIGRATION_V2_CF, getTableName()));
+            return;
+        }
         executeStatement(format(CREATE_MIGRATION_CF, getTableName()));
         executeStatement(format(CREATE_MIGRATION_COUNT_CF, getTableCountName()));
         executeStatement(format(CREATE_MIGRATION_VERSION, getTableMigrationVersion()));
@@ -326,8 +951,11 @@ public class SchemaVersionDAO {
         return session.getMetadata().getKeyspace(keyspaceName).isPresent();
     }
 
+    /**
+     * @return The name of the migration table, qualified with the control keyspace if the history is centralized.
+     */
     public String getTableName() {
-        return tableName;
+        return isCentralized() ? historyKeyspaceName + "." + tableName : tableName;
     }
 
     public String getTableCountName() {
@@ -0,0 +1,219 @@
+package com.contrastsecurity.cassandra.migration.dao;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.config.MigrationConfigs;
+import com.contrastsecurity.cassandra.migration.info.MigrationVersion;
+import com.contrastsecurity.cassandra.migration.info.StatementMetrics;
+import com.contrastsecurity.cassandra.migration.utils.CachePrepareStatement;
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+import static com.contrastsecurity.cassandra.migration.utils.Ensure.notNull;
+import static java.lang.String.format;
+
+/**
+ * Saves the execution metrics of the statements of Cql migrations in a side table, with one partition per keyspace
+ * and version. The table is in the history keyspace if one is configured, and is created on first use.
+ */
+public class StatementMetricsDAO {
+
+    /**
+     * The name of the table that keeps the statement metrics of the migrations.
+     */
+    private static final String METRICS_CF = "migration_statement_metrics";
+
+    /**
+     * The maximum number of partitions read concurrently.
+     */
+    private static final int MAX_CONCURRENT_READS = 32;
+
+    /**
+     * The maximum number of rows written by one batch.
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private static final String CREATE_METRICS_CF = "CREATE TABLE IF NOT EXISTS %s"
+            + " (keyspace_name text, version text, statement_index int, statement_hash text, statement text,"
+            + " latency_ns bigint, coordinator text, retries int, schema_in_agreement boolean, executed_on timestamp,"
+            + " PRIMARY KEY ((keyspace_name, version), statement_index))";
+    private static final String SELECT_METRICS = "select statement_index, statement_hash, statement, latency_ns,"
+            + " coordinator, retries, schema_in_agreement from %s where keyspace_name = ? and version = ?";
+    private static final String SAVE_METRICS = "insert into %s (keyspace_name, version, statement_index,"
+            + " statement_hash, statement, latency_ns, coordinator, retries, schema_in_agreement, executed_on)"
+            + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, dateOf(now()))";
+    private static final String DELETE_METRICS = "delete from %s where keyspace_name = ? and version = ?";
+
+    private final CqlSession session;
+    private final CachePrepareStatement cachePs;
+    private final String keyspaceName;
+    private final String historyKeyspaceName;
+    private final String tableName;
+    private final String executionProfileName;
+    private final ConsistencyLevel consistencyLevel;
+
+    /**
+     * Whether the table is known to exist.
+     */
+    private volatile boolean tableCreated;
+
+    public StatementMetricsDAO(CqlSession session, MigrationConfigs configuration) {
+        this.session = notNull(session, "session");
+        this.cachePs = new CachePrepareStatement(session);
+        this.keyspaceName = configuration.getKeyspace().getName();
+        this.historyKeyspaceName = configuration.getHistoryKeyspace() == null
+                ? keyspaceName
+                : configuration.getHistoryKeyspace();
+        String tablePrefix = configuration.getTablePrefix();
+        this.tableName = tablePrefix == null || tablePrefix.isEmpty()
+                ? METRICS_CF
+                : format("%s_%s", tablePrefix, METRICS_CF);
+        this.executionProfileName = configuration.getExecutionProfile();
+        this.consistencyLevel = configuration.getConsistencyLevel();
+    }
+
+    /**
+     * Saves the statement metrics of this migration, replacing those of a previous attempt.
+     *
+     * @param version The version of the migration.
+     * @param metrics The metrics of its executed statements.
+     */
+    public void save(MigrationVersion version, List<StatementMetrics> metrics) {
+        createTableIfNotExists();
+        execute(cachePs.prepare(format(DELETE_METRICS, getTableName())).bind(keyspaceName, version.getVersion()));
+
+        PreparedStatement insert = cachePs.prepare(format(SAVE_METRICS, getTableName()));
+        BatchStatementBuilder batch = BatchStatement.builder(DefaultBatchType.UNLOGGED);
+        for (StatementMetrics statement : metrics) {
+            batch.addStatement(insert.bind(keyspaceName, version.getVersion(), statement.getIndex(),
+                    statement.getHash(), statement.getStatement(), statement.getLatencyNanos(),
+                    statement.getCoordinator(), statement.getRetries(), statement.isSchemaInAgreement()));
+            if (batch.getStatementsCount() == MAX_BATCH_SIZE) {
+                execute(batch.build());
+                batch.clearStatements();
+            }
+        }
+        if (batch.getStatementsCount() > 0) {
+            execute(batch.build());
+        }
+    }
+
+    /**
+     * Loads the statement metrics of these migrations, reading their partitions concurrently.
+     *
+     * @param versions The versions of the migrations.
+     * @return The metrics of the migrations having some, by version, in statement order.
+     */
+    public Map<MigrationVersion, List<StatementMetrics>> findStatementMetrics(Collection<MigrationVersion> versions) {
+        Map<MigrationVersion, List<StatementMetrics>> metrics = new LinkedHashMap<>();
+        if (!tableCreated && !tableExists()) {
+            return metrics;
+        }
+
+        PreparedStatement select = cachePs.prepare(format(SELECT_METRICS, getTableName()));
+        Semaphore inFlight = new Semaphore(MAX_CONCURRENT_READS);
+        Map<MigrationVersion, CompletableFuture<List<StatementMetrics>>> reads = new LinkedHashMap<>();
+        try {
+            for (MigrationVersion version : versions) {
+                inFlight.acquire();
+                CompletableFuture<List<StatementMetrics>> read;
+                try {
+                    read = session
+                            .executeAsync(withOptions(select.bind(keyspaceName, version.getVersion())))
+                            .thenCompose(resultSet -> readAll(resultSet, new ArrayList<StatementMetrics>()))
+                            .toCompletableFuture();
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                read.whenComplete((rows, error) -> inFlight.release());
+                reads.put(version, read);
+            }
+            for (Map.Entry<MigrationVersion, CompletableFuture<List<StatementMetrics>>> read : reads.entrySet()) {
+                List<StatementMetrics> statements = read.getValue().get();
+                if (!statements.isEmpty()) {
+                    metrics.put(read.getKey(), statements);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CassandraMigrationException("Interrupted while reading " + getTableName(), e);
+        } catch (ExecutionException e) {
+            throw new CassandraMigrationException("Unable to read " + getTableName(), e.getCause());
+        }
+        return metrics;
+    }
+
+    /**
+     * @return The name of the statement metrics table, qualified with its keyspace.
+     */
+    public String getTableName() {
+        return historyKeyspaceName + "." + tableName;
+    }
+
+    /**
+     * Maps the rows of this result set and of its next pages.
+     */
+    private CompletionStage<List<StatementMetrics>> readAll(AsyncResultSet resultSet,
+                                                            List<StatementMetrics> statements) {
+        for (Row row : resultSet.currentPage()) {
+            statements.add(new StatementMetrics(
+                    row.getInt("statement_index"),
+                    row.getString("statement_hash"),
+                    row.getString("statement"),
+                    row.getLong("latency_ns"),
+                    row.getString("coordinator"),
+                    row.getInt("retries"),
+                    row.getBoolean("schema_in_agreement")));
+        }
+        if (!resultSet.hasMorePages()) {
+            return CompletableFuture.completedFuture(statements);
+        }
+        return resultSet.fetchNextPage().thenCompose(next -> readAll(next, statements));
+    }
+
+    private void createTableIfNotExists() {
+        if (tableCreated) {
+            return;
+        }
+        if (!tableExists()) {
+            execute(SimpleStatement.newInstance(format(CREATE_METRICS_CF, getTableName())));
+        }
+        tableCreated = true;
+    }
+
+    private boolean tableExists() {
+        return session.getMetadata()
+                .getKeyspace(historyKeyspaceName)
+                .map(keyspaceMetadata -> keyspaceMetadata.getTable(tableName).isPresent())
+                .orElse(false);
+    }
+
+    private Statement<?> withOptions(Statement<?> statement) {
+        return statement
+                .setExecutionProfileName(executionProfileName)
+                .setConsistencyLevel(consistencyLevel);
+    }
+
+    private ResultSet execute(Statement<?> statement) {
+        return session.execute(withOptions(statement));
+    }
+}
@@ -17,7 +17,10 @@ package com.contrastsecurity.cassandra.migration.info;
 
 import com.contrastsecurity.cassandra.migration.config.MigrationType;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 /**
  * A migration applied to the database (maps to a row in the metadata table).
@@ -58,6 +61,17 @@ public class AppliedMigration implements Comparable<AppliedMigration> {
      */
     private Integer checksum;
 
+    /**
+     * The name of the algorithm the checksum value was computed with. (Optional, CRC32 for rows written by older
+     * versions)
+     */
+    private String checksumAlgorithm;
+
+    /**
+     * The full checksum value, as computed by the checksum algorithm. (Optional)
+     */
+    private Long checksumValue;
+
     /**
      * The timestamp when this migration was installed.
      */
@@ -83,6 +97,17 @@ public class AppliedMigration implements Comparable<AppliedMigration> {
      */
     private boolean ignored;
 
+    /**
+     * The state of a background migration: {@link MigrationState#RUNNING} or {@link MigrationState#COMPLETED}.
+     * {@code null} for other migrations.
+     */
+    private MigrationState status;
+
+    /**
+     * The execution metrics of the statements of this migration, in statement order. Empty if none were recorded.
+     */
+    private List<StatementMetrics> statementMetrics = Collections.emptyList();
+
     /**
      * Creates a new applied migration. Only called from the RowMapper.
      *
@@ -123,6 +148,31 @@ public class AppliedMigration implements Comparable<AppliedMigration> {
     public AppliedMigration(int versionRank, int installedRank, MigrationVersion version, String description, MigrationType type,
                             String script, Integer checksum, Date installedOn,
                             String installedBy, int executionTime, boolean success, boolean ignored) {
+        this(versionRank, installedRank, version, description, type, script, checksum, null, null, installedOn,
+                installedBy, executionTime, success, ignored);
+    }
+
+    /**
+     * Creates a new applied migration. Only called from the RowMapper.
+     *
+     * @param versionRank       The position of this version amongst all others. (For easy order by sorting)
+     * @param installedRank     The order in which this migration was applied amongst all others. (For out of order detection)
+     * @param version           The target version of this migration.
+     * @param description       The description of the migration.
+     * @param type              The type of migration (INIT, CQL, ...)
+     * @param script            The name of the script to execute for this migration, relative to its classpath location.
+     * @param checksum          The checksum of the migration. (Optional)
+     * @param checksumAlgorithm The name of the algorithm the checksum value was computed with. (Optional)
+     * @param checksumValue     The full checksum value. (Optional)
+     * @param installedOn       The timestamp when this migration was installed.
+     * @param installedBy       The user that installed this migration.
+     * @param executionTime     The execution time (in millis) of this migration.
+     * @param success           Flag indicating whether the migration was successful or not.
+     * @param ignored           Flag indicating whether the migration failure can be ignored.
+     */
+    public AppliedMigration(int versionRank, int installedRank, MigrationVersion version, String description, MigrationType type,
+                            String script, Integer checksum, String checksumAlgorithm, Long checksumValue, Date installedOn,
+                            String installedBy, int executionTime, boolean success, boolean ignored) {
         this.versionRank = versionRank;
         this.installedRank = installedRank;
         this.version = version;
@@ -130,6 +180,8 @@ public class AppliedMigration implements Comparable<AppliedMigration> {
         this.type = type;
         this.script = script;
         this.checksum = checksum;
+        this.checksumAlgorithm = checksumAlgorithm;
+        this.checksumValue = checksumValue;
         this.installedOn = installedOn;
         this.installedBy = installedBy;
         this.executionTime = executionTime;
@@ -169,11 +221,34 @@ public class AppliedMigration implements Comparable<AppliedMigration> {
      */
     public AppliedMigration(MigrationVersion version, String description, MigrationType type, String script,
                             Integer checksum, String installedBy, int executionTime, boolean success, boolean ignored) {
+        this(version, description, type, script, checksum, null, null, installedBy, executionTime, success, ignored);
+    }
+
+    /**
+     * Creates a new applied migration.
+     *
+     * @param version           The target version of this migration.
+     * @param description       The description of the migration.
+     * @param type              The type of migration (INIT, CQL, ...)
+     * @param script            The name of the script to execute for this migration, relative to its classpath location.
+     * @param checksum          The checksum of the migration. (Optional)
+     * @param checksumAlgorithm The name of the algorithm the checksum value was computed with. (Optional)
+     * @param checksumValue     The full checksum value. (Optional)
+     * @param installedBy       The user that installed this migration.
+     * @param executionTime     The execution time (in millis) of this migration.
+     * @param success           Flag indicating whether the migration was successful or not.
+     * @param ignored           Flag indicating whether the migration failure can be ignored.
+     */
+    public AppliedMigration(MigrationVersion version, String description, MigrationType type, String script,
+                            Integer checksum, String checksumAlgorithm, Long checksumValue, String installedBy,
+                            int executionTime, boolean success, boolean ignored) {
         this.version = version;
         this.description = abbreviateDescription(description);
         this.type = type;
         this.script = abbreviateScript(script);
         this.checksum = checksum;
+        this.checksumAlgorithm = checksumAlgorithm;
+        this.checksumValue = checksumValue;
         this.installedBy = installedBy;
         this.executionTime = executionTime;
         this.success = success;
@@ -265,6 +340,20 @@ public class AppliedMigration implements Comparable<AppliedMigration> {
         return checksum;
     }
 
+    /**
+     * @return The name of the algorithm the checksum value was computed with. (Optional)
+     */
+    public String getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    /**
+     * @return The full checksum value, as computed by the checksum algorithm. (Optional)
+     */
+    public Long getChecksumValue() {
+        return checksumValue;
+    }
+
     /**
      * @return The timestamp when this migration was installed.
      */
@@ -300,6 +389,37 @@ public class AppliedMigration implements Comparable<AppliedMigration> {
         return ignored;
     }
 
+    /**
+     * @return The state of a background migration: {@link MigrationState#RUNNING} or {@link MigrationState#COMPLETED}.
+     * {@code null} for other migrations.
+     */
+    public MigrationState getStatus() {
+        return status;
+    }
+
+    /**
+     * @param status The state of a background migration: {@link MigrationState#RUNNING} or
+     *               {@link MigrationState#COMPLETED}. {@code null} for other migrations.
+     */
+    public void setStatus(MigrationState status) {
+        this.status = status;
+    }
+
+    /**
+     * @return The execution metrics of the statements of this migration, in statement order. Empty if none were
+     * recorded.
+     */
+    public List<StatementMetrics> getStatementMetrics() {
+        return statementMetrics;
+    }
+
+    /**
+     * @param statementMetrics The execution metrics of the statements of this migration, in statement order.
+     */
+    public void setStatementMetrics(List<StatementMetrics> statementMetrics) {
+        this.statementMetrics = Collections.unmodifiableList(new ArrayList<>(statementMetrics));
+    }
+
     @SuppressWarnings("SimplifiableIfStatement")
     @Override
     public boolean equals(Object o) {
@@ -314,6 +434,9 @@ public class AppliedMigration implements Comparable<AppliedMigration> {
         if (ignored != that.ignored) return false;
         if (versionRank != that.versionRank) return false;
         if (checksum != null ? !checksum.equals(that.checksum) : that.checksum != null) return false;
+        if (checksumAlgorithm != null ? !checksumAlgorithm.equals(that.checksumAlgorithm) : that.checksumAlgorithm != null)
+            return false;
+        if (checksumValue != null ? !checksumValue.equals(that.checksumValue) : that.checksumValue != null) return false;
         if (!description.equals(that.description)) return false;
         if (installedBy != null ? !installedBy.equals(that.installedBy) : that.installedBy != null) return false;
         if (installedOn != null ? !installedOn.equals(that.installedOn) : that.installedOn != null) return false;
@@ -331,6 +454,8 @@ public class AppliedMigration implements Comparable<AppliedMigration> {
         result = 31 * result + type.hashCode();
         result = 31 * result + script.hashCode();
         result = 31 * result + (checksum != null ? checksum.hashCode() : 0);
+        result = 31 * result + (checksumAlgorithm != null ? checksumAlgorithm.hashCode() : 0);
+        result = 31 * result + (checksumValue != null ? checksumValue.hashCode() : 0);
         result = 31 * result + (installedOn != null ? installedOn.hashCode() : 0);
         result = 31 * result + (installedBy != null ? installedBy.hashCode() : 0);
         result = 31 * result + executionTime;
@@ -17,8 +17,11 @@ package com.contrastsecurity.cassandra.migration.info;
 
 import com.contrastsecurity.cassandra.migration.config.MigrationType;
 import com.contrastsecurity.cassandra.migration.utils.ObjectUtils;
+import com.contrastsecurity.cassandra.migration.utils.checksum.ChecksumAlgorithms;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 public class MigrationInfo implements Comparable<MigrationInfo> {
     /**
@@ -36,6 +39,11 @@ public class MigrationInfo implements Comparable<MigrationInfo> {
      */
     private final MigrationInfoContext context;
 
+    /**
+     * The state of this migration, computed on first use. The context must be complete by then.
+     */
+    private MigrationState state;
+
     /**
      * Creates a new MigrationInfoImpl.
      *
@@ -71,6 +79,16 @@ public class MigrationInfo implements Comparable<MigrationInfo> {
         return resolvedMigration.getType();
     }
 
+    /**
+     * @return The name of the algorithm the checksum was computed with, or {@code null} if unknown.
+     */
+    public String getChecksumAlgorithm() {
+        if (appliedMigration != null) {
+            return appliedMigration.getChecksumAlgorithm();
+        }
+        return resolvedMigration.getChecksumAlgorithm();
+    }
+
     public Integer getChecksum() {
         if (appliedMigration != null) {
             return appliedMigration.getChecksum();
@@ -100,6 +118,20 @@ public class MigrationInfo implements Comparable<MigrationInfo> {
     }
 
     public MigrationState getState() {
+        MigrationState migrationState = state;
+        if (migrationState == null) {
+            migrationState = computeState();
+            state = migrationState;
+        }
+        return migrationState;
+    }
+
+    /**
+     * Computes the state of this migration from the context.
+     *
+     * @return The state.
+     */
+    private MigrationState computeState() {
         if (appliedMigration == null) {
             if (resolvedMigration.getVersion().compareTo(context.baseline) < 0) {
                 return MigrationState.BELOW_BASELINE;
@@ -137,6 +169,9 @@ public class MigrationInfo implements Comparable<MigrationInfo> {
         }
 
         if (appliedMigration.isSuccess()) {
+            if (appliedMigration.getStatus() != null) {
+                return appliedMigration.getStatus();
+            }
             if (appliedMigration.getVersionRank() == appliedMigration.getInstalledRank()) {
                 return MigrationState.SUCCESS;
             }
@@ -159,6 +194,17 @@ public class MigrationInfo implements Comparable<MigrationInfo> {
         return null;
     }
 
+    /**
+     * @return The execution metrics of the statements of this migration, in statement order. Empty if it wasn't
+     * applied or none were recorded.
+     */
+    public List<StatementMetrics> getStatementMetrics() {
+        if (appliedMigration != null) {
+            return appliedMigration.getStatementMetrics();
+        }
+        return Collections.emptyList();
+    }
+
     /**
      * Validates this migrationInfo for consistency.
      *
@@ -183,6 +229,10 @@ public class MigrationInfo implements Comparable<MigrationInfo> {
                     return createMismatchMessage("Type", appliedMigration.getVersion(),
                             appliedMigration.getType(), resolvedMigration.getType());
                 }
+                String checksumError = validateChecksum();
+                if (checksumError != null) {
+                    return checksumError;
+                }
                 if (!ObjectUtils.nullSafeEquals(resolvedMigration.getChecksum(), appliedMigration.getChecksum())) {
                     return createMismatchMessage("Checksum", appliedMigration.getVersion(),
                             appliedMigration.getChecksum(), resolvedMigration.getChecksum());
@@ -196,6 +246,35 @@ public class MigrationInfo implements Comparable<MigrationInfo> {
         return null;
     }
 
+    /**
+     * Validates the checksum of the applied migration against the resolved one, provided both were computed with
+     * the same algorithm.
+     *
+     * @return The error message, or {@code null} if the full checksum values match or can't be compared.
+     */
+    private String validateChecksum() {
+        String resolvedAlgorithm = resolvedMigration.getChecksumAlgorithm();
+        if (resolvedAlgorithm == null || appliedMigration.getChecksum() == null) {
+            return null;
+        }
+
+        String appliedAlgorithm = appliedMigration.getChecksumAlgorithm() == null
+                ? ChecksumAlgorithms.CRC32
+                : appliedMigration.getChecksumAlgorithm();
+        if (!appliedAlgorithm.equalsIgnoreCase(resolvedAlgorithm)) {
+            return createMismatchMessage("Checksum algorithm", appliedMigration.getVersion(),
+                    appliedAlgorithm, resolvedAlgorithm)
+                    + "\n-> Run restampChecksums to record the checksums with the configured algorithm";
+        }
+
+        if (appliedMigration.getChecksumValue() != null && resolvedMigration.getChecksumValue() != null
+                && !appliedMigration.getChecksumValue().equals(resolvedMigration.getChecksumValue())) {
+            return createMismatchMessage("Checksum", appliedMigration.getVersion(),
+                    appliedMigration.getChecksumValue(), resolvedMigration.getChecksumValue());
+        }
+        return null;
+    }
+
     /**
      * Creates a message for a mismatch.
      *
@@ -15,9 +15,12 @@
  */
 package com.contrastsecurity.cassandra.migration.info;
 
+import com.contrastsecurity.cassandra.migration.config.HistoryLayout;
 import com.contrastsecurity.cassandra.migration.config.MigrationType;
 import com.contrastsecurity.cassandra.migration.dao.SchemaVersionDAO;
+import com.contrastsecurity.cassandra.migration.dao.StatementMetricsDAO;
 import com.contrastsecurity.cassandra.migration.resolver.MigrationResolver;
+import com.contrastsecurity.cassandra.migration.resolver.ResolvedMigrationComparator;
 
 import java.util.*;
 
@@ -27,6 +30,11 @@ public class MigrationInfoService {
 
     private final SchemaVersionDAO schemaVersionDAO;
 
+    /**
+     * The recorded statement metrics of the applied migrations. {@code null} if they aren't loaded.
+     */
+    private final StatementMetricsDAO statementMetricsDAO;
+
     /**
      * The target version up to which to retrieve the info.
      */
@@ -46,13 +54,47 @@ public class MigrationInfoService {
     private final boolean pendingOrFuture;
 
     /**
-     * The migrations infos calculated at the last refresh.
+     * The applied migrations read at the last refresh. {@code null} if not refreshed yet.
+     */
+    private List<AppliedMigration> appliedMigrations;
+
+    /**
+     * The migrations infos calculated at the last refresh, sorted by version.
      */
     private List<MigrationInfo> migrationInfos;
 
+    /**
+     * The migration infos calculated at the last refresh by state, sorted by version.
+     */
+    private Map<MigrationState, List<MigrationInfo>> migrationInfosByState;
+
+    /**
+     * The applied, resolved, failed and future migration infos calculated at the last refresh, sorted by version.
+     */
+    private List<MigrationInfo> appliedInfos;
+    private List<MigrationInfo> resolvedInfos;
+    private List<MigrationInfo> failedInfos;
+    private List<MigrationInfo> futureInfos;
+
+    /**
+     * The latest applied migration info calculated at the last refresh. {@code null} if none.
+     */
+    private MigrationInfo currentInfo;
+
     public MigrationInfoService(MigrationResolver migrationResolver, SchemaVersionDAO schemaVersionDAO, MigrationVersion target, boolean outOfOrder, boolean pendingOrFuture) {
+        this(migrationResolver, schemaVersionDAO, null, target, outOfOrder, pendingOrFuture);
+    }
+
+    /**
+     * @param statementMetricsDAO The recorded statement metrics, exposed through
+     *                            {@link MigrationInfo#getStatementMetrics()}. {@code null} to not load them.
+     */
+    public MigrationInfoService(MigrationResolver migrationResolver, SchemaVersionDAO schemaVersionDAO,
+                                StatementMetricsDAO statementMetricsDAO, MigrationVersion target, boolean outOfOrder,
+                                boolean pendingOrFuture) {
         this.migrationResolver = migrationResolver;
         this.schemaVersionDAO = schemaVersionDAO;
+        this.statementMetricsDAO = statementMetricsDAO;
         this.target = target;
         this.outOfOrder = outOfOrder;
         this.pendingOrFuture = pendingOrFuture;
@@ -64,8 +106,79 @@ public class MigrationInfoService {
     public void refresh() {
         Collection<ResolvedMigration> availableMigrations = migrationResolver.resolveMigrations();
         List<AppliedMigration> appliedMigrations = schemaVersionDAO.findAppliedMigrations();
+        if (statementMetricsDAO != null) {
+            loadStatementMetrics(appliedMigrations);
+        }
+
+        refresh(availableMigrations, appliedMigrations);
+    }
+
+    /**
+     * Refreshes the info about all known migrations after migrations from this version on were applied or updated.
+     * The applied migrations with a lower version are kept from the last refresh, and only those after the highest of
+     * them are read again, as a slice of the history partition with the {@link HistoryLayout#V2} layout. Refreshes
+     * fully if not refreshed yet.
+     *
+     * @param version The lowest version that may have changed since the last refresh.
+     */
+    public void refreshFrom(MigrationVersion version) {
+        if (appliedMigrations == null) {
+            refresh();
+            return;
+        }
+
+        List<AppliedMigration> unchangedMigrations = new ArrayList<AppliedMigration>();
+        MigrationVersion after = MigrationVersion.EMPTY;
+        for (AppliedMigration appliedMigration : appliedMigrations) {
+            if (appliedMigration.getVersion().compareTo(version) < 0) {
+                unchangedMigrations.add(appliedMigration);
+                if (appliedMigration.getVersion().compareTo(after) > 0) {
+                    after = appliedMigration.getVersion();
+                }
+            }
+        }
+
+        Collection<ResolvedMigration> availableMigrations = migrationResolver.resolveMigrations();
+        List<AppliedMigration> changedMigrations = after == MigrationVersion.EMPTY
+                ? schemaVersionDAO.findAppliedMigrations()
+                : schemaVersionDAO.findAppliedMigrationsAfter(after);
+        if (statementMetricsDAO != null) {
+            loadStatementMetrics(changedMigrations);
+        }
+        unchangedMigrations.addAll(changedMigrations);
+
+        refresh(availableMigrations, unchangedMigrations);
+    }
 
-        migrationInfos = mergeAvailableAndAppliedMigrations(availableMigrations, appliedMigrations);
+    /**
+     * Attaches their recorded statement metrics to these applied Cql migrations.
+     *
+     * @param appliedMigrations The applied migrations.
+     */
+    private void loadStatementMetrics(List<AppliedMigration> appliedMigrations) {
+        Map<MigrationVersion, AppliedMigration> cqlMigrations = new LinkedHashMap<>();
+        for (AppliedMigration appliedMigration : appliedMigrations) {
+            if (appliedMigration.getType() == MigrationType.CQL) {
+                cqlMigrations.put(appliedMigration.getVersion(), appliedMigration);
+            }
+        }
+        for (Map.Entry<MigrationVersion, List<StatementMetrics>> metrics
+                : statementMetricsDAO.findStatementMetrics(cqlMigrations.keySet()).entrySet()) {
+            cqlMigrations.get(metrics.getKey()).setStatementMetrics(metrics.getValue());
+        }
+    }
+
+    /**
+     * Refreshes the info about these migrations.
+     *
+     * @param availableMigrations The available migrations.
+     * @param appliedMigrations   The applied migrations.
+     */
+    /* private -> testing */
+    void refresh(Collection<ResolvedMigration> availableMigrations, List<AppliedMigration> appliedMigrations) {
+        this.appliedMigrations = appliedMigrations;
+        index(mergeAvailableAndAppliedMigrations(availableMigrations, appliedMigrations));
+        releaseUnusedContent();
 
         if (MigrationVersion.CURRENT == target && current() != null) {
             target = current().getVersion();
@@ -73,11 +186,65 @@ public class MigrationInfoService {
     }
 
     /**
-     * Merges the available and the applied migrations to produce one fully aggregated and consolidated list.
+     * Computes the state of each of these migration infos once and indexes them by state and by query.
+     *
+     * @param migrationInfos The migration infos, sorted by version.
+     */
+    private void index(List<MigrationInfo> migrationInfos) {
+        this.migrationInfos = migrationInfos;
+        migrationInfosByState = new EnumMap<MigrationState, List<MigrationInfo>>(MigrationState.class);
+        appliedInfos = new ArrayList<MigrationInfo>();
+        resolvedInfos = new ArrayList<MigrationInfo>();
+        failedInfos = new ArrayList<MigrationInfo>();
+        futureInfos = new ArrayList<MigrationInfo>();
+        currentInfo = null;
+
+        for (MigrationInfo migrationInfo : migrationInfos) {
+            MigrationState state = migrationInfo.getState();
+            List<MigrationInfo> infosOfState = migrationInfosByState.get(state);
+            if (infosOfState == null) {
+                infosOfState = new ArrayList<MigrationInfo>();
+                migrationInfosByState.put(state, infosOfState);
+            }
+            infosOfState.add(migrationInfo);
+
+            if (state.isApplied()) {
+                appliedInfos.add(migrationInfo);
+                currentInfo = migrationInfo;
+            }
+            if (state.isResolved()) {
+                resolvedInfos.add(migrationInfo);
+            }
+            if (state.isFailed()) {
+                failedInfos.add(migrationInfo);
+            }
+            if (state == MigrationState.FUTURE_SUCCESS || state == MigrationState.FUTURE_FAILED) {
+                futureInfos.add(migrationInfo);
+            }
+        }
+    }
+
+    /**
+     * Releases the script content held by the resolved migrations that are not pending, as only pending migrations
+     * will be executed.
+     */
+    private void releaseUnusedContent() {
+        for (MigrationInfo migrationInfo : migrationInfos) {
+            ResolvedMigration resolvedMigration = migrationInfo.getResolvedMigration();
+            if (resolvedMigration != null && resolvedMigration.getExecutor() != null
+                    && MigrationState.PENDING != migrationInfo.getState()) {
+                resolvedMigration.getExecutor().releaseContent();
+            }
+        }
+    }
+
+    /**
+     * Merges the available and the applied migrations to produce one fully aggregated and consolidated list. Both
+     * inputs are walked once in version order, as a merge-join; they are only sorted if they aren't already.
      *
      * @param resolvedMigrations The available migrations.
      * @param appliedMigrations  The applied migrations.
-     * @return The complete list of migrations.
+     * @return The complete list of migrations, sorted by version.
      */
     /* private -> testing */
     List<MigrationInfo> mergeAvailableAndAppliedMigrations(Collection<ResolvedMigration> resolvedMigrations, List<AppliedMigration> appliedMigrations) {
@@ -86,81 +253,100 @@ public class MigrationInfoService {
         context.pendingOrFuture = pendingOrFuture;
         context.target = target;
 
-        Map<MigrationVersion, ResolvedMigration> resolvedMigrationsMap = new TreeMap<MigrationVersion, ResolvedMigration>();
-        for (ResolvedMigration resolvedMigration : resolvedMigrations) {
-            MigrationVersion version = resolvedMigration.getVersion();
-            if (version.compareTo(context.lastResolved) > 0) {
-                context.lastResolved = version;
+        List<ResolvedMigration> resolved = sortedByVersion(resolvedMigrations, new ResolvedMigrationComparator());
+        List<AppliedMigration> applied = sortedByVersion(appliedMigrations, new Comparator<AppliedMigration>() {
+            public int compare(AppliedMigration o1, AppliedMigration o2) {
+                return o1.getVersion().compareTo(o2.getVersion());
             }
-            resolvedMigrationsMap.put(version, resolvedMigration);
+        });
+
+        if (!resolved.isEmpty()) {
+            context.lastResolved = resolved.get(resolved.size() - 1).getVersion();
+        }
+        if (!applied.isEmpty()) {
+            context.lastApplied = applied.get(applied.size() - 1).getVersion();
         }
 
-        Map<MigrationVersion, AppliedMigration> appliedMigrationsMap = new TreeMap<MigrationVersion, AppliedMigration>();
-        for (AppliedMigration appliedMigration : appliedMigrations) {
-            MigrationVersion version = appliedMigration.getVersion();
-            if (version.compareTo(context.lastApplied) > 0) {
-                context.lastApplied = version;
+        List<MigrationInfo> migrationInfos = new ArrayList<>(Math.max(resolved.size(), applied.size()));
+        int resolvedIndex = 0;
+        int appliedIndex = 0;
+        while (resolvedIndex < resolved.size() || appliedIndex < applied.size()) {
+            ResolvedMigration resolvedMigration = null;
+            AppliedMigration appliedMigration = null;
+
+            int compared;
+            if (resolvedIndex == resolved.size()) {
+                compared = 1;
+            } else if (appliedIndex == applied.size()) {
+                compared = -1;
+            } else {
+                compared = resolved.get(resolvedIndex).getVersion().compareTo(applied.get(appliedIndex).getVersion());
             }
-            if (appliedMigration.getType() == MigrationType.SCHEMA) {
-                context.schema = version;
+
+            if (compared <= 0) {
+                resolvedMigration = resolved.get(resolvedIndex);
+                // The last one wins when a version is resolved more than once.
+                while (++resolvedIndex < resolved.size()
+                        && resolved.get(resolvedIndex).getVersion().equals(resolvedMigration.getVersion())) {
+                    resolvedMigration = resolved.get(resolvedIndex);
+                }
             }
-            if (appliedMigration.getType() == MigrationType.BASELINE) {
-                context.baseline = version;
+            if (compared >= 0) {
+                appliedMigration = applied.get(appliedIndex);
+                while (++appliedIndex < applied.size()
+                        && applied.get(appliedIndex).getVersion().equals(appliedMigration.getVersion())) {
+                    appliedMigration = applied.get(appliedIndex);
+                }
+                if (appliedMigration.getType() == MigrationType.SCHEMA) {
+                    context.schema = appliedMigration.getVersion();
+                }
+                if (appliedMigration.getType() == MigrationType.BASELINE) {
+                    context.baseline = appliedMigration.getVersion();
+                }
             }
-            appliedMigrationsMap.put(version, appliedMigration);
-        }
 
-        Set<MigrationVersion> allVersions = new HashSet<MigrationVersion>();
-        allVersions.addAll(resolvedMigrationsMap.keySet());
-        allVersions.addAll(appliedMigrationsMap.keySet());
-
-        List<MigrationInfo> migrationInfos = new ArrayList<>();
-        for (MigrationVersion version : allVersions) {
-            ResolvedMigration resolvedMigration = resolvedMigrationsMap.get(version);
-            AppliedMigration appliedMigration = appliedMigrationsMap.get(version);
             migrationInfos.add(new MigrationInfo(resolvedMigration, appliedMigration, context));
         }
 
-        Collections.sort(migrationInfos);
-
         return migrationInfos;
     }
 
+    /**
+     * Returns these migrations sorted by version, without copying them if they already are.
+     *
+     * @param migrations The migrations.
+     * @param comparator The comparator of their versions.
+     * @param <T>        The type of the migrations.
+     * @return The sorted migrations.
+     */
+    private static <T> List<T> sortedByVersion(Collection<T> migrations, Comparator<? super T> comparator) {
+        List<T> list = migrations instanceof List ? (List<T>) migrations : new ArrayList<T>(migrations);
+        T previous = null;
+        for (T migration : list) {
+            if (previous != null && comparator.compare(previous, migration) > 0) {
+                List<T> sorted = new ArrayList<T>(list);
+                Collections.sort(sorted, comparator);
+                return sorted;
+            }
+            previous = migration;
+        }
+        return list;
+    }
+
     public MigrationInfo[] all() {
         return migrationInfos.toArray(new MigrationInfo[migrationInfos.size()]);
     }
 
     public MigrationInfo current() {
-        for (int i = migrationInfos.size() - 1; i >= 0; i--) {
-            MigrationInfo migrationInfo = migrationInfos.get(i);
-            if (migrationInfo.getState().isApplied()) {
-                return migrationInfo;
-            }
-        }
-
-        return null;
+        return currentInfo;
     }
 
     public MigrationInfo[] pending() {
-        List<MigrationInfo> pendingMigrations = new ArrayList<MigrationInfo>();
-        for (MigrationInfo migrationInfo : migrationInfos) {
-            if (MigrationState.PENDING == migrationInfo.getState()) {
-                pendingMigrations.add(migrationInfo);
-            }
-        }
-
-        return pendingMigrations.toArray(new MigrationInfo[pendingMigrations.size()]);
+        return withState(MigrationState.PENDING);
     }
 
     public MigrationInfo[] applied() {
-        List<MigrationInfo> appliedMigrations = new ArrayList<MigrationInfo>();
-        for (MigrationInfo migrationInfo : migrationInfos) {
-            if (migrationInfo.getState().isApplied()) {
-                appliedMigrations.add(migrationInfo);
-            }
-        }
-
-        return appliedMigrations.toArray(new MigrationInfo[appliedMigrations.size()]);
+        return appliedInfos.toArray(new MigrationInfo[appliedInfos.size()]);
     }
 
     /**
@@ -169,14 +355,7 @@ public class MigrationInfoService {
      * @return The resolved migrations. An empty array if none.
      */
     public MigrationInfo[] resolved() {
-        List<MigrationInfo> resolvedMigrations = new ArrayList<MigrationInfo>();
-        for (MigrationInfo migrationInfo : migrationInfos) {
-            if (migrationInfo.getState().isResolved()) {
-                resolvedMigrations.add(migrationInfo);
-            }
-        }
-
-        return resolvedMigrations.toArray(new MigrationInfo[resolvedMigrations.size()]);
+        return resolvedInfos.toArray(new MigrationInfo[resolvedInfos.size()]);
     }
 
     /**
@@ -185,14 +364,7 @@ public class MigrationInfoService {
      * @return The failed migrations. An empty array if none.
      */
     public MigrationInfo[] failed() {
-        List<MigrationInfo> failedMigrations = new ArrayList<MigrationInfo>();
-        for (MigrationInfo migrationInfo : migrationInfos) {
-            if (migrationInfo.getState().isFailed()) {
-                failedMigrations.add(migrationInfo);
-            }
-        }
-
-        return failedMigrations.toArray(new MigrationInfo[failedMigrations.size()]);
+        return failedInfos.toArray(new MigrationInfo[failedInfos.size()]);
     }
 
     /**
@@ -201,15 +373,7 @@ public class MigrationInfoService {
      * @return The future migrations. An empty array if none.
      */
     public MigrationInfo[] future() {
-        List<MigrationInfo> futureMigrations = new ArrayList<MigrationInfo>();
-        for (MigrationInfo migrationInfo : migrationInfos) {
-            if ((migrationInfo.getState() == MigrationState.FUTURE_SUCCESS)
-                    || (migrationInfo.getState() == MigrationState.FUTURE_FAILED)) {
-                futureMigrations.add(migrationInfo);
-            }
-        }
-
-        return futureMigrations.toArray(new MigrationInfo[futureMigrations.size()]);
+        return futureInfos.toArray(new MigrationInfo[futureInfos.size()]);
     }
 
     /**
@@ -218,14 +382,21 @@ public class MigrationInfoService {
      * @return The out of order migrations. An empty array if none.
      */
     public MigrationInfo[] outOfOrder() {
-        List<MigrationInfo> outOfOrderMigrations = new ArrayList<MigrationInfo>();
-        for (MigrationInfo migrationInfo : migrationInfos) {
-            if (migrationInfo.getState() == MigrationState.OUT_OF_ORDER) {
-                outOfOrderMigrations.add(migrationInfo);
-            }
-        }
+        return withState(MigrationState.OUT_OF_ORDER);
+    }
 
-        return outOfOrderMigrations.toArray(new MigrationInfo[outOfOrderMigrations.size()]);
+    /**
+     * Retrieves the infos about the migrations in this state.
+     *
+     * @param state The state.
+     * @return The migrations, sorted by version. An empty array if none.
+     */
+    public MigrationInfo[] withState(MigrationState state) {
+        List<MigrationInfo> infosOfState = migrationInfosByState.get(state);
+        if (infosOfState == null) {
+            return new MigrationInfo[0];
+        }
+        return infosOfState.toArray(new MigrationInfo[infosOfState.size()]);
     }
 
     /**
@@ -110,7 +110,21 @@ public enum MigrationState {
      * It most likely failed during the installation of a future version of this deployable.
      * </p>
      */
-    FUTURE_FAILED("FutFail", false, true, true);
+    FUTURE_FAILED("FutFail", false, true, true),
+
+    /**
+     * <p>This background migration is running.</p>
+     * <p>
+     * Its prerequisites were applied, and its body runs in the background after the migration run that applied it,
+     * or after the next one if that run was interrupted.
+     * </p>
+     */
+    RUNNING("Running", true, true, false),
+
+    /**
+     * This background migration completed.
+     */
+    COMPLETED("Complet", true, true, false);
 
     /**
      * The name suitable for display to the end-user.
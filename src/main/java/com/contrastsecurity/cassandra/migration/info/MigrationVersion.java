@@ -17,11 +17,22 @@ package com.contrastsecurity.cassandra.migration.info;
 
 import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * A version of a migration, made of dot-separated numeric parts. Parts are held as longs, falling back to BigIntegers
+ * only for versions with a part that doesn't fit in a long, and the hash code is computed once, so that comparing and
+ * hashing versions doesn't allocate. Versions parsed through {@link #fromVersion(String)} are interned.
+ * <p>{@link #getSortKey()} encodes a version into bytes whose unsigned lexicographic order is the version order, so
+ * that Cassandra can sort versions in a blob clustering column.</p>
+ */
 public class MigrationVersion implements Comparable<MigrationVersion> {
 
     public static final MigrationVersion EMPTY = new MigrationVersion(null, "<< Empty Schema >>");
@@ -29,38 +40,98 @@ public class MigrationVersion implements Comparable<MigrationVersion> {
     public static final MigrationVersion CURRENT = new MigrationVersion(BigInteger.valueOf(-2), "<< Current Version >>");
 
     public static final String TABLE = "migration_version";
-    private List<BigInteger> versionParts;
-    private String displayText;
 
-    private static Pattern splitPattern = Pattern.compile("\\.(?=\\d)");
+    /**
+     * The maximum number of interned versions. Versions parsed once the limit is reached are not interned.
+     */
+    private static final int MAX_INTERNED = 65536;
+
+    /**
+     * The interned versions, by version string.
+     */
+    private static final ConcurrentMap<String, MigrationVersion> INTERNED = new ConcurrentHashMap<>();
+
+    /**
+     * The parts of the version, without trailing zeros.
+     */
+    private final long[] versionParts;
+
+    /**
+     * The parts of the version, without trailing zeros, when one of them doesn't fit in a long. {@code null} otherwise.
+     */
+    private final BigInteger[] bigVersionParts;
+
+    private final String displayText;
+
+    private final int hashCode;
+
+    /**
+     * The byte-comparable encoding of this version. Computed on first use.
+     */
+    private volatile byte[] sortKey;
+
+    /**
+     * The largest number of bytes of a version part that can be encoded in a sort key. Longer parts would collide
+     * with the sort key of {@link #LATEST}.
+     */
+    private static final int MAX_SORT_KEY_PART_LENGTH = 0xFE;
 
     public MigrationVersion(BigInteger version, String displayText) {
-        List<BigInteger> tmp = new ArrayList<>();
-        tmp.add(version);
-        this.displayText = displayText;
-        init(tmp, displayText);
+        this(displayText,
+                version == null ? Collections.<BigInteger>emptyList() : Collections.singletonList(version));
     }
 
-    private MigrationVersion(String version) {
-        String normalizedVersion = version.replace('_', '.');
-        init(tokenize(normalizedVersion), normalizedVersion);
+    private MigrationVersion(String normalizedVersion) {
+        this(normalizedVersion, tokenize(normalizedVersion));
     }
 
-    private void init(List<BigInteger> versionParts, String displayText) {
-        this.versionParts = versionParts;
+    private MigrationVersion(String displayText, List<BigInteger> versionParts) {
         this.displayText = displayText;
+
+        boolean fitsInLong = true;
+        for (BigInteger part : versionParts) {
+            fitsInLong &= part.bitLength() < Long.SIZE;
+        }
+
+        int hash = 1;
+        if (fitsInLong) {
+            long[] parts = new long[versionParts.size()];
+            for (int i = 0; i < parts.length; i++) {
+                parts[i] = versionParts.get(i).longValue();
+                hash = 31 * hash + (int) (parts[i] ^ (parts[i] >>> 32));
+            }
+            this.versionParts = parts;
+            this.bigVersionParts = null;
+        } else {
+            this.versionParts = null;
+            this.bigVersionParts = versionParts.toArray(new BigInteger[versionParts.size()]);
+            hash = Arrays.hashCode(bigVersionParts);
+        }
+        this.hashCode = hash;
     }
 
     public static MigrationVersion fromVersion(String version) {
         if ("current".equalsIgnoreCase(version)) return CURRENT;
         if (LATEST.getVersion().equals(version)) return LATEST;
         if (version == null) return EMPTY;
-        return new MigrationVersion(version);
+
+        MigrationVersion interned = INTERNED.get(version);
+        if (interned != null) {
+            return interned;
+        }
+        MigrationVersion migrationVersion = new MigrationVersion(version.replace('_', '.'));
+        if (INTERNED.size() < MAX_INTERNED) {
+            interned = INTERNED.putIfAbsent(version, migrationVersion);
+            if (interned != null) {
+                return interned;
+            }
+        }
+        return migrationVersion;
     }
 
     public String getVersion() {
-        if (this.equals(EMPTY)) return null;
-        if (this.equals(LATEST)) return Long.toString(Long.MAX_VALUE);
+        if (this == EMPTY) return null;
+        if (this == LATEST) return Long.toString(Long.MAX_VALUE);
         return displayText;
     }
 
@@ -79,12 +150,12 @@ public class MigrationVersion implements Comparable<MigrationVersion> {
 
         MigrationVersion version1 = (MigrationVersion) o;
 
-        return compareTo(version1) == 0;
+        return hashCode == version1.hashCode && compareTo(version1) == 0;
     }
 
     @Override
     public int hashCode() {
-        return versionParts == null ? 0 : versionParts.hashCode();
+        return hashCode;
     }
 
     @Override
@@ -93,16 +164,20 @@ public class MigrationVersion implements Comparable<MigrationVersion> {
             return 1;
         }
 
+        if (this == o) {
+            return 0;
+        }
+
         if (this == EMPTY) {
-            return o == EMPTY ? 0 : Integer.MIN_VALUE;
+            return Integer.MIN_VALUE;
         }
 
         if (this == CURRENT) {
-            return o == CURRENT ? 0 : Integer.MIN_VALUE;
+            return Integer.MIN_VALUE;
         }
 
         if (this == LATEST) {
-            return o == LATEST ? 0 : Integer.MAX_VALUE;
+            return Integer.MAX_VALUE;
         }
 
         if (o == EMPTY) {
@@ -116,9 +191,33 @@ public class MigrationVersion implements Comparable<MigrationVersion> {
         if (o == LATEST) {
             return Integer.MIN_VALUE;
         }
-        final List<BigInteger> elements1 = versionParts;
-        final List<BigInteger> elements2 = o.versionParts;
-        int largestNumberOfElements = Math.max(elements1.size(), elements2.size());
+
+        if (bigVersionParts != null || o.bigVersionParts != null) {
+            return compareBigVersionParts(o);
+        }
+
+        final long[] elements1 = versionParts;
+        final long[] elements2 = o.versionParts;
+        int largestNumberOfElements = Math.max(elements1.length, elements2.length);
+        for (int i = 0; i < largestNumberOfElements; i++) {
+            final int compared = Long.compare(getOrZero(elements1, i), getOrZero(elements2, i));
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compares the parts of this version with the parts of this other version, one of them not fitting in longs.
+     *
+     * @param o The other version.
+     * @return The comparison result.
+     */
+    private int compareBigVersionParts(MigrationVersion o) {
+        final BigInteger[] elements1 = getBigVersionParts();
+        final BigInteger[] elements2 = o.getBigVersionParts();
+        int largestNumberOfElements = Math.max(elements1.length, elements2.length);
         for (int i = 0; i < largestNumberOfElements; i++) {
             final int compared = getOrZero(elements1, i).compareTo(getOrZero(elements2, i));
             if (compared != 0) {
@@ -128,35 +227,153 @@ public class MigrationVersion implements Comparable<MigrationVersion> {
         return 0;
     }
 
-    private BigInteger getOrZero(List<BigInteger> elements, int i) {
-        return i < elements.size() ? elements.get(i) : BigInteger.ZERO;
+    /**
+     * @return The parts of this version as BigIntegers.
+     */
+    private BigInteger[] getBigVersionParts() {
+        if (bigVersionParts != null) {
+            return bigVersionParts;
+        }
+        BigInteger[] parts = new BigInteger[versionParts.length];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = BigInteger.valueOf(versionParts[i]);
+        }
+        return parts;
+    }
+
+    private static long getOrZero(long[] elements, int i) {
+        return i < elements.length ? elements[i] : 0;
+    }
+
+    private static BigInteger getOrZero(BigInteger[] elements, int i) {
+        return i < elements.length ? elements[i] : BigInteger.ZERO;
     }
 
     public String getTable() {
         return TABLE;
     }
 
-    private void setVersion(String version) {
-        String normalizedVersion = version.replace('_', '.');
-        this.versionParts = tokenize(normalizedVersion);
-        this.displayText = normalizedVersion;
+    /**
+     * Encodes this version into bytes whose unsigned lexicographic order is the order of the versions: each part is
+     * encoded as the number of bytes of its magnitude followed by the big-endian magnitude without leading zeros, so
+     * that a longer number sorts after a shorter one and a version sorts after its prefixes. {@link #EMPTY} encodes to
+     * no bytes and {@link #LATEST} to a single 0xFF byte, sorting before and after all other versions respectively.
+     *
+     * @return The sort key. Must not be modified.
+     * @throws CassandraMigrationException for {@link #CURRENT} or versions with negative or too large parts.
+     */
+    public byte[] getSortKey() {
+        byte[] key = sortKey;
+        if (key == null) {
+            key = encodeSortKey();
+            sortKey = key;
+        }
+        return key;
     }
 
-    private List<BigInteger> tokenize(String str) {
+    private byte[] encodeSortKey() {
+        if (this == EMPTY) {
+            return new byte[0];
+        }
+        if (this == LATEST) {
+            return new byte[]{(byte) 0xFF};
+        }
+        if (this == CURRENT) {
+            throw new CassandraMigrationException("The current version has no sort key");
+        }
+
+        if (bigVersionParts == null) {
+            int length = 0;
+            for (long part : versionParts) {
+                if (part < 0) {
+                    throw new CassandraMigrationException("Unable to encode negative version part: " + displayText);
+                }
+                length += 1 + magnitudeLength(part);
+            }
+            byte[] key = new byte[length];
+            int position = 0;
+            for (long part : versionParts) {
+                int magnitudeLength = magnitudeLength(part);
+                key[position++] = (byte) magnitudeLength;
+                for (int i = magnitudeLength - 1; i >= 0; i--) {
+                    key[position++] = (byte) (part >>> (8 * i));
+                }
+            }
+            return key;
+        }
+
+        ByteArrayOutputStream key = new ByteArrayOutputStream();
+        for (BigInteger part : bigVersionParts) {
+            if (part.signum() < 0) {
+                throw new CassandraMigrationException("Unable to encode negative version part: " + displayText);
+            }
+            byte[] magnitude = part.toByteArray();
+            int offset = 0;
+            while (offset < magnitude.length && magnitude[offset] == 0) {
+                offset++;
+            }
+            int magnitudeLength = magnitude.length - offset;
+            if (magnitudeLength > MAX_SORT_KEY_PART_LENGTH) {
+                throw new CassandraMigrationException("Version part too large to encode: " + displayText);
+            }
+            key.write(magnitudeLength);
+            key.write(magnitude, offset, magnitudeLength);
+        }
+        return key.toByteArray();
+    }
+
+    /**
+     * @param part A non-negative version part.
+     * @return The number of bytes of its magnitude, without leading zeros. 0 for 0.
+     */
+    private static int magnitudeLength(long part) {
+        return (Long.SIZE - Long.numberOfLeadingZeros(part) + 7) / 8;
+    }
+
+    /**
+     * Splits this version string on the dots followed by a digit and parses each part.
+     *
+     * @param str The normalized version string.
+     * @return The parts of the version, without trailing zeros.
+     */
+    private static List<BigInteger> tokenize(String str) {
         List<BigInteger> numbers = new ArrayList<>();
-        for (String number : splitPattern.split(str)) {
-            try {
-                numbers.add(new BigInteger(number));
-            } catch (NumberFormatException e) {
-                throw new CassandraMigrationException(
-                        "Invalid version containing non-numeric characters. Only 0..9 and . are allowed. Invalid version: "
-                                + str);
+        int start = 0;
+        for (int i = 0; i < str.length(); i++) {
+            if (str.charAt(i) == '.' && i + 1 < str.length() && isDigit(str.charAt(i + 1))) {
+                numbers.add(parsePart(str, start, i));
+                start = i + 1;
             }
         }
+        numbers.add(parsePart(str, start, str.length()));
+
         for (int i = numbers.size() - 1; i > 0; i--) {
-            if (!numbers.get(i).equals(BigInteger.ZERO)) break;
+            if (numbers.get(i).signum() != 0) break;
             numbers.remove(i);
         }
         return numbers;
     }
+
+    /**
+     * Parses this part of a version string.
+     *
+     * @param str   The version string.
+     * @param start The start of the part, inclusive.
+     * @param end   The end of the part, exclusive.
+     * @return The numeric value of the part.
+     */
+    private static BigInteger parsePart(String str, int start, int end) {
+        String number = str.substring(start, end);
+        try {
+            return new BigInteger(number);
+        } catch (NumberFormatException e) {
+            throw new CassandraMigrationException(
+                    "Invalid version containing non-numeric characters. Only 0..9 and . are allowed. Invalid version: "
+                            + str);
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
 }
@@ -42,6 +42,17 @@ public class ResolvedMigration {
      */
     private Integer checksum;
 
+    /**
+     * The name of the algorithm the checksum value was computed with. {@code null} for checksums provided by the
+     * migration itself.
+     */
+    private String checksumAlgorithm;
+
+    /**
+     * The full checksum value, as computed by the checksum algorithm. {@code null} if no algorithm was used.
+     */
+    private Long checksumValue;
+
     /**
      * The type of migration (CQL, JAVA_DRIVER)
      */
@@ -101,6 +112,28 @@ public class ResolvedMigration {
         this.checksum = checksum;
     }
 
+    public String getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    /**
+     * @param checksumAlgorithm The name of the algorithm the checksum value was computed with.
+     */
+    public void setChecksumAlgorithm(String checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    public Long getChecksumValue() {
+        return checksumValue;
+    }
+
+    /**
+     * @param checksumValue The full checksum value, as computed by the checksum algorithm.
+     */
+    public void setChecksumValue(Long checksumValue) {
+        this.checksumValue = checksumValue;
+    }
+
     public MigrationType getType() {
         return type;
     }
@@ -149,6 +182,10 @@ public class ResolvedMigration {
         ResolvedMigration migration = (ResolvedMigration) o;
 
         if (checksum != null ? !checksum.equals(migration.checksum) : migration.checksum != null) return false;
+        if (checksumAlgorithm != null ? !checksumAlgorithm.equals(migration.checksumAlgorithm) : migration.checksumAlgorithm != null)
+            return false;
+        if (checksumValue != null ? !checksumValue.equals(migration.checksumValue) : migration.checksumValue != null)
+            return false;
         if (description != null ? !description.equals(migration.description) : migration.description != null)
             return false;
         if (physicalLocation != null ? !physicalLocation.equals(migration.physicalLocation) : migration.physicalLocation != null)
@@ -164,6 +201,8 @@ public class ResolvedMigration {
         result = 31 * result + (description != null ? description.hashCode() : 0);
         result = 31 * result + (script != null ? script.hashCode() : 0);
         result = 31 * result + (checksum != null ? checksum.hashCode() : 0);
+        result = 31 * result + (checksumAlgorithm != null ? checksumAlgorithm.hashCode() : 0);
+        result = 31 * result + (checksumValue != null ? checksumValue.hashCode() : 0);
         result = 31 * result + type.hashCode();
         result = 31 * result + (physicalLocation != null ? physicalLocation.hashCode() : 0);
         return result;
@@ -0,0 +1,165 @@
+package com.contrastsecurity.cassandra.migration.info;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * The execution metrics of one statement of a Cql migration, as recorded alongside the migration history.
+ */
+public class StatementMetrics {
+    /**
+     * The maximum length of the statement text kept with the metrics.
+     */
+    public static final int MAX_STATEMENT_LENGTH = 200;
+
+    /**
+     * The position of the statement in its script, starting at 0.
+     */
+    private final int index;
+
+    /**
+     * The CRC32 of the full statement text, in hexadecimal.
+     */
+    private final String hash;
+
+    /**
+     * The statement text, truncated to {@link #MAX_STATEMENT_LENGTH} characters.
+     */
+    private final String statement;
+
+    /**
+     * The time taken to execute the statement, in nanoseconds, including the driver's retries and its wait for schema
+     * agreement.
+     */
+    private final long latencyNanos;
+
+    /**
+     * The node that coordinated the statement. {@code null} if unknown.
+     */
+    private final String coordinator;
+
+    /**
+     * The number of errors the driver retried or tried the next node on before the statement succeeded.
+     */
+    private final int retries;
+
+    /**
+     * Whether the cluster agreed on the schema once the statement completed.
+     */
+    private final boolean schemaInAgreement;
+
+    /**
+     * @param index             The position of the statement in its script, starting at 0.
+     * @param hash              The CRC32 of the full statement text, in hexadecimal.
+     * @param statement         The statement text, possibly truncated.
+     * @param latencyNanos      The time taken to execute the statement, in nanoseconds.
+     * @param coordinator       The node that coordinated the statement. {@code null} if unknown.
+     * @param retries           The number of errors the driver retried before the statement succeeded.
+     * @param schemaInAgreement Whether the cluster agreed on the schema once the statement completed.
+     */
+    public StatementMetrics(int index, String hash, String statement, long latencyNanos, String coordinator,
+                            int retries, boolean schemaInAgreement) {
+        this.index = index;
+        this.hash = hash;
+        this.statement = statement;
+        this.latencyNanos = latencyNanos;
+        this.coordinator = coordinator;
+        this.retries = retries;
+        this.schemaInAgreement = schemaInAgreement;
+    }
+
+    /**
+     * Creates the metrics of this statement, hashing and truncating its text.
+     *
+     * @param index             The position of the statement in its script, starting at 0.
+     * @param statement         The full statement text.
+     * @param latencyNanos      The time taken to execute the statement, in nanoseconds.
+     * @param coordinator       The node that coordinated the statement. {@code null} if unknown.
+     * @param retries           The number of errors the driver retried before the statement succeeded.
+     * @param schemaInAgreement Whether the cluster agreed on the schema once the statement completed.
+     * @return The metrics.
+     */
+    public static StatementMetrics of(int index, String statement, long latencyNanos, String coordinator,
+                                      int retries, boolean schemaInAgreement) {
+        return new StatementMetrics(index, hash(statement), truncate(statement), latencyNanos, coordinator, retries,
+                schemaInAgreement);
+    }
+
+    /**
+     * @param statement The statement text.
+     * @return The CRC32 of the statement text, in hexadecimal.
+     */
+    public static String hash(String statement) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(statement.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc32.getValue());
+    }
+
+    /**
+     * @param statement The statement text.
+     * @return The statement text, truncated to {@link #MAX_STATEMENT_LENGTH} characters.
+     */
+    public static String truncate(String statement) {
+        if (statement.length() <= MAX_STATEMENT_LENGTH) {
+            return statement;
+        }
+        return statement.substring(0, MAX_STATEMENT_LENGTH - 3) + "...";
+    }
+
+    /**
+     * @return The position of the statement in its script, starting at 0.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return The CRC32 of the full statement text, in hexadecimal.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return The statement text, truncated to {@link #MAX_STATEMENT_LENGTH} characters.
+     */
+    public String getStatement() {
+        return statement;
+    }
+
+    /**
+     * @return The time taken to execute the statement, in nanoseconds.
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * @return The node that coordinated the statement. {@code null} if unknown.
+     */
+    public String getCoordinator() {
+        return coordinator;
+    }
+
+    /**
+     * @return The number of errors the driver retried before the statement succeeded.
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return Whether the cluster agreed on the schema once the statement completed.
+     */
+    public boolean isSchemaInAgreement() {
+        return schemaInAgreement;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + index + " " + hash + " " + (latencyNanos / 1000) + "us"
+                + (coordinator == null ? "" : " on " + coordinator)
+                + (retries > 0 ? " after " + retries + " retries" : "")
+                + (schemaInAgreement ? "" : " (schema not in agreement)");
+    }
+}
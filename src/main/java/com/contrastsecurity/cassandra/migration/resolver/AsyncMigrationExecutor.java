@@ -0,0 +1,19 @@
+package com.contrastsecurity.cassandra.migration.resolver;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Executes a migration asynchronously, so that the migration run controls how long it waits for it.
+ */
+public interface AsyncMigrationExecutor extends MigrationExecutor {
+    /**
+     * Starts the migration.
+     *
+     * @param session The session.
+     * @return The stage completing once the migration is done, exceptionally with a
+     * {@link com.contrastsecurity.cassandra.migration.CassandraMigrationException} if it failed.
+     */
+    CompletionStage<Void> executeAsync(CqlSession session);
+}
@@ -0,0 +1,24 @@
+package com.contrastsecurity.cassandra.migration.resolver;
+
+import com.contrastsecurity.cassandra.migration.api.MigrationProgress;
+import com.datastax.oss.driver.api.core.CqlSession;
+
+/**
+ * Executes a migration whose prerequisites are applied inline, and whose body ({@link #execute(CqlSession)}) runs in
+ * the background.
+ */
+public interface BackgroundMigrationExecutor extends MigrationExecutor {
+    /**
+     * Applies the prerequisites of the migration.
+     *
+     * @param session The session.
+     */
+    void prepare(CqlSession session);
+
+    /**
+     * @return {@code true} if the body resumes from its progress when run again, through
+     * {@link ResumableMigrationExecutor#execute(CqlSession, MigrationProgress)}.
+     * The executor then implements {@link ResumableMigrationExecutor}.
+     */
+    boolean isResumable();
+}
@@ -0,0 +1,17 @@
+package com.contrastsecurity.cassandra.migration.resolver;
+
+import com.contrastsecurity.cassandra.migration.api.ChecksumAlgorithm;
+
+/**
+ * Executes a migration based on a script, whose checksum can be computed again with any algorithm, eg: to verify it
+ * against a checksum recorded with another algorithm.
+ */
+public interface ChecksumMigrationExecutor extends MigrationExecutor {
+    /**
+     * Computes the checksum of the script with this algorithm.
+     *
+     * @param algorithm The checksum algorithm.
+     * @return The checksum value.
+     */
+    long calculateChecksum(ChecksumAlgorithm algorithm);
+}
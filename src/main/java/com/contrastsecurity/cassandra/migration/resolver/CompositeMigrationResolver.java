@@ -16,19 +16,31 @@
 package com.contrastsecurity.cassandra.migration.resolver;
 
 import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.config.MigrationConfigs;
 import com.contrastsecurity.cassandra.migration.config.ScriptsLocation;
 import com.contrastsecurity.cassandra.migration.config.ScriptsLocations;
 import com.contrastsecurity.cassandra.migration.info.ResolvedMigration;
 import com.contrastsecurity.cassandra.migration.resolver.cql.CqlMigrationResolver;
+import com.contrastsecurity.cassandra.migration.resolver.cql.WatchingCqlMigrationResolver;
+import com.contrastsecurity.cassandra.migration.resolver.data.DataMigrationResolver;
 import com.contrastsecurity.cassandra.migration.resolver.java.JavaMigrationResolver;
+import com.contrastsecurity.cassandra.migration.utils.scanner.Scanner;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Facility for retrieving and sorting the available migrations from the classpath through the various migration
- * resolvers.
+ * resolvers. When filesystem locations are watched, the migrations of a watched location are resolved again whenever one
+ * of its scripts changed, while those of the other resolvers are kept; the resolver must then be closed to stop
+ * watching.
  */
-public class CompositeMigrationResolver implements MigrationResolver {
+public class CompositeMigrationResolver implements MigrationResolver, Closeable {
     /**
      * The migration resolvers to use internally.
      */
@@ -40,6 +52,23 @@ public class CompositeMigrationResolver implements MigrationResolver {
      */
     private List<ResolvedMigration> availableMigrations;
 
+    /**
+     * The migrations found by each resolver during the last resolution, in the order of the resolvers. Empty until
+     * migrations are resolved.
+     */
+    private final Map<MigrationResolver, Collection<ResolvedMigration>> resolvedMigrations =
+            new LinkedHashMap<MigrationResolver, Collection<ResolvedMigration>>();
+
+    /**
+     * The resolvers watching filesystem locations for changes. Empty if locations are not watched.
+     */
+    private final List<WatchingCqlMigrationResolver> watchingResolvers = new ArrayList<WatchingCqlMigrationResolver>();
+
+    /**
+     * The number of threads resolving migrations. 1 resolves sequentially on the calling thread.
+     */
+    private final int parallelism;
+
     /**
      * Creates a new CompositeMigrationResolver.
      *
@@ -51,23 +80,50 @@ public class CompositeMigrationResolver implements MigrationResolver {
     public CompositeMigrationResolver(ClassLoader classLoader, ScriptsLocations locations,
                                       String encoding,
                                       MigrationResolver... customMigrationResolvers) {
+        this(classLoader, locations, MigrationConfigs.forEncoding(encoding), customMigrationResolvers);
+    }
+
+    /**
+     * Creates a new CompositeMigrationResolver.
+     *
+     * @param classLoader              The ClassLoader for loading migrations on the classpath.
+     * @param locations                The locations where migrations are located.
+     * @param configs                  The migration configuration (encoding, statement cache, ...).
+     * @param customMigrationResolvers Custom Migration Resolvers.
+     */
+    public CompositeMigrationResolver(ClassLoader classLoader, ScriptsLocations locations,
+                                      MigrationConfigs configs,
+                                      MigrationResolver... customMigrationResolvers) {
+        this.parallelism = configs.getResolverParallelism();
+        Scanner scanner = new Scanner(classLoader);
         for (ScriptsLocation location : locations.getLocations()) {
-            migrationResolvers.add(new CqlMigrationResolver(classLoader, location, encoding));
-            migrationResolvers.add(new JavaMigrationResolver(classLoader, location));
+            CqlMigrationResolver cqlMigrationResolver = new CqlMigrationResolver(classLoader, scanner, location, configs);
+            if (configs.isWatch() && location.isFileSystem()) {
+                WatchingCqlMigrationResolver watchingResolver = new WatchingCqlMigrationResolver(cqlMigrationResolver);
+                watchingResolvers.add(watchingResolver);
+                migrationResolvers.add(watchingResolver);
+            } else {
+                migrationResolvers.add(cqlMigrationResolver);
+            }
+            migrationResolvers.add(new JavaMigrationResolver(classLoader, scanner, location));
+            migrationResolvers.add(new DataMigrationResolver(classLoader, scanner, location, configs));
         }
 
         migrationResolvers.addAll(Arrays.asList(customMigrationResolvers));
     }
 
     /**
-     * Finds all available migrations using all migration resolvers (cql, java, ...).
+     * Finds all available migrations using all migration resolvers (cql, java, data, ...).
      *
      * @return The available migrations, sorted by version, oldest first. An empty list is returned when no migrations
      * can be found.
      * @throws CassandraMigrationException when the available migrations have overlapping versions.
      */
-    public List<ResolvedMigration> resolveMigrations() {
+    public synchronized List<ResolvedMigration> resolveMigrations() {
         if (availableMigrations == null) {
+            resolvedMigrations.putAll(resolveAll(migrationResolvers, parallelism));
+            availableMigrations = doFindAvailableMigrations();
+        } else if (resolveChanges()) {
             availableMigrations = doFindAvailableMigrations();
         }
 
@@ -75,14 +131,46 @@ public class CompositeMigrationResolver implements MigrationResolver {
     }
 
     /**
-     * Finds all available migrations using all migration resolvers (cql, java, ...).
+     * Resolves again the migrations of the watched locations whose scripts changed since the last resolution. All
+     * watchers are polled, so that each one catches up with its changes.
+     *
+     * @return {@code true} if the migrations of a watched location were resolved again.
+     */
+    private boolean resolveChanges() {
+        boolean changed = false;
+        for (WatchingCqlMigrationResolver watchingResolver : watchingResolvers) {
+            if (watchingResolver.pollChanges()) {
+                resolvedMigrations.put(watchingResolver, watchingResolver.resolveMigrations());
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Stops watching the filesystem locations, if any.
+     *
+     * @throws IOException when a watch service could not be closed.
+     */
+    public void close() throws IOException {
+        for (WatchingCqlMigrationResolver watchingResolver : watchingResolvers) {
+            watchingResolver.close();
+        }
+    }
+
+    /**
+     * Merges the migrations last found by each resolver.
      *
      * @return The available migrations, sorted by version, oldest first. An empty list is returned when no migrations
      * can be found.
      * @throws CassandraMigrationException when the available migrations have overlapping versions.
      */
     private List<ResolvedMigration> doFindAvailableMigrations() throws CassandraMigrationException {
-        List<ResolvedMigration> migrations = new ArrayList<ResolvedMigration>(collectMigrations(migrationResolvers));
+        Set<ResolvedMigration> merged = new HashSet<ResolvedMigration>();
+        for (Collection<ResolvedMigration> migrations : resolvedMigrations.values()) {
+            merged.addAll(migrations);
+        }
+        List<ResolvedMigration> migrations = new ArrayList<ResolvedMigration>(merged);
         Collections.sort(migrations, new ResolvedMigrationComparator());
 
         checkForIncompatibilities(migrations);
@@ -98,13 +186,94 @@ public class CompositeMigrationResolver implements MigrationResolver {
      */
     /* private -> for testing */
     static Collection<ResolvedMigration> collectMigrations(Collection<MigrationResolver> migrationResolvers) {
+        return collectMigrations(migrationResolvers, 1);
+    }
+
+    /**
+     * Collects all the migrations for all migration resolvers, running the resolvers in parallel when more than one
+     * thread is used.
+     *
+     * @param migrationResolvers The migration resolvers to check.
+     * @param parallelism        The number of threads to use. 1 collects sequentially on the calling thread.
+     * @return All migrations.
+     */
+    /* private -> for testing */
+    static Collection<ResolvedMigration> collectMigrations(Collection<MigrationResolver> migrationResolvers,
+                                                           int parallelism) {
+        // Like the sequential collection, the merged set is unordered: callers sort the migrations by version.
         Set<ResolvedMigration> migrations = new HashSet<ResolvedMigration>();
-        for (MigrationResolver migrationResolver : migrationResolvers) {
-            migrations.addAll(migrationResolver.resolveMigrations());
+        for (Collection<ResolvedMigration> resolved : resolveAll(migrationResolvers, parallelism).values()) {
+            migrations.addAll(resolved);
         }
         return migrations;
     }
 
+    /**
+     * Runs all the migration resolvers, in parallel on a dedicated ForkJoinPool when more than one thread is used.
+     * The cql migration resolvers are handed that pool to read their resources on it.
+     *
+     * @param migrationResolvers The migration resolvers to run.
+     * @param parallelism        The number of threads to use. 1 resolves sequentially on the calling thread.
+     * @return The migrations found by each resolver, in the order of the resolvers.
+     */
+    private static Map<MigrationResolver, Collection<ResolvedMigration>> resolveAll(
+            Collection<MigrationResolver> migrationResolvers, int parallelism) {
+        Map<MigrationResolver, Collection<ResolvedMigration>> resolved =
+                new LinkedHashMap<MigrationResolver, Collection<ResolvedMigration>>();
+        if (parallelism <= 1) {
+            for (MigrationResolver migrationResolver : migrationResolvers) {
+                resolved.put(migrationResolver, migrationResolver.resolveMigrations());
+            }
+            return resolved;
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Callable<Collection<ResolvedMigration>>> tasks =
+                    new ArrayList<Callable<Collection<ResolvedMigration>>>();
+            for (final MigrationResolver migrationResolver : migrationResolvers) {
+                tasks.add(new Callable<Collection<ResolvedMigration>>() {
+                    @Override
+                    public Collection<ResolvedMigration> call() {
+                        if (migrationResolver instanceof CqlMigrationResolver) {
+                            return ((CqlMigrationResolver) migrationResolver).resolveMigrations(pool);
+                        }
+                        return migrationResolver.resolveMigrations();
+                    }
+                });
+            }
+
+
+            Iterator<MigrationResolver> resolvers = migrationResolvers.iterator();
+            for (Future<Collection<ResolvedMigration>> result : pool.invokeAll(tasks)) {
+                resolved.put(resolvers.next(), getResult(result));
+            }
+            return resolved;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Retrieves the result of this completed resolution, rethrowing the failure of the resolver if any.
+     *
+     * @param result The result of the resolver.
+     * @return The migrations found by the resolver.
+     */
+    private static Collection<ResolvedMigration> getResult(Future<Collection<ResolvedMigration>> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CassandraMigrationException("Interrupted while resolving migrations", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new CassandraMigrationException("Unable to resolve migrations", e.getCause());
+        }
+    }
+
     /**
      * Checks for incompatible migrations.
      *
@@ -0,0 +1,20 @@
+package com.contrastsecurity.cassandra.migration.resolver;
+
+import com.contrastsecurity.cassandra.migration.info.StatementMetrics;
+import com.datastax.oss.driver.api.core.CqlSession;
+
+import java.util.List;
+
+/**
+ * Executes a migration made of statements, measuring each one so that its metrics are recorded alongside the
+ * migration history.
+ */
+public interface MeasuredMigrationExecutor extends MigrationExecutor {
+    /**
+     * Executes the migration this executor is associated with, measuring its statements.
+     *
+     * @param session The session to execute the migration with.
+     * @param metrics The list the metrics of the executed statements are added to, even if a statement fails.
+     */
+    void execute(CqlSession session, List<StatementMetrics> metrics);
+}
@@ -22,4 +22,11 @@ import com.datastax.oss.driver.api.core.CqlSession;
  */
 public interface MigrationExecutor {
     void execute(CqlSession session);
+
+    /**
+     * Drops the content this executor may hold in memory, once it is known the migration won't be executed. It is
+     * loaded again if the migration is executed later on. Does nothing by default.
+     */
+    default void releaseContent() {
+    }
 }
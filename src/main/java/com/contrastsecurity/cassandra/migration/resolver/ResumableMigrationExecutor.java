@@ -0,0 +1,17 @@
+package com.contrastsecurity.cassandra.migration.resolver;
+
+import com.contrastsecurity.cassandra.migration.api.MigrationProgress;
+import com.datastax.oss.driver.api.core.CqlSession;
+
+/**
+ * Executes a migration that can resume from the progress saved by a failed run.
+ */
+public interface ResumableMigrationExecutor extends MigrationExecutor {
+    /**
+     * Executes the migration.
+     *
+     * @param session  The session.
+     * @param progress The progress saved by previous runs.
+     */
+    void execute(CqlSession session, MigrationProgress progress);
+}
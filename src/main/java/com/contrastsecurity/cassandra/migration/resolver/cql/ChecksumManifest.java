@@ -0,0 +1,225 @@
+package com.contrastsecurity.cassandra.migration.resolver.cql;
+
+import com.contrastsecurity.cassandra.migration.logging.Log;
+import com.contrastsecurity.cassandra.migration.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Cache file of a filesystem location recording the size, modification time and checksum of every script, so that
+ * unchanged scripts don't have to be read again to compute their checksum.
+ * <p>Each line holds {@code size<TAB>lastModified<TAB>algorithm<TAB>checksum<TAB>script}. Scripts modified less than
+ * {@link #RACY_INTERVAL_MILLIS} before the manifest is written are not recorded, as a later modification within the
+ * same timestamp granularity could go unnoticed.</p>
+ * <p>The manifests are kept in a directory of their own, named after the location, so that the migration scripts
+ * directory, usually under version control, is left untouched.</p>
+ */
+public class ChecksumManifest {
+    private static final Log LOG = LogFactory.getLog(ChecksumManifest.class);
+
+    /**
+     * The suffix of the manifest files.
+     */
+    public static final String FILE_SUFFIX = ".checksums";
+
+    /**
+     * Scripts modified more recently than this before writing the manifest are rehashed on the next run.
+     */
+    private static final long RACY_INTERVAL_MILLIS = 2000;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The manifest file.
+     */
+    private final File file;
+
+    /**
+     * The entries read from the manifest file, by script name.
+     */
+    private final Map<String, Entry> storedEntries = new ConcurrentHashMap<>();
+
+    /**
+     * The entries of the scripts seen during this run, by script name.
+     */
+    private final Map<String, Entry> currentEntries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new manifest backed by this file.
+     *
+     * @param file The manifest file.
+     */
+    private ChecksumManifest(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the manifest of this filesystem location. A missing or unreadable file results in an empty manifest.
+     *
+     * @param manifestDir  The directory of the manifests.
+     * @param locationPath The path of the filesystem location.
+     * @return The manifest.
+     */
+    public static ChecksumManifest load(File manifestDir, String locationPath) {
+        ChecksumManifest manifest = new ChecksumManifest(getFile(manifestDir, locationPath));
+        if (!manifest.file.isFile()) {
+            return manifest;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest.file), UTF8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 5);
+                if (fields.length != 5) {
+                    continue;
+                }
+                manifest.storedEntries.put(fields[4], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                        fields[2], Long.parseLong(fields[3])));
+            }
+        } catch (IOException | NumberFormatException e) {
+            LOG.warn("Ignoring unreadable checksum manifest " + manifest.file + ": " + e.getMessage());
+            manifest.storedEntries.clear();
+        }
+        return manifest;
+    }
+
+    /**
+     * The manifest file of a location is named after the last element of its path, followed by the CRC32 of its
+     * absolute path to tell apart locations with the same name.
+     *
+     * @param manifestDir  The directory of the manifests.
+     * @param locationPath The path of the filesystem location.
+     * @return The manifest file of the location.
+     */
+    /* private -> for testing */
+    static File getFile(File manifestDir, String locationPath) {
+        File location = new File(locationPath).getAbsoluteFile();
+        CRC32 crc32 = new CRC32();
+        crc32.update(location.getPath().getBytes(UTF8));
+        String name = location.getName().replaceAll("[^A-Za-z0-9._-]", "_");
+        return new File(manifestDir, name + "-" + Long.toHexString(crc32.getValue()) + FILE_SUFFIX);
+    }
+
+    /**
+     * Retrieves the recorded checksum of this script, provided it didn't change since.
+     *
+     * @param script       The script name, relative to the location.
+     * @param size         The current size of the script.
+     * @param lastModified The current modification time of the script.
+     * @param algorithm    The name of the checksum algorithm.
+     * @return The checksum, or {@code null} if the script is unknown, changed or was checksummed with another
+     * algorithm.
+     */
+    public Long getChecksum(String script, long size, long lastModified, String algorithm) {
+        Entry entry = storedEntries.get(script);
+        if (entry == null || entry.size != size || entry.lastModified != lastModified
+                || !entry.algorithm.equals(algorithm)) {
+            return null;
+        }
+        currentEntries.put(script, entry);
+        return entry.checksum;
+    }
+
+    /**
+     * Records the checksum of this script.
+     *
+     * @param script       The script name, relative to the location.
+     * @param size         The size of the script.
+     * @param lastModified The modification time of the script.
+     * @param algorithm    The name of the checksum algorithm.
+     * @param checksum     The checksum of the script.
+     */
+    public void put(String script, long size, long lastModified, String algorithm, long checksum) {
+        currentEntries.put(script, new Entry(size, lastModified, algorithm, checksum));
+    }
+
+    /**
+     * Writes the entries of the scripts seen during this run back to the manifest file, if they changed.
+     */
+    public void save() {
+        long racyThreshold = System.currentTimeMillis() - RACY_INTERVAL_MILLIS;
+        Map<String, Entry> entries = new TreeMap<>();
+        for (Map.Entry<String, Entry> entry : currentEntries.entrySet()) {
+            if (entry.getValue().lastModified < racyThreshold) {
+                entries.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (entries.equals(storedEntries)) {
+            return;
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            File manifestDir = file.getParentFile();
+            if (!manifestDir.isDirectory() && !manifestDir.mkdirs() && !manifestDir.isDirectory()) {
+                throw new IOException("Unable to create directory " + manifestDir);
+            }
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), UTF8))) {
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    Entry value = entry.getValue();
+                    writer.write(value.size + "\t" + value.lastModified + "\t" + value.algorithm + "\t" + value.checksum + "\t" + entry.getKey() + "\n");
+                }
+            }
+            if (!tempFile.renameTo(file)) {
+                file.delete();
+                if (!tempFile.renameTo(file)) {
+                    throw new IOException("Unable to rename " + tempFile + " to " + file);
+                }
+            }
+            LOG.debug("Updated checksum manifest " + file + " (" + entries.size() + " scripts)");
+        } catch (IOException e) {
+            tempFile.delete();
+            LOG.warn("Unable to write checksum manifest " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * A script recorded in the manifest.
+     */
+    private static final class Entry {
+        private final long size;
+        private final long lastModified;
+        private final String algorithm;
+        private final long checksum;
+
+        private Entry(long size, long lastModified, String algorithm, long checksum) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.algorithm = algorithm;
+            this.checksum = checksum;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Entry entry = (Entry) o;
+
+            return size == entry.size && lastModified == entry.lastModified && checksum == entry.checksum
+                    && algorithm.equals(entry.algorithm);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (size ^ (size >>> 32));
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            result = 31 * result + algorithm.hashCode();
+            result = 31 * result + (int) (checksum ^ (checksum >>> 32));
+            return result;
+        }
+    }
+}
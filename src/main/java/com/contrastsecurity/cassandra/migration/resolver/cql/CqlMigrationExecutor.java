@@ -1,27 +1,63 @@
 package com.contrastsecurity.cassandra.migration.resolver.cql;
 
-import com.contrastsecurity.cassandra.migration.resolver.MigrationExecutor;
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.api.ChecksumAlgorithm;
+import com.contrastsecurity.cassandra.migration.info.StatementMetrics;
+import com.contrastsecurity.cassandra.migration.resolver.ChecksumMigrationExecutor;
+import com.contrastsecurity.cassandra.migration.resolver.MeasuredMigrationExecutor;
 import com.contrastsecurity.cassandra.migration.script.CqlScript;
+import com.contrastsecurity.cassandra.migration.script.CqlStatementCache;
+import com.contrastsecurity.cassandra.migration.utils.checksum.ChecksumAlgorithms;
 import com.contrastsecurity.cassandra.migration.utils.scanner.Resource;
 import com.datastax.oss.driver.api.core.CqlSession;
 
+import java.nio.charset.Charset;
+import java.util.List;
+
 /**
  * Database migration based on a cql file.
  */
-public class CqlMigrationExecutor implements MigrationExecutor {
+public class CqlMigrationExecutor implements MeasuredMigrationExecutor, ChecksumMigrationExecutor {
 
     /**
      * The Resource pointing to the cql script.
-     * The complete cql script is not held as a member field here because this would use the total size of all
-     * cql migrations files in heap space during db migration.
      */
     private final Resource cqlScriptResource;
 
+    /**
+     * The raw content of the cql script, as read for computing its checksum. Released through
+     * {@link #releaseContent()} once it is known the migration won't be executed, so that applied migrations don't use
+     * heap space during db migration. {@code null} if the content must be loaded from the resource.
+     */
+    private volatile byte[] content;
+
     /**
      * The encoding of the cql script.
      */
     private final String encoding;
 
+    /**
+     * The checksum of the cql script. {@code null} if unknown.
+     */
+    private final Long checksum;
+
+    /**
+     * The name of the algorithm the checksum was computed with, keying the statement cache with the checksum.
+     * {@code null} if unknown.
+     */
+    private final String checksumAlgorithmName;
+
+    /**
+     * The algorithm the checksum was computed with, to verify the content loaded when executing. {@code null} to not
+     * verify it.
+     */
+    private final ChecksumAlgorithm checksumAlgorithm;
+
+    /**
+     * The cache of parsed statements. {@code null} if none.
+     */
+    private final CqlStatementCache statementCache;
+
     /**
      * Creates a new cql script migration based on this cql script.
      *
@@ -29,13 +65,132 @@ public class CqlMigrationExecutor implements MigrationExecutor {
      * @param encoding          The encoding of this Cql migration.
      */
     public CqlMigrationExecutor(Resource cqlScriptResource, String encoding) {
+        this(cqlScriptResource, encoding, null, null);
+    }
+
+    /**
+     * Creates a new cql script migration based on this cql script.
+     *
+     * @param cqlScriptResource The resource containing the cql script.
+     * @param encoding          The encoding of this Cql migration.
+     * @param checksum          The CRC32 checksum of the cql script. {@code null} if unknown.
+     * @param statementCache    The cache of parsed statements. {@code null} if none.
+     */
+    public CqlMigrationExecutor(Resource cqlScriptResource, String encoding, Integer checksum,
+                                CqlStatementCache statementCache) {
+        this(cqlScriptResource, null, encoding, checksum, statementCache);
+    }
+
+    /**
+     * Creates a new cql script migration based on this already loaded cql script.
+     *
+     * @param cqlScriptResource The resource containing the cql script.
+     * @param content           The raw content of the resource. {@code null} to load it when executing.
+     * @param encoding          The encoding of this Cql migration.
+     * @param checksum          The CRC32 checksum of the cql script. {@code null} if unknown.
+     * @param statementCache    The cache of parsed statements. {@code null} if none.
+     */
+    public CqlMigrationExecutor(Resource cqlScriptResource, byte[] content, String encoding, Integer checksum,
+                                CqlStatementCache statementCache) {
+        this(cqlScriptResource, content, encoding, checksum == null ? null : checksum & 0xFFFFFFFFL,
+                ChecksumAlgorithms.CRC32, null, statementCache);
+    }
+
+    /**
+     * Creates a new cql script migration based on this cql script, verifying the content loaded when executing
+     * against its checksum, as the checksum may come from a manifest or an index rather than from that content.
+     *
+     * @param cqlScriptResource The resource containing the cql script.
+     * @param content           The raw content of the resource. {@code null} to load it when executing.
+     * @param encoding          The encoding of this Cql migration.
+     * @param checksum          The full checksum of the cql script. {@code null} if unknown.
+     * @param checksumAlgorithm The algorithm the checksum was computed with. {@code null} to not verify the content.
+     * @param statementCache    The cache of parsed statements. {@code null} if none.
+     */
+    public CqlMigrationExecutor(Resource cqlScriptResource, byte[] content, String encoding, Long checksum,
+                                ChecksumAlgorithm checksumAlgorithm, CqlStatementCache statementCache) {
+        this(cqlScriptResource, content, encoding, checksum,
+                checksumAlgorithm == null ? null : checksumAlgorithm.getName(), checksumAlgorithm, statementCache);
+    }
+
+    private CqlMigrationExecutor(Resource cqlScriptResource, byte[] content, String encoding, Long checksum,
+                                 String checksumAlgorithmName, ChecksumAlgorithm checksumAlgorithm,
+                                 CqlStatementCache statementCache) {
         this.cqlScriptResource = cqlScriptResource;
+        this.content = content;
         this.encoding = encoding;
+        this.checksum = checksum;
+        this.checksumAlgorithmName = checksumAlgorithmName;
+        this.checksumAlgorithm = checksumAlgorithm;
+        this.statementCache = statementCache;
+    }
+
+    /**
+     * Drops the content held for this migration. It is loaded again from the resource if the migration is executed
+     * later on.
+     */
+    @Override
+    public void releaseContent() {
+        content = null;
+    }
+
+    @Override
+    public long calculateChecksum(ChecksumAlgorithm algorithm) {
+        byte[] bytes = content;
+        return ChecksumAlgorithms.calculate(algorithm, bytes == null ? cqlScriptResource.loadAsBytes() : bytes);
     }
 
     @Override
     public void execute(CqlSession session) {
-        CqlScript cqlScript = new CqlScript(cqlScriptResource, encoding);
-        cqlScript.execute(session);
+        execute(session, null);
+    }
+
+    @Override
+    public void execute(CqlSession session, List<StatementMetrics> metrics) {
+        byte[] bytes = content;
+        if (bytes == null) {
+            bytes = cqlScriptResource.loadAsBytes();
+            verifyChecksum(bytes);
+        }
+        String cqlScriptSource = decode(bytes);
+
+        CqlScript cqlScript = new CqlScript(cqlScriptSource, cqlScriptResource, checksum, checksumAlgorithmName,
+                statementCache);
+        cqlScript.execute(session, metrics);
+    }
+
+    /**
+     * Verifies this content, loaded after the migration was resolved, against the checksum it was resolved with.
+     *
+     * @param bytes The raw content.
+     * @throws CassandraMigrationException when the script changed since it was resolved.
+     */
+    private void verifyChecksum(byte[] bytes) {
+        if (checksum == null || checksumAlgorithm == null) {
+            return;
+        }
+        long actual = ChecksumAlgorithms.calculate(checksumAlgorithm, bytes);
+        if (actual != checksum) {
+            throw new CassandraMigrationException("Migration script " + cqlScriptResource.getLocation()
+                    + " changed since it was resolved: its " + checksumAlgorithm.getName() + " checksum is " + actual
+                    + " instead of " + checksum);
+        }
+    }
+
+    /**
+     * Decodes this content using the encoding of this migration.
+     *
+     * @param bytes The raw content.
+     * @return The cql script, without UTF-8 BOM.
+     */
+    private String decode(byte[] bytes) {
+        String str = new String(bytes, Charset.forName(encoding));
+
+        //Strip UTF-8 BOM if necessary
+        if (str.startsWith("\ufeff")) {
+            return str.substring(1);
+        }
+
+        return str;
     }
 }
@@ -1,5 +1,7 @@
 package com.contrastsecurity.cassandra.migration.resolver.cql;
 
+import com.contrastsecurity.cassandra.migration.api.ChecksumAlgorithm;
+import com.contrastsecurity.cassandra.migration.config.MigrationConfigs;
 import com.contrastsecurity.cassandra.migration.config.MigrationType;
 import com.contrastsecurity.cassandra.migration.config.ScriptsLocation;
 import com.contrastsecurity.cassandra.migration.info.MigrationVersion;
@@ -7,14 +9,21 @@ import com.contrastsecurity.cassandra.migration.info.ResolvedMigration;
 import com.contrastsecurity.cassandra.migration.resolver.MigrationInfoHelper;
 import com.contrastsecurity.cassandra.migration.resolver.MigrationResolver;
 import com.contrastsecurity.cassandra.migration.resolver.ResolvedMigrationComparator;
+import com.contrastsecurity.cassandra.migration.script.CqlStatementCache;
 import com.contrastsecurity.cassandra.migration.utils.Pair;
+import com.contrastsecurity.cassandra.migration.utils.checksum.ChecksumAlgorithms;
 import com.contrastsecurity.cassandra.migration.utils.scanner.Resource;
 import com.contrastsecurity.cassandra.migration.utils.scanner.Scanner;
+import com.contrastsecurity.cassandra.migration.utils.scanner.classpath.ClassPathResource;
+import com.contrastsecurity.cassandra.migration.utils.scanner.filesystem.FileSystemResource;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.zip.CRC32;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Migration resolver for cql files on the classpath. The cql files must have names like
@@ -37,6 +46,21 @@ public class CqlMigrationResolver implements MigrationResolver {
      */
     private final String encoding;
 
+    /**
+     * The cache of parsed statements. {@code null} if none.
+     */
+    private final CqlStatementCache statementCache;
+
+    /**
+     * The directory of the checksum manifests of filesystem locations. {@code null} if no manifest is kept.
+     */
+    private final File checksumManifestDir;
+
+    /**
+     * The algorithm used to compute the checksum of the scripts.
+     */
+    private final ChecksumAlgorithm checksumAlgorithm;
+
     /**
      * The prefix for cql migrations
      */
@@ -61,34 +85,163 @@ public class CqlMigrationResolver implements MigrationResolver {
      * @param encoding    The encoding of the .cql file.
      */
     public CqlMigrationResolver(ClassLoader classLoader, ScriptsLocation location, String encoding) {
-        this.scanner = new Scanner(classLoader);
+        this(classLoader, location, MigrationConfigs.forEncoding(encoding));
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param classLoader The ClassLoader for loading migrations on the classpath.
+     * @param location    The location on the classpath where to migrations are located.
+     * @param configs     The migration configuration (encoding, statement cache, ...).
+     */
+    public CqlMigrationResolver(ClassLoader classLoader, ScriptsLocation location, MigrationConfigs configs) {
+        this(classLoader, new Scanner(classLoader), location, configs);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param classLoader The ClassLoader for loading migrations on the classpath.
+     * @param scanner     The scanner to use, possibly shared with other resolvers.
+     * @param location    The location on the classpath where to migrations are located.
+     * @param configs     The migration configuration (encoding, statement cache, ...).
+     */
+    public CqlMigrationResolver(ClassLoader classLoader, Scanner scanner, ScriptsLocation location,
+                                MigrationConfigs configs) {
+        this.scanner = scanner;
         this.location = location;
-        this.encoding = encoding;
+        this.encoding = configs.getEncoding();
+        this.statementCache = configs.getStatementCacheDir() == null
+                ? null
+                : new CqlStatementCache(new File(configs.getStatementCacheDir()));
+        this.checksumManifestDir = configs.isChecksumManifest()
+                ? new File(configs.getChecksumManifestDir())
+                : null;
+        this.checksumAlgorithm = ChecksumAlgorithms.forName(configs.getChecksumAlgorithm(), classLoader);
     }
 
+    /**
+     * Resolves the cql migrations of this location sequentially on the calling thread.
+     *
+     * @return The migrations, sorted by version.
+     */
     public List<ResolvedMigration> resolveMigrations() {
+        return resolveMigrations(null);
+    }
+
+    /**
+     * Resolves the cql migrations of this location, reading and checksumming the resources in parallel on this pool
+     * (see {@link com.contrastsecurity.cassandra.migration.resolver.CompositeMigrationResolver}).
+     *
+     * @param pool The pool to read the resources on. {@code null} to read them sequentially on the calling thread.
+     * @return The migrations, sorted by version.
+     */
+    public List<ResolvedMigration> resolveMigrations(ForkJoinPool pool) {
         List<ResolvedMigration> migrations = new ArrayList<>();
 
-        Resource[] resources = scanner.scanForResources(location, CQL_MIGRATION_PREFIX, CQL_MIGRATION_SUFFIX);
-        for (Resource resource : resources) {
-            ResolvedMigration resolvedMigration = extractMigrationInfo(resource);
-            resolvedMigration.setPhysicalLocation(resource.getLocationOnDisk());
-            resolvedMigration.setExecutor(new CqlMigrationExecutor(resource, encoding));
+        Resource[] resources = scanResources();
+        final ChecksumManifest manifest =
+                checksumManifestDir != null && location.isFileSystem()
+                        ? ChecksumManifest.load(checksumManifestDir, location.getPath())
+                        : null;
+        if (pool != null && resources.length > 1) {
+            List<ForkJoinTask<ResolvedMigration>> tasks = new ArrayList<>();
+            for (final Resource resource : resources) {
+                tasks.add(pool.submit(new Callable<ResolvedMigration>() {
+                    @Override
+                    public ResolvedMigration call() {
+                        return resolveMigration(resource, manifest);
+                    }
+                }));
+            }
+            for (ForkJoinTask<ResolvedMigration> task : tasks) {
+                migrations.add(task.join());
+            }
+        } else {
+            for (Resource resource : resources) {
+                migrations.add(resolveMigration(resource, manifest));
+            }
+        }
 
-            migrations.add(resolvedMigration);
+        if (manifest != null) {
+            manifest.save();
         }
 
         Collections.sort(migrations, new ResolvedMigrationComparator());
         return migrations;
     }
 
+    /**
+     * @return The cql migration resources of this location.
+     */
+    /* private -> for testing */ Resource[] scanResources() {
+        return scanner.scanForResources(location, CQL_MIGRATION_PREFIX, CQL_MIGRATION_SUFFIX);
+    }
+
+    /**
+     * @param fileName A file name.
+     * @return {@code true} if a file with this name is a cql migration.
+     */
+    /* private -> for testing */ static boolean isMigrationFileName(String fileName) {
+        return fileName.startsWith(CQL_MIGRATION_PREFIX) && fileName.endsWith(CQL_MIGRATION_SUFFIX)
+                && fileName.length() > (CQL_MIGRATION_PREFIX + CQL_MIGRATION_SUFFIX).length();
+    }
+
+    /**
+     * @return The location of the migrations.
+     */
+    /* private -> for testing */ ScriptsLocation getLocation() {
+        return location;
+    }
+
+    /**
+     * Reads this resource and resolves the migration it contains. The resource is not read if the manifest or the
+     * build-time index holds its checksum.
+     *
+     * @param resource The resource to resolve.
+     * @param manifest The checksum manifest of the location. {@code null} if none.
+     * @return The resolved migration.
+     */
+    /* private -> for testing */ ResolvedMigration resolveMigration(Resource resource, ChecksumManifest manifest) {
+        byte[] content = null;
+        Long checksum = null;
+
+        if (manifest != null && resource instanceof FileSystemResource) {
+            FileSystemResource fileSystemResource = (FileSystemResource) resource;
+            String script = extractScriptName(resource);
+            long size = fileSystemResource.getSize();
+            long lastModified = fileSystemResource.getLastModified();
+
+            checksum = manifest.getChecksum(script, size, lastModified, checksumAlgorithm.getName());
+            if (checksum == null) {
+                content = resource.loadAsBytes();
+                checksum = ChecksumAlgorithms.calculate(checksumAlgorithm, content);
+                manifest.put(script, size, lastModified, checksumAlgorithm.getName(), checksum);
+            }
+        } else if (resource instanceof ClassPathResource && checksumAlgorithm.getName()
+                .equals(((ClassPathResource) resource).getIndexedChecksumAlgorithm())) {
+            checksum = ((ClassPathResource) resource).getIndexedChecksum();
+        } else {
+            content = resource.loadAsBytes();
+            checksum = ChecksumAlgorithms.calculate(checksumAlgorithm, content);
+        }
+
+        ResolvedMigration resolvedMigration = extractMigrationInfo(resource, checksum);
+        resolvedMigration.setPhysicalLocation(resource.getLocationOnDisk());
+        resolvedMigration.setExecutor(new CqlMigrationExecutor(resource, content, encoding,
+                resolvedMigration.getChecksumValue(), checksumAlgorithm, statementCache));
+        return resolvedMigration;
+    }
+
     /**
      * Extracts the migration info for this resource.
      *
      * @param resource The resource to analyse.
+     * @param checksum The checksum of the resource, computed with the configured algorithm.
      * @return The migration info.
      */
-    private ResolvedMigration extractMigrationInfo(Resource resource) {
+    private ResolvedMigration extractMigrationInfo(Resource resource, long checksum) {
         ResolvedMigration migration = new ResolvedMigration();
 
         Pair<MigrationVersion, String> info =
@@ -99,7 +252,9 @@ public class CqlMigrationResolver implements MigrationResolver {
 
         migration.setScript(extractScriptName(resource));
 
-        migration.setChecksum(calculateChecksum(resource.loadAsBytes()));
+        migration.setChecksum((int) checksum);
+        migration.setChecksumAlgorithm(checksumAlgorithm.getName());
+        migration.setChecksumValue(checksum);
         migration.setType(MigrationType.CQL);
         return migration;
     }
@@ -117,16 +272,4 @@ public class CqlMigrationResolver implements MigrationResolver {
 
         return resource.getLocation().substring(location.getPath().length() + 1);
     }
-
-    /**
-     * Calculates the checksum of these bytes.
-     *
-     * @param bytes The bytes to calculate the checksum for.
-     * @return The crc-32 checksum of the bytes.
-     */
-    private static int calculateChecksum(byte[] bytes) {
-        final CRC32 crc32 = new CRC32();
-        crc32.update(bytes);
-        return (int) crc32.getValue();
-    }
 }
@@ -0,0 +1,269 @@
+package com.contrastsecurity.cassandra.migration.resolver.cql;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.info.ResolvedMigration;
+import com.contrastsecurity.cassandra.migration.logging.Log;
+import com.contrastsecurity.cassandra.migration.logging.LogFactory;
+import com.contrastsecurity.cassandra.migration.resolver.MigrationResolver;
+import com.contrastsecurity.cassandra.migration.resolver.ResolvedMigrationComparator;
+import com.contrastsecurity.cassandra.migration.utils.scanner.Resource;
+import com.contrastsecurity.cassandra.migration.utils.scanner.filesystem.FileSystemResource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cql migration resolver for a filesystem location that keeps the resolved migrations up to date through a
+ * {@link WatchService}, for long-running processes resolving migrations periodically. The location is scanned once;
+ * afterwards only the files reported as created, modified or deleted are resolved and checksummed again.
+ */
+public class WatchingCqlMigrationResolver implements MigrationResolver, Closeable {
+    private static final Log LOG = LogFactory.getLog(WatchingCqlMigrationResolver.class);
+
+    /**
+     * The resolver of the watched location.
+     */
+    private final CqlMigrationResolver delegate;
+
+    /**
+     * The root directory of the location.
+     */
+    private final Path root;
+
+    /**
+     * The watch service. {@code null} until the first resolution.
+     */
+    private WatchService watchService;
+
+    /**
+     * The watched directories, by watch key.
+     */
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+
+    /**
+     * The resolved migrations, by resource location.
+     */
+    private final Map<String, ResolvedMigration> migrations = new HashMap<>();
+
+    /**
+     * Creates a new watching resolver.
+     *
+     * @param delegate The resolver of the filesystem location to watch.
+     */
+    public WatchingCqlMigrationResolver(CqlMigrationResolver delegate) {
+        if (!delegate.getLocation().isFileSystem()) {
+            throw new CassandraMigrationException("Only filesystem locations can be watched: " + delegate.getLocation());
+        }
+        this.delegate = delegate;
+        this.root = Paths.get(delegate.getLocation().getPath());
+    }
+
+    public synchronized List<ResolvedMigration> resolveMigrations() {
+        if (watchService == null) {
+            rescan();
+        } else {
+            pollChanges();
+        }
+
+        List<ResolvedMigration> resolvedMigrations = new ArrayList<>(migrations.values());
+        Collections.sort(resolvedMigrations, new ResolvedMigrationComparator());
+        return resolvedMigrations;
+    }
+
+    /**
+     * Applies the changes reported by the watch service since the last call.
+     *
+     * @return {@code true} if the resolved migrations changed.
+     */
+    public synchronized boolean pollChanges() {
+        if (watchService == null) {
+            return true;
+        }
+
+        boolean changed = false;
+        boolean overflow = false;
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            Path directory = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                    overflow = true;
+                    continue;
+                }
+
+                Path path = directory.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    changed |= remove(path);
+                } else if (Files.isDirectory(path)) {
+                    changed |= addDirectory(path);
+                } else if (CqlMigrationResolver.isMigrationFileName(path.getFileName().toString())) {
+                    changed |= resolve(path);
+                }
+            }
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+        }
+
+        if (overflow) {
+            LOG.debug("Watch events lost for " + root + ", rescanning");
+            rescan();
+            return true;
+        }
+        return changed;
+    }
+
+    /**
+     * Registers all directories of the location and resolves all its migrations from scratch.
+     */
+    private void rescan() {
+        try {
+            close();
+            watchService = FileSystems.getDefault().newWatchService();
+            register(root);
+        } catch (IOException e) {
+            throw new CassandraMigrationException("Unable to watch location: " + delegate.getLocation(), e);
+        }
+
+        migrations.clear();
+        for (Resource resource : delegate.scanResources()) {
+            migrations.put(resource.getLocation(), delegate.resolveMigration(resource, null));
+        }
+        LOG.debug("Watching " + watchedDirectories.size() + " directories of " + root);
+    }
+
+    /**
+     * Registers this directory and its subdirectories with the watch service.
+     *
+     * @param directory The directory.
+     * @throws IOException when the directory could not be registered.
+     */
+    private void register(Path directory) throws IOException {
+        Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                        WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                        watchedDirectories.put(key, dir);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        LOG.debug("Skipping unreadable path: " + file + " (" + e.getMessage() + ")");
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+
+    /**
+     * Starts watching this new directory and resolves the migrations it already contains.
+     *
+     * @param directory The new directory.
+     * @return {@code true} if migrations were added.
+     */
+    private boolean addDirectory(Path directory) {
+        try {
+            register(directory);
+        } catch (IOException e) {
+            throw new CassandraMigrationException("Unable to watch directory: " + directory, e);
+        }
+
+        final List<Path> files = new ArrayList<>();
+        try {
+            Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                            if (attrs.isRegularFile()
+                                    && CqlMigrationResolver.isMigrationFileName(file.getFileName().toString())) {
+                                files.add(file);
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        } catch (IOException e) {
+            throw new CassandraMigrationException("Unable to scan directory: " + directory, e);
+        }
+
+        boolean changed = false;
+        for (Path file : files) {
+            changed |= resolve(file);
+        }
+        return changed;
+    }
+
+    /**
+     * Resolves this migration file again.
+     *
+     * @param file The created or modified file.
+     * @return {@code true} if the resolved migration changed.
+     */
+    private boolean resolve(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        FileSystemResource resource = new FileSystemResource(file.toString());
+        ResolvedMigration migration = delegate.resolveMigration(resource, null);
+        ResolvedMigration previous = migrations.put(resource.getLocation(), migration);
+        if (migration.equals(previous)) {
+            return false;
+        }
+        LOG.debug((previous == null ? "Added" : "Updated") + " migration " + resource.getLocation());
+        return true;
+    }
+
+    /**
+     * Forgets the migrations at this path and below.
+     *
+     * @param path The deleted file or directory.
+     * @return {@code true} if migrations were removed.
+     */
+    private boolean remove(Path path) {
+        String location = new FileSystemResource(path.toString()).getLocation();
+        boolean changed = false;
+        for (Iterator<String> iterator = migrations.keySet().iterator(); iterator.hasNext(); ) {
+            String migrationLocation = iterator.next();
+            if (migrationLocation.equals(location) || Paths.get(migrationLocation).startsWith(path)) {
+                iterator.remove();
+                LOG.debug("Removed migration " + migrationLocation);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Stops watching the location.
+     *
+     * @throws IOException when the watch service could not be closed.
+     */
+    public synchronized void close() throws IOException {
+        watchedDirectories.clear();
+        if (watchService != null) {
+            WatchService service = watchService;
+            watchService = null;
+            service.close();
+        }
+    }
+}
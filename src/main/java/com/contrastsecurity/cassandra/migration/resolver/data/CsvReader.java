@@ -0,0 +1,139 @@
+package com.contrastsecurity.cassandra.migration.resolver.data;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader of RFC 4180 CSV records: fields are separated by commas, and quoted fields may contain commas,
+ * line breaks and doubled quotes. Records are read one at a time, so that files of any size can be loaded.
+ */
+class CsvReader {
+    private final Reader reader;
+
+    /**
+     * The character read ahead. -2 if none.
+     */
+    private int next = -2;
+
+    /**
+     * The number of the line the last record started on.
+     */
+    private int lineNumber;
+
+    /**
+     * The number of the line being read.
+     */
+    private int currentLine;
+
+    /**
+     * @param reader    The reader, preferably buffered.
+     * @param firstLine The number of the first line read, for error messages.
+     */
+    CsvReader(Reader reader, int firstLine) {
+        this.reader = reader;
+        this.currentLine = firstLine;
+    }
+
+    /**
+     * Reads the next record. Blank lines are skipped.
+     *
+     * @return The fields of the record, {@code null} for unquoted empty fields. {@code null} at the end of the input.
+     * @throws IOException when the input could not be read, or ends within a quoted field.
+     */
+    List<String> next() throws IOException {
+        int c = read();
+        while (c == '\r' || c == '\n') {
+            c = skipLineBreak(c);
+        }
+        if (c == -1) {
+            return null;
+        }
+        lineNumber = currentLine;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (c == '"' && field.length() == 0 && !quoted) {
+                quoted = true;
+                readQuoted(field);
+                c = read();
+                continue;
+            }
+            if (c == ',' || c == '\r' || c == '\n' || c == -1) {
+                fields.add(quoted || field.length() > 0 ? field.toString() : null);
+                field.setLength(0);
+                quoted = false;
+                if (c == ',') {
+                    c = read();
+                    continue;
+                }
+                if (c != -1) {
+                    unread(skipLineBreak(c));
+                }
+                return fields;
+            }
+            field.append((char) c);
+            c = read();
+        }
+    }
+
+    /**
+     * @return The number of the line the last record started on.
+     */
+    int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Reads a quoted field, after its opening quote.
+     */
+    private void readQuoted(StringBuilder field) throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unterminated quoted field starting on line " + lineNumber);
+            }
+            if (c == '"') {
+                int following = read();
+                if (following != '"') {
+                    unread(following);
+                    return;
+                }
+            } else if (c == '\n') {
+                currentLine++;
+            }
+            field.append((char) c);
+        }
+    }
+
+    /**
+     * Consumes this line break.
+     *
+     * @param c The first character of the line break.
+     * @return The character following the line break.
+     */
+    private int skipLineBreak(int c) throws IOException {
+        currentLine++;
+        int following = read();
+        if (c == '\r' && following == '\n') {
+            following = read();
+        }
+        return following;
+    }
+
+    private int read() throws IOException {
+        if (next != -2) {
+            int c = next;
+            next = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void unread(int c) {
+        next = c;
+    }
+}
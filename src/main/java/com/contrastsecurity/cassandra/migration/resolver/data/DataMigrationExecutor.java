@@ -0,0 +1,440 @@
+package com.contrastsecurity.cassandra.migration.resolver.data;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.api.ChecksumAlgorithm;
+import com.contrastsecurity.cassandra.migration.api.ThrottledWriteExecutor;
+import com.contrastsecurity.cassandra.migration.logging.Log;
+import com.contrastsecurity.cassandra.migration.logging.LogFactory;
+import com.contrastsecurity.cassandra.migration.resolver.ChecksumMigrationExecutor;
+import com.contrastsecurity.cassandra.migration.utils.checksum.ChecksumAlgorithms;
+import com.contrastsecurity.cassandra.migration.utils.scanner.Resource;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.type.DataType;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+import com.datastax.oss.driver.api.core.type.codec.TypeCodec;
+import com.datastax.oss.driver.api.core.type.codec.registry.CodecRegistry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Database migration loading the rows of a .csv or .jsonl file into a table. The file is streamed: its rows are bound
+ * to a single prepared INSERT and executed through a {@link ThrottledWriteExecutor}, with a bounded number of writes
+ * in flight and a rate adapting to the cluster.
+ * <p>The file may start with directive lines:</p>
+ * <pre>
+ * # table: countries
+ * # columns: code, name=country_name
+ * # concurrency: 64
+ * # rate: 5000
+ * </pre>
+ * <ul>
+ * <li>{@code table}: the table to load, optionally qualified with its keyspace. (default: the description of the
+ * migration, with underscores)</li>
+ * <li>{@code columns}: the CSV fields to load, optionally mapped to a column with another name. (default: all the
+ * fields, into the columns with the same name)</li>
+ * <li>{@code concurrency}: the maximum number of writes in flight. (default: 32)</li>
+ * <li>{@code rate}: the maximum number of writes per second. (default: 1000)</li>
+ * </ul>
+ * Other lines starting with {@code #} are comments. The first other line of a .csv file is its header, naming its
+ * fields. Unquoted empty fields are left unset. Each line of a .jsonl file is a JSON object, inserted with
+ * {@code INSERT ... JSON}: its keys are the column names, and missing keys are left unset.
+ */
+public class DataMigrationExecutor implements ChecksumMigrationExecutor {
+    private static final Log LOG = LogFactory.getLog(DataMigrationExecutor.class);
+
+    /**
+     * The directive prefix of the file header.
+     */
+    private static final String DIRECTIVE_PREFIX = "#";
+
+    private static final String TABLE_DIRECTIVE = "table";
+    private static final String COLUMNS_DIRECTIVE = "columns";
+    private static final String CONCURRENCY_DIRECTIVE = "concurrency";
+    private static final String RATE_DIRECTIVE = "rate";
+
+    /**
+     * The maximum length of a directive line, for reading the header ahead.
+     */
+    private static final int MAX_DIRECTIVE_LENGTH = 8192;
+
+    /**
+     * The default maximum number of writes in flight.
+     */
+    private static final int DEFAULT_CONCURRENCY = 32;
+
+    /**
+     * The default maximum number of writes per second.
+     */
+    private static final int DEFAULT_RATE = 1000;
+
+    /**
+     * The Resource pointing to the data file.
+     */
+    private final Resource dataResource;
+
+    /**
+     * The encoding of the data file.
+     */
+    private final String encoding;
+
+    /**
+     * The table loaded when the file has no table directive.
+     */
+    private final String defaultTable;
+
+    /**
+     * Whether the file holds JSON lines rather than CSV records.
+     */
+    private final boolean json;
+
+    /**
+     * The checksum the migration was resolved with, to verify the data file before loading it. {@code null} to not
+     * verify it.
+     */
+    private final Long checksum;
+
+    /**
+     * The algorithm the checksum was computed with. {@code null} to not verify the data file.
+     */
+    private final ChecksumAlgorithm checksumAlgorithm;
+
+    /**
+     * Creates a new data migration based on this file.
+     *
+     * @param dataResource The resource containing the data file.
+     * @param encoding     The encoding of the data file.
+     * @param defaultTable The table loaded when the file has no table directive.
+     */
+    public DataMigrationExecutor(Resource dataResource, String encoding, String defaultTable) {
+        this(dataResource, encoding, defaultTable, null, null);
+    }
+
+    /**
+     * Creates a new data migration based on this file, verifying the file against its checksum before loading it, as
+     * the checksum may come from a manifest rather than from the file itself.
+     *
+     * @param dataResource      The resource containing the data file.
+     * @param encoding          The encoding of the data file.
+     * @param defaultTable      The table loaded when the file has no table directive.
+     * @param checksum          The checksum of the data file. {@code null} to not verify the file.
+     * @param checksumAlgorithm The algorithm the checksum was computed with. {@code null} to not verify the file.
+     */
+    public DataMigrationExecutor(Resource dataResource, String encoding, String defaultTable, Long checksum,
+                                 ChecksumAlgorithm checksumAlgorithm) {
+        this.dataResource = dataResource;
+        this.encoding = encoding;
+        this.defaultTable = defaultTable;
+        this.json = dataResource.getFilename().endsWith(DataMigrationResolver.JSON_SUFFIX);
+        this.checksum = checksum;
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    /**
+     * Computes the checksum of the data file with this algorithm, streaming it.
+     *
+     * @param algorithm The checksum algorithm.
+     * @return The checksum value.
+     */
+    @Override
+    public long calculateChecksum(ChecksumAlgorithm algorithm) {
+        try (InputStream inputStream = dataResource.loadAsStream()) {
+            return ChecksumAlgorithms.calculate(algorithm, inputStream);
+        } catch (IOException e) {
+            throw new CassandraMigrationException("Unable to read data file: " + dataResource.getLocation(), e);
+        }
+    }
+
+    @Override
+    public void execute(CqlSession session) {
+        verifyChecksum();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(dataResource.loadAsStream(), Charset.forName(encoding)))) {
+            Map<String, String> directives = new LinkedHashMap<>();
+            int lineNumber = readDirectives(reader, directives);
+
+            String table = directives.containsKey(TABLE_DIRECTIVE) ? directives.get(TABLE_DIRECTIVE) : defaultTable;
+            int concurrency = directives.containsKey(CONCURRENCY_DIRECTIVE)
+                    ? Integer.parseInt(directives.get(CONCURRENCY_DIRECTIVE))
+                    : DEFAULT_CONCURRENCY;
+            double rate = directives.containsKey(RATE_DIRECTIVE)
+                    ? Double.parseDouble(directives.get(RATE_DIRECTIVE))
+                    : DEFAULT_RATE;
+            long rowCount;
+            try (RowWriter writer = new RowWriter(new ThrottledWriteExecutor(session)
+                    .setMaxInFlight(Math.max(1, concurrency)).setMaxOpsPerSecond(rate))) {
+                rowCount = json
+                        ? loadJson(session, reader, table, lineNumber, writer)
+                        : loadCsv(session, reader, table, directives.get(COLUMNS_DIRECTIVE), lineNumber, writer);
+                writer.flush();
+            }
+            LOG.info("Loaded " + rowCount + " rows of " + dataResource.getFilename() + " into " + table);
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof CassandraMigrationException) {
+                throw (CassandraMigrationException) e;
+            }
+            throw new CassandraMigrationException("Unable to load " + dataResource.getLocation() + ": "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Verifies the data file against the checksum it was resolved with, streaming it.
+     *
+     * @throws CassandraMigrationException when the data file changed since it was resolved.
+     */
+    private void verifyChecksum() {
+        if (checksum == null || checksumAlgorithm == null) {
+            return;
+        }
+        long actual = calculateChecksum(checksumAlgorithm);
+        if (actual != checksum) {
+            throw new CassandraMigrationException("Data file " + dataResource.getLocation()
+                    + " changed since it was resolved: its " + checksumAlgorithm.getName() + " checksum is " + actual
+                    + " instead of " + checksum);
+        }
+    }
+
+    /**
+     * Reads the directives at the start of the file, leaving the reader on the first other line.
+     *
+     * @param reader     The reader of the file.
+     * @param directives Receives the directives, by lower case name.
+     * @return The number of the first other line.
+     * @throws IOException when the file could not be read.
+     */
+    /* private -> for testing */
+    static int readDirectives(BufferedReader reader, Map<String, String> directives) throws IOException {
+        //Strip UTF-8 BOM if necessary
+        reader.mark(1);
+        if (reader.read() != '\ufeff') {
+            reader.reset();
+        }
+
+        int lineNumber = 1;
+        while (true) {
+            reader.mark(MAX_DIRECTIVE_LENGTH);
+            String line = reader.readLine();
+            if (line == null) {
+                return lineNumber;
+            }
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith(DIRECTIVE_PREFIX)) {
+                reader.reset();
+                return lineNumber;
+            }
+            int colon = trimmed.indexOf(':');
+            if (colon > 0) {
+                String name = trimmed.substring(DIRECTIVE_PREFIX.length(), colon).trim().toLowerCase();
+                if (TABLE_DIRECTIVE.equals(name) || COLUMNS_DIRECTIVE.equals(name)
+                        || CONCURRENCY_DIRECTIVE.equals(name) || RATE_DIRECTIVE.equals(name)) {
+                    directives.put(name, trimmed.substring(colon + 1).trim());
+                }
+            }
+            lineNumber++;
+        }
+    }
+
+    /**
+     * Loads the JSON lines of the file.
+     *
+     * @return The number of rows loaded.
+     */
+    private long loadJson(CqlSession session, BufferedReader reader, String table, int lineNumber,
+                          RowWriter writer) throws IOException {
+        PreparedStatement insert = session.prepare("INSERT INTO " + table + " JSON ? DEFAULT UNSET");
+        long rowCount = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                writer.execute(insert.bind(line).setIdempotent(true), lineNumber);
+                rowCount++;
+            }
+            lineNumber++;
+        }
+        return rowCount;
+    }
+
+    /**
+     * Loads the CSV records of the file.
+     *
+     * @return The number of rows loaded.
+     */
+    private long loadCsv(CqlSession session, BufferedReader reader, String table, String columnsDirective,
+                         int lineNumber, RowWriter writer) throws IOException {
+        CsvReader csvReader = new CsvReader(reader, lineNumber);
+        List<String> header = csvReader.next();
+        if (header == null) {
+            return 0;
+        }
+
+        Map<String, String> columnsByField = parseColumns(columnsDirective, header);
+        List<Integer> fieldIndexes = new ArrayList<>();
+        List<String> columns = new ArrayList<>();
+        for (Map.Entry<String, String> columnByField : columnsByField.entrySet()) {
+            int fieldIndex = header.indexOf(columnByField.getKey());
+            if (fieldIndex < 0) {
+                throw new CassandraMigrationException("Unknown field " + columnByField.getKey() + " in the "
+                        + COLUMNS_DIRECTIVE + " directive of " + dataResource.getLocation());
+            }
+            fieldIndexes.add(fieldIndex);
+            columns.add(columnByField.getValue());
+        }
+
+        PreparedStatement insert = session.prepare(insertQuery(table, columns));
+        ColumnDefinitions variables = insert.getVariableDefinitions();
+        CodecRegistry codecRegistry = session.getContext().getCodecRegistry();
+        List<TypeCodec<Object>> codecs = new ArrayList<>();
+        for (int i = 0; i < variables.size(); i++) {
+            codecs.add(codecRegistry.codecFor(variables.get(i).getType()));
+        }
+
+        long rowCount = 0;
+        List<String> record;
+        while ((record = csvReader.next()) != null) {
+            BoundStatementBuilder statement = insert.boundStatementBuilder();
+            for (int i = 0; i < fieldIndexes.size(); i++) {
+                int fieldIndex = fieldIndexes.get(i);
+                String value = fieldIndex < record.size() ? record.get(fieldIndex) : null;
+                if (value != null) {
+                    statement.set(i, parse(value, variables.get(i).getType(), codecs.get(i), csvReader), codecs.get(i));
+                }
+            }
+            writer.execute(statement.setIdempotence(true).build(), csvReader.getLineNumber());
+            rowCount++;
+        }
+        return rowCount;
+    }
+
+    /**
+     * Parses the columns directive.
+     *
+     * @param columnsDirective The columns directive. {@code null} to load all the fields.
+     * @param header           The fields of the header.
+     * @return The columns, by field.
+     */
+    /* private -> for testing */
+    static Map<String, String> parseColumns(String columnsDirective, List<String> header) {
+        Map<String, String> columnsByField = new LinkedHashMap<>();
+        if (columnsDirective == null) {
+            for (String field : header) {
+                columnsByField.put(field, field);
+            }
+            return columnsByField;
+        }
+        for (String column : columnsDirective.split(",")) {
+            int equals = column.indexOf('=');
+            if (equals < 0) {
+                columnsByField.put(column.trim(), column.trim());
+            } else {
+                columnsByField.put(column.substring(0, equals).trim(), column.substring(equals + 1).trim());
+            }
+        }
+        return columnsByField;
+    }
+
+    /**
+     * @param table   The table.
+     * @param columns The columns, as in CQL.
+     * @return The INSERT statement of these columns.
+     */
+    /* private -> for testing */
+    static String insertQuery(String table, List<String> columns) {
+        StringBuilder names = new StringBuilder();
+        StringBuilder markers = new StringBuilder();
+        for (String column : columns) {
+            if (names.length() > 0) {
+                names.append(", ");
+                markers.append(", ");
+            }
+            names.append(column);
+            markers.append("?");
+        }
+        return "INSERT INTO " + table + " (" + names + ") VALUES (" + markers + ")";
+    }
+
+    /**
+     * Parses this CSV field into a value of this type. Fields are parsed as CQL literals, quoted if need be, eg: for
+     * timestamps and dates.
+     */
+    private Object parse(String value, DataType type, TypeCodec<Object> codec, CsvReader csvReader) {
+        if (DataTypes.TEXT.equals(type) || DataTypes.ASCII.equals(type)) {
+            return value;
+        }
+        try {
+            return codec.parse(value);
+        } catch (RuntimeException e) {
+            try {
+                return codec.parse("'" + value.replace("'", "''") + "'");
+            } catch (RuntimeException ignored) {
+                throw new CassandraMigrationException("Invalid " + type.asCql(false, true) + " value '" + value
+                        + "' on line " + csvReader.getLineNumber() + " of " + dataResource.getLocation(), e);
+            }
+        }
+    }
+
+    /**
+     * Executes the writes of the rows through a throttled executor, keeping the line of the first failed write for
+     * the error message. Stops at the first failed write.
+     */
+    private class RowWriter implements AutoCloseable {
+        private final ThrottledWriteExecutor writer;
+        private final AtomicReference<CassandraMigrationException> failure = new AtomicReference<>();
+
+        RowWriter(ThrottledWriteExecutor writer) {
+            this.writer = writer;
+        }
+
+        /**
+         * Executes this write once the rate and the writes in flight allow it.
+         *
+         * @param statement  The write.
+         * @param lineNumber The line of the row, for error messages.
+         * @throws CassandraMigrationException when a previous write failed.
+         */
+        void execute(Statement<?> statement, int lineNumber) {
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            writer.execute(statement).whenComplete((result, error) -> {
+                if (error != null) {
+                    failure.compareAndSet(null, new CassandraMigrationException("Unable to load line " + lineNumber
+                            + " of " + dataResource.getLocation() + ": " + error.getMessage(), error));
+                }
+            });
+        }
+
+        /**
+         * Waits for the writes in flight.
+         *
+         * @throws CassandraMigrationException when a write failed.
+         */
+        void flush() {
+            try {
+                writer.flush();
+            } catch (CassandraMigrationException e) {
+                throw failure.get() != null ? failure.get() : e;
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+        }
+
+        @Override
+        public void close() {
+            writer.close();
+        }
+    }
+}
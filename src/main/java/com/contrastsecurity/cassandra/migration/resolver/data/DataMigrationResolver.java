@@ -0,0 +1,188 @@
+package com.contrastsecurity.cassandra.migration.resolver.data;
+
+import com.contrastsecurity.cassandra.migration.api.ChecksumAlgorithm;
+import com.contrastsecurity.cassandra.migration.config.MigrationConfigs;
+import com.contrastsecurity.cassandra.migration.config.MigrationType;
+import com.contrastsecurity.cassandra.migration.config.ScriptsLocation;
+import com.contrastsecurity.cassandra.migration.info.MigrationVersion;
+import com.contrastsecurity.cassandra.migration.info.ResolvedMigration;
+import com.contrastsecurity.cassandra.migration.resolver.MigrationInfoHelper;
+import com.contrastsecurity.cassandra.migration.resolver.MigrationResolver;
+import com.contrastsecurity.cassandra.migration.resolver.ResolvedMigrationComparator;
+import com.contrastsecurity.cassandra.migration.resolver.cql.ChecksumManifest;
+import com.contrastsecurity.cassandra.migration.utils.Pair;
+import com.contrastsecurity.cassandra.migration.utils.checksum.ChecksumAlgorithms;
+import com.contrastsecurity.cassandra.migration.utils.scanner.Resource;
+import com.contrastsecurity.cassandra.migration.utils.scanner.Scanner;
+import com.contrastsecurity.cassandra.migration.utils.scanner.classpath.ClassPathResource;
+import com.contrastsecurity.cassandra.migration.utils.scanner.filesystem.FileSystemResource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Migration resolver for data files loading rows into a table. The data files must have names like
+ * V12__countries.csv or V12_1__countries.jsonl. Their checksum is computed while streaming them, so that large files
+ * are never held in memory, and is kept in a checksum manifest of filesystem locations if configured, in the
+ * {@value #MANIFEST_SUBDIR} subdirectory of the manifests directory.
+ */
+public class DataMigrationResolver implements MigrationResolver {
+
+    /**
+     * The prefix for data migrations
+     */
+    private final static String DATA_MIGRATION_PREFIX = "V";
+
+    /**
+     * The separator for data migrations
+     */
+    private final static String DATA_MIGRATION_SEPARATOR = "__";
+
+    /**
+     * The suffix for CSV data migrations
+     */
+    final static String CSV_SUFFIX = ".csv";
+
+    /**
+     * The suffix for JSON lines data migrations
+     */
+    final static String JSON_SUFFIX = ".jsonl";
+
+    /**
+     * The subdirectory of the manifests directory holding the manifests of the data files, as a manifest only keeps
+     * the files seen by the resolver that saves it.
+     */
+    final static String MANIFEST_SUBDIR = "data";
+
+    /**
+     * The scanner to use.
+     */
+    private final Scanner scanner;
+
+    /**
+     * The base directory on the classpath where to migrations are located.
+     */
+    private final ScriptsLocation location;
+
+    /**
+     * The encoding of the data files.
+     */
+    private final String encoding;
+
+    /**
+     * The algorithm used to compute the checksum of the data files.
+     */
+    private final ChecksumAlgorithm checksumAlgorithm;
+
+    /**
+     * The directory of the checksum manifests of filesystem locations. {@code null} if no manifest is kept.
+     */
+    private final File checksumManifestDir;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param classLoader The ClassLoader for loading migrations on the classpath.
+     * @param scanner     The scanner to use, possibly shared with other resolvers.
+     * @param location    The location on the classpath where to migrations are located.
+     * @param configs     The migration configuration (encoding, checksum algorithm, checksum manifest, ...).
+     */
+    public DataMigrationResolver(ClassLoader classLoader, Scanner scanner, ScriptsLocation location,
+                                 MigrationConfigs configs) {
+        this.scanner = scanner;
+        this.location = location;
+        this.encoding = configs.getEncoding();
+        this.checksumAlgorithm = ChecksumAlgorithms.forName(configs.getChecksumAlgorithm(), classLoader);
+        this.checksumManifestDir = configs.isChecksumManifest()
+                ? new File(configs.getChecksumManifestDir(), MANIFEST_SUBDIR)
+                : null;
+    }
+
+    public List<ResolvedMigration> resolveMigrations() {
+        List<ResolvedMigration> migrations = new ArrayList<>();
+        ChecksumManifest manifest = checksumManifestDir != null && location.isFileSystem()
+                ? ChecksumManifest.load(checksumManifestDir, location.getPath())
+                : null;
+        for (String suffix : new String[]{CSV_SUFFIX, JSON_SUFFIX}) {
+            for (Resource resource : scanner.scanForResources(location, DATA_MIGRATION_PREFIX, suffix)) {
+                migrations.add(resolveMigration(resource, suffix, manifest));
+            }
+        }
+        if (manifest != null) {
+            manifest.save();
+        }
+        Collections.sort(migrations, new ResolvedMigrationComparator());
+        return migrations;
+    }
+
+    /**
+     * Resolves the migration of this data file, streaming it to compute its checksum unless the manifest or the
+     * build-time index holds it. A data file whose checksum was not computed from its content is verified against
+     * its checksum before it is loaded.
+     *
+     * @param resource The data file.
+     * @param suffix   The suffix of the data file.
+     * @param manifest The checksum manifest of the location. {@code null} if none.
+     * @return The resolved migration.
+     */
+    private ResolvedMigration resolveMigration(Resource resource, String suffix, ChecksumManifest manifest) {
+        Pair<MigrationVersion, String> info = MigrationInfoHelper.extractVersionAndDescription(
+                resource.getFilename(), DATA_MIGRATION_PREFIX, DATA_MIGRATION_SEPARATOR, suffix);
+        String defaultTable = info.getRight().replace(' ', '_');
+        String script = extractScriptName(resource);
+
+        Long checksum = null;
+        boolean verify = false;
+        if (manifest != null && resource instanceof FileSystemResource) {
+            FileSystemResource fileSystemResource = (FileSystemResource) resource;
+            long size = fileSystemResource.getSize();
+            long lastModified = fileSystemResource.getLastModified();
+
+            checksum = manifest.getChecksum(script, size, lastModified, checksumAlgorithm.getName());
+            if (checksum == null) {
+                checksum = new DataMigrationExecutor(resource, encoding, defaultTable)
+                        .calculateChecksum(checksumAlgorithm);
+                manifest.put(script, size, lastModified, checksumAlgorithm.getName(), checksum);
+            } else {
+                verify = true;
+            }
+        } else if (resource instanceof ClassPathResource && checksumAlgorithm.getName()
+                .equals(((ClassPathResource) resource).getIndexedChecksumAlgorithm())) {
+            checksum = ((ClassPathResource) resource).getIndexedChecksum();
+            verify = true;
+        } else {
+            checksum = new DataMigrationExecutor(resource, encoding, defaultTable).calculateChecksum(checksumAlgorithm);
+        }
+        DataMigrationExecutor executor = verify
+                ? new DataMigrationExecutor(resource, encoding, defaultTable, checksum, checksumAlgorithm)
+                : new DataMigrationExecutor(resource, encoding, defaultTable);
+
+        ResolvedMigration migration = new ResolvedMigration();
+        migration.setVersion(info.getLeft());
+        migration.setDescription(info.getRight());
+        migration.setScript(script);
+        migration.setChecksum((int) (long) checksum);
+        migration.setChecksumAlgorithm(checksumAlgorithm.getName());
+        migration.setChecksumValue(checksum);
+        migration.setType(MigrationType.DATA);
+        migration.setPhysicalLocation(resource.getLocationOnDisk());
+        migration.setExecutor(executor);
+        return migration;
+    }
+
+    /**
+     * Extracts the script name from this resource.
+     *
+     * @param resource The resource to process.
+     * @return The script name.
+     */
+    private String extractScriptName(Resource resource) {
+        if (location.getPath().isEmpty()) {
+            return resource.getLocation();
+        }
+
+        return resource.getLocation().substring(location.getPath().length() + 1);
+    }
+}
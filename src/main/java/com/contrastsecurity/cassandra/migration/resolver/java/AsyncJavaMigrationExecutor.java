@@ -0,0 +1,86 @@
+package com.contrastsecurity.cassandra.migration.resolver.java;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.api.AsyncJavaMigration;
+import com.contrastsecurity.cassandra.migration.resolver.AsyncMigrationExecutor;
+import com.datastax.oss.driver.api.core.CqlSession;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Adapter for executing migrations implementing AsyncJavaMigration.
+ */
+public class AsyncJavaMigrationExecutor implements AsyncMigrationExecutor {
+    /**
+     * The AsyncJavaMigration to execute.
+     */
+    private final AsyncJavaMigration javaMigration;
+
+    /**
+     * Creates a new AsyncJavaMigrationExecutor.
+     *
+     * @param javaMigration The AsyncJavaMigration to execute.
+     */
+    public AsyncJavaMigrationExecutor(AsyncJavaMigration javaMigration) {
+        this.javaMigration = javaMigration;
+    }
+
+    @Override
+    public CompletionStage<Void> executeAsync(CqlSession session) {
+        CompletionStage<Void> stage;
+        try {
+            stage = javaMigration.migrateAsync(session);
+        } catch (Exception e) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new CassandraMigrationException("Migration failed !", e));
+            return failed;
+        }
+        if (stage == null) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new CassandraMigrationException("Migration failed ! "
+                    + javaMigration.getClass().getName() + ".migrateAsync() returned null"));
+            return failed;
+        }
+
+        CompletableFuture<Void> migration = stage.toCompletableFuture();
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        migration.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(null);
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error;
+                result.completeExceptionally(new CassandraMigrationException("Migration failed !", cause));
+            }
+        });
+        // Cancelling the result, eg: on timeout, cancels the stage of the migration.
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                migration.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void execute(CqlSession session) {
+        try {
+            executeAsync(session).toCompletableFuture().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CassandraMigrationException("Interrupted while waiting for the migration", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CassandraMigrationException) {
+                throw (CassandraMigrationException) e.getCause();
+            }
+            throw new CassandraMigrationException("Migration failed !", e.getCause());
+        } catch (CancellationException e) {
+            throw new CassandraMigrationException("Migration cancelled !", e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.contrastsecurity.cassandra.migration.resolver.java;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.api.BackgroundJavaMigration;
+import com.contrastsecurity.cassandra.migration.api.MigrationProgress;
+import com.contrastsecurity.cassandra.migration.api.ResumableJavaMigration;
+import com.contrastsecurity.cassandra.migration.resolver.BackgroundMigrationExecutor;
+import com.contrastsecurity.cassandra.migration.resolver.ResumableMigrationExecutor;
+import com.datastax.oss.driver.api.core.CqlSession;
+
+/**
+ * Adapter for executing migrations implementing BackgroundJavaMigration, and possibly ResumableJavaMigration.
+ */
+public class BackgroundJavaMigrationExecutor implements BackgroundMigrationExecutor, ResumableMigrationExecutor {
+    /**
+     * The BackgroundJavaMigration to execute.
+     */
+    private final BackgroundJavaMigration javaMigration;
+
+    /**
+     * Creates a new BackgroundJavaMigrationExecutor.
+     *
+     * @param javaMigration The BackgroundJavaMigration to execute.
+     */
+    public BackgroundJavaMigrationExecutor(BackgroundJavaMigration javaMigration) {
+        this.javaMigration = javaMigration;
+    }
+
+    @Override
+    public void prepare(CqlSession session) {
+        try {
+            javaMigration.prepare(session);
+        } catch (Exception e) {
+            throw new CassandraMigrationException("Migration prerequisites failed !", e);
+        }
+    }
+
+    @Override
+    public void execute(CqlSession session) {
+        try {
+            javaMigration.migrate(session);
+        } catch (Exception e) {
+            throw new CassandraMigrationException("Migration failed !", e);
+        }
+    }
+
+    @Override
+    public void execute(CqlSession session, MigrationProgress progress) {
+        if (!(javaMigration instanceof ResumableJavaMigration)) {
+            execute(session);
+            return;
+        }
+        try {
+            ((ResumableJavaMigration) javaMigration).migrate(session, progress);
+        } catch (Exception e) {
+            throw new CassandraMigrationException("Migration failed !", e);
+        }
+    }
+
+    @Override
+    public boolean isResumable() {
+        return javaMigration instanceof ResumableJavaMigration;
+    }
+}
@@ -16,13 +16,17 @@
 package com.contrastsecurity.cassandra.migration.resolver.java;
 
 import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.api.AsyncJavaMigration;
+import com.contrastsecurity.cassandra.migration.api.BackgroundJavaMigration;
 import com.contrastsecurity.cassandra.migration.api.MigrationChecksumProvider;
 import com.contrastsecurity.cassandra.migration.api.MigrationInfoProvider;
 import com.contrastsecurity.cassandra.migration.api.JavaMigration;
+import com.contrastsecurity.cassandra.migration.api.ResumableJavaMigration;
 import com.contrastsecurity.cassandra.migration.config.MigrationType;
 import com.contrastsecurity.cassandra.migration.config.ScriptsLocation;
 import com.contrastsecurity.cassandra.migration.info.MigrationVersion;
 import com.contrastsecurity.cassandra.migration.info.ResolvedMigration;
+import com.contrastsecurity.cassandra.migration.resolver.MigrationExecutor;
 import com.contrastsecurity.cassandra.migration.resolver.MigrationInfoHelper;
 import com.contrastsecurity.cassandra.migration.resolver.MigrationResolver;
 import com.contrastsecurity.cassandra.migration.resolver.ResolvedMigrationComparator;
@@ -50,6 +54,11 @@ public class JavaMigrationResolver implements MigrationResolver {
      */
     private ClassLoader classLoader;
 
+    /**
+     * The scanner to use.
+     */
+    private final Scanner scanner;
+
     /**
      * Creates a new instance.
      *
@@ -57,8 +66,20 @@ public class JavaMigrationResolver implements MigrationResolver {
      * @param classLoader The ClassLoader for loading migrations on the classpath.
      */
     public JavaMigrationResolver(ClassLoader classLoader, ScriptsLocation location) {
+        this(classLoader, new Scanner(classLoader), location);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param classLoader The ClassLoader for loading migrations on the classpath.
+     * @param scanner     The scanner to use, possibly shared with other resolvers.
+     * @param location    The base package on the classpath where to migrations are located.
+     */
+    public JavaMigrationResolver(ClassLoader classLoader, Scanner scanner, ScriptsLocation location) {
         this.location = location;
         this.classLoader = classLoader;
+        this.scanner = scanner;
     }
 
     public List<ResolvedMigration> resolveMigrations() {
@@ -69,13 +90,18 @@ public class JavaMigrationResolver implements MigrationResolver {
         }
 
         try {
-            Class<?>[] classes = new Scanner(classLoader).scanForClasses(location, JavaMigration.class);
+            Class<?>[] classes = scanner.scanForClasses(location, JavaMigration.class);
             for (Class<?> clazz : classes) {
-                JavaMigration javaMigration = ClassUtils.instantiate(clazz.getName(), classLoader);
+                JavaMigration javaMigration;
+                try {
+                    javaMigration = ClassUtils.instantiate(clazz.getName(), classLoader);
+                } catch (Exception e) {
+                    throw new CassandraMigrationException("Unable to instantiate class: " + clazz.getName(), e);
+                }
 
                 ResolvedMigration migrationInfo = extractMigrationInfo(javaMigration);
                 migrationInfo.setPhysicalLocation(ClassUtils.getLocationOnDisk(clazz));
-                migrationInfo.setExecutor(new JavaMigrationExecutor(javaMigration));
+                migrationInfo.setExecutor(createExecutor(javaMigration));
 
                 migrations.add(migrationInfo);
             }
@@ -87,6 +113,33 @@ public class JavaMigrationResolver implements MigrationResolver {
         return migrations;
     }
 
+    /**
+     * Creates the executor of this migration.
+     *
+     * @param javaMigration The migration.
+     * @return The executor.
+     * @throws CassandraMigrationException when an asynchronous migration is also a background or resumable one, as
+     *                                     no executor runs both kinds.
+     */
+    /* private -> for testing */
+    static MigrationExecutor createExecutor(JavaMigration javaMigration) {
+        if (javaMigration instanceof AsyncJavaMigration
+                && (javaMigration instanceof BackgroundJavaMigration || javaMigration instanceof ResumableJavaMigration)) {
+            throw new CassandraMigrationException("Migration " + javaMigration.getClass().getName()
+                    + " cannot be both asynchronous and background or resumable");
+        }
+        if (javaMigration instanceof BackgroundJavaMigration) {
+            return new BackgroundJavaMigrationExecutor((BackgroundJavaMigration) javaMigration);
+        }
+        if (javaMigration instanceof ResumableJavaMigration) {
+            return new ResumableJavaMigrationExecutor((ResumableJavaMigration) javaMigration);
+        }
+        if (javaMigration instanceof AsyncJavaMigration) {
+            return new AsyncJavaMigrationExecutor((AsyncJavaMigration) javaMigration);
+        }
+        return new JavaMigrationExecutor(javaMigration);
+    }
+
     /**
      * Extracts the migration info from this migration.
      *
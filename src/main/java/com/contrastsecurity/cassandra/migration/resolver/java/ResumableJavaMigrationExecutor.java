@@ -0,0 +1,40 @@
+package com.contrastsecurity.cassandra.migration.resolver.java;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.api.MigrationProgress;
+import com.contrastsecurity.cassandra.migration.api.ResumableJavaMigration;
+import com.contrastsecurity.cassandra.migration.resolver.ResumableMigrationExecutor;
+import com.datastax.oss.driver.api.core.CqlSession;
+
+/**
+ * Adapter for executing migrations implementing ResumableJavaMigration.
+ */
+public class ResumableJavaMigrationExecutor implements ResumableMigrationExecutor {
+    /**
+     * The ResumableJavaMigration to execute.
+     */
+    private final ResumableJavaMigration javaMigration;
+
+    /**
+     * Creates a new ResumableJavaMigrationExecutor.
+     *
+     * @param javaMigration The ResumableJavaMigration to execute.
+     */
+    public ResumableJavaMigrationExecutor(ResumableJavaMigration javaMigration) {
+        this.javaMigration = javaMigration;
+    }
+
+    @Override
+    public void execute(CqlSession session) {
+        execute(session, MigrationProgress.transientProgress());
+    }
+
+    @Override
+    public void execute(CqlSession session, MigrationProgress progress) {
+        try {
+            javaMigration.migrate(session, progress);
+        } catch (Exception e) {
+            throw new CassandraMigrationException("Migration failed !", e);
+        }
+    }
+}
@@ -16,11 +16,16 @@
 package com.contrastsecurity.cassandra.migration.script;
 
 import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.info.StatementMetrics;
 import com.contrastsecurity.cassandra.migration.logging.Log;
 import com.contrastsecurity.cassandra.migration.logging.LogFactory;
 import com.contrastsecurity.cassandra.migration.utils.StringUtils;
 import com.contrastsecurity.cassandra.migration.utils.scanner.Resource;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverException;
+import com.datastax.oss.driver.api.core.cql.ExecutionInfo;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.metadata.Node;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -63,10 +68,37 @@ public class CqlScript {
      * @param encoding          The encoding to use.
      */
     public CqlScript(Resource cqlScriptResource, String encoding) {
-        String cqlScriptSource = cqlScriptResource.loadAsString(encoding);
-        this.cqlStatements = parse(cqlScriptSource);
+        this(cqlScriptResource.loadAsString(encoding), cqlScriptResource, null, null, null);
+    }
 
+    /**
+     * Creates a new cql script from this source, reusing the statement boundaries from this cache when possible.
+     *
+     * @param cqlScriptSource   The cql script as a text block with all placeholders already replaced.
+     * @param cqlScriptResource The resource containing the statements.
+     * @param checksum          The checksum of the script. {@code null} disables the cache.
+     * @param checksumAlgorithm The name of the algorithm the checksum was computed with. {@code null} disables the
+     *                          cache.
+     * @param statementCache    The cache of parsed statements. {@code null} if none.
+     */
+    public CqlScript(String cqlScriptSource, Resource cqlScriptResource, Long checksum, String checksumAlgorithm,
+                     CqlStatementCache statementCache) {
         this.resource = cqlScriptResource;
+
+        if (statementCache == null || checksum == null || checksumAlgorithm == null) {
+            this.cqlStatements = parse(cqlScriptSource);
+            return;
+        }
+
+        List<String> cachedStatements = statementCache.get(cqlScriptSource, checksum, checksumAlgorithm);
+        if (cachedStatements != null) {
+            LOG.debug("Reusing " + cachedStatements.size() + " cached statements for " + checksumAlgorithm
+                    + " checksum " + checksum);
+            this.cqlStatements = cachedStatements;
+        } else {
+            this.cqlStatements = parse(cqlScriptSource);
+            statementCache.put(cqlScriptSource, checksum, checksumAlgorithm, cqlStatements);
+        }
     }
 
     /**
@@ -90,9 +122,38 @@ public class CqlScript {
      * @param session Cassandra session
      */
     public void execute(final CqlSession session) {
-        for (String cqlStatement : cqlStatements) {
+        execute(session, null);
+    }
+
+    /**
+     * Executes this script against the database, measuring each statement. The metrics of a statement are added as
+     * soon as it completes, so that those of the statements preceding a failed one are kept, along with those of the
+     * failed statement itself.
+     *
+     * @param session Cassandra session
+     * @param metrics The list the metrics of the executed statements are added to. {@code null} to not measure them.
+     */
+    public void execute(final CqlSession session, List<StatementMetrics> metrics) {
+        for (int i = 0; i < cqlStatements.size(); i++) {
+            String cqlStatement = cqlStatements.get(i);
             LOG.debug("Executing CQL: " + cqlStatement);
-            session.execute(cqlStatement);
+            long start = System.nanoTime();
+            ExecutionInfo info = null;
+            try {
+                ResultSet resultSet = session.execute(cqlStatement);
+                info = resultSet.getExecutionInfo();
+            } catch (DriverException e) {
+                info = e.getExecutionInfo();
+                throw e;
+            } finally {
+                if (metrics != null) {
+                    long latency = System.nanoTime() - start;
+                    Node coordinator = info == null ? null : info.getCoordinator();
+                    metrics.add(StatementMetrics.of(i, cqlStatement, latency,
+                            coordinator == null ? null : coordinator.getEndPoint().toString(),
+                            info == null ? 0 : info.getErrors().size(), info != null && info.isSchemaInAgreement()));
+                }
+            }
         }
     }
 
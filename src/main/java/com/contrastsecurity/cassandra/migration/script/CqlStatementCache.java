@@ -0,0 +1,173 @@
+package com.contrastsecurity.cassandra.migration.script;
+
+import com.contrastsecurity.cassandra.migration.logging.Log;
+import com.contrastsecurity.cassandra.migration.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * On-disk cache of the statement boundaries of parsed cql scripts.
+ * <p>Each script gets a small binary file holding the offset and length of every statement within the script source,
+ * with its line endings normalized to \n as the parser does. Entries are keyed by the checksum algorithm, the full
+ * checksum and the length of the script and by the parser version, so a modified script or an upgraded parser simply
+ * misses the cache. The cache is best effort: I/O errors are logged and never fail a
+ * migration.</p>
+ */
+public class CqlStatementCache {
+    private static final Log LOG = LogFactory.getLog(CqlStatementCache.class);
+
+    /**
+     * Version of the statement parser. Must be increased whenever {@link CqlStatementBuilder} changes the way
+     * statements are split, so that stale entries are ignored.
+     */
+    static final int PARSER_VERSION = 2;
+
+    /**
+     * Marker at the start of every cache file.
+     */
+    private static final int MAGIC = 0x43514C53;
+
+    /**
+     * The directory holding the cache files.
+     */
+    private final File directory;
+
+    /**
+     * Creates a new statement cache.
+     *
+     * @param directory The directory holding the cache files. Created on first write if it doesn't exist.
+     */
+    public CqlStatementCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Looks up the statements of this script source.
+     *
+     * @param cqlScriptSource   The script source.
+     * @param checksum          The checksum of the script.
+     * @param checksumAlgorithm The name of the algorithm the checksum was computed with.
+     * @return The statements, or {@code null} if the cache holds no valid entry for this script.
+     */
+    public List<String> get(String cqlScriptSource, long checksum, String checksumAlgorithm) {
+        String source = normalizeLineEndings(cqlScriptSource);
+        File file = getFile(source, checksum, checksumAlgorithm);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC
+                    || in.readInt() != PARSER_VERSION
+                    || !in.readUTF().equals(checksumAlgorithm)
+                    || in.readLong() != checksum
+                    || in.readInt() != source.length()) {
+                LOG.debug("Ignoring stale statement cache entry: " + file);
+                return null;
+            }
+
+            int count = in.readInt();
+            List<String> statements = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int offset = in.readInt();
+                int length = in.readInt();
+                if (offset < 0 || length < 0 || offset + length > source.length()) {
+                    LOG.debug("Ignoring corrupt statement cache entry: " + file);
+                    return null;
+                }
+                statements.add(source.substring(offset, offset + length));
+            }
+            return statements;
+        } catch (IOException e) {
+            LOG.warn("Unable to read statement cache entry " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores the statements of this script source. Scripts whose statements can't be expressed as plain ranges of
+     * the source, once its line endings are normalized, are not cached.
+     *
+     * @param cqlScriptSource   The script source.
+     * @param checksum          The checksum of the script.
+     * @param checksumAlgorithm The name of the algorithm the checksum was computed with.
+     * @param statements        The statements parsed from the source.
+     */
+    public void put(String cqlScriptSource, long checksum, String checksumAlgorithm, List<String> statements) {
+        String source = normalizeLineEndings(cqlScriptSource);
+        int[] offsets = new int[statements.size()];
+        int position = 0;
+        for (int i = 0; i < statements.size(); i++) {
+            int offset = source.indexOf(statements.get(i), position);
+            if (offset < 0) {
+                LOG.debug("Not caching statements of script with " + checksumAlgorithm + " checksum " + checksum
+                        + " (statement " + (i + 1) + " is not a range of the source)");
+                return;
+            }
+            offsets[i] = offset;
+            position = offset + statements.get(i).length();
+        }
+
+        File file = getFile(source, checksum, checksumAlgorithm);
+        File tempFile = new File(directory, file.getName() + ".tmp");
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create directory " + directory);
+            }
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(PARSER_VERSION);
+                out.writeUTF(checksumAlgorithm);
+                out.writeLong(checksum);
+                out.writeInt(source.length());
+                out.writeInt(statements.size());
+                for (int i = 0; i < statements.size(); i++) {
+                    out.writeInt(offsets[i]);
+                    out.writeInt(statements.get(i).length());
+                }
+            }
+
+            if (!tempFile.renameTo(file)) {
+                file.delete();
+                if (!tempFile.renameTo(file)) {
+                    throw new IOException("Unable to rename " + tempFile + " to " + file);
+                }
+            }
+        } catch (IOException e) {
+            tempFile.delete();
+            LOG.warn("Unable to write statement cache entry " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param source            The script source, with normalized line endings.
+     * @param checksum          The checksum of the script.
+     * @param checksumAlgorithm The name of the algorithm the checksum was computed with.
+     * @return The cache file for this script.
+     */
+    private File getFile(String source, long checksum, String checksumAlgorithm) {
+        return new File(directory, String.format("%s-%016x-%d.stmts",
+                checksumAlgorithm.replaceAll("[^A-Za-z0-9]", "_"), checksum, source.length()));
+    }
+
+    /**
+     * @param cqlScriptSource The script source.
+     * @return The script source with \r\n and \r line endings replaced by \n, as in the parsed statements.
+     */
+    private static String normalizeLineEndings(String cqlScriptSource) {
+        if (cqlScriptSource.indexOf('\r') < 0) {
+            return cqlScriptSource;
+        }
+        return cqlScriptSource.replace("\r\n", "\n").replace('\r', '\n');
+    }
+}
@@ -0,0 +1,199 @@
+package com.contrastsecurity.cassandra.migration.utils.checksum;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.api.ChecksumAlgorithm;
+import com.contrastsecurity.cassandra.migration.logging.Log;
+import com.contrastsecurity.cassandra.migration.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Registry of the available checksum algorithms: the built-in CRC32, CRC32C and CRC64, plus any
+ * {@link ChecksumAlgorithm} registered through the {@link ServiceLoader} mechanism.
+ */
+public class ChecksumAlgorithms {
+    private static final Log LOG = LogFactory.getLog(ChecksumAlgorithms.class);
+
+    /**
+     * The algorithm used by all versions prior to the introduction of pluggable algorithms. Rows of the metadata
+     * table without an algorithm were computed with it.
+     */
+    public static final String CRC32 = "CRC32";
+
+    /**
+     * CRC-32C (Castagnoli), computed with hardware instructions by the JVM on Java 9+.
+     */
+    public static final String CRC32C = "CRC32C";
+
+    /**
+     * CRC-64 (ECMA-182).
+     */
+    public static final String CRC64 = "CRC64";
+
+    /**
+     * The available algorithms, by ClassLoader they were looked up with.
+     */
+    private static final Map<ClassLoader, Map<String, ChecksumAlgorithm>> ALGORITHMS = new WeakHashMap<>();
+
+    /**
+     * Prevents instantiation.
+     */
+    private ChecksumAlgorithms() {
+        // Do nothing
+    }
+
+    /**
+     * Looks up the algorithm with this name.
+     *
+     * @param name        The name of the algorithm (case insensitive).
+     * @param classLoader The ClassLoader to use for looking up additional algorithms.
+     * @return The algorithm.
+     * @throws CassandraMigrationException when no such algorithm is available.
+     */
+    public static ChecksumAlgorithm forName(String name, ClassLoader classLoader) {
+        ChecksumAlgorithm algorithm = getAll(classLoader).get(name.toUpperCase());
+        if (algorithm == null) {
+            throw new CassandraMigrationException("Unknown checksum algorithm: " + name
+                    + " (available: " + getAll(classLoader).keySet() + ")");
+        }
+        return algorithm;
+    }
+
+    /**
+     * Retrieves all available algorithms. The additional algorithms are looked up once per ClassLoader.
+     *
+     * @param classLoader The ClassLoader to use for looking up additional algorithms.
+     * @return The algorithms, by upper case name.
+     */
+    public static Map<String, ChecksumAlgorithm> getAll(ClassLoader classLoader) {
+        synchronized (ALGORITHMS) {
+            Map<String, ChecksumAlgorithm> algorithms = ALGORITHMS.get(classLoader);
+            if (algorithms == null) {
+                algorithms = Collections.unmodifiableMap(loadAll(classLoader));
+                ALGORITHMS.put(classLoader, algorithms);
+            }
+            return algorithms;
+        }
+    }
+
+    /**
+     * Looks up all available algorithms.
+     *
+     * @param classLoader The ClassLoader to use for looking up additional algorithms.
+     * @return The algorithms, by upper case name.
+     */
+    private static Map<String, ChecksumAlgorithm> loadAll(ClassLoader classLoader) {
+        Map<String, ChecksumAlgorithm> algorithms = new TreeMap<>();
+        algorithms.put(CRC32, new Crc32Algorithm());
+        if (Crc32cAlgorithm.isAvailable()) {
+            algorithms.put(CRC32C, new Crc32cAlgorithm());
+        }
+        algorithms.put(CRC64, new Crc64Algorithm());
+
+        for (ChecksumAlgorithm algorithm : ServiceLoader.load(ChecksumAlgorithm.class, classLoader)) {
+            String name = algorithm.getName().toUpperCase();
+            if (algorithms.containsKey(name)) {
+                LOG.warn("Ignoring checksum algorithm " + algorithm.getClass().getName() + ": " + name + " is already registered");
+                continue;
+            }
+            algorithms.put(name, algorithm);
+        }
+        return algorithms;
+    }
+
+    /**
+     * Computes the checksum of these bytes.
+     *
+     * @param algorithm The algorithm to use.
+     * @param bytes     The bytes to calculate the checksum for.
+     * @return The checksum value.
+     */
+    public static long calculate(ChecksumAlgorithm algorithm, byte[] bytes) {
+        Checksum checksum = algorithm.newChecksum();
+        checksum.update(bytes, 0, bytes.length);
+        return checksum.getValue();
+    }
+
+    /**
+     * Computes the checksum of the bytes of this stream, without holding them in memory.
+     *
+     * @param algorithm   The algorithm to use.
+     * @param inputStream The stream to read until its end. Not closed.
+     * @return The checksum value.
+     * @throws IOException when the stream could not be read.
+     */
+    public static long calculate(ChecksumAlgorithm algorithm, InputStream inputStream) throws IOException {
+        Checksum checksum = algorithm.newChecksum();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            checksum.update(buffer, 0, read);
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * java.util.zip.CRC32.
+     */
+    private static class Crc32Algorithm implements ChecksumAlgorithm {
+        public String getName() {
+            return CRC32;
+        }
+
+        public Checksum newChecksum() {
+            return new CRC32();
+        }
+    }
+
+    /**
+     * java.util.zip.CRC32C, looked up reflectively as it is only available on Java 9+.
+     */
+    private static class Crc32cAlgorithm implements ChecksumAlgorithm {
+        private static final Class<?> CRC32C_CLASS = loadCrc32cClass();
+
+        private static Class<?> loadCrc32cClass() {
+            try {
+                return Class.forName("java.util.zip.CRC32C");
+            } catch (ClassNotFoundException e) {
+                return null;
+            }
+        }
+
+        static boolean isAvailable() {
+            return CRC32C_CLASS != null;
+        }
+
+        public String getName() {
+            return CRC32C;
+        }
+
+        public Checksum newChecksum() {
+            try {
+                return (Checksum) CRC32C_CLASS.getDeclaredConstructor().newInstance();
+            } catch (Exception e) {
+                throw new CassandraMigrationException("Unable to instantiate " + CRC32C_CLASS.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * {@link Crc64}.
+     */
+    private static class Crc64Algorithm implements ChecksumAlgorithm {
+        public String getName() {
+            return CRC64;
+        }
+
+        public Checksum newChecksum() {
+            return new Crc64();
+        }
+    }
+}
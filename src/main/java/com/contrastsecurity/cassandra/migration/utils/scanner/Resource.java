@@ -15,6 +15,8 @@
  */
 package com.contrastsecurity.cassandra.migration.utils.scanner;
 
+import java.io.InputStream;
+
 public interface Resource {
     /**
      * @return The location of the resource on the classpath (path and filename).
@@ -43,6 +45,13 @@ public interface Resource {
      */
     byte[] loadAsBytes();
 
+    /**
+     * Opens this resource for streaming its contents, eg: to read large data files without loading them at once.
+     *
+     * @return The stream of the contents of the resource, to be closed by the caller.
+     */
+    InputStream loadAsStream();
+
     /**
      * @return The filename of this resource, without the path.
      */
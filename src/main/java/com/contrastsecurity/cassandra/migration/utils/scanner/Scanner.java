@@ -21,13 +21,17 @@ import com.contrastsecurity.cassandra.migration.utils.scanner.classpath.ClassPat
 import com.contrastsecurity.cassandra.migration.utils.scanner.filesystem.FileSystemScanner;
 
 /**
- * Scanner for Resources and Classes.
+ * Scanner for Resources and Classes. The classpath scans of a scanner share a cache of the jar entries, so a single
+ * scanner should serve all the resolvers and locations of a migration run.
  */
 public class Scanner {
-    private final ClassLoader classLoader;
+    /**
+     * The classpath scanner, shared by all scans.
+     */
+    private final ClassPathScanner classPathScanner;
 
     public Scanner(ClassLoader classLoader) {
-        this.classLoader = classLoader;
+        this.classPathScanner = new ClassPathScanner(classLoader);
     }
 
     /**
@@ -44,7 +48,7 @@ public class Scanner {
                 return new FileSystemScanner().scanForResources(location.getPath(), prefix, suffix);
             }
 
-            return new ClassPathScanner(classLoader).scanForResources(location.getPath(), prefix, suffix);
+            return classPathScanner.scanForResources(location.getPath(), prefix, suffix);
         } catch (Exception e) {
             throw new CassandraMigrationException("Unable to scan for CQL migrations in location: " + location, e);
         }
@@ -62,6 +66,6 @@ public class Scanner {
      * @throws Exception when the location could not be scanned.
      */
     public Class<?>[] scanForClasses(ScriptsLocation location, Class<?> implementedInterface) throws Exception {
-        return new ClassPathScanner(classLoader).scanForClasses(location.getPath(), implementedInterface);
+        return classPathScanner.scanForClasses(location.getPath(), implementedInterface);
     }
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+package com.contrastsecurity.cassandra.migration.utils.scanner.classpath;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The header of a class file: its access flags, name, superclass and directly implemented interfaces, as read from
+ * the constant pool without loading the class.
+ */
+public class ClassFileHeader {
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_ABSTRACT = 0x0400;
+    private static final int ACC_SYNTHETIC = 0x1000;
+    private static final int ACC_ANNOTATION = 0x2000;
+    private static final int ACC_ENUM = 0x4000;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    /**
+     * The access flags of the class.
+     */
+    private final int accessFlags;
+
+    /**
+     * The internal name of the class (eg: com/example/V1__Migration).
+     */
+    private final String name;
+
+    /**
+     * The internal name of the superclass. {@code null} for java/lang/Object.
+     */
+    private final String superName;
+
+    /**
+     * The internal names of the directly implemented interfaces.
+     */
+    private final String[] interfaces;
+
+    private ClassFileHeader(int accessFlags, String name, String superName, String[] interfaces) {
+        this.accessFlags = accessFlags;
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+    }
+
+    /**
+     * Reads the header of a class file. Only the start of the stream, up to the interfaces, is consumed.
+     *
+     * @param inputStream The class file.
+     * @return The header.
+     * @throws IOException when the stream is not a valid class file.
+     */
+    public static ClassFileHeader read(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+
+        int constantPoolCount = in.readUnsignedShort();
+        String[] utf8 = new String[constantPoolCount];
+        int[] classNameIndexes = new int[constantPoolCount];
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    utf8[i] = in.readUTF();
+                    break;
+                case CONSTANT_CLASS:
+                    classNameIndexes[i] = in.readUnsignedShort();
+                    break;
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    in.skipBytes(2);
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    in.skipBytes(3);
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    in.skipBytes(4);
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    in.skipBytes(8);
+                    // 8-byte constants take two slots
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag + " at index " + i);
+            }
+        }
+
+        int accessFlags = in.readUnsignedShort();
+        String name = utf8[classNameIndexes[in.readUnsignedShort()]];
+        int superClassIndex = in.readUnsignedShort();
+        String superName = superClassIndex == 0 ? null : utf8[classNameIndexes[superClassIndex]];
+        int interfacesCount = in.readUnsignedShort();
+        String[] interfaces = new String[interfacesCount];
+        for (int i = 0; i < interfacesCount; i++) {
+            interfaces[i] = utf8[classNameIndexes[in.readUnsignedShort()]];
+        }
+
+        return new ClassFileHeader(accessFlags, name, superName, interfaces);
+    }
+
+    /**
+     * @return The internal name of the class (eg: com/example/V1__Migration).
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The internal name of the superclass. {@code null} for java/lang/Object.
+     */
+    public String getSuperName() {
+        return superName;
+    }
+
+    /**
+     * @return The internal names of the directly implemented interfaces.
+     */
+    public String[] getInterfaces() {
+        return interfaces;
+    }
+
+    /**
+     * @return {@code true} if this is an interface or annotation.
+     */
+    public boolean isInterface() {
+        return (accessFlags & (ACC_INTERFACE | ACC_ANNOTATION)) != 0;
+    }
+
+    /**
+     * @return {@code true} if this class can be instantiated: not an interface, abstract class, enum, synthetic or
+     * anonymous class.
+     */
+    public boolean isInstantiable() {
+        if ((accessFlags & (ACC_INTERFACE | ACC_ABSTRACT | ACC_SYNTHETIC | ACC_ANNOTATION | ACC_ENUM)) != 0) {
+            return false;
+        }
+        return !isAnonymous();
+    }
+
+    /**
+     * @return {@code true} if the name of this class is the one of an anonymous class (eg: Outer$1).
+     */
+    private boolean isAnonymous() {
+        int index = name.lastIndexOf('$');
+        if (index == -1 || index == name.length() - 1) {
+            return false;
+        }
+        for (int i = index + 1; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
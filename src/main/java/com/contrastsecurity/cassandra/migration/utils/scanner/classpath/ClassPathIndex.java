@@ -0,0 +1,274 @@
+package com.contrastsecurity.cassandra.migration.utils.scanner.classpath;
+
+import com.contrastsecurity.cassandra.migration.utils.UrlUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Build-time index of the migrations of a classpath root (directory or jar), generated by
+ * {@link MigrationIndexProcessor}. When a classpath root contains an index, its migrations are looked up in the index
+ * instead of enumerating the files or jar entries of the root.
+ * <p>The index is a UTF-8 text file with one resource name per line, optionally followed by the name of a checksum
+ * algorithm and the checksum of the resource, separated by tabs. Lines starting with # are comments.</p>
+ * <p>The index of a directory root can go stale when resources are copied after compilation. Such an index is only
+ * used while no file or directory of the scanned location is newer than the index (see
+ * {@link #isUpToDate(String, URL)}).</p>
+ */
+public class ClassPathIndex {
+    /**
+     * The location of the index within its classpath root.
+     */
+    public static final String LOCATION = "META-INF/cassandra-migration/index";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The indexed resources, by resource name. Values are {@code null} for resources without checksum.
+     */
+    private final NavigableMap<String, IndexedChecksum> entries = new TreeMap<>();
+
+    /**
+     * The modification time of the index file in a directory root. 0 for indexes in jars, which are packaged with
+     * the resources they index.
+     */
+    private long lastModified;
+
+    /**
+     * Loads the indexes visible to this ClassLoader.
+     *
+     * @param classLoader The ClassLoader to use.
+     * @return The indexes, by URL of their classpath root (eg: jar:file:/app.jar!/).
+     * @throws IOException when an index could not be read.
+     */
+    public static Map<String, ClassPathIndex> loadAll(ClassLoader classLoader) throws IOException {
+        Map<String, ClassPathIndex> indexes = new HashMap<>();
+        Enumeration<URL> urls = classLoader.getResources(LOCATION);
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            String externalForm = url.toExternalForm();
+            String root = externalForm.substring(0, externalForm.length() - LOCATION.length());
+            try (InputStream inputStream = url.openStream()) {
+                ClassPathIndex index = read(inputStream);
+                if ("file".equals(url.getProtocol())) {
+                    index.lastModified = new File(UrlUtils.toFilePath(url)).lastModified();
+                }
+                indexes.put(root, index);
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Checks whether this index still lists the resources of this location. An index in a jar is always up to date.
+     * An index in a directory is up to date if no file or directory of the location was modified after it, as adding
+     * or removing a file modifies its directory.
+     *
+     * @param location    The location on the classpath, without leading or trailing slashes.
+     * @param locationUrl The physical URL of the location.
+     * @return {@code true} if the index can be used instead of scanning the location.
+     * @throws IOException when the location could not be walked.
+     */
+    public boolean isUpToDate(String location, URL locationUrl) throws IOException {
+        if (lastModified == 0 || !"file".equals(locationUrl.getProtocol())) {
+            return true;
+        }
+        Path locationPath = new File(UrlUtils.toFilePath(locationUrl)).toPath();
+        if (!Files.isDirectory(locationPath)) {
+            return true;
+        }
+        final FileTime indexTime = FileTime.fromMillis(lastModified);
+        final boolean[] upToDate = {true};
+        Files.walkFileTree(locationPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return visit(attrs);
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                return visit(attrs);
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            private FileVisitResult visit(BasicFileAttributes attrs) {
+                if (attrs.lastModifiedTime().compareTo(indexTime) > 0) {
+                    upToDate[0] = false;
+                    return FileVisitResult.TERMINATE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return upToDate[0];
+    }
+
+    /**
+     * Computes the URL of the classpath root of this location URL.
+     *
+     * @param location    The location on the classpath, without leading or trailing slashes.
+     * @param locationUrl The physical URL of the location.
+     * @return The URL of the classpath root, with a trailing slash, or {@code null} if it couldn't be determined.
+     */
+    public static String getRootUrl(String location, URL locationUrl) {
+        String externalForm = locationUrl.toExternalForm();
+        if (externalForm.endsWith("/")) {
+            externalForm = externalForm.substring(0, externalForm.length() - 1);
+        }
+        if (!externalForm.endsWith(location)) {
+            return null;
+        }
+        return externalForm.substring(0, externalForm.length() - location.length());
+    }
+
+    /**
+     * Reads an index.
+     *
+     * @param inputStream The stream to read the index from.
+     * @return The index.
+     * @throws IOException when the index could not be read.
+     */
+    public static ClassPathIndex read(InputStream inputStream) throws IOException {
+        ClassPathIndex index = new ClassPathIndex();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, UTF8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            if (fields.length >= 3) {
+                index.add(fields[0], fields[1], Long.parseLong(fields[2]));
+            } else {
+                index.add(fields[0]);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes this index.
+     *
+     * @param writer The writer to write the index to.
+     * @throws IOException when the index could not be written.
+     */
+    public void write(Writer writer) throws IOException {
+        writer.write("# cassandra-migration index\n");
+        for (Map.Entry<String, IndexedChecksum> entry : entries.entrySet()) {
+            writer.write(entry.getKey());
+            IndexedChecksum checksum = entry.getValue();
+            if (checksum != null) {
+                writer.write("\t" + checksum.algorithm + "\t" + checksum.value);
+            }
+            writer.write("\n");
+        }
+    }
+
+    /**
+     * Adds a resource without checksum (eg: a class) to this index.
+     *
+     * @param resourceName The name of the resource on the classpath.
+     */
+    public void add(String resourceName) {
+        entries.put(resourceName, null);
+    }
+
+    /**
+     * Adds a resource to this index.
+     *
+     * @param resourceName      The name of the resource on the classpath.
+     * @param checksumAlgorithm The name of the algorithm the checksum was computed with.
+     * @param checksum          The checksum of the resource.
+     */
+    public void add(String resourceName, String checksumAlgorithm, long checksum) {
+        entries.put(resourceName, new IndexedChecksum(checksumAlgorithm, checksum));
+    }
+
+    /**
+     * @return The names of all indexed resources.
+     */
+    public Set<String> getResourceNames() {
+        return entries.keySet();
+    }
+
+    /**
+     * Finds the indexed resources at this location and below.
+     *
+     * @param location The location on the classpath, without leading or trailing slashes.
+     * @return The resource names.
+     */
+    public Set<String> findResourceNames(String location) {
+        return findResourceNames(location, ResourceNameFilter.ALL);
+    }
+
+    /**
+     * Finds the indexed resources at this location and below that match this filter.
+     *
+     * @param location The location on the classpath, without leading or trailing slashes.
+     * @param filter   The filter the resource names must match.
+     * @return The resource names.
+     */
+    public Set<String> findResourceNames(String location, ResourceNameFilter filter) {
+        String prefix = location.isEmpty() ? "" : location + "/";
+        Set<String> resourceNames = new TreeSet<>();
+        for (String resourceName : entries.subMap(prefix, true, prefix + Character.MAX_VALUE, false).keySet()) {
+            if (filter.accept(resourceName)) {
+                resourceNames.add(resourceName);
+            }
+        }
+        return resourceNames;
+    }
+
+    /**
+     * @param resourceName The name of the resource on the classpath.
+     * @return The name of the algorithm the indexed checksum was computed with, or {@code null} if none.
+     */
+    public String getChecksumAlgorithm(String resourceName) {
+        IndexedChecksum checksum = entries.get(resourceName);
+        return checksum == null ? null : checksum.algorithm;
+    }
+
+    /**
+     * @param resourceName The name of the resource on the classpath.
+     * @return The indexed checksum, or {@code null} if none.
+     */
+    public Long getChecksum(String resourceName) {
+        IndexedChecksum checksum = entries.get(resourceName);
+        return checksum == null ? null : checksum.value;
+    }
+
+    /**
+     * The checksum of an indexed resource.
+     */
+    private static final class IndexedChecksum {
+        private final String algorithm;
+        private final long value;
+
+        private IndexedChecksum(String algorithm, long value) {
+            this.algorithm = algorithm;
+            this.value = value;
+        }
+    }
+}
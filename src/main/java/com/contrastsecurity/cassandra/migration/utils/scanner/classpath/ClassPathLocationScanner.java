@@ -31,5 +31,19 @@ public interface ClassPathLocationScanner {
      * @return The system-independent names of the resources on the classpath.
      * @throws IOException when the scanning failed.
      */
-    Set<String> findResourceNames(String location, URL locationUrl) throws IOException;
+    default Set<String> findResourceNames(String location, URL locationUrl) throws IOException {
+        return findResourceNames(location, locationUrl, ResourceNameFilter.ALL);
+    }
+
+    /**
+     * Finds the resource names below this location on the classpath under this locationUrl that match this filter.
+     * The filter is applied while enumerating the location, so that non-matching names are never collected.
+     *
+     * @param location    The system-independent location on the classpath.
+     * @param locationUrl The system-specific physical location URL.
+     * @param filter      The filter the resource names must match.
+     * @return The system-independent names of the matching resources on the classpath.
+     * @throws IOException when the scanning failed.
+     */
+    Set<String> findResourceNames(String location, URL locationUrl, ResourceNameFilter filter) throws IOException;
 }
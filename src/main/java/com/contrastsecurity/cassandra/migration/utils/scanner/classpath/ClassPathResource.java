@@ -38,6 +38,17 @@ public class ClassPathResource implements Comparable<ClassPathResource>, Resourc
      */
     private ClassLoader classLoader;
 
+    /**
+     * The name of the algorithm of the checksum recorded for this resource in a {@link ClassPathIndex}.
+     * {@code null} if none.
+     */
+    private String indexedChecksumAlgorithm;
+
+    /**
+     * The checksum recorded for this resource in a {@link ClassPathIndex}. {@code null} if none.
+     */
+    private Long indexedChecksum;
+
     /**
      * Creates a new ClassPathResource.
      *
@@ -45,14 +56,43 @@ public class ClassPathResource implements Comparable<ClassPathResource>, Resourc
      * @param classLoader The ClassLoader to use.
      */
     public ClassPathResource(String location, ClassLoader classLoader) {
+        this(location, classLoader, null, null);
+    }
+
+    /**
+     * Creates a new ClassPathResource whose checksum is known from a {@link ClassPathIndex}.
+     *
+     * @param location                 The location of the resource on the classpath.
+     * @param classLoader              The ClassLoader to use.
+     * @param indexedChecksumAlgorithm The name of the algorithm of the indexed checksum. {@code null} if none.
+     * @param indexedChecksum          The indexed checksum. {@code null} if none.
+     */
+    public ClassPathResource(String location, ClassLoader classLoader, String indexedChecksumAlgorithm,
+                             Long indexedChecksum) {
         this.location = location;
         this.classLoader = classLoader;
+        this.indexedChecksumAlgorithm = indexedChecksumAlgorithm;
+        this.indexedChecksum = indexedChecksum;
     }
 
     public String getLocation() {
         return location;
     }
 
+    /**
+     * @return The name of the algorithm of the checksum recorded in the build-time index. {@code null} if none.
+     */
+    public String getIndexedChecksumAlgorithm() {
+        return indexedChecksumAlgorithm;
+    }
+
+    /**
+     * @return The checksum recorded in the build-time index. {@code null} if none.
+     */
+    public Long getIndexedChecksum() {
+        return indexedChecksum;
+    }
+
     public String getLocationOnDisk() {
         URL url = getUrl();
         if (url == null) {
@@ -98,6 +138,14 @@ public class ClassPathResource implements Comparable<ClassPathResource>, Resourc
         }
     }
 
+    public InputStream loadAsStream() {
+        InputStream inputStream = classLoader.getResourceAsStream(location);
+        if (inputStream == null) {
+            throw new CassandraMigrationException("Unable to obtain inputstream for resource: " + location);
+        }
+        return new BufferedInputStream(inputStream);
+    }
+
     public String getFilename() {
         return location.substring(location.lastIndexOf("/") + 1);
     }
@@ -18,12 +18,13 @@ package com.contrastsecurity.cassandra.migration.utils.scanner.classpath;
 import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
 import com.contrastsecurity.cassandra.migration.logging.Log;
 import com.contrastsecurity.cassandra.migration.logging.LogFactory;
-import com.contrastsecurity.cassandra.migration.utils.ClassUtils;
 import com.contrastsecurity.cassandra.migration.utils.FeatureDetector;
 import com.contrastsecurity.cassandra.migration.utils.UrlUtils;
 import com.contrastsecurity.cassandra.migration.utils.scanner.Resource;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Modifier;
 import java.net.URL;
 import java.net.URLDecoder;
@@ -38,7 +39,28 @@ public class ClassPathScanner {
     private final ClassLoader classLoader;
 
     /**
-     * Creates a new Classpath scanner.
+     * The build-time indexes of the classpath roots, by root URL. Loaded on first use.
+     */
+    private volatile Map<String, ClassPathIndex> indexes;
+
+    /**
+     * The scanner for directories on the classpath.
+     */
+    private final FileSystemClassPathLocationScanner fileSystemLocationScanner = new FileSystemClassPathLocationScanner();
+
+    /**
+     * The scanner for jar files, caching the entries of every jar for the lifetime of this scanner.
+     */
+    private final JarFileClassPathLocationScanner jarFileLocationScanner = new JarFileClassPathLocationScanner();
+
+    /**
+     * The scanner for jars nested within another jar, caching the nested jars for the lifetime of this scanner.
+     */
+    private final NestedJarClassPathLocationScanner nestedJarLocationScanner = new NestedJarClassPathLocationScanner();
+
+    /**
+     * Creates a new Classpath scanner. A scanner caches the jar entries it has read, so it should be shared across
+     * the locations scanned during a migration run. Scanners are thread-safe.
      *
      * @param classLoader The ClassLoader for loading migrations on the classpath.
      */
@@ -61,9 +83,20 @@ public class ClassPathScanner {
 
         Set<Resource> resources = new TreeSet<Resource>();
 
-        Set<String> resourceNames = findResourceNames(path, prefix, suffix);
+        Map<String, ClassPathIndex> resourceIndexes = new HashMap<String, ClassPathIndex>();
+        Map<String, NestedJarFile> resourceNestedJars = new HashMap<String, NestedJarFile>();
+        Set<String> resourceNames = findResourceNames(path, prefix, suffix, resourceIndexes, resourceNestedJars);
         for (String resourceName : resourceNames) {
-            resources.add(new ClassPathResource(resourceName, classLoader));
+            ClassPathIndex index = resourceIndexes.get(resourceName);
+            String checksumAlgorithm = index == null ? null : index.getChecksumAlgorithm(resourceName);
+            Long checksum = index == null ? null : index.getChecksum(resourceName);
+
+            NestedJarFile nestedJar = resourceNestedJars.get(resourceName);
+            if (nestedJar != null) {
+                resources.add(new NestedJarResource(resourceName, classLoader, nestedJar, checksumAlgorithm, checksum));
+            } else {
+                resources.add(new ClassPathResource(resourceName, classLoader, checksumAlgorithm, checksum));
+            }
             LOG.debug("Found resource: " + resourceName);
         }
 
@@ -72,7 +105,8 @@ public class ClassPathScanner {
 
     /**
      * Scans the classpath for concrete classes under the specified package implementing this interface.
-     * Non-instantiable abstract classes are filtered out.
+     * Non-instantiable abstract classes are filtered out. Candidates are checked from their class file header first,
+     * so that only the matching classes are loaded.
      *
      * @param location             The location (package) in the classpath to start scanning.
      *                             Subpackages are also scanned.
@@ -85,9 +119,25 @@ public class ClassPathScanner {
 
         List<Class<?>> classes = new ArrayList<Class<?>>();
 
-        Set<String> resourceNames = findResourceNames(location, "", ".class");
+        String interfaceName = implementedInterface.getName().replace('.', '/');
+        Map<String, Boolean> subtypeCache = new HashMap<String, Boolean>();
+
+        Set<String> resourceNames = findResourceNames(location, "", ".class", new HashMap<String, ClassPathIndex>(),
+                new HashMap<String, NestedJarFile>());
         for (String resourceName : resourceNames) {
             String className = toClassName(resourceName);
+
+            ClassFileHeader header = readClassFileHeader(resourceName);
+            if (header != null) {
+                if (!header.isInstantiable()) {
+                    LOG.debug("Skipping non-instantiable class: " + className);
+                    continue;
+                }
+                if (!isSubtype(header, interfaceName, subtypeCache)) {
+                    continue;
+                }
+            }
+
             Class<?> clazz = classLoader.loadClass(className);
 
             if (Modifier.isAbstract(clazz.getModifiers()) || clazz.isEnum() || clazz.isAnonymousClass()) {
@@ -99,12 +149,6 @@ public class ClassPathScanner {
                 continue;
             }
 
-            try {
-                ClassUtils.instantiate(className, classLoader);
-            } catch (Exception e) {
-                throw new CassandraMigrationException("Unable to instantiate class: " + className, e);
-            }
-
             classes.add(clazz);
             LOG.debug("Found class: " + className);
         }
@@ -112,6 +156,75 @@ public class ClassPathScanner {
         return classes.toArray(new Class<?>[classes.size()]);
     }
 
+    /**
+     * Checks whether the class of this header may implement this interface, by walking its superclasses and
+     * interfaces through their class file headers.
+     *
+     * @param header        The header of the class to check.
+     * @param interfaceName The internal name of the interface.
+     * @param cache         The results for the types checked so far, by internal name.
+     * @return {@code false} if the class definitely doesn't implement the interface, {@code true} if it does or if
+     * part of its hierarchy could not be read.
+     */
+    private boolean isSubtype(ClassFileHeader header, String interfaceName, Map<String, Boolean> cache) {
+        if (header.getSuperName() != null && isSubtype(header.getSuperName(), interfaceName, cache)) {
+            return true;
+        }
+        for (String superInterface : header.getInterfaces()) {
+            if (isSubtype(superInterface, interfaceName, cache)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether this type may implement this interface.
+     *
+     * @param typeName      The internal name of the type to check.
+     * @param interfaceName The internal name of the interface.
+     * @param cache         The results for the types checked so far, by internal name.
+     * @return {@code false} if the type definitely doesn't implement the interface, {@code true} otherwise.
+     */
+    private boolean isSubtype(String typeName, String interfaceName, Map<String, Boolean> cache) {
+        if (typeName.equals(interfaceName)) {
+            return true;
+        }
+        if (typeName.startsWith("java/") && !interfaceName.startsWith("java/")) {
+            // Platform types can't implement application interfaces.
+            return false;
+        }
+
+        Boolean cached = cache.get(typeName);
+        if (cached != null) {
+            return cached;
+        }
+
+        ClassFileHeader header = readClassFileHeader(typeName + ".class");
+        boolean subtype = header == null || isSubtype(header, interfaceName, cache);
+        cache.put(typeName, subtype);
+        return subtype;
+    }
+
+    /**
+     * Reads the header of this class file.
+     *
+     * @param resourceName The resource name of the class file.
+     * @return The header, or {@code null} if it could not be read.
+     */
+    private ClassFileHeader readClassFileHeader(String resourceName) {
+        InputStream inputStream = classLoader.getResourceAsStream(resourceName);
+        if (inputStream == null) {
+            return null;
+        }
+        try (InputStream in = new BufferedInputStream(inputStream)) {
+            return ClassFileHeader.read(in);
+        } catch (IOException e) {
+            LOG.debug("Unable to read class file header of " + resourceName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Converts this resource name to a fully qualified class name.
      *
@@ -130,30 +243,79 @@ public class ClassPathScanner {
      * @param path   The path on the classpath to scan.
      * @param prefix The filename prefix to match.
      * @param suffix The filename suffix to match.
+     * @param resourceIndexes Receives the index each resource was found in, by resource name. Resources found by
+     *                        scanning have no entry.
+     * @param resourceNestedJars Receives the nested jar each resource was found in, by resource name. Resources
+     *                           outside of nested jars have no entry.
      * @return The resource names.
      * @throws IOException when scanning this location failed.
      */
-    private Set<String> findResourceNames(String path, String prefix, String suffix) throws IOException {
+    private Set<String> findResourceNames(String path, String prefix, String suffix,
+                                          Map<String, ClassPathIndex> resourceIndexes,
+                                          Map<String, NestedJarFile> resourceNestedJars) throws IOException {
         Set<String> resourceNames = new TreeSet<String>();
+        ResourceNameFilter filter = ResourceNameFilter.forFilename(prefix, suffix);
 
         List<URL> locationsUrls = getLocationUrlsForPath(path);
         for (URL locationUrl : locationsUrls) {
+            ClassPathIndex index = getIndex(path, locationUrl);
+            if (index != null && !index.isUpToDate(path, locationUrl)) {
+                LOG.warn("Ignoring the stale migration index of " + ClassPathIndex.getRootUrl(path, locationUrl)
+                        + ": " + path + " changed after it was generated. Rebuild to regenerate it.");
+                index = null;
+            }
+            if (index != null) {
+                LOG.debug("Using index of URL: " + locationUrl.toExternalForm());
+                for (String resourceName : index.findResourceNames(path, filter)) {
+                    resourceNames.add(resourceName);
+                    resourceIndexes.put(resourceName, index);
+                }
+                continue;
+            }
+
             LOG.debug("Scanning URL: " + locationUrl.toExternalForm());
 
             UrlResolver urlResolver = createUrlResolver(locationUrl.getProtocol());
             URL resolvedUrl = urlResolver.toStandardJavaUrl(locationUrl);
 
             String protocol = resolvedUrl.getProtocol();
-            ClassPathLocationScanner classPathLocationScanner = createLocationScanner(protocol);
+            ClassPathLocationScanner classPathLocationScanner = createLocationScanner(resolvedUrl);
             if (classPathLocationScanner == null) {
                 String scanRoot = UrlUtils.toFilePath(resolvedUrl);
                 LOG.warn("Unable to scan location: " + scanRoot + " (unsupported protocol: " + protocol + ")");
+            } else if (classPathLocationScanner == nestedJarLocationScanner) {
+                NestedJarFile nestedJar = nestedJarLocationScanner.getNestedJar(resolvedUrl);
+                for (String resourceName : nestedJarLocationScanner.findResourceNames(path, resolvedUrl, filter)) {
+                    resourceNames.add(resourceName);
+                    resourceNestedJars.put(resourceName, nestedJar);
+                }
             } else {
-                resourceNames.addAll(classPathLocationScanner.findResourceNames(path, resolvedUrl));
+                resourceNames.addAll(classPathLocationScanner.findResourceNames(path, resolvedUrl, filter));
             }
         }
 
-        return filterResourceNames(resourceNames, prefix, suffix);
+        return resourceNames;
+    }
+
+    /**
+     * Looks up the build-time index of the classpath root containing this location.
+     *
+     * @param path        The path on the classpath.
+     * @param locationUrl The physical URL of the location.
+     * @return The index, or {@code null} if the classpath root has none.
+     * @throws IOException when an index could not be read.
+     */
+    private ClassPathIndex getIndex(String path, URL locationUrl) throws IOException {
+        Map<String, ClassPathIndex> rootIndexes = indexes;
+        if (rootIndexes == null) {
+            rootIndexes = ClassPathIndex.loadAll(classLoader);
+            indexes = rootIndexes;
+        }
+        if (rootIndexes.isEmpty()) {
+            return null;
+        }
+        String rootUrl = ClassPathIndex.getRootUrl(path, locationUrl);
+        return rootUrl == null ? null : rootIndexes.get(rootUrl);
     }
 
     /**
@@ -202,47 +364,30 @@ public class ClassPathScanner {
     }
 
     /**
-     * Creates an appropriate location scanner for this url protocol.
+     * Creates an appropriate location scanner for this url.
      *
-     * @param protocol The protocol of the location url to scan.
+     * @param locationUrl The location url to scan.
      * @return The location scanner or {@code null} if it could not be created.
      */
-    private ClassPathLocationScanner createLocationScanner(String protocol) {
+    private ClassPathLocationScanner createLocationScanner(URL locationUrl) {
+        String protocol = locationUrl.getProtocol();
         if ("file".equals(protocol)) {
-            return new FileSystemClassPathLocationScanner();
+            return fileSystemLocationScanner;
+        }
+
+        if (NestedJarClassPathLocationScanner.isNested(locationUrl)) {
+            return nestedJarLocationScanner;
         }
 
         if ("jar".equals(protocol)
                 || "zip".equals(protocol) //WebLogic
                 || "wsjar".equals(protocol) //WebSphere
                 ) {
-            return new JarFileClassPathLocationScanner();
+            return jarFileLocationScanner;
         }
 
         FeatureDetector featureDetector = new FeatureDetector(classLoader);
 
         return null;
     }
-
-    /**
-     * Filters this list of resource names to only include the ones whose filename matches this prefix and this suffix.
-     *
-     * @param resourceNames The names to filter.
-     * @param prefix        The prefix to match.
-     * @param suffix        The suffix to match.
-     * @return The filtered names set.
-     */
-    private Set<String> filterResourceNames(Set<String> resourceNames, String prefix, String suffix) {
-        Set<String> filteredResourceNames = new TreeSet<String>();
-        for (String resourceName : resourceNames) {
-            String fileName = resourceName.substring(resourceName.lastIndexOf("/") + 1);
-            if (fileName.startsWith(prefix) && fileName.endsWith(suffix)
-                    && (fileName.length() > (prefix + suffix).length())) {
-                filteredResourceNames.add(resourceName);
-            } else {
-                LOG.debug("Filtering out resource: " + resourceName + " (filename: " + fileName + ")");
-            }
-        }
-        return filteredResourceNames;
-    }
 }
@@ -31,7 +31,7 @@ import java.util.TreeSet;
 public class FileSystemClassPathLocationScanner implements ClassPathLocationScanner {
     private static final Log LOG = LogFactory.getLog(FileSystemClassPathLocationScanner.class);
 
-    public Set<String> findResourceNames(String location, URL locationUrl) throws IOException {
+    public Set<String> findResourceNames(String location, URL locationUrl, ResourceNameFilter filter) throws IOException {
         String filePath = UrlUtils.toFilePath(locationUrl);
         File folder = new File(filePath);
         if (!folder.isDirectory()) {
@@ -44,7 +44,9 @@ public class FileSystemClassPathLocationScanner implements ClassPathLocationScan
             classPathRootOnDisk = classPathRootOnDisk + File.separator;
         }
         LOG.debug("Scanning starting at classpath root in filesystem: " + classPathRootOnDisk);
-        return findResourceNamesFromFileSystem(classPathRootOnDisk, location, folder);
+        Set<String> resourceNames = new TreeSet<String>();
+        findResourceNamesFromFileSystem(classPathRootOnDisk, location, folder, filter, resourceNames);
+        return resourceNames;
     }
 
     /**
@@ -59,22 +61,39 @@ public class FileSystemClassPathLocationScanner implements ClassPathLocationScan
     /*private -> for testing*/
     @SuppressWarnings("ConstantConditions")
     Set<String> findResourceNamesFromFileSystem(String classPathRootOnDisk, String scanRootLocation, File folder) throws IOException {
-        LOG.debug("Scanning for resources in path: " + folder.getPath() + " (" + scanRootLocation + ")");
-
         Set<String> resourceNames = new TreeSet<String>();
+        findResourceNamesFromFileSystem(classPathRootOnDisk, scanRootLocation, folder, ResourceNameFilter.ALL, resourceNames);
+        return resourceNames;
+    }
+
+    /**
+     * Collects the resource names contained in this file system folder that match this filter.
+     *
+     * @param classPathRootOnDisk The location of the classpath root on disk, with a trailing slash.
+     * @param scanRootLocation    The root location of the scan on the classpath, without leading or trailing slashes.
+     * @param folder              The folder to look for resources under on disk.
+     * @param filter              The filter the resource names must match.
+     * @param resourceNames       Receives the matching resource names.
+     * @throws IOException when the folder could not be read.
+     */
+    @SuppressWarnings("ConstantConditions")
+    private void findResourceNamesFromFileSystem(String classPathRootOnDisk, String scanRootLocation, File folder,
+                                                 ResourceNameFilter filter, Set<String> resourceNames) throws IOException {
+        LOG.debug("Scanning for resources in path: " + folder.getPath() + " (" + scanRootLocation + ")");
 
         File[] files = folder.listFiles();
         for (File file : files) {
             if (file.canRead()) {
                 if (file.isDirectory()) {
-                    resourceNames.addAll(findResourceNamesFromFileSystem(classPathRootOnDisk, scanRootLocation, file));
+                    findResourceNamesFromFileSystem(classPathRootOnDisk, scanRootLocation, file, filter, resourceNames);
                 } else {
-                    resourceNames.add(toResourceNameOnClasspath(classPathRootOnDisk, file));
+                    String resourceName = toResourceNameOnClasspath(classPathRootOnDisk, file);
+                    if (filter.accept(resourceName)) {
+                        resourceNames.add(resourceName);
+                    }
                 }
             }
         }
-
-        return resourceNames;
     }
 
     /**
@@ -16,27 +16,81 @@
 package com.contrastsecurity.cassandra.migration.utils.scanner.classpath;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.JarURLConnection;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 /**
  * ClassPathLocationScanner for jar files.
+ * <p>The entry names of every jar are read once and kept sorted, so that scanning further locations of the same jar
+ * is a binary search instead of another pass over the jar. Instances are thread-safe and meant to be shared for the
+ * duration of a migration run.</p>
  */
 public class JarFileClassPathLocationScanner implements ClassPathLocationScanner {
-    public Set<String> findResourceNames(String location, URL locationUrl) throws IOException {
-        JarFile jarFile = getJarFromUrl(locationUrl);
+    /**
+     * The sorted entry names of the jars scanned so far, by jar URL.
+     */
+    private final ConcurrentMap<String, String[]> jarEntries = new ConcurrentHashMap<String, String[]>();
 
+    public Set<String> findResourceNames(String location, URL locationUrl, ResourceNameFilter filter) throws IOException {
+        String[] entries;
         try {
-            // For Tomcat and non-expanded WARs.
-            String prefix = jarFile.getName().toLowerCase().endsWith(".war") ? "WEB-INF/classes/" : "";
-            return findResourceNamesFromJarFile(jarFile, prefix, location);
+            entries = jarEntries.computeIfAbsent(getJarKey(locationUrl), key -> {
+                try {
+                    return readEntryNames(locationUrl);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // For Tomcat and non-expanded WARs.
+        String prefix = getJarKey(locationUrl).toLowerCase().endsWith(".war") ? "WEB-INF/classes/" : "";
+        return findResourceNamesFromEntries(entries, prefix, location, filter);
+    }
+
+    /**
+     * @param locationUrl The URL of a location within a jar.
+     * @return The key identifying the jar of this location URL.
+     */
+    private String getJarKey(URL locationUrl) {
+        String externalForm = locationUrl.toExternalForm();
+        int separatorIndex = externalForm.indexOf("!/");
+        return separatorIndex == -1 ? externalForm : externalForm.substring(0, separatorIndex);
+    }
+
+    /**
+     * Reads the names of all entries of the jar of this location URL.
+     *
+     * @param locationUrl The URL of a location within the jar.
+     * @return The entry names, sorted.
+     * @throws IOException when the jar could not be read.
+     */
+    private String[] readEntryNames(URL locationUrl) throws IOException {
+        JarFile jarFile = getJarFromUrl(locationUrl);
+        try {
+            List<String> entryNames = new ArrayList<String>(jarFile.size());
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                entryNames.add(entries.nextElement().getName());
+            }
+            String[] sortedEntryNames = entryNames.toArray(new String[entryNames.size()]);
+            Arrays.sort(sortedEntryNames);
+            return sortedEntryNames;
         } finally {
             jarFile.close();
         }
@@ -82,23 +136,37 @@ public class JarFileClassPathLocationScanner implements ClassPathLocationScanner
     }
 
     /**
-     * Finds all the resource names contained in this directory within this jar file.
+     * Finds all the resource names contained in this directory within these jar entries.
+     *
+     * @param entryNames The sorted entry names of the jar file.
+     * @param prefix     The prefix to ignore within the jar file.
+     * @param location   The location to look under.
+     * @return The resource names.
+     */
+    /* private -> for testing */
+    static Set<String> findResourceNamesFromEntries(String[] entryNames, String prefix, String location) {
+        return findResourceNamesFromEntries(entryNames, prefix, location, ResourceNameFilter.ALL);
+    }
+
+    /**
+     * Finds the resource names contained in this directory within these jar entries that match this filter.
      *
-     * @param jarFile  The jar file.
-     * @param prefix   The prefix to ignore within the jar file.
-     * @param location The location to look under.
+     * @param entryNames The sorted entry names of the jar file.
+     * @param prefix     The prefix to ignore within the jar file.
+     * @param location   The location to look under.
+     * @param filter     The filter the resource names must match.
      * @return The resource names.
-     * @throws IOException when reading the jar file failed.
      */
-    private Set<String> findResourceNamesFromJarFile(JarFile jarFile, String prefix, String location) throws IOException {
+    static Set<String> findResourceNamesFromEntries(String[] entryNames, String prefix, String location,
+                                                    ResourceNameFilter filter) {
         String toScan = prefix + location + (location.endsWith("/") ? "" : "/");
         Set<String> resourceNames = new TreeSet<String>();
 
-        Enumeration<JarEntry> entries = jarFile.entries();
-        while (entries.hasMoreElements()) {
-            String entryName = entries.nextElement().getName();
-            if (entryName.startsWith(toScan)) {
-                resourceNames.add(entryName.substring(prefix.length()));
+        int start = Arrays.binarySearch(entryNames, toScan);
+        for (int i = start < 0 ? -start - 1 : start; i < entryNames.length && entryNames[i].startsWith(toScan); i++) {
+            String resourceName = prefix.isEmpty() ? entryNames[i] : entryNames[i].substring(prefix.length());
+            if (filter.accept(resourceName)) {
+                resourceNames.add(resourceName);
             }
         }
 
@@ -0,0 +1,222 @@
+package com.contrastsecurity.cassandra.migration.utils.scanner.classpath;
+
+import com.contrastsecurity.cassandra.migration.api.ChecksumAlgorithm;
+import com.contrastsecurity.cassandra.migration.utils.checksum.ChecksumAlgorithms;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Annotation processor generating the {@link ClassPathIndex} of the compiled module: every {@code .cql},
+ * {@code .csv} and {@code .jsonl} resource of the class output directory with its checksum, and every concrete {@code JavaMigration} compiled in this run.
+ * <p>The processor is not registered as a service, so it only runs when enabled explicitly, eg: with
+ * {@code <annotationProcessors>} of the maven-compiler-plugin or javac's {@code -processor} option. Resources must be
+ * copied to the class output directory before compilation (as Maven's process-resources phase does). The checksum
+ * algorithm can be set with {@code -Acassandra.migration.checksumalgorithm=CRC32C} and must match the one configured
+ * at runtime for the indexed checksums to be used.</p>
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(MigrationIndexProcessor.CHECKSUM_ALGORITHM_OPTION)
+public class MigrationIndexProcessor extends AbstractProcessor {
+    /**
+     * The processor option selecting the checksum algorithm.
+     */
+    public static final String CHECKSUM_ALGORITHM_OPTION = "cassandra.migration.checksumalgorithm";
+
+    /**
+     * The migration interfaces whose implementations are indexed.
+     */
+    private static final String[] MIGRATION_INTERFACES = {
+            "com.contrastsecurity.cassandra.migration.api.JavaMigration"
+    };
+
+    /**
+     * The suffixes of the indexed migration resources.
+     */
+    private static final String[] RESOURCE_SUFFIXES = {".cql", ".csv", ".jsonl"};
+
+    /**
+     * The resource names of the migration classes compiled in this run.
+     */
+    private final Set<String> classResourceNames = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            try {
+                writeIndex();
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Unable to write " + ClassPathIndex.LOCATION + ": " + e.getMessage());
+            }
+            return false;
+        }
+
+        for (Element element : roundEnv.getRootElements()) {
+            collectMigrationClasses(element);
+        }
+        return false;
+    }
+
+    /**
+     * Collects this type and its nested types if they are concrete migrations.
+     *
+     * @param element The element to inspect.
+     */
+    private void collectMigrationClasses(Element element) {
+        if (!(element instanceof TypeElement)) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        if (type.getKind() == ElementKind.CLASS
+                && !type.getModifiers().contains(Modifier.ABSTRACT)
+                && (!type.getNestingKind().isNested() || type.getModifiers().contains(Modifier.STATIC))
+                && isMigration(type)) {
+            String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+            classResourceNames.add(binaryName.replace('.', '/') + ".class");
+        }
+        for (Element enclosed : type.getEnclosedElements()) {
+            collectMigrationClasses(enclosed);
+        }
+    }
+
+    /**
+     * @param type The type to inspect.
+     * @return {@code true} if this type implements one of the migration interfaces.
+     */
+    private boolean isMigration(TypeElement type) {
+        TypeMirror erasure = processingEnv.getTypeUtils().erasure(type.asType());
+        for (String migrationInterface : MIGRATION_INTERFACES) {
+            TypeElement interfaceElement = processingEnv.getElementUtils().getTypeElement(migrationInterface);
+            if (interfaceElement != null && processingEnv.getTypeUtils().isAssignable(erasure,
+                    processingEnv.getTypeUtils().erasure(interfaceElement.asType()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the index to the class output directory.
+     *
+     * @throws IOException when the index could not be written.
+     */
+    private void writeIndex() throws IOException {
+        FileObject indexFile = processingEnv.getFiler()
+                .createResource(StandardLocation.CLASS_OUTPUT, "", ClassPathIndex.LOCATION);
+
+        ClassPathIndex index = new ClassPathIndex();
+        for (String classResourceName : classResourceNames) {
+            index.add(classResourceName);
+        }
+
+        if ("file".equals(indexFile.toUri().getScheme())) {
+            Path indexPath = Paths.get(indexFile.toUri());
+            Path root = indexPath;
+            for (int i = 0; i < ClassPathIndex.LOCATION.split("/").length; i++) {
+                root = root.getParent();
+            }
+            retainPreviousClasses(indexPath, root, index);
+            indexResources(root, index);
+        } else {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Class output is not a directory, only migration classes are indexed: " + indexFile.toUri());
+        }
+
+        try (Writer writer = new OutputStreamWriter(indexFile.openOutputStream(), "UTF-8")) {
+            index.write(writer);
+        }
+    }
+
+    /**
+     * Keeps the classes of the previous index that still exist, as incremental compilations only process the
+     * modified sources.
+     *
+     * @param indexPath The path of the previous index.
+     * @param root      The class output directory.
+     * @param index     The index being built.
+     * @throws IOException when the previous index could not be read.
+     */
+    private void retainPreviousClasses(Path indexPath, Path root, ClassPathIndex index) throws IOException {
+        File previousIndexFile = indexPath.toFile();
+        if (!previousIndexFile.isFile()) {
+            return;
+        }
+        ClassPathIndex previousIndex;
+        try (InputStream inputStream = new FileInputStream(previousIndexFile)) {
+            previousIndex = ClassPathIndex.read(inputStream);
+        }
+        for (String resourceName : previousIndex.getResourceNames()) {
+            if (resourceName.endsWith(".class") && Files.isRegularFile(root.resolve(resourceName))) {
+                index.add(resourceName);
+            }
+        }
+    }
+
+    /**
+     * Adds the cql and data resources of the class output directory to the index.
+     *
+     * @param root  The class output directory.
+     * @param index The index being built.
+     * @throws IOException when the directory could not be read.
+     */
+    private void indexResources(Path root, ClassPathIndex index) throws IOException {
+        String algorithmName = processingEnv.getOptions().get(CHECKSUM_ALGORITHM_OPTION);
+        ChecksumAlgorithm algorithm = ChecksumAlgorithms.forName(
+                algorithmName == null ? ChecksumAlgorithms.CRC32 : algorithmName, getClass().getClassLoader());
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isRegularFile(path) && isMigrationResource(path.getFileName().toString())) {
+                    String resourceName = root.relativize(path).toString().replace(File.separatorChar, '/');
+                    long checksum;
+                    try (InputStream inputStream = Files.newInputStream(path)) {
+                        checksum = ChecksumAlgorithms.calculate(algorithm, inputStream);
+                    }
+                    index.add(resourceName, algorithm.getName(), checksum);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param fileName The name of a resource file.
+     * @return {@code true} if it may be a migration resource.
+     */
+    private static boolean isMigrationResource(String fileName) {
+        for (String suffix : RESOURCE_SUFFIXES) {
+            if (fileName.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,121 @@
+package com.contrastsecurity.cassandra.migration.utils.scanner.classpath;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * ClassPathLocationScanner for jars nested within another jar, eg: the libraries of a Spring Boot fat jar. Both the
+ * {@code jar:file:/app.jar!/BOOT-INF/lib/lib.jar!/db/migration} and the
+ * {@code jar:nested:/app.jar/!BOOT-INF/lib/lib.jar!/db/migration} URL formats are supported.
+ * <p>Nested jars are read in place through {@link NestedJarFile} and cached for the lifetime of this scanner.
+ * Instances are thread-safe and meant to be shared for the duration of a migration run.</p>
+ */
+public class NestedJarClassPathLocationScanner implements ClassPathLocationScanner {
+    private static final String NESTED_PREFIX = "nested:";
+
+    /**
+     * The nested jars scanned so far, by nested jar URL.
+     */
+    private final ConcurrentMap<String, NestedJarFile> nestedJars = new ConcurrentHashMap<String, NestedJarFile>();
+
+    public Set<String> findResourceNames(String location, URL locationUrl, ResourceNameFilter filter) throws IOException {
+        return JarFileClassPathLocationScanner.findResourceNamesFromEntries(
+                getNestedJar(locationUrl).getEntryNames(), "", location, filter);
+    }
+
+    /**
+     * Retrieves the nested jar of this location URL.
+     *
+     * @param locationUrl The URL of a location within a nested jar.
+     * @return The nested jar.
+     * @throws IOException when the nested jar could not be read.
+     */
+    public NestedJarFile getNestedJar(final URL locationUrl) throws IOException {
+        try {
+            return nestedJars.computeIfAbsent(getNestedJarKey(locationUrl), key -> {
+                try {
+                    return open(locationUrl);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Checks whether this URL points within a nested jar.
+     *
+     * @param locationUrl The location URL.
+     * @return {@code true} if it does.
+     */
+    public static boolean isNested(URL locationUrl) {
+        if (!"jar".equals(locationUrl.getProtocol())) {
+            return false;
+        }
+        String urlFile = locationUrl.getFile();
+        if (urlFile.startsWith(NESTED_PREFIX)) {
+            return true;
+        }
+        int separatorIndex = urlFile.indexOf("!/");
+        return separatorIndex != -1 && urlFile.indexOf("!/", separatorIndex + 2) != -1;
+    }
+
+    /**
+     * @param locationUrl The URL of a location within a nested jar.
+     * @return The key identifying the nested jar of this location URL.
+     */
+    private static String getNestedJarKey(URL locationUrl) {
+        String urlFile = locationUrl.getFile();
+        int separatorIndex = urlFile.indexOf("!/");
+        if (!urlFile.startsWith(NESTED_PREFIX)) {
+            separatorIndex = urlFile.indexOf("!/", separatorIndex + 2);
+        }
+        return separatorIndex == -1 ? urlFile : urlFile.substring(0, separatorIndex);
+    }
+
+    /**
+     * Opens the nested jar of this location URL.
+     *
+     * @param locationUrl The URL of a location within a nested jar.
+     * @return The nested jar.
+     * @throws IOException when the URL is invalid or the nested jar could not be read.
+     */
+    private static NestedJarFile open(URL locationUrl) throws IOException {
+        String key = getNestedJarKey(locationUrl);
+
+        if (key.startsWith(NESTED_PREFIX)) {
+            int separatorIndex = key.indexOf("/!");
+            if (separatorIndex == -1) {
+                throw new IOException("Invalid nested jar URL: " + locationUrl);
+            }
+            String outerPath = URLDecoder.decode(
+                    key.substring(NESTED_PREFIX.length(), separatorIndex).replace("+", "%2b"), "UTF-8");
+            return NestedJarFile.open(new File(outerPath), key.substring(separatorIndex + 2));
+        }
+
+        int separatorIndex = key.indexOf("!/");
+        String outerUrl = key.substring(0, separatorIndex);
+        String nestedEntryName = key.substring(separatorIndex + 2);
+        if (!outerUrl.startsWith("file:")) {
+            throw new IOException("Unsupported outer jar URL: " + outerUrl);
+        }
+
+        File outerFile;
+        try {
+            outerFile = new File(new URL(outerUrl).toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            // Fallback for URLs that are not valid URIs (should hardly ever happen).
+            outerFile = new File(outerUrl.substring("file:".length()));
+        }
+        return NestedJarFile.open(outerFile, nestedEntryName);
+    }
+}
@@ -0,0 +1,620 @@
+package com.contrastsecurity.cassandra.migration.utils.scanner.classpath;
+
+import com.contrastsecurity.cassandra.migration.logging.Log;
+import com.contrastsecurity.cassandra.migration.logging.LogFactory;
+import com.contrastsecurity.cassandra.migration.utils.FileCopyUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Read-only view of a jar nested within another jar, eg: a library in BOOT-INF/lib of a Spring Boot fat jar, read in
+ * place without extracting it to a temporary file.
+ * <p>Nested jars are normally stored uncompressed, so their central directory and entries are read directly at their
+ * offset within the outer jar, through one file handle kept open until {@link #close()}, and can be streamed through
+ * {@link #openStream(String)}. Compressed nested jars are inflated in memory once and read from there, and the entries
+ * of nested ZIP64 archives are streamed once through a {@link ZipInputStream} and kept in memory. Instances are
+ * thread-safe.</p>
+ */
+public class NestedJarFile implements Closeable {
+    private static final Log LOG = LogFactory.getLog(NestedJarFile.class);
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The outer jar file.
+     */
+    private final File outerFile;
+
+    /**
+     * The name of the nested jar within the outer jar.
+     */
+    private final String nestedEntryName;
+
+    /**
+     * The offset of the nested jar within the outer jar, or within {@link #nestedContent} when in memory.
+     */
+    private final long nestedOffset;
+
+    /**
+     * The content of the nested jar when it is compressed within the outer jar. {@code null} if read in place.
+     */
+    private final byte[] nestedContent;
+
+    /**
+     * The entries of the nested jar, by name. {@code null} if the nested jar is a ZIP64 archive.
+     */
+    private final Map<String, Entry> entries;
+
+    /**
+     * The content of the entries of a nested ZIP64 archive, by name. {@code null} for other nested jars.
+     */
+    private final Map<String, byte[]> entryContents;
+
+    /**
+     * The handle on the outer jar, opened on first read. {@code null} if not open.
+     */
+    private RandomAccessFile file;
+
+    /**
+     * The sorted names of the entries of the nested jar.
+     */
+    private final String[] entryNames;
+
+    /**
+     * Creates a new view of a nested jar.
+     *
+     * @param outerFile       The outer jar file.
+     * @param nestedEntryName The name of the nested jar within the outer jar.
+     * @param nestedOffset    The offset of the nested jar within the outer jar, or within its content when in memory.
+     * @param nestedContent   The content of the nested jar. {@code null} if read in place.
+     * @param entries         The entries of the nested jar, by name. {@code null} if the nested jar is a ZIP64 archive.
+     * @param entryContents   The content of the entries of a nested ZIP64 archive. {@code null} for other nested jars.
+     * @param entryNames      The names of the entries of the nested jar.
+     */
+    private NestedJarFile(File outerFile, String nestedEntryName, long nestedOffset, byte[] nestedContent,
+                          Map<String, Entry> entries, Map<String, byte[]> entryContents, String[] entryNames) {
+        this.outerFile = outerFile;
+        this.nestedEntryName = nestedEntryName;
+        this.nestedOffset = nestedOffset;
+        this.nestedContent = nestedContent;
+        this.entries = entries;
+        this.entryContents = entryContents;
+        Arrays.sort(entryNames);
+        this.entryNames = entryNames;
+    }
+
+    /**
+     * Opens this jar nested in this outer jar.
+     *
+     * @param outerFile       The outer jar file.
+     * @param nestedEntryName The name of the nested jar within the outer jar.
+     * @return The nested jar.
+     * @throws IOException when the nested jar could not be read.
+     */
+    public static NestedJarFile open(File outerFile, String nestedEntryName) throws IOException {
+        try (final RandomAccessFile file = new RandomAccessFile(outerFile, "r")) {
+            Archive archive = new Archive() {
+                public void readFully(long position, byte[] buffer, int offset, int length) throws IOException {
+                    file.seek(position);
+                    file.readFully(buffer, offset, length);
+                }
+            };
+            Entry nestedEntry = readCentralDirectory(archive, 0, file.length()).get(nestedEntryName);
+            if (nestedEntry == null) {
+                throw new FileNotFoundException("No entry " + nestedEntryName + " in " + outerFile);
+            }
+            if (nestedEntry.method == ZipEntry.STORED) {
+                long offset = getDataOffset(archive, 0, nestedEntry);
+                Map<String, Entry> entries = readCentralDirectory(archive, offset, nestedEntry.compressedSize);
+                return new NestedJarFile(outerFile, nestedEntryName, offset, null, entries, null,
+                        entries.keySet().toArray(new String[entries.size()]));
+            }
+            LOG.debug("Inflating compressed nested jar " + nestedEntryName + " of " + outerFile);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (ZipException e) {
+            LOG.debug("Inflating nested jar " + nestedEntryName + " of " + outerFile + ": " + e.getMessage());
+        }
+
+        final byte[] content = readNestedContent(outerFile, nestedEntryName);
+        try {
+            Map<String, Entry> entries = readCentralDirectory(new Archive() {
+                public void readFully(long position, byte[] buffer, int offset, int length) throws IOException {
+                    readContent(content, position, buffer, offset, length);
+                }
+            }, 0, content.length);
+            return new NestedJarFile(outerFile, nestedEntryName, 0, content, entries, null,
+                    entries.keySet().toArray(new String[entries.size()]));
+        } catch (ZipException e) {
+            LOG.debug("Streaming nested jar " + nestedEntryName + " of " + outerFile + ": " + e.getMessage());
+        }
+
+        Map<String, byte[]> entryContents = new HashMap<String, byte[]>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(content))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                entryContents.put(entry.getName(), FileCopyUtils.copyToByteArray(in));
+            }
+        }
+        return new NestedJarFile(outerFile, nestedEntryName, 0, null, null, entryContents,
+                entryContents.keySet().toArray(new String[entryContents.size()]));
+    }
+
+    /**
+     * @return The outer jar file.
+     */
+    public File getOuterFile() {
+        return outerFile;
+    }
+
+    /**
+     * @return The name of the nested jar within the outer jar.
+     */
+    public String getNestedEntryName() {
+        return nestedEntryName;
+    }
+
+    /**
+     * @return The sorted names of the entries of the nested jar.
+     */
+    public String[] getEntryNames() {
+        return entryNames;
+    }
+
+    /**
+     * Checks whether the nested jar has this entry.
+     *
+     * @param name The name of the entry.
+     * @return {@code true} if it does.
+     */
+    public boolean contains(String name) {
+        return Arrays.binarySearch(entryNames, name) >= 0;
+    }
+
+    /**
+     * Reads the content of this entry of the nested jar.
+     *
+     * @param name The name of the entry.
+     * @return The uncompressed content.
+     * @throws IOException when the entry could not be read.
+     */
+    public byte[] read(String name) throws IOException {
+        if (entries == null) {
+            byte[] content = entryContents.get(name);
+            if (content == null) {
+                throw new FileNotFoundException("No entry " + name + " in " + this);
+            }
+            return content.clone();
+        }
+
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new FileNotFoundException("No entry " + name + " in " + this);
+        }
+        if (entry.compressedSize > Integer.MAX_VALUE || entry.size > Integer.MAX_VALUE) {
+            throw new ZipException("Entry too large: " + name);
+        }
+
+        byte[] data = new byte[(int) entry.compressedSize];
+        Archive archive = nestedArchive();
+        synchronized (this) {
+            archive.readFully(getDataOffset(archive, nestedOffset, entry), data, 0, data.length);
+        }
+
+        if (entry.method == ZipEntry.STORED) {
+            return data;
+        }
+        if (entry.method == ZipEntry.DEFLATED) {
+            return inflate(data, (int) entry.size, name);
+        }
+        throw new ZipException("Unsupported compression method " + entry.method + " of entry " + name);
+    }
+
+    /**
+     * Opens a stream on the content of this entry of the nested jar. The entry is read from the outer jar and inflated
+     * as the stream is read, so that large entries are never held in memory.
+     *
+     * @param name The name of the entry.
+     * @return The stream of the uncompressed content. It reopens the handle on the outer jar if need be.
+     * @throws IOException when the entry could not be found.
+     */
+    public InputStream openStream(String name) throws IOException {
+        if (entries == null) {
+            byte[] content = entryContents.get(name);
+            if (content == null) {
+                throw new FileNotFoundException("No entry " + name + " in " + this);
+            }
+            return new ByteArrayInputStream(content);
+        }
+
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new FileNotFoundException("No entry " + name + " in " + this);
+        }
+        Archive archive = nestedArchive();
+        long dataOffset;
+        synchronized (this) {
+            dataOffset = getDataOffset(archive, nestedOffset, entry);
+        }
+        InputStream data = new ArchiveInputStream(archive, dataOffset, entry.compressedSize);
+        if (entry.method == ZipEntry.STORED) {
+            return data;
+        }
+        if (entry.method == ZipEntry.DEFLATED) {
+            return new EntryInflaterInputStream(data);
+        }
+        throw new ZipException("Unsupported compression method " + entry.method + " of entry " + name);
+    }
+
+    /**
+     * Closes the handle on the outer jar, if open. It is opened again by the next read.
+     *
+     * @throws IOException when the handle could not be closed.
+     */
+    public synchronized void close() throws IOException {
+        if (file != null) {
+            try {
+                file.close();
+            } finally {
+                file = null;
+            }
+        }
+    }
+
+    /**
+     * @return The archive holding the nested jar: its content in memory, or the outer jar read through the shared
+     * handle. Reads of the outer jar must hold the lock on this nested jar.
+     */
+    private Archive nestedArchive() {
+        if (nestedContent != null) {
+            return new Archive() {
+                public void readFully(long position, byte[] buffer, int offset, int length) throws IOException {
+                    readContent(nestedContent, position, buffer, offset, length);
+                }
+            };
+        }
+        return new Archive() {
+            public void readFully(long position, byte[] buffer, int offset, int length) throws IOException {
+                NestedJarFile.this.readFully(position, buffer, offset, length);
+            }
+        };
+    }
+
+    /**
+     * Reads this range of the outer jar through the shared handle, opening it if needed. Callers hold the lock on
+     * this nested jar, as the handle has a single position.
+     *
+     * @param position The offset of the range within the outer jar.
+     * @param buffer   The buffer to fill.
+     * @param offset   The offset in the buffer.
+     * @param length   The length of the range.
+     * @throws IOException when the range could not be read.
+     */
+    private void readFully(long position, byte[] buffer, int offset, int length) throws IOException {
+        if (file == null) {
+            file = new RandomAccessFile(outerFile, "r");
+        }
+        file.seek(position);
+        file.readFully(buffer, offset, length);
+    }
+
+    /**
+     * Reads this range of a nested jar held in memory.
+     *
+     * @param content  The content of the nested jar.
+     * @param position The offset of the range.
+     * @param buffer   The buffer to fill.
+     * @param offset   The offset in the buffer.
+     * @param length   The length of the range.
+     * @throws EOFException when the range is past the end of the content.
+     */
+    private static void readContent(byte[] content, long position, byte[] buffer, int offset, int length)
+            throws EOFException {
+        if (position < 0 || position + length > content.length) {
+            throw new EOFException();
+        }
+        System.arraycopy(content, (int) position, buffer, offset, length);
+    }
+
+    /**
+     * Inflates the content of this compressed nested jar.
+     *
+     * @param outerFile       The outer jar file.
+     * @param nestedEntryName The name of the nested jar within the outer jar.
+     * @return The content of the nested jar.
+     * @throws IOException when the nested jar could not be read.
+     */
+    private static byte[] readNestedContent(File outerFile, String nestedEntryName) throws IOException {
+        try (ZipFile zipFile = new ZipFile(outerFile)) {
+            ZipEntry nestedEntry = zipFile.getEntry(nestedEntryName);
+            if (nestedEntry == null) {
+                throw new FileNotFoundException("No entry " + nestedEntryName + " in " + outerFile);
+            }
+            if (nestedEntry.getSize() > Integer.MAX_VALUE) {
+                throw new ZipException("Nested jar too large: " + nestedEntryName);
+            }
+            try (InputStream in = zipFile.getInputStream(nestedEntry)) {
+                return FileCopyUtils.copyToByteArray(in);
+            }
+        }
+    }
+
+    /**
+     * Reads the central directory of the archive at this range of the file.
+     *
+     * @param file   The file.
+     * @param base   The offset of the archive within the file.
+     * @param length The length of the archive.
+     * @return The entries of the archive, by name.
+     * @throws IOException when the central directory could not be read.
+     */
+    private static Map<String, Entry> readCentralDirectory(Archive file, long base, long length)
+            throws IOException {
+        int tailLength = (int) Math.min(length, END_OF_CENTRAL_DIRECTORY_LENGTH + MAX_COMMENT_LENGTH);
+        byte[] tail = new byte[tailLength];
+        file.readFully(base + length - tailLength, tail, 0, tailLength);
+
+        int end = tailLength - END_OF_CENTRAL_DIRECTORY_LENGTH;
+        while (end >= 0 && readInt(tail, end) != END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+            end--;
+        }
+        if (end < 0) {
+            throw new ZipException("No end of central directory found");
+        }
+
+        int count = readShort(tail, end + 10);
+        long directorySize = readUnsignedInt(tail, end + 12);
+        long directoryOffset = readUnsignedInt(tail, end + 16);
+        if (count == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 archive");
+        }
+        if (directoryOffset + directorySize > length) {
+            throw new ZipException("Invalid central directory offset");
+        }
+
+        byte[] directory = new byte[(int) directorySize];
+        file.readFully(base + directoryOffset, directory, 0, directory.length);
+
+        Map<String, Entry> entries = new HashMap<String, Entry>(count * 2);
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (position + CENTRAL_HEADER_LENGTH > directory.length
+                    || readInt(directory, position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory entry");
+            }
+            int method = readShort(directory, position + 10);
+            long compressedSize = readUnsignedInt(directory, position + 20);
+            long size = readUnsignedInt(directory, position + 24);
+            int nameLength = readShort(directory, position + 28);
+            int extraLength = readShort(directory, position + 30);
+            int commentLength = readShort(directory, position + 32);
+            long localHeaderOffset = readUnsignedInt(directory, position + 42);
+            if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+                throw new ZipException("ZIP64 archive");
+            }
+            if (position + CENTRAL_HEADER_LENGTH + nameLength > directory.length
+                    || localHeaderOffset + compressedSize > length) {
+                throw new ZipException("Invalid central directory entry");
+            }
+
+            String name = new String(directory, position + CENTRAL_HEADER_LENGTH, nameLength, UTF8);
+            entries.put(name, new Entry(method, compressedSize, size, localHeaderOffset));
+            position += CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    /**
+     * Computes the offset of the data of this entry, from its local header.
+     *
+     * @param file  The file.
+     * @param base  The offset of the archive within the file.
+     * @param entry The entry.
+     * @return The offset of the data within the file.
+     * @throws IOException when the local header could not be read.
+     */
+    private static long getDataOffset(Archive file, long base, Entry entry) throws IOException {
+        byte[] header = new byte[LOCAL_HEADER_LENGTH];
+        file.readFully(base + entry.localHeaderOffset, header, 0, LOCAL_HEADER_LENGTH);
+        if (readInt(header, 0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header");
+        }
+        return base + entry.localHeaderOffset + LOCAL_HEADER_LENGTH + readShort(header, 26) + readShort(header, 28);
+    }
+
+    /**
+     * Inflates this deflated entry data.
+     *
+     * @param data The raw deflated data.
+     * @param size The uncompressed size.
+     * @param name The name of the entry.
+     * @return The uncompressed data.
+     * @throws ZipException when the data is corrupt.
+     */
+    private static byte[] inflate(byte[] data, int size, String name) throws ZipException {
+        // With nowrap, the inflater may need an extra dummy byte past the end of the input.
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(Arrays.copyOf(data, data.length + 1));
+            byte[] result = new byte[size];
+            int length = 0;
+            while (length < size) {
+                int inflated = inflater.inflate(result, length, size - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new ZipException("Truncated entry " + name);
+                }
+                length += inflated;
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt entry " + name + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return readShort(bytes, offset) | readShort(bytes, offset + 2) << 16;
+    }
+
+    private static long readUnsignedInt(byte[] bytes, int offset) {
+        return readInt(bytes, offset) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public String toString() {
+        return outerFile + "!/" + nestedEntryName;
+    }
+
+    /**
+     * Random read access to the bytes of an archive.
+     */
+    private interface Archive {
+        /**
+         * Reads this range of the archive.
+         *
+         * @param position The offset of the range.
+         * @param buffer   The buffer to fill.
+         * @param offset   The offset in the buffer.
+         * @param length   The length of the range.
+         * @throws IOException when the range could not be read.
+         */
+        void readFully(long position, byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Streams a range of the archive holding the nested jar. Each read holds the lock on the nested jar, as the
+     * handle on the outer jar is shared.
+     */
+    private final class ArchiveInputStream extends InputStream {
+        private final Archive archive;
+        private long position;
+        private long remaining;
+
+        private ArchiveInputStream(Archive archive, long position, long length) {
+            this.archive = archive;
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            return read(buffer, 0, 1) < 0 ? -1 : buffer[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = (int) Math.min(length, remaining);
+            synchronized (NestedJarFile.this) {
+                archive.readFully(position, buffer, offset, count);
+            }
+            position += count;
+            remaining -= count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, remaining));
+            position += skipped;
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Inflates a deflated entry as it is read. Like the streams of {@link ZipFile}, it feeds the inflater a dummy
+     * byte past the end of the data, which it may need with nowrap.
+     */
+    private static final class EntryInflaterInputStream extends InflaterInputStream {
+        private boolean eof;
+        private boolean closed;
+
+        private EntryInflaterInputStream(InputStream data) {
+            super(data, new Inflater(true), 8192);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                inf.end();
+                super.close();
+            }
+        }
+    }
+
+    /**
+     * An entry of the central directory.
+     */
+    private static final class Entry {
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+
+        private Entry(int method, long compressedSize, long size, long localHeaderOffset) {
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+}
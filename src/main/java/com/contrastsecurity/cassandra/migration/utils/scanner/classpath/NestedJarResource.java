@@ -0,0 +1,66 @@
+package com.contrastsecurity.cassandra.migration.utils.scanner.classpath;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * A resource on the classpath located within a nested jar. Its content is read directly from the outer jar, without
+ * going through the ClassLoader.
+ */
+public class NestedJarResource extends ClassPathResource {
+    /**
+     * The nested jar containing this resource.
+     */
+    private final NestedJarFile nestedJar;
+
+    /**
+     * Creates a new NestedJarResource.
+     *
+     * @param location                 The location of the resource on the classpath.
+     * @param classLoader              The ClassLoader to use.
+     * @param nestedJar                The nested jar containing this resource.
+     * @param indexedChecksumAlgorithm The name of the algorithm of the indexed checksum. {@code null} if none.
+     * @param indexedChecksum          The indexed checksum. {@code null} if none.
+     */
+    public NestedJarResource(String location, ClassLoader classLoader, NestedJarFile nestedJar,
+                             String indexedChecksumAlgorithm, Long indexedChecksum) {
+        super(location, classLoader, indexedChecksumAlgorithm, indexedChecksum);
+        this.nestedJar = nestedJar;
+    }
+
+    @Override
+    public String getLocationOnDisk() {
+        return nestedJar.getOuterFile().getAbsolutePath() + "!/" + nestedJar.getNestedEntryName() + "!/" + getLocation();
+    }
+
+    @Override
+    public String loadAsString(String encoding) {
+        return new String(loadAsBytes(), Charset.forName(encoding));
+    }
+
+    @Override
+    public byte[] loadAsBytes() {
+        try {
+            return nestedJar.read(getLocation());
+        } catch (IOException e) {
+            throw new CassandraMigrationException("Unable to load resource: " + getLocation() + " (" + nestedJar + ")", e);
+        }
+    }
+
+    @Override
+    public InputStream loadAsStream() {
+        try {
+            return nestedJar.openStream(getLocation());
+        } catch (IOException e) {
+            throw new CassandraMigrationException("Unable to load resource: " + getLocation() + " (" + nestedJar + ")", e);
+        }
+    }
+
+    @Override
+    public boolean exists() {
+        return nestedJar.contains(getLocation());
+    }
+}
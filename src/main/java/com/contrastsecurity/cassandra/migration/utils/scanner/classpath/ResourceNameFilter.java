@@ -0,0 +1,40 @@
+package com.contrastsecurity.cassandra.migration.utils.scanner.classpath;
+
+/**
+ * Filter applied to resource names while a location is being enumerated, so that resources which don't match are
+ * never collected.
+ */
+public interface ResourceNameFilter {
+    /**
+     * Filter accepting all resources.
+     */
+    ResourceNameFilter ALL = new ResourceNameFilter() {
+        public boolean accept(String resourceName) {
+            return true;
+        }
+    };
+
+    /**
+     * @param resourceName The name of the resource on the classpath.
+     * @return {@code true} if the resource should be collected.
+     */
+    boolean accept(String resourceName);
+
+    /**
+     * Creates a filter for resources whose filename starts with this prefix and ends with this suffix.
+     *
+     * @param prefix The prefix of the filenames to match.
+     * @param suffix The suffix of the filenames to match.
+     * @return The filter.
+     */
+    static ResourceNameFilter forFilename(final String prefix, final String suffix) {
+        return new ResourceNameFilter() {
+            public boolean accept(String resourceName) {
+                int filenameStart = resourceName.lastIndexOf('/') + 1;
+                return resourceName.length() - filenameStart > prefix.length() + suffix.length()
+                        && resourceName.startsWith(prefix, filenameStart)
+                        && resourceName.endsWith(suffix);
+            }
+        };
+    }
+}
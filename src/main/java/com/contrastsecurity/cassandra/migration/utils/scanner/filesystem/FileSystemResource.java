@@ -88,6 +88,19 @@ public class FileSystemResource implements Resource, Comparable<FileSystemResour
         }
     }
 
+    /**
+     * Opens this resource for streaming its contents.
+     *
+     * @return The stream of the contents of the resource.
+     */
+    public InputStream loadAsStream() {
+        try {
+            return new BufferedInputStream(new FileInputStream(location));
+        } catch (IOException e) {
+            throw new CassandraMigrationException("Unable to load filesystem resource: " + location.getPath(), e);
+        }
+    }
+
     /**
      * @return The filename of this resource, without the path.
      */
@@ -95,6 +108,20 @@ public class FileSystemResource implements Resource, Comparable<FileSystemResour
         return location.getName();
     }
 
+    /**
+     * @return The size of this resource in bytes.
+     */
+    public long getSize() {
+        return location.length();
+    }
+
+    /**
+     * @return The time this resource was last modified, in milliseconds since the epoch.
+     */
+    public long getLastModified() {
+        return location.lastModified();
+    }
+
     @SuppressWarnings("NullableProblems")
     public int compareTo(FileSystemResource o) {
         return location.compareTo(o.location);
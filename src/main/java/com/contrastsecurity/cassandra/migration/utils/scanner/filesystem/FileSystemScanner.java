@@ -22,11 +22,29 @@ import com.contrastsecurity.cassandra.migration.utils.scanner.Resource;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Set;
-import java.util.TreeSet;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * FileSystem scanner.
+ * <p>File names are filtered while walking the tree and the matching resources are sorted once at the end. When
+ * called from within a ForkJoinPool (see
+ * {@link com.contrastsecurity.cassandra.migration.resolver.CompositeMigrationResolver}), the top-level
+ * subdirectories are walked in parallel on that pool. Either way, symbolic links are followed with loop detection and
+ * unreadable paths are skipped.</p>
  */
 public class FileSystemScanner {
     private static final Log LOG = LogFactory.getLog(FileSystemScanner.class);
@@ -48,79 +66,137 @@ public class FileSystemScanner {
             throw new CassandraMigrationException("Invalid filesystem path: " + path);
         }
 
-        Set<Resource> resources = new TreeSet<Resource>();
-
-        Set<String> resourceNames = findResourceNames(path, prefix, suffix);
-        for (String resourceName : resourceNames) {
-            resources.add(new FileSystemResource(resourceName));
-            LOG.debug("Found filesystem resource: " + resourceName);
+        List<String> resourceNames = findResourceNames(path, prefix, suffix);
+        FileSystemResource[] resources = new FileSystemResource[resourceNames.size()];
+        for (int i = 0; i < resources.length; i++) {
+            resources[i] = new FileSystemResource(resourceNames.get(i));
+            LOG.debug("Found filesystem resource: " + resourceNames.get(i));
         }
+        Arrays.sort(resources);
 
-        return resources.toArray(new Resource[resources.size()]);
+        return resources;
     }
 
     /**
-     * Finds the resources names present at this location and below on the classpath starting with this prefix and
+     * Finds the resources names present at this location and below on the filesystem starting with this prefix and
      * ending with this suffix.
      *
-     * @param path   The path on the classpath to scan.
+     * @param path   The path on the filesystem to scan.
      * @param prefix The filename prefix to match.
      * @param suffix The filename suffix to match.
-     * @return The resource names.
+     * @return The resource names, unsorted.
      * @throws IOException when scanning this location failed.
      */
-    private Set<String> findResourceNames(String path, String prefix, String suffix) throws IOException {
-        Set<String> resourceNames = findResourceNamesFromFileSystem(path, new File(path));
-        return filterResourceNames(resourceNames, prefix, suffix);
+    private List<String> findResourceNames(String path, String prefix, String suffix) throws IOException {
+        Path root = Paths.get(path);
+        if (ForkJoinTask.inForkJoinPool()) {
+            return walkTopLevelInParallel(root, prefix, suffix);
+        }
+        return walkFileTree(root, null, prefix, suffix);
     }
 
     /**
-     * Finds all the resource names contained in this file system folder.
+     * Walks this file tree, each top-level subdirectory in its own task, collecting the matching files.
      *
-     * @param scanRootLocation The root location of the scan on disk.
-     * @param folder           The folder to look for resources under on disk.
-     * @return The resource names;
-     * @throws IOException when the folder could not be read.
+     * @param root   The root of the tree.
+     * @param prefix The filename prefix to match.
+     * @param suffix The filename suffix to match.
+     * @return The resource names, unsorted.
+     * @throws IOException when walking the tree failed.
      */
-    @SuppressWarnings("ConstantConditions")
-    private Set<String> findResourceNamesFromFileSystem(String scanRootLocation, File folder) throws IOException {
-        LOG.debug("Scanning for resources in path: " + folder.getPath() + " (" + scanRootLocation + ")");
-
-        Set<String> resourceNames = new TreeSet<String>();
+    private List<String> walkTopLevelInParallel(final Path root, final String prefix, final String suffix)
+            throws IOException {
+        final Object rootKey = Files.readAttributes(root, BasicFileAttributes.class).fileKey();
+        List<String> resourceNames = new ArrayList<String>();
+        List<ForkJoinTask<List<String>>> subtasks = new ArrayList<ForkJoinTask<List<String>>>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root)) {
+            for (final Path entry : entries) {
+                if (Files.isDirectory(entry)) {
+                    subtasks.add(ForkJoinTask.adapt(new Callable<List<String>>() {
+                        @Override
+                        public List<String> call() throws IOException {
+                            return walkFileTree(entry, rootKey, prefix, suffix);
+                        }
+                    }));
+                } else if (Files.isRegularFile(entry) && matches(entry, prefix, suffix) && Files.isReadable(entry)) {
+                    resourceNames.add(entry.toString());
+                }
+            }
+        } catch (IOException e) {
+            LOG.debug("Skipping unreadable path: " + root + " (" + e.getMessage() + ")");
+            return resourceNames;
+        }
 
-        File[] files = folder.listFiles();
-        for (File file : files) {
-            if (file.canRead()) {
-                if (file.isDirectory()) {
-                    resourceNames.addAll(findResourceNamesFromFileSystem(scanRootLocation, file));
-                } else {
-                    resourceNames.add(file.getPath());
+        for (ForkJoinTask<List<String>> subtask : ForkJoinTask.invokeAll(subtasks)) {
+            try {
+                resourceNames.addAll(subtask.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CassandraMigrationException("Interrupted while scanning " + root, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
                 }
+                throw new CassandraMigrationException("Unable to scan " + root, e.getCause());
             }
         }
+        return resourceNames;
+    }
+
+    /**
+     * Walks this file tree, collecting the matching files. Symbolic links are followed, skipping those leading back
+     * to a directory being walked.
+     *
+     * @param start    The directory to walk.
+     * @param rootKey  The file key of the root the walk is part of, when it doesn't start at that root, so that links
+     *                 back to the root are detected as loops too. {@code null} if none.
+     * @param prefix   The filename prefix to match.
+     * @param suffix   The filename suffix to match.
+     * @return The resource names, unsorted.
+     * @throws IOException when walking the tree failed.
+     */
+    private static List<String> walkFileTree(Path start, final Object rootKey, final String prefix,
+                                             final String suffix) throws IOException {
+        final List<String> resourceNames = new ArrayList<String>();
+        Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        if (rootKey != null && rootKey.equals(attrs.fileKey())) {
+                            LOG.debug("Skipping file system loop: " + dir);
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile() && matches(file, prefix, suffix) && Files.isReadable(file)) {
+                            resourceNames.add(file.toString());
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
 
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        LOG.debug("Skipping unreadable path: " + file + " (" + e.getMessage() + ")");
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
         return resourceNames;
     }
 
     /**
-     * Filters this list of resource names to only include the ones whose filename matches this prefix and this suffix.
+     * Checks whether the filename of this file matches this prefix and this suffix.
      *
-     * @param resourceNames The names to filter.
-     * @param prefix        The prefix to match.
-     * @param suffix        The suffix to match.
-     * @return The filtered names set.
+     * @param file   The file to check.
+     * @param prefix The prefix to match.
+     * @param suffix The suffix to match.
+     * @return {@code true} if it matches.
      */
-    private Set<String> filterResourceNames(Set<String> resourceNames, String prefix, String suffix) {
-        Set<String> filteredResourceNames = new TreeSet<String>();
-        for (String resourceName : resourceNames) {
-            String fileName = resourceName.substring(resourceName.lastIndexOf(File.separator) + 1);
-            if (fileName.startsWith(prefix) && fileName.endsWith(suffix)
-                    && (fileName.length() > (prefix + suffix).length())) {
-                filteredResourceNames.add(resourceName);
-            } else {
-                LOG.debug("Filtering out resource: " + resourceName + " (filename: " + fileName + ")");
-            }
-        }
-        return filteredResourceNames;
+    private static boolean matches(Path file, String prefix, String suffix) {
+        String fileName = file.getFileName().toString();
+        return fileName.startsWith(prefix) && fileName.endsWith(suffix)
+                && (fileName.length() > (prefix + suffix).length());
     }
 }
@@ -1,5 +1,6 @@
 package com.contrastsecurity.cassandra.migration;
 
+import com.contrastsecurity.cassandra.migration.config.HistoryLayout;
 import com.contrastsecurity.cassandra.migration.config.MigrationType;
 import com.contrastsecurity.cassandra.migration.info.MigrationInfo;
 import com.contrastsecurity.cassandra.migration.info.MigrationInfoDumper;
@@ -166,6 +167,35 @@ public class CassandraMigrationIT extends BaseIT {
 		}
 	}
 
+	@Test
+	public void migrateTwiceOnOneInstance() {
+		String[] scriptsLocations = { "migration/integ", "migration/integ/java" };
+		CassandraMigration cm = new CassandraMigration();
+		cm.getConfigs().setScriptsLocations(scriptsLocations);
+		cm.setKeyspace(getKeyspace());
+		assertThat(cm.migrate(), is(4));
+		assertThat(cm.migrate(), is(0));
+		assertThat(cm.info().applied().length, is(4));
+	}
+
+	@Test
+	public void migrateWithV2HistoryLayout() {
+		String[] scriptsLocations = { "migration/integ", "migration/integ/java" };
+		CassandraMigration cm = new CassandraMigration();
+		cm.getConfigs().setScriptsLocations(scriptsLocations);
+		cm.getConfigs().setHistoryLayout(HistoryLayout.V2);
+		cm.setKeyspace(getKeyspace());
+		assertThat(cm.migrate(), is(4));
+
+		MigrationInfoService infoService = cm.info();
+		assertThat(infoService.applied().length, is(4));
+		assertThat(infoService.current().getVersion().getVersion(), is("3.0.1"));
+		ResultSet result = getSession().execute("select version from " + CASSANDRA__KEYSPACE
+				+ ".schema_migration_v2 where keyspace_name = '" + CASSANDRA__KEYSPACE + "'");
+		assertThat(result.all().size(), is(4));
+		cm.validate();
+	}
+
 	@Test
 	public void testValidate() {
 		// apply migration scripts
@@ -0,0 +1,286 @@
+package com.contrastsecurity.cassandra.migration.action;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.api.BackgroundJavaMigration;
+import com.contrastsecurity.cassandra.migration.api.MigrationProgress;
+import com.contrastsecurity.cassandra.migration.config.Keyspace;
+import com.contrastsecurity.cassandra.migration.config.MigrationType;
+import com.contrastsecurity.cassandra.migration.dao.MigrationProgressDAO;
+import com.contrastsecurity.cassandra.migration.dao.SchemaVersionDAO;
+import com.contrastsecurity.cassandra.migration.info.AppliedMigration;
+import com.contrastsecurity.cassandra.migration.info.MigrationState;
+import com.contrastsecurity.cassandra.migration.info.MigrationVersion;
+import com.contrastsecurity.cassandra.migration.info.ResolvedMigration;
+import com.contrastsecurity.cassandra.migration.resolver.MigrationExecutor;
+import com.contrastsecurity.cassandra.migration.resolver.MigrationResolver;
+import com.contrastsecurity.cassandra.migration.resolver.ResumableMigrationExecutor;
+import com.contrastsecurity.cassandra.migration.resolver.java.BackgroundJavaMigrationExecutor;
+import com.datastax.oss.driver.api.core.CqlSession;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the resumable and background migrations of Migrate.
+ */
+public class MigrateTest {
+    private static final MigrationVersion VERSION = MigrationVersion.fromVersion("1");
+
+    @Test
+    public void resumesFromTheSavedProgress() {
+        CqlSession session = mock(CqlSession.class);
+        ResumableMigrationExecutor executor = mock(ResumableMigrationExecutor.class);
+        MigrationProgress progress = MigrationProgress.transientProgress();
+        progress.complete("range_1");
+        MigrationProgressDAO migrationProgressDAO = mock(MigrationProgressDAO.class);
+        when(migrationProgressDAO.load(VERSION)).thenReturn(progress);
+        SchemaVersionDAO schemaVersionDAO = createSchemaVersionDAO(
+                Collections.<AppliedMigration>emptyList(), Collections.singletonList(createAppliedMigration()));
+
+        int count = new Migrate(createMigrationResolver(executor), MigrationVersion.LATEST, schemaVersionDAO,
+                migrationProgressDAO, session, "cassandra", false).run();
+
+        assertEquals(1, count);
+        verify(executor).execute(session, progress);
+        verify(executor, never()).execute(session);
+        verify(schemaVersionDAO).addAppliedMigration(argThat(new SuccessfulMigrationMatcher()));
+        verify(migrationProgressDAO).clear(VERSION);
+    }
+
+    @Test
+    public void failedResumableMigrationKeepsItsProgress() {
+        CqlSession session = mock(CqlSession.class);
+        ResumableMigrationExecutor executor = mock(ResumableMigrationExecutor.class);
+        MigrationProgress progress = MigrationProgress.transientProgress();
+        MigrationProgressDAO migrationProgressDAO = mock(MigrationProgressDAO.class);
+        when(migrationProgressDAO.load(VERSION)).thenReturn(progress);
+        doThrow(new IllegalStateException("node down")).when(executor).execute(session, progress);
+        SchemaVersionDAO schemaVersionDAO = createSchemaVersionDAO(Collections.<AppliedMigration>emptyList());
+
+        try {
+            new Migrate(createMigrationResolver(executor), MigrationVersion.LATEST, schemaVersionDAO,
+                    migrationProgressDAO, session, "cassandra", false).run();
+            fail();
+        } catch (CassandraMigrationException e) {
+            assertSame(IllegalStateException.class, e.getCause().getClass());
+        }
+        // Stays pending, to resume on the next run.
+        verify(schemaVersionDAO, never()).addAppliedMigration(any(AppliedMigration.class));
+        verify(migrationProgressDAO, never()).clear(VERSION);
+    }
+
+    @Test
+    public void failedBackgroundMigrationIsRecordedAsFailedUnlessResumable() {
+        CqlSession session = mock(CqlSession.class);
+        MigrationProgressDAO migrationProgressDAO = mock(MigrationProgressDAO.class);
+        when(migrationProgressDAO.claimLease(any(MigrationVersion.class), anyString(), anyInt())).thenReturn(true);
+        SchemaVersionDAO schemaVersionDAO = createBackgroundSchemaVersionDAO();
+        Migrate migrate = createBackgroundMigrate(session, schemaVersionDAO, migrationProgressDAO,
+                new BackgroundJavaMigration() {
+                    @Override
+                    public void migrate(CqlSession session) {
+                    throw new IllegalStateException("node down");
+                    }
+                });
+
+        assertEquals(1, migrate.run());
+        assertEquals(1, migrate.getBackgroundMigrations().size());
+        try {
+            migrate.runBackgroundMigrations();
+            fail();
+        } catch (CassandraMigrationException e) {
+            assertSame(IllegalStateException.class, e.getCause().getCause().getClass());
+        }
+        verify(schemaVersionDAO).updateStatus(eq(VERSION), isNull(MigrationState.class), eq(false), anyInt());
+        verify(migrationProgressDAO, never()).load(VERSION);
+        verify(migrationProgressDAO).claimLease(eq(VERSION), anyString(), anyInt());
+        verify(migrationProgressDAO).releaseLease(eq(VERSION), anyString());
+    }
+
+    @Test
+    public void backgroundMigrationLeasedByAnotherInstanceIsLeftToIt() {
+        CqlSession session = mock(CqlSession.class);
+        MigrationProgressDAO migrationProgressDAO = mock(MigrationProgressDAO.class);
+        when(migrationProgressDAO.claimLease(any(MigrationVersion.class), anyString(), anyInt())).thenReturn(false);
+        final AtomicInteger bodyRuns = new AtomicInteger();
+        SchemaVersionDAO schemaVersionDAO = createBackgroundSchemaVersionDAO();
+        Migrate migrate = createBackgroundMigrate(session, schemaVersionDAO, migrationProgressDAO,
+                new BackgroundJavaMigration() {
+                    @Override
+                    public void migrate(CqlSession session) {
+                    bodyRuns.incrementAndGet();
+                    }
+                });
+
+        migrate.run();
+        assertEquals(0, migrate.runBackgroundMigrations());
+        assertEquals(0, bodyRuns.get());
+        verify(schemaVersionDAO, never())
+                .updateStatus(any(MigrationVersion.class), any(MigrationState.class), anyBoolean(), anyInt());
+        verify(migrationProgressDAO, never()).releaseLease(any(MigrationVersion.class), anyString());
+    }
+
+    @Test
+    public void leasedBackgroundMigrationIsRecordedAsCompleted() {
+        CqlSession session = mock(CqlSession.class);
+        MigrationProgressDAO migrationProgressDAO = mock(MigrationProgressDAO.class);
+        when(migrationProgressDAO.claimLease(any(MigrationVersion.class), anyString(), anyInt())).thenReturn(true);
+        when(migrationProgressDAO.renewLease(any(MigrationVersion.class), anyString(), anyInt())).thenReturn(true);
+        final AtomicInteger bodyRuns = new AtomicInteger();
+        SchemaVersionDAO schemaVersionDAO = createBackgroundSchemaVersionDAO();
+        Migrate migrate = createBackgroundMigrate(session, schemaVersionDAO, migrationProgressDAO,
+                new BackgroundJavaMigration() {
+                    @Override
+                    public void migrate(CqlSession session) {
+                    bodyRuns.incrementAndGet();
+                    }
+                });
+
+        migrate.run();
+        assertEquals(1, migrate.runBackgroundMigrations());
+        assertEquals(1, bodyRuns.get());
+        verify(schemaVersionDAO).updateStatus(eq(VERSION), eq(MigrationState.COMPLETED), eq(true), anyInt());
+        verify(migrationProgressDAO).releaseLease(eq(VERSION), anyString());
+    }
+
+    @Test
+    public void backgroundMigrationCompletedByAnotherInstanceIsNotRunAgain() {
+        CqlSession session = mock(CqlSession.class);
+        MigrationProgressDAO migrationProgressDAO = mock(MigrationProgressDAO.class);
+        when(migrationProgressDAO.claimLease(any(MigrationVersion.class), anyString(), anyInt())).thenReturn(true);
+        final AtomicInteger bodyRuns = new AtomicInteger();
+        SchemaVersionDAO schemaVersionDAO = createBackgroundSchemaVersionDAO();
+        AppliedMigration completed = createAppliedMigration();
+        completed.setStatus(MigrationState.COMPLETED);
+        when(schemaVersionDAO.findAppliedMigration(VERSION)).thenReturn(completed);
+        Migrate migrate = createBackgroundMigrate(session, schemaVersionDAO, migrationProgressDAO,
+                new BackgroundJavaMigration() {
+                    @Override
+                    public void migrate(CqlSession session) {
+                    bodyRuns.incrementAndGet();
+                    }
+                });
+
+        migrate.run();
+        assertEquals(0, migrate.runBackgroundMigrations());
+        assertEquals(0, bodyRuns.get());
+        verify(schemaVersionDAO, never())
+                .updateStatus(any(MigrationVersion.class), any(MigrationState.class), anyBoolean(), anyInt());
+        verify(migrationProgressDAO).releaseLease(eq(VERSION), anyString());
+    }
+
+    @Test
+    public void backgroundMigrationWhoseLeaseWasLostIsNotRecordedAsCompleted() {
+        CqlSession session = mock(CqlSession.class);
+        MigrationProgressDAO migrationProgressDAO = mock(MigrationProgressDAO.class);
+        when(migrationProgressDAO.claimLease(any(MigrationVersion.class), anyString(), anyInt())).thenReturn(true);
+        when(migrationProgressDAO.renewLease(any(MigrationVersion.class), anyString(), anyInt())).thenReturn(false);
+        SchemaVersionDAO schemaVersionDAO = createBackgroundSchemaVersionDAO();
+        Migrate migrate = createBackgroundMigrate(session, schemaVersionDAO, migrationProgressDAO,
+                new BackgroundJavaMigration() {
+                    @Override
+                    public void migrate(CqlSession session) {
+                    }
+                });
+
+        migrate.run();
+        assertEquals(0, migrate.runBackgroundMigrations());
+        verify(schemaVersionDAO, never())
+                .updateStatus(any(MigrationVersion.class), any(MigrationState.class), anyBoolean(), anyInt());
+        verify(migrationProgressDAO, never()).clear(any(MigrationVersion.class));
+        // The lease belongs to another instance now.
+        verify(migrationProgressDAO, never()).releaseLease(any(MigrationVersion.class), anyString());
+    }
+
+    /**
+     * Creates a migration run applying this background migration, whose body is left to run in the background.
+     *
+     * @param session              The session.
+     * @param schemaVersionDAO     The history of the migrations.
+     * @param migrationProgressDAO The progress of the migrations.
+     * @param javaMigration        The background migration.
+     * @return The migration run.
+     */
+    private static Migrate createBackgroundMigrate(CqlSession session, SchemaVersionDAO schemaVersionDAO,
+                                                   MigrationProgressDAO migrationProgressDAO,
+                                                   BackgroundJavaMigration javaMigration) {
+        return new Migrate(createMigrationResolver(new BackgroundJavaMigrationExecutor(javaMigration)),
+                MigrationVersion.LATEST, schemaVersionDAO, migrationProgressDAO, session, "cassandra", false);
+    }
+
+    /**
+     * @return A history DAO recording the background migration as running once it is applied.
+     */
+    private static SchemaVersionDAO createBackgroundSchemaVersionDAO() {
+        AppliedMigration running = createAppliedMigration();
+        running.setStatus(MigrationState.RUNNING);
+        return createSchemaVersionDAO(Collections.<AppliedMigration>emptyList(), Collections.singletonList(running));
+    }
+
+    /**
+     * Creates a history DAO of a keyspace that was migrated before.
+     *
+     * @param appliedMigrations The applied migrations found by each read of the history.
+     * @return The DAO.
+     */
+    @SafeVarargs
+    private static SchemaVersionDAO createSchemaVersionDAO(List<AppliedMigration>... appliedMigrations) {
+        SchemaVersionDAO dao = mock(SchemaVersionDAO.class);
+        when(dao.getKeyspace()).thenReturn(new Keyspace("test"));
+        when(dao.versionNotFound()).thenReturn(false);
+        if (appliedMigrations.length == 1) {
+            when(dao.findAppliedMigrations()).thenReturn(appliedMigrations[0]);
+        } else {
+            when(dao.findAppliedMigrations()).thenReturn(appliedMigrations[0], appliedMigrations[1]);
+        }
+        return dao;
+    }
+
+    private static MigrationResolver createMigrationResolver(MigrationExecutor executor) {
+        final ResolvedMigration migration = new ResolvedMigration();
+        migration.setVersion(VERSION);
+        migration.setDescription("Copy");
+        migration.setScript("V1__Copy");
+        migration.setType(MigrationType.JAVA_DRIVER);
+        migration.setExecutor(executor);
+        return new MigrationResolver() {
+            public List<ResolvedMigration> resolveMigrations() {
+                return Collections.singletonList(migration);
+            }
+        };
+    }
+
+    private static AppliedMigration createAppliedMigration() {
+        return new AppliedMigration(VERSION, "Copy", MigrationType.JAVA_DRIVER, "V1__Copy", null, "cassandra", 10,
+                true);
+    }
+
+    /**
+     * Matches the successful record of the migration.
+     */
+    private static class SuccessfulMigrationMatcher extends org.mockito.ArgumentMatcher<AppliedMigration> {
+        @Override
+        public boolean matches(Object argument) {
+            AppliedMigration appliedMigration = (AppliedMigration) argument;
+            return VERSION.equals(appliedMigration.getVersion()) && appliedMigration.isSuccess();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.contrastsecurity.cassandra.migration.api;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metadata.schema.ColumnMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.KeyspaceMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata;
+import com.datastax.oss.driver.api.core.metadata.token.TokenRange;
+import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
+import com.datastax.oss.driver.internal.core.metadata.token.Murmur3Token;
+import com.datastax.oss.driver.internal.core.metadata.token.Murmur3TokenRange;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for TableCopyMigration.
+ */
+public class TableCopyMigrationTest {
+    private static final CqlIdentifier KEYSPACE = CqlIdentifier.fromCql("ks");
+    private static final TokenRange FIRST_RANGE = range(Long.MIN_VALUE, 0);
+    private static final TokenRange SECOND_RANGE = range(0, Long.MIN_VALUE);
+
+    private CqlSession session;
+
+    /**
+     * The rows of the source table, by token range.
+     */
+    private final Map<TokenRange, List<Row>> sourceRows = new LinkedHashMap<>();
+
+    /**
+     * The values bound to the inserts into the target table.
+     */
+    private final List<List<Object>> insertedValues = Collections.synchronizedList(new ArrayList<List<Object>>());
+
+    /**
+     * The columns selected by the last scan of the source table.
+     */
+    private String selectedColumns;
+
+    @Before
+    public void setUp() {
+        session = mock(CqlSession.class);
+        Metadata metadata = mock(Metadata.class);
+        KeyspaceMetadata keyspace = mock(KeyspaceMetadata.class);
+        when(session.getMetadata()).thenReturn(metadata);
+        when(session.getKeyspace()).thenReturn(Optional.of(KEYSPACE));
+        when(metadata.getKeyspace(KEYSPACE)).thenReturn(Optional.of(keyspace));
+        TableMetadata source = table("users", "id", "id", "email", "name");
+        TableMetadata target = table("users_by_email", "email", "email", "id");
+        when(keyspace.getTable(CqlIdentifier.fromCql("users"))).thenReturn(Optional.of(source));
+        when(keyspace.getTable(CqlIdentifier.fromCql("users_by_email"))).thenReturn(Optional.of(target));
+
+        PreparedStatement insert = mock(PreparedStatement.class);
+        when(session.prepare(anyString())).thenReturn(insert);
+        when(insert.bind(Matchers.<Object>anyVararg())).thenAnswer(invocation -> {
+            insertedValues.add(Arrays.asList(invocation.getArguments()));
+            BoundStatement bound = mock(BoundStatement.class);
+            when(bound.setIdempotent(true)).thenReturn(bound);
+            when(bound.isIdempotent()).thenReturn(true);
+            return bound;
+        });
+        when(session.executeAsync(any(Statement.class))).thenReturn(completed());
+
+        sourceRows.put(FIRST_RANGE, Arrays.asList(row(1, "a@x.com", "A"), row(2, "b@x.com", "B")));
+        sourceRows.put(SECOND_RANGE, Collections.singletonList(row(3, "c@x.com", "C")));
+    }
+
+    @Test
+    public void copiesTheCommonColumnsOfEachRange() throws Exception {
+        MigrationProgress progress = MigrationProgress.transientProgress();
+        TableCopyMigration migration = createMigration(null);
+
+        migration.migrate(session, progress);
+
+        assertEquals("email, id", selectedColumns);
+        assertEquals(Arrays.<List<Object>>asList(Arrays.<Object>asList("a@x.com", 1), Arrays.<Object>asList("b@x.com", 2),
+                Arrays.<Object>asList("c@x.com", 3)), insertedValues);
+        assertTrue(progress.isCompleted("range:" + FIRST_RANGE));
+        assertTrue(progress.isCompleted("range:" + SECOND_RANGE));
+        assertEquals(3, migration.getRowsRead());
+        assertEquals(3, migration.getRowsWritten());
+        assertEquals(0, migration.getRowsSkipped());
+        assertEquals(2, migration.getRangesCompleted());
+    }
+
+    @Test
+    public void resumesWithTheRangesNotCompleted() throws Exception {
+        MigrationProgress progress = MigrationProgress.transientProgress();
+        progress.complete("range:" + FIRST_RANGE);
+        TableCopyMigration migration = createMigration(null);
+
+        migration.migrate(session, progress);
+
+        assertEquals(Collections.singletonList(Arrays.<Object>asList("c@x.com", 3)), insertedValues);
+        assertTrue(progress.isCompleted("range:" + SECOND_RANGE));
+        assertEquals(1, migration.getRowsRead());
+        assertEquals(1, migration.getRowsWritten());
+        assertEquals(1, migration.getRangesCompleted());
+    }
+
+    @Test
+    public void failedWriteLeavesItsRangeToResume() throws Exception {
+        CompletableFuture<AsyncResultSet> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new InvalidQueryException(null, "unconfigured table users_by_email"));
+        when(session.executeAsync(any(Statement.class))).thenReturn(completed(), failed);
+        MigrationProgress progress = MigrationProgress.transientProgress();
+        TableCopyMigration migration = createMigration(null);
+
+        try {
+            migration.migrate(session, progress);
+            fail();
+        } catch (CassandraMigrationException e) {
+            assertTrue(e.getCause() instanceof InvalidQueryException);
+        }
+        assertFalse(progress.isCompleted("range:" + FIRST_RANGE));
+        assertFalse(progress.isCompleted("range:" + SECOND_RANGE));
+        assertEquals(2, migration.getRowsRead());
+        assertEquals(1, migration.getRowsWritten());
+        assertEquals(0, migration.getRangesCompleted());
+    }
+
+    @Test
+    public void rowMapperSkipsRows() throws Exception {
+        MigrationProgress progress = MigrationProgress.transientProgress();
+        TableCopyMigration migration = createMigration(row -> {
+            if ("B".equals(row.getObject(CqlIdentifier.fromCql("name")))) {
+                return null;
+            }
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("email", row.getObject(CqlIdentifier.fromCql("email")));
+            values.put("id", row.getObject(CqlIdentifier.fromCql("id")));
+            return values;
+        });
+
+        migration.migrate(session, progress);
+
+        assertEquals("*", selectedColumns);
+        assertEquals(Arrays.<List<Object>>asList(Arrays.<Object>asList("a@x.com", 1), Arrays.<Object>asList("c@x.com", 3)),
+                insertedValues);
+        assertEquals(3, migration.getRowsRead());
+        assertEquals(2, migration.getRowsWritten());
+        assertEquals(1, migration.getRowsSkipped());
+        assertEquals(2, migration.getRangesCompleted());
+    }
+
+    @Test
+    public void splitName() {
+        assertArrayEquals(new String[]{null, "users"}, TableCopyMigration.splitName("users"));
+        assertArrayEquals(new String[]{"ks", "users"}, TableCopyMigration.splitName("ks.users"));
+        assertArrayEquals(new String[]{"\"My.Ks\"", "users"}, TableCopyMigration.splitName("\"My.Ks\".users"));
+        assertArrayEquals(new String[]{null, "\"a.b\"\"c\""}, TableCopyMigration.splitName("\"a.b\"\"c\""));
+    }
+
+    @Test
+    public void insertQuery() {
+        assertEquals("INSERT INTO ks.users_by_email (email, id, \"Name\") VALUES (?, ?, ?)",
+                TableCopyMigration.insertQuery("ks.users_by_email", Arrays.asList("email", "id", "Name")));
+    }
+
+    /**
+     * Creates a copy of users to users_by_email, scanning the source rows one range after the other.
+     *
+     * @param rowMapper The row mapper. {@code null} to copy the columns with the same name.
+     * @return The migration.
+     */
+    private TableCopyMigration createMigration(TableCopyMigration.RowMapper rowMapper) {
+        return new TableCopyMigration("users", "users_by_email", rowMapper) {
+            @Override
+            protected TokenRangeScanner createScanner(CqlSession session) {
+                return new TokenRangeScanner(session) {
+                    @Override
+                    public long scan(String keyspace, String table, String columns, RowHandler handler) {
+                        selectedColumns = columns;
+                        long rowCount = 0;
+                        try {
+                            for (Map.Entry<TokenRange, List<Row>> range : sourceRows.entrySet()) {
+                                if (!handler.startRange(range.getKey())) {
+                                    continue;
+                                }
+                                for (Row row : range.getValue()) {
+                                    handler.handle(row);
+                                    rowCount++;
+                                }
+                                handler.endRange(range.getKey());
+                            }
+                        } catch (CassandraMigrationException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            throw new CassandraMigrationException("Unable to scan " + table, e);
+                        }
+                        return rowCount;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @param name       The name of the table.
+     * @param primaryKey The primary key column.
+     * @param columns    The columns, in order.
+     * @return The metadata of the table in the test keyspace.
+     */
+    private static TableMetadata table(String name, String primaryKey, String... columns) {
+        final Map<CqlIdentifier, ColumnMetadata> columnsById = new LinkedHashMap<>();
+        for (String column : columns) {
+            ColumnMetadata columnMetadata = mock(ColumnMetadata.class);
+            when(columnMetadata.getName()).thenReturn(CqlIdentifier.fromCql(column));
+            columnsById.put(CqlIdentifier.fromCql(column), columnMetadata);
+        }
+        TableMetadata table = mock(TableMetadata.class);
+        when(table.getKeyspace()).thenReturn(KEYSPACE);
+        when(table.getName()).thenReturn(CqlIdentifier.fromCql(name));
+        when(table.getColumns()).thenReturn(columnsById);
+        when(table.getColumn(any(CqlIdentifier.class))).thenAnswer(invocation ->
+                Optional.ofNullable(columnsById.get(invocation.getArguments()[0])));
+        when(table.getPrimaryKey()).thenReturn(
+                Collections.singletonList(columnsById.get(CqlIdentifier.fromCql(primaryKey))));
+        return table;
+    }
+
+    private static Row row(int id, String email, String name) {
+        Row row = mock(Row.class);
+        when(row.getObject(CqlIdentifier.fromCql("id"))).thenReturn(id);
+        when(row.getObject(CqlIdentifier.fromCql("email"))).thenReturn(email);
+        when(row.getObject(CqlIdentifier.fromCql("name"))).thenReturn(name);
+        return row;
+    }
+
+    private static TokenRange range(long start, long end) {
+        return new Murmur3TokenRange(new Murmur3Token(start), new Murmur3Token(end));
+    }
+
+    private static CompletableFuture<AsyncResultSet> completed() {
+        return CompletableFuture.completedFuture(null);
+    }
+}
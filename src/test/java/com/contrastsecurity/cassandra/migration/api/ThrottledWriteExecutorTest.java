@@ -0,0 +1,191 @@
+package com.contrastsecurity.cassandra.migration.api;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for ThrottledWriteExecutor.
+ */
+public class ThrottledWriteExecutorTest {
+    private static final SimpleStatement IDEMPOTENT_WRITE =
+            SimpleStatement.newInstance("INSERT INTO t (k) VALUES (1)").setIdempotent(true);
+    private static final SimpleStatement WRITE =
+            SimpleStatement.newInstance("UPDATE t SET c = c + 1 WHERE k = 1").setIdempotent(false);
+
+    @Test
+    public void limitsRate() {
+        CqlSession session = mock(CqlSession.class);
+        when(session.executeAsync(any(Statement.class))).thenReturn(completed());
+        long start = System.nanoTime();
+        try (ThrottledWriteExecutor writer = new ThrottledWriteExecutor(session).setMaxOpsPerSecond(100)) {
+            for (int i = 0; i < 21; i++) {
+                writer.execute(IDEMPOTENT_WRITE);
+            }
+            writer.flush();
+            assertEquals(21, writer.getCompletedCount());
+        }
+        // 20 intervals of 10 ms after the first write
+        assertTrue(System.nanoTime() - start >= 190_000_000L);
+    }
+
+    @Test
+    public void retriesIdempotentWritesOnly() {
+        CqlSession session = mock(CqlSession.class);
+        when(session.executeAsync(any(Statement.class))).thenReturn(timedOut(), timedOut(), completed(), timedOut());
+        try (ThrottledWriteExecutor writer = new ThrottledWriteExecutor(session)
+                .setMaxOpsPerSecond(1000).setTargetLatencyMillis(1)) {
+            writer.execute(IDEMPOTENT_WRITE);
+            writer.flush();
+            assertEquals(1, writer.getCompletedCount());
+            assertEquals(2, writer.getRetryCount());
+            verify(session, times(3)).executeAsync(any(Statement.class));
+            assertTrue(writer.getCurrentOpsPerSecond() < 1000);
+
+            writer.execute(WRITE);
+            try {
+                writer.flush();
+                fail();
+            } catch (CassandraMigrationException e) {
+                assertTrue(e.getCause() instanceof DriverTimeoutException);
+            }
+            assertEquals(1, writer.getFailedCount());
+            assertEquals(2, writer.getRetryCount());
+        }
+    }
+
+    @Test
+    public void rejectsInvalidConfiguration() {
+        ThrottledWriteExecutor writer = new ThrottledWriteExecutor(mock(CqlSession.class));
+        try {
+            writer.setMaxOpsPerSecond(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("maxOpsPerSecond"));
+        }
+        try {
+            writer.setMinOpsPerSecond(Double.NaN);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("minOpsPerSecond"));
+        }
+        try {
+            writer.setMaxInFlight(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("maxInFlight"));
+        }
+        try {
+            writer.setMaxAttempts(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("maxAttempts"));
+        }
+        try {
+            writer.setTargetLatencyMillis(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("targetLatencyMillis"));
+        }
+    }
+
+    @Test
+    public void rejectsConfigurationOnceStarted() {
+        CqlSession session = mock(CqlSession.class);
+        when(session.executeAsync(any(Statement.class))).thenReturn(completed());
+        try (ThrottledWriteExecutor writer = new ThrottledWriteExecutor(session).setMaxInFlight(2)) {
+            writer.execute(IDEMPOTENT_WRITE);
+            try {
+                writer.setMaxInFlight(4);
+                fail();
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            writer.flush();
+            assertEquals(1, writer.getCompletedCount());
+        }
+    }
+
+    @Test
+    public void capsWritesInFlight() throws Exception {
+        CompletableFuture<AsyncResultSet> first = new CompletableFuture<>();
+        CompletableFuture<AsyncResultSet> second = new CompletableFuture<>();
+        CompletableFuture<AsyncResultSet> third = new CompletableFuture<>();
+        CqlSession session = mock(CqlSession.class);
+        when(session.executeAsync(any(Statement.class))).thenReturn(first, second, third);
+        final ThrottledWriteExecutor writer = new ThrottledWriteExecutor(session)
+                .setMaxOpsPerSecond(100_000).setMaxInFlight(2);
+        writer.execute(IDEMPOTENT_WRITE);
+        writer.execute(IDEMPOTENT_WRITE);
+
+        Thread caller = new Thread(() -> writer.execute(IDEMPOTENT_WRITE));
+        caller.start();
+        awaitWaiting(caller);
+        verify(session, times(2)).executeAsync(any(Statement.class));
+
+        first.complete(null);
+        caller.join();
+        verify(session, times(3)).executeAsync(any(Statement.class));
+
+        second.complete(null);
+        third.complete(null);
+        writer.close();
+        assertEquals(3, writer.getCompletedCount());
+    }
+
+    @Test
+    public void slowWritesInFlightHalveTheRateOnce() {
+        CompletableFuture<AsyncResultSet> first = new CompletableFuture<>();
+        CompletableFuture<AsyncResultSet> second = new CompletableFuture<>();
+        CompletableFuture<AsyncResultSet> third = new CompletableFuture<>();
+        CqlSession session = mock(CqlSession.class);
+        when(session.executeAsync(any(Statement.class))).thenReturn(first, second, third);
+        try (ThrottledWriteExecutor writer = new ThrottledWriteExecutor(session)
+                .setMaxOpsPerSecond(1000).setTargetLatencyMillis(0)) {
+            writer.execute(IDEMPOTENT_WRITE);
+            writer.execute(IDEMPOTENT_WRITE);
+            writer.execute(IDEMPOTENT_WRITE);
+            first.complete(null);
+            second.complete(null);
+            third.complete(null);
+
+            assertEquals(1, writer.getSlowDownCount());
+            assertEquals(500, writer.getCurrentOpsPerSecond(), 0);
+        }
+    }
+
+    /**
+     * Waits until this thread blocks.
+     */
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING) {
+            assertTrue(thread.isAlive());
+            Thread.sleep(1);
+        }
+    }
+
+    private static CompletableFuture<AsyncResultSet> completed() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static CompletableFuture<AsyncResultSet> timedOut() {
+        CompletableFuture<AsyncResultSet> write = new CompletableFuture<>();
+        write.completeExceptionally(new DriverTimeoutException("Query timed out"));
+        return write;
+    }
+}
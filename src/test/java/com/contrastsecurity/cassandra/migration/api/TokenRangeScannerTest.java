@@ -0,0 +1,331 @@
+package com.contrastsecurity.cassandra.migration.api;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DefaultConsistencyLevel;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import com.datastax.oss.driver.api.core.metadata.schema.ColumnMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.KeyspaceMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata;
+import com.datastax.oss.driver.api.core.metadata.token.Token;
+import com.datastax.oss.driver.api.core.metadata.token.TokenRange;
+import com.datastax.oss.driver.internal.core.metadata.token.Murmur3Token;
+import com.datastax.oss.driver.internal.core.metadata.token.Murmur3TokenRange;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for TokenRangeScanner.
+ */
+public class TokenRangeScannerTest {
+    private static final Murmur3Token MIN = new Murmur3Token(Long.MIN_VALUE);
+    private static final String RANGE_QUERY = "SELECT key, value FROM ks.t WHERE token(key) > ? AND token(key) <= ?";
+    private static final String TAIL_QUERY = "SELECT key, value FROM ks.t WHERE token(key) > ?";
+    private static final String FULL_QUERY = "SELECT key, value FROM ks.t";
+
+    private CqlSession session;
+    private TokenMap tokenMap;
+
+    /**
+     * The query each statement of the scan was bound from.
+     */
+    private final Map<BoundStatement, String> queries =
+            Collections.synchronizedMap(new IdentityHashMap<BoundStatement, String>());
+
+    /**
+     * The statements of the scan, by the token they were routed with: the end of their range.
+     */
+    private final Map<Token, BoundStatement> statements = Collections.synchronizedMap(new HashMap<Token, BoundStatement>());
+
+    /**
+     * The ends of the ranges queried, in query order, once per attempt.
+     */
+    private final List<Token> queriedRanges = Collections.synchronizedList(new ArrayList<Token>());
+
+    /**
+     * The rows of each range, by the end of the range.
+     */
+    private final Map<Token, List<Row>> rows = new HashMap<>();
+
+    /**
+     * The number of attempts failing after the first row, by the end of the range.
+     */
+    private final Map<Token, Integer> failures = Collections.synchronizedMap(new HashMap<Token, Integer>());
+
+    /**
+     * Answers the calls to the bound statements: statements are immutable, and their setters return the statement
+     * itself here. Records the statement routed to each token.
+     */
+    private final Answer<Object> boundStatementAnswer = call -> {
+        if (call.getMethod().getName().equals("setRoutingToken")) {
+            statements.put((Token) call.getArguments()[0], (BoundStatement) call.getMock());
+        }
+        return call.getMethod().getReturnType().isInstance(call.getMock()) ? call.getMock() : null;
+    };
+
+    @Before
+    public void setUp() {
+        session = mock(CqlSession.class);
+        Metadata metadata = mock(Metadata.class);
+        tokenMap = mock(TokenMap.class);
+        KeyspaceMetadata keyspace = mock(KeyspaceMetadata.class);
+        TableMetadata table = mock(TableMetadata.class);
+        ColumnMetadata key = mock(ColumnMetadata.class);
+        when(session.getMetadata()).thenReturn(metadata);
+        when(metadata.getTokenMap()).thenReturn(Optional.of(tokenMap));
+        when(metadata.getKeyspace("ks")).thenReturn(Optional.of(keyspace));
+        when(keyspace.getTable("t")).thenReturn(Optional.of(table));
+        when(table.getKeyspace()).thenReturn(CqlIdentifier.fromCql("ks"));
+        when(table.getName()).thenReturn(CqlIdentifier.fromCql("t"));
+        when(key.getName()).thenReturn(CqlIdentifier.fromCql("key"));
+        when(table.getPartitionKey()).thenReturn(Collections.singletonList(key));
+
+        when(session.prepare(Matchers.anyString())).thenAnswer(invocation -> {
+            String query = (String) invocation.getArguments()[0];
+            PreparedStatement prepared = mock(PreparedStatement.class);
+            when(prepared.bind(Matchers.<Object>anyVararg())).thenAnswer(bind -> {
+                BoundStatement statement = mock(BoundStatement.class, boundStatementAnswer);
+                queries.put(statement, query);
+                return statement;
+            });
+            return prepared;
+        });
+        when(session.executeAsync(any(Statement.class))).thenAnswer(invocation -> {
+            Token end = null;
+            synchronized (statements) {
+                for (Map.Entry<Token, BoundStatement> statement : statements.entrySet()) {
+                    if (statement.getValue() == invocation.getArguments()[0]) {
+                        end = statement.getKey();
+                    }
+                }
+            }
+            queriedRanges.add(end);
+            List<Row> rangeRows = rows.containsKey(end) ? rows.get(end) : Collections.<Row>emptyList();
+            Integer failuresLeft = failures.get(end);
+            if (failuresLeft != null && failuresLeft > 0) {
+                failures.put(end, failuresLeft - 1);
+                CompletableFuture<AsyncResultSet> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new DriverTimeoutException("Query timed out"));
+                return CompletableFuture.completedFuture(page(rangeRows.subList(0, 1), failed));
+            }
+            return CompletableFuture.completedFuture(page(rangeRows, null));
+        });
+    }
+
+    @Test
+    public void routesTheQueryOfEachRangeToItsReplicas() {
+        when(tokenMap.getTokenRanges()).thenReturn(new HashSet<>(Arrays.asList(range(-100, 100), range(100, -100))));
+
+        long count = new TokenRangeScanner(session)
+                .setSplits(2)
+                .setPageSize(10)
+                .setConsistencyLevel(DefaultConsistencyLevel.LOCAL_QUORUM)
+                .scan("ks", "t", "key, value", row -> {
+                });
+
+        assertEquals(0, count);
+        assertEquals(3, queriedRanges.size());
+
+        BoundStatement first = statements.get(token(-100));
+        assertEquals(RANGE_QUERY, queries.get(first));
+        verify(first).setToken(0, MIN);
+        verify(first).setToken(1, token(-100));
+
+        BoundStatement second = statements.get(token(100));
+        assertEquals(RANGE_QUERY, queries.get(second));
+        verify(second).setToken(0, token(-100));
+        verify(second).setToken(1, token(100));
+        verify(second).setPageSize(10);
+        verify(second).setConsistencyLevel((ConsistencyLevel) DefaultConsistencyLevel.LOCAL_QUORUM);
+
+        // The end of the ring: the range ends at the minimum token, which is routed like the first range.
+        BoundStatement tail = statements.get(MIN);
+        assertEquals(TAIL_QUERY, queries.get(tail));
+        verify(tail).setToken(0, token(100));
+        verify(tail, never()).setToken(Matchers.eq(1), any(Token.class));
+    }
+
+    @Test
+    public void scansTheWholeRingOfASingleTokenCluster() {
+        when(tokenMap.getTokenRanges()).thenReturn(Collections.singleton(range(42, 42)));
+        rows.put(token(42), Arrays.asList(mock(Row.class), mock(Row.class)));
+
+        long count = new TokenRangeScanner(session).scan("ks", "t", "key, value", row -> {
+        });
+
+        assertEquals(2, count);
+        BoundStatement statement = statements.get(token(42));
+        assertEquals(FULL_QUERY, queries.get(statement));
+        verify(statement, never()).setToken(anyInt(), any(Token.class));
+    }
+
+    @Test
+    public void skipsTheRangesNotToStart() {
+        when(tokenMap.getTokenRanges()).thenReturn(new HashSet<>(Arrays.asList(range(-100, 100), range(100, -100))));
+        final Row skipped = mock(Row.class);
+        rows.put(token(100), Collections.singletonList(skipped));
+        rows.put(MIN, Collections.singletonList(mock(Row.class)));
+        final List<Row> handled = Collections.synchronizedList(new ArrayList<Row>());
+        final List<TokenRange> ended = Collections.synchronizedList(new ArrayList<TokenRange>());
+
+        long count = new TokenRangeScanner(session).setSplits(2).scan("ks", "t", "key, value",
+                new TokenRangeScanner.RowHandler() {
+                    @Override
+                    public void handle(Row row) {
+                        handled.add(row);
+                    }
+
+                    @Override
+                    public boolean startRange(TokenRange range) {
+                        return !range.equals(range(-100, 100));
+                    }
+
+                    @Override
+                    public void endRange(TokenRange range) {
+                        ended.add(range);
+                    }
+                });
+
+        assertEquals(1, count);
+        assertEquals(1, handled.size());
+        assertTrue(!handled.contains(skipped));
+        assertTrue(!queriedRanges.contains(token(100)));
+        assertEquals(2, ended.size());
+        assertTrue(!ended.contains(range(-100, 100)));
+    }
+
+    @Test
+    public void retriesAFailedRangeFromItsStart() {
+        when(tokenMap.getTokenRanges()).thenReturn(Collections.singleton(range(42, 42)));
+        Row first = mock(Row.class);
+        Row second = mock(Row.class);
+        rows.put(token(42), Arrays.asList(first, second));
+        failures.put(token(42), 1);
+        final List<Row> handled = Collections.synchronizedList(new ArrayList<Row>());
+        final List<TokenRange> ended = Collections.synchronizedList(new ArrayList<TokenRange>());
+
+        long count = new TokenRangeScanner(session).scan("ks", "t", "key, value", new TokenRangeScanner.RowHandler() {
+            @Override
+            public void handle(Row row) {
+                handled.add(row);
+            }
+
+            @Override
+            public void endRange(TokenRange range) {
+                ended.add(range);
+            }
+        });
+
+        // The row handled before the failure is delivered again.
+        assertEquals(Arrays.asList(first, first, second), handled);
+        assertEquals(3, count);
+        assertEquals(Arrays.<Token>asList(token(42), token(42)), queriedRanges);
+        assertEquals(Collections.singletonList(range(42, 42)), ended);
+    }
+
+    @Test
+    public void failsARangeFailingOnEveryAttempt() {
+        when(tokenMap.getTokenRanges()).thenReturn(Collections.singleton(range(42, 42)));
+        rows.put(token(42), Collections.singletonList(mock(Row.class)));
+        failures.put(token(42), 2);
+
+        try {
+            new TokenRangeScanner(session).setMaxAttempts(2).scan("ks", "t", "key, value", row -> {
+            });
+            fail();
+        } catch (CassandraMigrationException e) {
+            assertTrue(e.getCause() instanceof DriverTimeoutException);
+        }
+        assertEquals(2, queriedRanges.size());
+    }
+
+    @Test
+    public void splitUnwrapsTheRing() {
+        List<TokenRange> ranges = TokenRangeScanner.split(Arrays.<TokenRange>asList(
+                range(-100, 100), range(100, -100)), 2);
+
+        assertEquals(Arrays.<TokenRange>asList(range(Long.MIN_VALUE, -100), range(-100, 100), range(100, Long.MIN_VALUE)),
+                ranges);
+    }
+
+    @Test
+    public void splitEvenly() {
+        List<TokenRange> ranges = TokenRangeScanner.split(Arrays.<TokenRange>asList(
+                range(0, 1000), range(1000, 0)), 8);
+
+        assertCoversRing(ranges);
+        assertEquals(9, ranges.size());
+        assertTrue(ranges.contains(range(0, 250)));
+    }
+
+    @Test
+    public void splitSingleTokenRing() {
+        assertEquals(Collections.singletonList(range(42, 42)),
+                TokenRangeScanner.split(Collections.<TokenRange>singletonList(range(42, 42)), 8));
+    }
+
+    /**
+     * Asserts that these sorted ranges cover the ring, without overlaps.
+     */
+    private static void assertCoversRing(List<TokenRange> ranges) {
+        assertEquals(MIN, ranges.get(0).getStart());
+        for (int i = 1; i < ranges.size(); i++) {
+            assertEquals(ranges.get(i - 1).getEnd(), ranges.get(i).getStart());
+        }
+        assertEquals(MIN, ranges.get(ranges.size() - 1).getEnd());
+    }
+
+    private static TokenRange range(long start, long end) {
+        return new Murmur3TokenRange(new Murmur3Token(start), new Murmur3Token(end));
+    }
+
+    private static Token token(long value) {
+        return new Murmur3Token(value);
+    }
+
+    /**
+     * @param rows     The rows of the page.
+     * @param nextPage The next page. {@code null} if this is the last one.
+     * @return The page.
+     */
+    private static AsyncResultSet page(List<Row> rows, CompletionStage<AsyncResultSet> nextPage) {
+        AsyncResultSet page = mock(AsyncResultSet.class);
+        when(page.currentPage()).thenReturn(rows);
+        when(page.hasMorePages()).thenReturn(nextPage != null);
+        when(page.fetchNextPage()).thenReturn(nextPage);
+        return page;
+    }
+}
@@ -0,0 +1,87 @@
+package com.contrastsecurity.cassandra.migration.config;
+
+import com.contrastsecurity.cassandra.migration.info.MigrationVersion;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for MigrationConfigs.
+ */
+public class MigrationConfigsTest {
+    @Test
+    public void withKeyspaceCopiesEverySetting() throws Exception {
+        Keyspace keyspace = new Keyspace();
+        keyspace.setName("first");
+        MigrationConfigs configs = new MigrationConfigs(keyspace);
+        setAllFields(configs);
+        Keyspace other = new Keyspace();
+        other.setName("second");
+
+        MigrationConfigs copy = configs.withKeyspace(other);
+
+        assertSame(other, copy.getKeyspace());
+        assertSame(keyspace, configs.getKeyspace());
+        int getters = 0;
+        for (Method method : MigrationConfigs.class.getMethods()) {
+            if (method.getDeclaringClass() != MigrationConfigs.class || method.getParameterTypes().length > 0
+                    || Modifier.isStatic(method.getModifiers()) || method.getName().equals("getKeyspace")
+                    || !(method.getName().startsWith("get") || method.getName().startsWith("is"))) {
+                continue;
+            }
+            Object expected = method.invoke(configs);
+            Object actual = method.invoke(copy);
+            if (expected instanceof Object[]) {
+                assertTrue(method.getName(), Arrays.equals((Object[]) expected, (Object[]) actual));
+                assertNotSame(method.getName(), expected, actual);
+            } else {
+                assertEquals(method.getName(), expected, actual);
+            }
+            getters++;
+        }
+        assertTrue(getters > 15);
+    }
+
+    /**
+     * Sets every field but the keyspace to a value other than its default one.
+     *
+     * @param configs The configuration.
+     */
+    private static void setAllFields(MigrationConfigs configs) throws Exception {
+        for (Field field : MigrationConfigs.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.getName().equals("keyspace")) {
+                continue;
+            }
+            field.setAccessible(true);
+            Class<?> type = field.getType();
+            if (type == String.class) {
+                field.set(configs, field.getName());
+            } else if (type == String[].class) {
+                field.set(configs, new String[]{field.getName()});
+            } else if (type == boolean.class) {
+                field.set(configs, !field.getBoolean(configs));
+            } else if (type == int.class) {
+                field.set(configs, field.getInt(configs) + 7);
+            } else if (type == long.class) {
+                field.set(configs, field.getLong(configs) + 7);
+            } else if (type.isEnum()) {
+                Object[] constants = type.getEnumConstants();
+                field.set(configs, constants[constants.length - 1] == field.get(configs)
+                        ? constants[0] : constants[constants.length - 1]);
+            } else if (type == MigrationVersion.class) {
+                field.set(configs, MigrationVersion.fromVersion("7"));
+            } else {
+                fail("Unable to set field " + field.getName() + " of type " + type.getName());
+            }
+        }
+    }
+}
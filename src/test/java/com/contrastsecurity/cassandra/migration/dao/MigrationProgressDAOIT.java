@@ -0,0 +1,107 @@
+package com.contrastsecurity.cassandra.migration.dao;
+
+import com.contrastsecurity.cassandra.migration.BaseIT;
+import com.contrastsecurity.cassandra.migration.api.MigrationProgress;
+import com.contrastsecurity.cassandra.migration.config.MigrationConfigs;
+import com.contrastsecurity.cassandra.migration.info.MigrationVersion;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Integration test for MigrationProgressDAO.
+ */
+public class MigrationProgressDAOIT extends BaseIT {
+    private static final MigrationVersion VERSION = MigrationVersion.fromVersion("5");
+
+    @Test
+    public void loadsTheProgressSavedByAPreviousRun() {
+        MigrationProgress progress = createDAO().load(VERSION);
+        assertThat(progress.getCheckpoint("last_key"), nullValue());
+        assertThat(progress.getCompleted().isEmpty(), is(true));
+
+        progress.saveCheckpoint("last_key", "41");
+        progress.saveCheckpoint("last_key", "42");
+        progress.complete("range_1");
+        assertThat(progress.getCheckpoint("last_key"), is("42"));
+        assertThat(progress.isCompleted("range_1"), is(true));
+
+        MigrationProgress resumed = createDAO().load(VERSION);
+        assertThat(resumed.getCheckpoint("last_key"), is("42"));
+        assertThat(resumed.isCompleted("range_1"), is(true));
+        assertThat(resumed.isCompleted("range_2"), is(false));
+        assertThat(resumed.getCompleted(), is(Collections.singleton("range_1")));
+
+        MigrationProgress other = createDAO().load(MigrationVersion.fromVersion("6"));
+        assertThat(other.getCheckpoint("last_key"), nullValue());
+        assertThat(other.getCompleted().isEmpty(), is(true));
+    }
+
+    @Test
+    public void clearsTheProgressOfASucceededMigration() {
+        MigrationProgressDAO dao = createDAO();
+        // Nothing to clear before the table exists.
+        dao.clear(VERSION);
+
+        MigrationProgress progress = dao.load(VERSION);
+        progress.saveCheckpoint("last_key", "42");
+        progress.complete("range_1");
+        MigrationProgress other = dao.load(MigrationVersion.fromVersion("6"));
+        other.complete("range_1");
+
+        dao.clear(VERSION);
+
+        MigrationProgress cleared = createDAO().load(VERSION);
+        assertThat(cleared.getCheckpoint("last_key"), nullValue());
+        assertThat(cleared.getCompleted().isEmpty(), is(true));
+        assertThat(createDAO().load(MigrationVersion.fromVersion("6")).isCompleted("range_1"), is(true));
+    }
+
+    @Test
+    public void keepsTheProgressOfEachKeyspaceInTheHistoryKeyspace() {
+        MigrationConfigs configs = new MigrationConfigs(getKeyspace());
+        configs.setHistoryKeyspace(CASSANDRA__KEYSPACE);
+        configs.setTablePrefix("tenant");
+        MigrationProgressDAO dao = new MigrationProgressDAO(getSession(), configs);
+        assertThat(dao.getTableName(), is(CASSANDRA__KEYSPACE + ".tenant_migration_progress"));
+
+        dao.load(VERSION).complete("range_1");
+        assertThat(new MigrationProgressDAO(getSession(), configs).load(VERSION).isCompleted("range_1"), is(true));
+        assertThat(createDAO().load(VERSION).isCompleted("range_1"), is(false));
+    }
+
+    @Test
+    public void leasesAMigrationToOneInstanceAtATime() {
+        MigrationProgressDAO dao = createDAO();
+        assertThat(dao.claimLease(VERSION, "instance-1", 60), is(true));
+        assertThat(createDAO().claimLease(VERSION, "instance-2", 60), is(false));
+        assertThat(dao.renewLease(VERSION, "instance-1", 60), is(true));
+        assertThat(dao.renewLease(VERSION, "instance-2", 60), is(false));
+        // The lease is not part of the progress.
+        assertThat(dao.load(VERSION).getCompleted().isEmpty(), is(true));
+        // Nor is it cleared with the progress.
+        dao.clear(VERSION);
+        assertThat(createDAO().claimLease(VERSION, "instance-2", 60), is(false));
+
+        dao.releaseLease(VERSION, "instance-2");
+        assertThat(createDAO().claimLease(VERSION, "instance-2", 60), is(false));
+        dao.releaseLease(VERSION, "instance-1");
+        assertThat(createDAO().claimLease(VERSION, "instance-2", 60), is(true));
+    }
+
+    @Test
+    public void expiredLeaseIsTakenOver() throws InterruptedException {
+        assertThat(createDAO().claimLease(VERSION, "instance-1", 1), is(true));
+        Thread.sleep(1500);
+        assertThat(createDAO().claimLease(VERSION, "instance-2", 60), is(true));
+        assertThat(createDAO().renewLease(VERSION, "instance-1", 60), is(false));
+    }
+
+    private MigrationProgressDAO createDAO() {
+        return new MigrationProgressDAO(getSession(), new MigrationConfigs(getKeyspace()));
+    }
+}
@@ -0,0 +1,193 @@
+package com.contrastsecurity.cassandra.migration.dao;
+
+import com.contrastsecurity.cassandra.migration.BaseIT;
+import com.contrastsecurity.cassandra.migration.config.HistoryLayout;
+import com.contrastsecurity.cassandra.migration.config.Keyspace;
+import com.contrastsecurity.cassandra.migration.config.MigrationConfigs;
+import com.contrastsecurity.cassandra.migration.config.MigrationType;
+import com.contrastsecurity.cassandra.migration.info.AppliedMigration;
+import com.contrastsecurity.cassandra.migration.info.MigrationVersion;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Integration test for the {@link HistoryLayout#V2} layout of SchemaVersionDAO, and for the upgrade of the
+ * {@link HistoryLayout#V1} history to it and for the history of many keyspaces kept in a control keyspace.
+ */
+public class SchemaVersionDAOIT extends BaseIT {
+    private static final String CONTROL_KEYSPACE = "cassandra_migration_control";
+
+    @Test
+    public void readsSlicesOfTheHistoryPartition() {
+        SchemaVersionDAO dao = createDAO();
+        assertThat(dao.findLatestAppliedMigration(), nullValue());
+
+        dao.addAppliedMigration(createAppliedMigration("1"));
+        dao.addAppliedMigration(createAppliedMigration("1.10"));
+        // Out of order: ranks the later versions one step down.
+        dao.addAppliedMigration(createAppliedMigration("1.2"));
+
+        List<AppliedMigration> appliedMigrations = dao.findAppliedMigrations();
+        assertThat(appliedMigrations.size(), is(3));
+        assertVersion(appliedMigrations.get(0), "1", 1, 1);
+        assertVersion(appliedMigrations.get(1), "1.2", 2, 3);
+        assertVersion(appliedMigrations.get(2), "1.10", 3, 2);
+
+        assertVersion(dao.findLatestAppliedMigration(), "1.10", 3, 2);
+
+        List<AppliedMigration> after = dao.findAppliedMigrationsAfter(MigrationVersion.fromVersion("1"));
+        assertThat(after.size(), is(2));
+        assertThat(after.get(0).getVersion().getVersion(), is("1.2"));
+        assertThat(after.get(1).getVersion().getVersion(), is("1.10"));
+        assertThat(dao.findAppliedMigrationsAfter(MigrationVersion.fromVersion("1.10")).isEmpty(), is(true));
+    }
+
+    @Test
+    public void recordsTheCurrentVersionInThePartition() {
+        SchemaVersionDAO dao = createDAO();
+        assertThat(dao.versionNotFound(), is(true));
+
+        dao.addAppliedMigration(createAppliedMigration("1"));
+        dao.addMigrationVersion("1");
+        assertThat(dao.versionNotFound(), is(false));
+
+        dao.addAppliedMigration(createAppliedMigration("2"));
+        dao.updateMigrationVersion("2");
+        assertThat(createDAO().findLatestAppliedMigration().getVersion().getVersion(), is("2"));
+    }
+
+    @Test
+    public void upgradesAV1TableOfTheFirstRelease() {
+        createFirstReleaseV1History();
+
+        SchemaVersionDAO dao = createDAO();
+        List<AppliedMigration> appliedMigrations = dao.findAppliedMigrations();
+        assertThat(appliedMigrations.size(), is(2));
+        assertVersion(appliedMigrations.get(0), "1", 1, 1);
+        assertVersion(appliedMigrations.get(1), "2", 2, 2);
+        assertThat(appliedMigrations.get(1).getChecksum(), is(222));
+        assertThat(appliedMigrations.get(1).getChecksumAlgorithm(), nullValue());
+        assertThat(appliedMigrations.get(1).getStatus(), nullValue());
+        assertThat(dao.versionNotFound(), is(false));
+
+        dao.addAppliedMigration(createAppliedMigration("3"));
+        assertVersion(dao.findLatestAppliedMigration(), "3", 3, 3);
+    }
+
+    @Test
+    public void completesAnInterruptedUpgrade() {
+        createFirstReleaseV1History();
+        createDAO();
+
+        // As if the first upgrade stopped after copying version 1.
+        getSession().execute(SimpleStatement.newInstance("DELETE installed_count, current_version FROM "
+                + CASSANDRA__KEYSPACE + ".schema_migration_v2 WHERE keyspace_name = ?", CASSANDRA__KEYSPACE));
+        getSession().execute(SimpleStatement.newInstance("DELETE FROM " + CASSANDRA__KEYSPACE
+                        + ".schema_migration_v2 WHERE keyspace_name = ? AND version_key = ?", CASSANDRA__KEYSPACE,
+                ByteBuffer.wrap(MigrationVersion.fromVersion("2").getSortKey())));
+
+        SchemaVersionDAO dao = createDAO();
+        assertThat(dao.findAppliedMigrations().size(), is(2));
+        assertThat(dao.versionNotFound(), is(false));
+        dao.addAppliedMigration(createAppliedMigration("3"));
+        assertVersion(dao.findLatestAppliedMigration(), "3", 3, 3);
+    }
+
+    @Test
+    public void sharesAControlKeyspaceBetweenTenants() {
+        String[] keyspaceNames = {CONTROL_KEYSPACE, "tenant_a", "tenant_b", "tenant_c"};
+        for (String keyspaceName : keyspaceNames) {
+            getSession().execute("CREATE KEYSPACE " + keyspaceName
+                    + " WITH REPLICATION = { 'class' : 'SimpleStrategy', 'replication_factor' : 1 }");
+        }
+        try {
+            SchemaVersionDAO tenantA = createTenantDAO("tenant_a");
+            tenantA.addAppliedMigration(createAppliedMigration("1"));
+            tenantA.addAppliedMigration(createAppliedMigration("2"));
+            SchemaVersionDAO tenantB = createTenantDAO("tenant_b");
+            tenantB.addAppliedMigration(createAppliedMigration("1"));
+            createTenantDAO("tenant_c");
+
+            assertThat(tenantA.findAppliedMigrations().size(), is(2));
+            assertThat(tenantB.findAppliedMigrations().size(), is(1));
+            assertThat(tenantB.findLatestAppliedMigration().getInstalledRank(), is(1));
+
+            Map<String, AppliedMigration> latest =
+                    tenantA.findLatestAppliedMigrations(Arrays.asList("tenant_c", "tenant_b", "tenant_a"));
+            assertThat(new ArrayList<>(latest.keySet()), is(Arrays.asList("tenant_b", "tenant_a")));
+            assertThat(latest.get("tenant_a").getVersion().getVersion(), is("2"));
+            assertThat(latest.get("tenant_b").getVersion().getVersion(), is("1"));
+
+            for (String tenant : Arrays.asList("tenant_a", "tenant_b", "tenant_c")) {
+                assertThat(getSession().getMetadata().getKeyspace(tenant).get().getTables().isEmpty(), is(true));
+            }
+        } finally {
+            for (String keyspaceName : keyspaceNames) {
+                getSession().execute("DROP KEYSPACE IF EXISTS " + keyspaceName);
+            }
+        }
+    }
+
+    /**
+     * Records versions 1 and 2 in V1 tables with the columns of the first release.
+     */
+    private void createFirstReleaseV1History() {
+        String[] statements = {
+                "CREATE TABLE %s.schema_migration (version_rank int, installed_rank int, version text,"
+                        + " description text, script text, checksum int, type text, installed_by text,"
+                        + " installed_on timestamp, execution_time int, success boolean, ignored boolean,"
+                        + " PRIMARY KEY (version))",
+                "CREATE TABLE %s.schema_migration_counts (name text, count counter, PRIMARY KEY (name))",
+                "CREATE TABLE %s.migration_version (version text, PRIMARY KEY (version))",
+                "INSERT INTO %s.schema_migration (version_rank, installed_rank, version, description, type, script,"
+                        + " checksum, installed_on, installed_by, execution_time, success, ignored) VALUES"
+                        + " (1, 1, '1', 'First', 'CQL', 'V1__First.cql', 111, dateOf(now()), 'cassandra', 10,"
+                        + " true, false)",
+                "INSERT INTO %s.schema_migration (version_rank, installed_rank, version, description, type, script,"
+                        + " checksum, installed_on, installed_by, execution_time, success, ignored) VALUES"
+                        + " (2, 2, '2', 'Second', 'CQL', 'V2__Second.cql', 222, dateOf(now()), 'cassandra', 10,"
+                        + " true, false)",
+                "UPDATE %s.schema_migration_counts SET count = count + 2 WHERE name = 'installed_rank'",
+                "INSERT INTO %s.migration_version (version) VALUES ('2')"
+        };
+        for (String statement : statements) {
+            getSession().execute(String.format(statement, CASSANDRA__KEYSPACE));
+        }
+    }
+
+    private SchemaVersionDAO createTenantDAO(String keyspaceName) {
+        Keyspace keyspace = getKeyspace();
+        keyspace.setName(keyspaceName);
+        MigrationConfigs configs = new MigrationConfigs(keyspace);
+        configs.setHistoryKeyspace(CONTROL_KEYSPACE);
+        return new SchemaVersionDAO(getSession(), configs);
+    }
+
+    private SchemaVersionDAO createDAO() {
+        MigrationConfigs configs = new MigrationConfigs(getKeyspace());
+        configs.setHistoryLayout(HistoryLayout.V2);
+        return new SchemaVersionDAO(getSession(), configs);
+    }
+
+    private static AppliedMigration createAppliedMigration(String version) {
+        return new AppliedMigration(MigrationVersion.fromVersion(version), "Migration " + version, MigrationType.CQL,
+                "V" + version + "__Migration.cql", 123, "cassandra", 10, true);
+    }
+
+    private static void assertVersion(AppliedMigration appliedMigration, String version, int versionRank,
+                                      int installedRank) {
+        assertThat(appliedMigration.getVersion().getVersion(), is(version));
+        assertThat(appliedMigration.getVersionRank(), is(versionRank));
+        assertThat(appliedMigration.getInstalledRank(), is(installedRank));
+    }
+}
@@ -0,0 +1,95 @@
+package com.contrastsecurity.cassandra.migration.dao;
+
+import com.contrastsecurity.cassandra.migration.BaseIT;
+import com.contrastsecurity.cassandra.migration.config.MigrationConfigs;
+import com.contrastsecurity.cassandra.migration.info.MigrationVersion;
+import com.contrastsecurity.cassandra.migration.info.StatementMetrics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Integration test for StatementMetricsDAO.
+ */
+public class StatementMetricsDAOIT extends BaseIT {
+    private static final MigrationVersion FIRST = MigrationVersion.fromVersion("1");
+    private static final MigrationVersion SECOND = MigrationVersion.fromVersion("2");
+    private static final MigrationVersion THIRD = MigrationVersion.fromVersion("3");
+
+    @Test
+    public void savesTheMetricsOfEachMigrationInBatches() {
+        StatementMetricsDAO dao = createDAO();
+        // Nothing to read before the table exists.
+        assertThat(dao.findStatementMetrics(Arrays.asList(FIRST, SECOND)).isEmpty(), is(true));
+
+        // More statements than a batch holds.
+        dao.save(FIRST, createMetrics(150));
+        dao.save(SECOND, createMetrics(2));
+
+        Map<MigrationVersion, List<StatementMetrics>> metrics =
+                createDAO().findStatementMetrics(Arrays.asList(FIRST, SECOND, THIRD));
+        assertThat(metrics.size(), is(2));
+        assertThat(metrics.get(FIRST).size(), is(150));
+        assertThat(metrics.get(SECOND).size(), is(2));
+        assertThat(metrics.get(THIRD), nullValue());
+
+        StatementMetrics statement = metrics.get(FIRST).get(149);
+        assertThat(statement.getIndex(), is(149));
+        assertThat(statement.getStatement(), is("INSERT INTO test1 (key) VALUES ('149')"));
+        assertThat(statement.getHash(), is(StatementMetrics.hash("INSERT INTO test1 (key) VALUES ('149')")));
+        assertThat(statement.getLatencyNanos(), is(149000L));
+        assertThat(statement.getCoordinator(), is("/127.0.0.1:9042"));
+        assertThat(statement.getRetries(), is(1));
+        assertThat(statement.isSchemaInAgreement(), is(true));
+    }
+
+    @Test
+    public void replacesTheMetricsOfAPreviousAttempt() {
+        StatementMetricsDAO dao = createDAO();
+        dao.save(FIRST, createMetrics(3));
+        dao.save(FIRST, createMetrics(1));
+
+        List<StatementMetrics> metrics = dao.findStatementMetrics(Collections.singletonList(FIRST)).get(FIRST);
+        assertThat(metrics.size(), is(1));
+        assertThat(metrics.get(0).getIndex(), is(0));
+    }
+
+    @Test
+    public void keepsTheMetricsOfEachKeyspaceInTheHistoryKeyspace() {
+        MigrationConfigs configs = new MigrationConfigs(getKeyspace());
+        configs.setHistoryKeyspace(CASSANDRA__KEYSPACE);
+        configs.setTablePrefix("tenant");
+        StatementMetricsDAO dao = new StatementMetricsDAO(getSession(), configs);
+        assertThat(dao.getTableName(), is(CASSANDRA__KEYSPACE + ".tenant_migration_statement_metrics"));
+
+        dao.save(FIRST, createMetrics(1));
+        assertThat(new StatementMetricsDAO(getSession(), configs)
+                .findStatementMetrics(Collections.singletonList(FIRST)).get(FIRST).size(), is(1));
+        assertThat(createDAO().findStatementMetrics(Collections.singletonList(FIRST)).isEmpty(), is(true));
+    }
+
+    private StatementMetricsDAO createDAO() {
+        return new StatementMetricsDAO(getSession(), new MigrationConfigs(getKeyspace()));
+    }
+
+    /**
+     * @param count The number of statements.
+     * @return The metrics of these statements, each retried once.
+     */
+    private static List<StatementMetrics> createMetrics(int count) {
+        List<StatementMetrics> metrics = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            metrics.add(StatementMetrics.of(i, "INSERT INTO test1 (key) VALUES ('" + i + "')", i * 1000L,
+                    "/127.0.0.1:9042", 1, true));
+        }
+        return metrics;
+    }
+}
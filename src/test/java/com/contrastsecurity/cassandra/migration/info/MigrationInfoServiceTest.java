@@ -26,7 +26,12 @@ import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -120,6 +125,42 @@ public class MigrationInfoServiceTest {
         assertEquals(0, migrationInfoService.pending().length);
     }
 
+    @Test
+    public void refreshFromReadsTheHistoryAfterTheUnchangedMigrations() {
+        SchemaVersionDAO dao = createSchemaVersionDAO(createAppliedMigration(1), createAppliedMigration(3));
+        when(dao.findAppliedMigrationsAfter(MigrationVersion.fromVersion("1")))
+                .thenReturn(Arrays.asList(createAppliedMigration(2), createAppliedMigration(3)));
+        MigrationInfoService migrationInfoService =
+                new MigrationInfoService(
+                        createMigrationResolver(createAvailableMigration(1), createAvailableMigration(2),
+                                createAvailableMigration(3)),
+                        dao, MigrationVersion.LATEST, true, true);
+        migrationInfoService.refresh();
+        assertEquals(1, migrationInfoService.pending().length);
+
+        migrationInfoService.refreshFrom(MigrationVersion.fromVersion("2"));
+
+        assertEquals(3, migrationInfoService.applied().length);
+        assertEquals(0, migrationInfoService.pending().length);
+        verify(dao, times(1)).findAppliedMigrations();
+    }
+
+    @Test
+    public void refreshFromTheFirstMigrationReadsTheWholeHistory() {
+        SchemaVersionDAO dao = createSchemaVersionDAO(createAppliedMigration(1));
+        MigrationInfoService migrationInfoService =
+                new MigrationInfoService(
+                        createMigrationResolver(createAvailableMigration(1)),
+                        dao, MigrationVersion.LATEST, false, true);
+        migrationInfoService.refresh();
+
+        migrationInfoService.refreshFrom(MigrationVersion.fromVersion("1"));
+
+        assertEquals(1, migrationInfoService.applied().length);
+        verify(dao, times(2)).findAppliedMigrations();
+        verify(dao, never()).findAppliedMigrationsAfter(any(MigrationVersion.class));
+    }
+
     @Test
     public void belowBaseline() {
         MigrationInfoService migrationInfoService =
@@ -166,6 +207,45 @@ public class MigrationInfoServiceTest {
         assertEquals(0, migrationInfoService.pending().length);
     }
 
+    @Test
+    public void mergeUnsortedMigrations() {
+        MigrationInfoService migrationInfoService =
+                new MigrationInfoService(null, null, MigrationVersion.LATEST, false, true);
+        ResolvedMigration replaced = createAvailableMigration(2);
+        ResolvedMigration duplicate = createAvailableMigration(2);
+        migrationInfoService.refresh(
+                Arrays.asList(createAvailableMigration(4), replaced, createAvailableMigration(1), duplicate),
+                Arrays.asList(createAppliedMigration(2), createAppliedMigration(1)));
+
+        MigrationInfo[] all = migrationInfoService.all();
+        assertEquals(3, all.length);
+        assertEquals("1", all[0].getVersion().toString());
+        assertEquals("2", all[1].getVersion().toString());
+        assertEquals("4", all[2].getVersion().toString());
+        assertSame(duplicate, all[1].getResolvedMigration());
+        assertEquals("2", migrationInfoService.current().getVersion().toString());
+    }
+
+    @Test
+    public void indexByState() {
+        MigrationInfoService migrationInfoService =
+                new MigrationInfoService(null, null, MigrationVersion.LATEST, false, true);
+        migrationInfoService.refresh(
+                Arrays.asList(createAvailableMigration(1), createAvailableMigration(3), createAvailableMigration(4)),
+                Arrays.asList(createAppliedMigration(1), createAppliedMigration(2), createAppliedMigration(3)));
+
+        assertEquals(4, migrationInfoService.all().length);
+        assertEquals(3, migrationInfoService.applied().length);
+        assertEquals(3, migrationInfoService.resolved().length);
+        assertEquals(0, migrationInfoService.failed().length);
+        assertEquals(0, migrationInfoService.future().length);
+        assertEquals(1, migrationInfoService.pending().length);
+        assertEquals("4", migrationInfoService.pending()[0].getVersion().toString());
+        assertEquals(1, migrationInfoService.withState(MigrationState.MISSING_SUCCESS).length);
+        assertEquals(0, migrationInfoService.withState(MigrationState.OUT_OF_ORDER).length);
+        assertEquals("3", migrationInfoService.current().getVersion().toString());
+    }
+
     /**
      * Creates a new available migration with this version.
      *
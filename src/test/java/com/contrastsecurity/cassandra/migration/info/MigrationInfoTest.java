@@ -18,6 +18,8 @@ package com.contrastsecurity.cassandra.migration.info;
 import com.contrastsecurity.cassandra.migration.config.MigrationType;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class MigrationInfoTest {
@@ -43,4 +45,70 @@ public class MigrationInfoTest {
         assertTrue(message.contains("123"));
         assertTrue(message.contains("456"));
     }
+
+    @Test
+    public void backgroundState() {
+        MigrationVersion version = MigrationVersion.fromVersion("1");
+        MigrationType type = MigrationType.JAVA_DRIVER;
+
+        ResolvedMigration resolvedMigration = new ResolvedMigration();
+        resolvedMigration.setVersion(version);
+        resolvedMigration.setDescription("test");
+        resolvedMigration.setType(type);
+
+        AppliedMigration appliedMigration = new AppliedMigration(version, "test", type, null, null, "testUser", 0, true);
+        appliedMigration.setStatus(MigrationState.RUNNING);
+        MigrationInfo migrationInfo =
+                new MigrationInfo(resolvedMigration, appliedMigration, new MigrationInfoContext());
+        assertEquals(MigrationState.RUNNING, migrationInfo.getState());
+        assertNull(migrationInfo.validate());
+
+        appliedMigration.setStatus(MigrationState.COMPLETED);
+        migrationInfo = new MigrationInfo(resolvedMigration, appliedMigration, new MigrationInfoContext());
+        assertEquals(MigrationState.COMPLETED, migrationInfo.getState());
+    }
+
+    @Test
+    public void validateChecksumAlgorithmMismatch() {
+        MigrationVersion version = MigrationVersion.fromVersion("1");
+        MigrationType type = MigrationType.CQL;
+
+        ResolvedMigration resolvedMigration = new ResolvedMigration();
+        resolvedMigration.setVersion(version);
+        resolvedMigration.setDescription("test");
+        resolvedMigration.setType(type);
+        resolvedMigration.setChecksum(123);
+        resolvedMigration.setChecksumAlgorithm("CRC32C");
+        resolvedMigration.setChecksumValue(123L);
+
+        AppliedMigration appliedMigration = new AppliedMigration(version, "test", type, null, 123, "testUser", 0, true);
+
+        MigrationInfo migrationInfo =
+                new MigrationInfo(resolvedMigration, appliedMigration, new MigrationInfoContext());
+        String message = migrationInfo.validate();
+
+        assertTrue(message.contains("CRC32C"));
+        assertTrue(message.contains("restampChecksums"));
+    }
+
+    @Test
+    public void validateLegacyChecksum() {
+        MigrationVersion version = MigrationVersion.fromVersion("1");
+        MigrationType type = MigrationType.CQL;
+
+        ResolvedMigration resolvedMigration = new ResolvedMigration();
+        resolvedMigration.setVersion(version);
+        resolvedMigration.setDescription("test");
+        resolvedMigration.setType(type);
+        resolvedMigration.setChecksum(123);
+        resolvedMigration.setChecksumAlgorithm("CRC32");
+        resolvedMigration.setChecksumValue(123L);
+
+        AppliedMigration appliedMigration = new AppliedMigration(version, "test", type, null, 123, "testUser", 0, true);
+
+        MigrationInfo migrationInfo =
+                new MigrationInfo(resolvedMigration, appliedMigration, new MigrationInfoContext());
+
+        assertNull(migrationInfo.validate());
+    }
 }
@@ -18,7 +18,12 @@ package com.contrastsecurity.cassandra.migration.info;
 import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -166,6 +171,60 @@ public class MigrationVersionTest {
         MigrationVersion.fromVersion("1.2.1a-3");
     }
 
+    @Test
+    public void interned() {
+        assertSame(MigrationVersion.fromVersion("1.2.3"), MigrationVersion.fromVersion("1.2.3"));
+        assertEquals("1.2.3", MigrationVersion.fromVersion("1_2_3").getVersion());
+    }
+
+    @Test
+    public void overflowingPartsCompareWithLongParts() {
+        MigrationVersion small = MigrationVersion.fromVersion("9223372036854775806.1");
+        MigrationVersion big = MigrationVersion.fromVersion("9223372036854775808.1");
+        MigrationVersion bigger = MigrationVersion.fromVersion("9223372036854775808.1.1");
+
+        assertTrue(small.compareTo(big) < 0);
+        assertTrue(big.compareTo(small) > 0);
+        assertTrue(big.compareTo(bigger) < 0);
+        assertEquals(big, MigrationVersion.fromVersion("9223372036854775808.1.0"));
+        assertEquals(big.hashCode(), MigrationVersion.fromVersion("9223372036854775808.1.0").hashCode());
+    }
+
+    @Test
+    public void sortKeysFollowVersionOrder() {
+        String[] versions = {"0", "0.1", "1", "1.0.0.1", "1.0.1", "1.1", "1.2.3", "1.10", "2", "255", "256", "65536",
+                "201004171859", "9223372036854775807.1", "9223372036854775808", "9223372036854775808.0.1",
+                "99999999999999999999999999999"};
+        List<MigrationVersion> sorted = new ArrayList<>();
+        for (String version : versions) {
+            sorted.add(MigrationVersion.fromVersion(version));
+        }
+        sorted.add(0, MigrationVersion.EMPTY);
+        sorted.add(MigrationVersion.LATEST);
+
+        for (int i = 0; i < sorted.size() - 1; i++) {
+            assertTrue(sorted.get(i) + " < " + sorted.get(i + 1),
+                    compareUnsigned(sorted.get(i).getSortKey(), sorted.get(i + 1).getSortKey()) < 0);
+        }
+        assertArrayEquals(MigrationVersion.fromVersion("1.2").getSortKey(),
+                MigrationVersion.fromVersion("1.2.0.0").getSortKey());
+    }
+
+    @Test(expected = CassandraMigrationException.class)
+    public void currentHasNoSortKey() {
+        MigrationVersion.CURRENT.getSortKey();
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int compared = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return a.length - b.length;
+    }
+
     @Test
     public void testWouldOverflowLong() {
         final String raw = "9999999999999999999999999999999999.8888888231231231231231298797298789132.22";
@@ -16,15 +16,23 @@
 package com.contrastsecurity.cassandra.migration.resolver;
 
 import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.config.MigrationConfigs;
 import com.contrastsecurity.cassandra.migration.config.MigrationType;
 import com.contrastsecurity.cassandra.migration.config.ScriptsLocations;
 import com.contrastsecurity.cassandra.migration.info.MigrationVersion;
 import com.contrastsecurity.cassandra.migration.info.ResolvedMigration;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -33,6 +41,9 @@ import static org.junit.Assert.assertTrue;
  * Test for CompositeMigrationResolver.
  */
 public class CompositeMigrationResolverTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void resolveMigrationsMultipleLocations() {
         MigrationResolver migrationResolver = new CompositeMigrationResolver(
@@ -49,6 +60,71 @@ public class CompositeMigrationResolverTest {
         assertEquals("Add contents table", migrationList.get(2).getDescription());
     }
 
+    @Test
+    public void resolveMigrationsInParallel() {
+        MigrationConfigs configs = new MigrationConfigs(null);
+        configs.setResolverParallelism(4);
+        MigrationResolver migrationResolver = new CompositeMigrationResolver(
+                Thread.currentThread().getContextClassLoader(),
+                new ScriptsLocations("migration/subdir", "migration.outoforder"),
+                configs);
+
+        List<ResolvedMigration> migrationList = new ArrayList<ResolvedMigration>(migrationResolver.resolveMigrations());
+
+        List<ResolvedMigration> expected = new ArrayList<ResolvedMigration>(new CompositeMigrationResolver(
+                Thread.currentThread().getContextClassLoader(),
+                new ScriptsLocations("migration/subdir", "migration.outoforder"),
+                "UTF-8").resolveMigrations());
+        assertEquals(expected, migrationList);
+    }
+
+    @Test(expected = CassandraMigrationException.class)
+    public void resolveMigrationsInParallelDetectsDuplicates() {
+        MigrationConfigs configs = new MigrationConfigs(null);
+        configs.setResolverParallelism(4);
+        new CompositeMigrationResolver(
+                Thread.currentThread().getContextClassLoader(),
+                new ScriptsLocations("migration/subdir", "migration/cql"),
+                configs).resolveMigrations();
+    }
+
+    @Test
+    public void watchedChangesResolveTheWatchingResolverOnly() throws Exception {
+        File root = folder.getRoot();
+        Files.write(new File(root, "V1__First.cql").toPath(),
+                "CREATE TABLE first (id int PRIMARY KEY);".getBytes(StandardCharsets.UTF_8));
+        final AtomicInteger customResolutions = new AtomicInteger();
+        MigrationConfigs configs = new MigrationConfigs(null);
+        configs.setWatch(true);
+
+        try (CompositeMigrationResolver migrationResolver = new CompositeMigrationResolver(
+                Thread.currentThread().getContextClassLoader(),
+                new ScriptsLocations("filesystem:" + root.getPath()),
+                configs,
+                new MigrationResolver() {
+                    public List<ResolvedMigration> resolveMigrations() {
+                        customResolutions.incrementAndGet();
+                        return Collections.singletonList(
+                                createTestMigration(MigrationType.JAVA_DRIVER, "3", "Custom", "Migration3", 123));
+                    }
+                })) {
+            assertEquals(2, migrationResolver.resolveMigrations().size());
+
+            Files.write(new File(root, "V2__Second.cql").toPath(),
+                    "CREATE TABLE second (id int PRIMARY KEY);".getBytes(StandardCharsets.UTF_8));
+            long deadline = System.currentTimeMillis() + 12000;
+            List<ResolvedMigration> migrations = migrationResolver.resolveMigrations();
+            while (migrations.size() != 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+                migrations = migrationResolver.resolveMigrations();
+            }
+
+            assertEquals(3, migrations.size());
+            assertEquals("Second", migrations.get(1).getDescription());
+            assertEquals(1, customResolutions.get());
+        }
+    }
+
     /**
      * Checks that migrations are properly collected, eliminating all exact duplicates.
      */
@@ -0,0 +1,86 @@
+package com.contrastsecurity.cassandra.migration.resolver.cql;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for ChecksumManifest.
+ */
+public class ChecksumManifestTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reusesChecksumOfUnchangedScript() throws Exception {
+        String location = folder.newFolder("location").getPath();
+        File manifestDir = new File(folder.getRoot(), "manifests");
+
+        ChecksumManifest manifest = ChecksumManifest.load(manifestDir, location);
+        manifest.put("V1__First.cql", 10, 1000, "CRC32", 42L);
+        manifest.save();
+
+        ChecksumManifest reloaded = ChecksumManifest.load(manifestDir, location);
+        assertEquals(Long.valueOf(42), reloaded.getChecksum("V1__First.cql", 10, 1000, "CRC32"));
+        assertNull(reloaded.getChecksum("V1__First.cql", 11, 1000, "CRC32"));
+        assertNull(reloaded.getChecksum("V1__First.cql", 10, 1001, "CRC32"));
+        assertNull(reloaded.getChecksum("V2__Second.cql", 10, 1000, "CRC32"));
+        assertNull(reloaded.getChecksum("V1__First.cql", 10, 1000, "CRC64"));
+    }
+
+    @Test
+    public void recentlyModifiedScriptsAreNotRecorded() throws Exception {
+        String location = folder.newFolder("location").getPath();
+        File manifestDir = new File(folder.getRoot(), "manifests");
+
+        ChecksumManifest manifest = ChecksumManifest.load(manifestDir, location);
+        manifest.put("V1__First.cql", 10, System.currentTimeMillis(), "CRC32", 42L);
+        manifest.save();
+
+        assertFalse(ChecksumManifest.getFile(manifestDir, location).exists());
+    }
+
+    @Test
+    public void scriptsNotSeenAreDropped() throws Exception {
+        String location = folder.newFolder("location").getPath();
+        File manifestDir = new File(folder.getRoot(), "manifests");
+
+        ChecksumManifest manifest = ChecksumManifest.load(manifestDir, location);
+        manifest.put("V1__First.cql", 10, 1000, "CRC32", 42L);
+        manifest.put("V2__Second.cql", 20, 2000, "CRC32", 43L);
+        manifest.save();
+
+        ChecksumManifest second = ChecksumManifest.load(manifestDir, location);
+        second.getChecksum("V2__Second.cql", 20, 2000, "CRC32");
+        second.save();
+
+        ChecksumManifest third = ChecksumManifest.load(manifestDir, location);
+        assertNull(third.getChecksum("V1__First.cql", 10, 1000, "CRC32"));
+        assertEquals(Long.valueOf(43), third.getChecksum("V2__Second.cql", 20, 2000, "CRC32"));
+    }
+
+    @Test
+    public void manifestIsKeptOutsideOfLocation() throws Exception {
+        String location = folder.newFolder("location").getPath();
+        String otherLocation = folder.newFolder("other", "location").getPath();
+        File manifestDir = new File(folder.getRoot(), "manifests");
+
+        ChecksumManifest manifest = ChecksumManifest.load(manifestDir, location);
+        manifest.put("V1__First.cql", 10, 1000, "CRC32", 42L);
+        manifest.save();
+
+        assertEquals(0, new File(location).list().length);
+        assertTrue(ChecksumManifest.getFile(manifestDir, location).isFile());
+        assertNotEquals(ChecksumManifest.getFile(manifestDir, location),
+                ChecksumManifest.getFile(manifestDir, otherLocation));
+        assertNull(ChecksumManifest.load(manifestDir, otherLocation).getChecksum("V1__First.cql", 10, 1000, "CRC32"));
+    }
+}
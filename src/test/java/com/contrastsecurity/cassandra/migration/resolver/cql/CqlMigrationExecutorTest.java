@@ -0,0 +1,43 @@
+package com.contrastsecurity.cassandra.migration.resolver.cql;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.api.ChecksumAlgorithm;
+import com.contrastsecurity.cassandra.migration.utils.checksum.ChecksumAlgorithms;
+import com.contrastsecurity.cassandra.migration.utils.scanner.filesystem.FileSystemResource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for CqlMigrationExecutor.
+ */
+public class CqlMigrationExecutorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void checksumDifferingInTheHighBitsIsAChange() throws Exception {
+        File script = folder.newFile("V1__First.cql");
+        byte[] content = "CREATE TABLE test1 (key text PRIMARY KEY);".getBytes(StandardCharsets.UTF_8);
+        Files.write(script.toPath(), content);
+        ChecksumAlgorithm crc64 = ChecksumAlgorithms.forName(ChecksumAlgorithms.CRC64,
+                Thread.currentThread().getContextClassLoader());
+        long checksum = ChecksumAlgorithms.calculate(crc64, content);
+
+        CqlMigrationExecutor executor = new CqlMigrationExecutor(new FileSystemResource(script.getPath()), null,
+                "UTF-8", checksum ^ (1L << 40), crc64, null);
+        try {
+            executor.execute(null);
+            fail();
+        } catch (CassandraMigrationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("changed since it was resolved"));
+        }
+    }
+}
@@ -1,22 +1,34 @@
 package com.contrastsecurity.cassandra.migration.resolver.cql;
 
 import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.config.MigrationConfigs;
 import com.contrastsecurity.cassandra.migration.config.ScriptsLocation;
 import com.contrastsecurity.cassandra.migration.info.ResolvedMigration;
 import com.contrastsecurity.cassandra.migration.utils.scanner.classpath.ClassPathResource;
 import com.contrastsecurity.cassandra.migration.utils.scanner.filesystem.FileSystemResource;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Testcase for CqlMigration.
  */
 public class CqlMigrationResolverTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void resolveMigrations() {
         CqlMigrationResolver cqlMigrationResolver =
@@ -37,6 +49,27 @@ public class CqlMigrationResolverTest {
         assertEquals("dir2/V2_0__Add_contents_table.cql", migrationList.get(2).getScript());
     }
 
+    @Test
+    public void resolveMigrationsOnPool() {
+        CqlMigrationResolver cqlMigrationResolver =
+                new CqlMigrationResolver(Thread.currentThread().getContextClassLoader(),
+                        new ScriptsLocation("migration/subdir"), "UTF-8");
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            List<ResolvedMigration> parallel = cqlMigrationResolver.resolveMigrations(pool);
+            List<ResolvedMigration> sequential = cqlMigrationResolver.resolveMigrations();
+
+            assertEquals(sequential.size(), parallel.size());
+            for (int i = 0; i < sequential.size(); i++) {
+                assertEquals(sequential.get(i).getScript(), parallel.get(i).getScript());
+                assertEquals(sequential.get(i).getChecksum(), parallel.get(i).getChecksum());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     @Test(expected = CassandraMigrationException.class)
     public void resolveMigrationsNonExisting() {
         CqlMigrationResolver cqlMigrationResolver =
@@ -73,4 +106,35 @@ public class CqlMigrationResolverTest {
 
         assertEquals("V3.171__patch.cql", cqlMigrationResolver.extractScriptName(new FileSystemResource("/some/dir/V3.171__patch.cql")));
     }
+
+    @Test
+    public void scriptChangedAfterManifestHitIsNotExecuted() throws Exception {
+        File location = folder.newFolder("location");
+        File script = new File(location, "V1__First.cql");
+        Files.write(script.toPath(), "CREATE TABLE test1 (key text PRIMARY KEY);".getBytes(StandardCharsets.UTF_8));
+        assertTrue(script.setLastModified(System.currentTimeMillis() - 60000));
+
+        MigrationConfigs configs = MigrationConfigs.forEncoding("UTF-8");
+        configs.setChecksumManifest(true);
+        configs.setChecksumManifestDir(folder.newFolder("manifests").getPath());
+        CqlMigrationResolver resolver = new CqlMigrationResolver(Thread.currentThread().getContextClassLoader(),
+                new ScriptsLocation("filesystem:" + location.getPath()), configs);
+        ResolvedMigration first = resolver.resolveMigrations().get(0);
+
+        assertEquals(1, location.list().length);
+
+        // Same size and modification time: the checksum recorded in the manifest is reused.
+        ResolvedMigration second = resolver.resolveMigrations().get(0);
+        assertEquals(first.getChecksum(), second.getChecksum());
+        long lastModified = script.lastModified();
+        Files.write(script.toPath(), "CREATE TABLE test2 (key text PRIMARY KEY);".getBytes(StandardCharsets.UTF_8));
+        assertTrue(script.setLastModified(lastModified));
+
+        try {
+            second.getExecutor().execute(null);
+            fail();
+        } catch (CassandraMigrationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("changed since it was resolved"));
+        }
+    }
 }
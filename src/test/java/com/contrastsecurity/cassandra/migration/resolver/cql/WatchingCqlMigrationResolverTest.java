@@ -0,0 +1,79 @@
+package com.contrastsecurity.cassandra.migration.resolver.cql;
+
+import com.contrastsecurity.cassandra.migration.config.MigrationConfigs;
+import com.contrastsecurity.cassandra.migration.config.ScriptsLocation;
+import com.contrastsecurity.cassandra.migration.info.ResolvedMigration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for WatchingCqlMigrationResolver.
+ */
+public class WatchingCqlMigrationResolverTest {
+    /**
+     * Just above the 10s interval of the polling watch service of the platforms without native file events.
+     */
+    private static final long TIMEOUT_MILLIS = 12000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void resolvesChangedScriptsOnly() throws Exception {
+        File root = folder.getRoot();
+        write(new File(root, "V1__First.cql"), "CREATE TABLE first (id int PRIMARY KEY);");
+
+        try (WatchingCqlMigrationResolver resolver = createResolver(root)) {
+            List<ResolvedMigration> migrations = resolver.resolveMigrations();
+            assertEquals(1, migrations.size());
+            assertFalse(resolver.pollChanges());
+
+            File sub = new File(root, "sub");
+            assertTrue(sub.mkdir());
+            write(new File(sub, "V2__Second.cql"), "CREATE TABLE second (id int PRIMARY KEY);");
+            write(new File(sub, "README.txt"), "not a migration");
+            migrations = awaitMigrations(resolver, 2);
+            assertEquals("1", migrations.get(0).getVersion().toString());
+            assertEquals("sub/V2__Second.cql", migrations.get(1).getScript());
+
+            assertTrue(new File(root, "V1__First.cql").delete());
+            migrations = awaitMigrations(resolver, 1);
+            assertEquals("2", migrations.get(0).getVersion().toString());
+        }
+    }
+
+    private WatchingCqlMigrationResolver createResolver(File root) {
+        ScriptsLocation location = new ScriptsLocation("filesystem:" + root.getPath());
+        return new WatchingCqlMigrationResolver(
+                new CqlMigrationResolver(getClass().getClassLoader(), location, new MigrationConfigs(null)));
+    }
+
+    /**
+     * Polls the resolver until it reports this number of migrations. Watch services may deliver events with a delay,
+     * eg: the polling implementation of some platforms.
+     */
+    private List<ResolvedMigration> awaitMigrations(WatchingCqlMigrationResolver resolver, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        List<ResolvedMigration> migrations = resolver.resolveMigrations();
+        while (migrations.size() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            migrations = resolver.resolveMigrations();
+        }
+        assertEquals(count, migrations.size());
+        return migrations;
+    }
+
+    private static void write(File file, String content) throws Exception {
+        Files.write(file.toPath(), content.getBytes(Charset.forName("UTF-8")));
+    }
+}
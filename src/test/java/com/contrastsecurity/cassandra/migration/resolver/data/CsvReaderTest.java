@@ -0,0 +1,37 @@
+package com.contrastsecurity.cassandra.migration.resolver.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test for CsvReader.
+ */
+public class CsvReaderTest {
+    @Test
+    public void readRecords() throws Exception {
+        CsvReader reader = new CsvReader(new StringReader(
+                "code,name,population\r\nFR,France,68000000\r\n\r\nCI,\"Côte d'Ivoire, \"\"CI\"\"\",\n"
+                        + "XX,\"Two\nlines\",\"\"\nYY"), 3);
+
+        assertEquals(Arrays.asList("code", "name", "population"), reader.next());
+        assertEquals(3, reader.getLineNumber());
+        assertEquals(Arrays.asList("FR", "France", "68000000"), reader.next());
+        assertEquals(Arrays.asList("CI", "Côte d'Ivoire, \"CI\"", null), reader.next());
+        assertEquals(6, reader.getLineNumber());
+        assertEquals(Arrays.asList("XX", "Two\nlines", ""), reader.next());
+        assertEquals(Arrays.asList("YY"), reader.next());
+        assertEquals(9, reader.getLineNumber());
+        assertNull(reader.next());
+    }
+
+    @Test(expected = IOException.class)
+    public void unterminatedQuote() throws Exception {
+        new CsvReader(new StringReader("a,\"b\n"), 1).next();
+    }
+}
@@ -0,0 +1,115 @@
+package com.contrastsecurity.cassandra.migration.resolver.data;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.config.MigrationConfigs;
+import com.contrastsecurity.cassandra.migration.config.MigrationType;
+import com.contrastsecurity.cassandra.migration.config.ScriptsLocation;
+import com.contrastsecurity.cassandra.migration.info.ResolvedMigration;
+import com.contrastsecurity.cassandra.migration.utils.checksum.ChecksumAlgorithms;
+import com.contrastsecurity.cassandra.migration.utils.scanner.Scanner;
+import com.contrastsecurity.cassandra.migration.utils.scanner.classpath.ClassPathResource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for DataMigrationResolver.
+ */
+public class DataMigrationResolverTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void resolveMigrations() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        MigrationConfigs configs = new MigrationConfigs(null);
+        configs.setEncoding("UTF-8");
+        List<ResolvedMigration> migrations = new DataMigrationResolver(classLoader, new Scanner(classLoader),
+                new ScriptsLocation("migration/data"), configs).resolveMigrations();
+
+        assertEquals(2, migrations.size());
+        assertEquals("1", migrations.get(0).getVersion().toString());
+        assertEquals("countries", migrations.get(0).getDescription());
+        assertEquals("V1__countries.csv", migrations.get(0).getScript());
+        assertEquals(MigrationType.DATA, migrations.get(0).getType());
+        assertEquals("1.1", migrations.get(1).getVersion().toString());
+        assertEquals("V1_1__cities.jsonl", migrations.get(1).getScript());
+
+        byte[] content = new ClassPathResource("migration/data/V1__countries.csv", classLoader).loadAsBytes();
+        long checksum = ChecksumAlgorithms.calculate(
+                ChecksumAlgorithms.forName(configs.getChecksumAlgorithm(), classLoader), content);
+        assertEquals(Long.valueOf(checksum), migrations.get(0).getChecksumValue());
+    }
+
+    @Test
+    public void dataFileChangedAfterManifestHitIsNotLoaded() throws Exception {
+        File location = folder.newFolder("location");
+        File data = new File(location, "V1__countries.csv");
+        Files.write(data.toPath(), "code,name\nFR,France\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(data.setLastModified(System.currentTimeMillis() - 60000));
+
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        MigrationConfigs configs = MigrationConfigs.forEncoding("UTF-8");
+        configs.setChecksumManifest(true);
+        File manifests = folder.newFolder("manifests");
+        configs.setChecksumManifestDir(manifests.getPath());
+        DataMigrationResolver resolver = new DataMigrationResolver(classLoader, new Scanner(classLoader),
+                new ScriptsLocation("filesystem:" + location.getPath()), configs);
+        ResolvedMigration first = resolver.resolveMigrations().get(0);
+
+        assertEquals(1, location.list().length);
+        assertTrue(new File(manifests, "data").isDirectory());
+
+        // Same size and modification time: the checksum recorded in the manifest is reused.
+        ResolvedMigration second = resolver.resolveMigrations().get(0);
+        assertEquals(first.getChecksumValue(), second.getChecksumValue());
+        long lastModified = data.lastModified();
+        Files.write(data.toPath(), "code,name\nDE,France\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(data.setLastModified(lastModified));
+
+        try {
+            second.getExecutor().execute(null);
+            fail();
+        } catch (CassandraMigrationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("changed since it was resolved"));
+        }
+    }
+
+    @Test
+    public void readDirectives() throws Exception {
+        BufferedReader reader = new BufferedReader(new StringReader(
+                "\ufeff# Reference data\n# Table: geo.countries\n\n# columns: code, name=country_name\ncode,name\n"));
+        Map<String, String> directives = new LinkedHashMap<>();
+
+        assertEquals(5, DataMigrationExecutor.readDirectives(reader, directives));
+        assertEquals("geo.countries", directives.get("table"));
+        assertEquals("code, name=country_name", directives.get("columns"));
+        assertEquals(2, directives.size());
+        assertEquals("code,name", reader.readLine());
+    }
+
+    @Test
+    public void parseColumns() {
+        Map<String, String> columns = DataMigrationExecutor.parseColumns("code, name=country_name",
+                Arrays.asList("code", "name", "population"));
+        assertEquals("{code=code, name=country_name}", columns.toString());
+        assertEquals("{code=code, name=name}",
+                DataMigrationExecutor.parseColumns(null, Arrays.asList("code", "name")).toString());
+        assertEquals("INSERT INTO countries (code, country_name) VALUES (?, ?)",
+                DataMigrationExecutor.insertQuery("countries", Arrays.asList("code", "country_name")));
+    }
+}
@@ -16,18 +16,34 @@
 package com.contrastsecurity.cassandra.migration.resolver.java;
 
 import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import com.contrastsecurity.cassandra.migration.api.AsyncJavaMigration;
+import com.contrastsecurity.cassandra.migration.api.BackgroundJavaMigration;
+import com.contrastsecurity.cassandra.migration.api.MigrationProgress;
+import com.contrastsecurity.cassandra.migration.api.ResumableJavaMigration;
 import com.contrastsecurity.cassandra.migration.config.ScriptsLocation;
 import com.contrastsecurity.cassandra.migration.info.ResolvedMigration;
+import com.contrastsecurity.cassandra.migration.resolver.AsyncMigrationExecutor;
+import com.contrastsecurity.cassandra.migration.resolver.BackgroundMigrationExecutor;
+import com.contrastsecurity.cassandra.migration.resolver.java.async.V7__AsyncMigration;
+import com.contrastsecurity.cassandra.migration.resolver.java.background.V6__BackgroundMigration;
 import com.contrastsecurity.cassandra.migration.resolver.java.dummy.V2__InterfaceBasedMigration;
 import com.contrastsecurity.cassandra.migration.resolver.java.dummy.Version3dot5;
+import com.contrastsecurity.cassandra.migration.resolver.java.resumable.V5__ResumableMigration;
+import com.datastax.oss.driver.api.core.CqlSession;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Test for JavaMigrationResolver.
@@ -62,6 +78,100 @@ public class JavaMigrationResolverTest {
         assertEquals("4", migrationInfo2.getVersion().toString());
     }
 
+    @Test
+    public void resumableMigration() {
+        JavaMigrationResolver resolver = new JavaMigrationResolver(Thread.currentThread().getContextClassLoader(),
+                new ScriptsLocation("com/contrastsecurity/cassandra/migration/resolver/java/resumable"));
+        List<ResolvedMigration> migrations = resolver.resolveMigrations();
+        assertEquals(1, migrations.size());
+        assertTrue(migrations.get(0).getExecutor() instanceof ResumableJavaMigrationExecutor);
+
+        V5__ResumableMigration migration = new V5__ResumableMigration();
+        ResumableJavaMigrationExecutor executor = new ResumableJavaMigrationExecutor(migration);
+        MigrationProgress progress = MigrationProgress.transientProgress();
+        try {
+            executor.execute(null, progress);
+            fail();
+        } catch (CassandraMigrationException e) {
+            assertEquals(2, migration.processed);
+        }
+        executor.execute(null, progress);
+        assertEquals(4, migration.processed);
+        assertEquals(4, progress.getCompleted().size());
+    }
+
+    @Test
+    public void backgroundMigration() throws Exception {
+        JavaMigrationResolver resolver = new JavaMigrationResolver(Thread.currentThread().getContextClassLoader(),
+                new ScriptsLocation("com/contrastsecurity/cassandra/migration/resolver/java/background"));
+        List<ResolvedMigration> migrations = resolver.resolveMigrations();
+        assertEquals(1, migrations.size());
+        assertTrue(migrations.get(0).getExecutor() instanceof BackgroundMigrationExecutor);
+
+        V6__BackgroundMigration migration = new V6__BackgroundMigration();
+        BackgroundJavaMigrationExecutor executor = new BackgroundJavaMigrationExecutor(migration);
+        executor.prepare(null);
+        assertTrue(migration.prepared);
+        assertFalse(migration.migrated);
+        executor.execute(null);
+        assertTrue(migration.migrated);
+        assertFalse(executor.isResumable());
+    }
+
+    @Test
+    public void asyncMigration() throws Exception {
+        JavaMigrationResolver resolver = new JavaMigrationResolver(Thread.currentThread().getContextClassLoader(),
+                new ScriptsLocation("com/contrastsecurity/cassandra/migration/resolver/java/async"));
+        List<ResolvedMigration> migrations = resolver.resolveMigrations();
+        assertEquals(1, migrations.size());
+        assertTrue(migrations.get(0).getExecutor() instanceof AsyncMigrationExecutor);
+
+        V7__AsyncMigration migration = new V7__AsyncMigration();
+        CompletableFuture<Void> result = new AsyncJavaMigrationExecutor(migration).executeAsync(null).toCompletableFuture();
+        assertFalse(result.isDone());
+        migration.stage.completeExceptionally(new IllegalStateException("Failed"));
+        try {
+            result.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CassandraMigrationException);
+            assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+        }
+
+        migration = new V7__AsyncMigration();
+        result = new AsyncJavaMigrationExecutor(migration).executeAsync(null).toCompletableFuture();
+        result.cancel(true);
+        assertTrue(migration.stage.isCancelled());
+    }
+
+    @Test
+    public void asyncMigrationFailureIsWrapped() {
+        AsyncJavaMigrationExecutor executor = new AsyncJavaMigrationExecutor(new V7__AsyncMigration()) {
+            @Override
+            public CompletionStage<Void> executeAsync(CqlSession session) {
+                CompletableFuture<Void> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new IllegalStateException("Failed"));
+                return failed;
+            }
+        };
+        try {
+            executor.execute(null);
+            fail();
+        } catch (CassandraMigrationException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test(expected = CassandraMigrationException.class)
+    public void asyncBackgroundMigrationIsRejected() {
+        JavaMigrationResolver.createExecutor(new AsyncBackgroundMigration());
+    }
+
+    @Test(expected = CassandraMigrationException.class)
+    public void asyncResumableMigrationIsRejected() {
+        JavaMigrationResolver.createExecutor(new AsyncResumableMigration());
+    }
+
     @Test
     public void conventionOverConfiguration() {
         JavaMigrationResolver jdbcMigrationResolver = new JavaMigrationResolver(Thread.currentThread().getContextClassLoader(), null);
@@ -79,4 +189,36 @@ public class JavaMigrationResolverTest {
         assertEquals("Three Dot Five", migrationInfo.getDescription());
         assertEquals(35, migrationInfo.getChecksum().intValue());
     }
+
+    /**
+     * Asynchronous migration that also claims to run in the background.
+     */
+    private static class AsyncBackgroundMigration implements AsyncJavaMigration, BackgroundJavaMigration {
+        @Override
+        public CompletionStage<Void> migrateAsync(CqlSession session) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void migrate(CqlSession session) {
+        }
+    }
+
+    /**
+     * Asynchronous migration that also claims to be resumable.
+     */
+    private static class AsyncResumableMigration implements AsyncJavaMigration, ResumableJavaMigration {
+        @Override
+        public CompletionStage<Void> migrateAsync(CqlSession session) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void migrate(CqlSession session, MigrationProgress progress) {
+        }
+
+        @Override
+        public void migrate(CqlSession session) {
+        }
+    }
 }
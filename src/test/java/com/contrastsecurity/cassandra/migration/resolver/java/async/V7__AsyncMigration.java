@@ -0,0 +1,19 @@
+package com.contrastsecurity.cassandra.migration.resolver.java.async;
+
+import com.contrastsecurity.cassandra.migration.api.AsyncJavaMigration;
+import com.datastax.oss.driver.api.core.CqlSession;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Test asynchronous migration, completed by the test.
+ */
+public class V7__AsyncMigration implements AsyncJavaMigration {
+    public final CompletableFuture<Void> stage = new CompletableFuture<>();
+
+    @Override
+    public CompletionStage<Void> migrateAsync(CqlSession session) {
+        return stage;
+    }
+}
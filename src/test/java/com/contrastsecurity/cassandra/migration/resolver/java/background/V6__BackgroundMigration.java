@@ -0,0 +1,25 @@
+package com.contrastsecurity.cassandra.migration.resolver.java.background;
+
+import com.contrastsecurity.cassandra.migration.api.BackgroundJavaMigration;
+import com.datastax.oss.driver.api.core.CqlSession;
+
+/**
+ * Test background migration, recording whether its prerequisites and body ran.
+ */
+public class V6__BackgroundMigration implements BackgroundJavaMigration {
+    public boolean prepared;
+    public boolean migrated;
+
+    @Override
+    public void prepare(CqlSession session) {
+        prepared = true;
+    }
+
+    @Override
+    public void migrate(CqlSession session) {
+        if (!prepared) {
+            throw new IllegalStateException("Not prepared");
+        }
+        migrated = true;
+    }
+}
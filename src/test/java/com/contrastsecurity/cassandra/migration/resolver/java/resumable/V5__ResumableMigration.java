@@ -0,0 +1,30 @@
+package com.contrastsecurity.cassandra.migration.resolver.java.resumable;
+
+import com.contrastsecurity.cassandra.migration.api.MigrationProgress;
+import com.contrastsecurity.cassandra.migration.api.ResumableJavaMigration;
+import com.datastax.oss.driver.api.core.CqlSession;
+
+/**
+ * Test migration processing 4 units of work, failing after the second one on its first run.
+ */
+public class V5__ResumableMigration implements ResumableJavaMigration {
+    /**
+     * The number of units of work processed, across runs.
+     */
+    public int processed;
+
+    @Override
+    public void migrate(CqlSession session, MigrationProgress progress) throws Exception {
+        for (int unit = 0; unit < 4; unit++) {
+            if (progress.isCompleted(Integer.toString(unit))) {
+                continue;
+            }
+            if (unit == 2 && progress.getCheckpoint("failed") == null) {
+                progress.saveCheckpoint("failed", "true");
+                throw new IllegalStateException("Failing once");
+            }
+            processed++;
+            progress.complete(Integer.toString(unit));
+        }
+    }
+}
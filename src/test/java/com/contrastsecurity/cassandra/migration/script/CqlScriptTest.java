@@ -0,0 +1,115 @@
+package com.contrastsecurity.cassandra.migration.script;
+
+import com.contrastsecurity.cassandra.migration.info.StatementMetrics;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.ExecutionInfo;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for the statement metrics of CqlScript.
+ */
+public class CqlScriptTest {
+
+    @Test
+    public void measuresEachStatement() {
+        String longValue = String.join("", Collections.nCopies(300, "x"));
+        CqlScript script = new CqlScript("CREATE TABLE test1 (key text PRIMARY KEY);\n"
+                + "INSERT INTO test1 (key) VALUES ('" + longValue + "');\n");
+
+        List<StatementMetrics> metrics = new ArrayList<>();
+        script.execute(session(null), metrics);
+
+        assertEquals(2, metrics.size());
+        StatementMetrics create = metrics.get(0);
+        assertEquals(0, create.getIndex());
+        assertEquals("CREATE TABLE test1 (key text PRIMARY KEY)", create.getStatement());
+        assertEquals(StatementMetrics.hash(create.getStatement()), create.getHash());
+        assertTrue(create.getLatencyNanos() > 0);
+        assertNull(create.getCoordinator());
+        assertEquals(1, create.getRetries());
+        assertFalse(create.isSchemaInAgreement());
+
+        StatementMetrics insert = metrics.get(1);
+        assertEquals(1, insert.getIndex());
+        assertEquals(StatementMetrics.MAX_STATEMENT_LENGTH, insert.getStatement().length());
+        assertTrue(insert.getStatement().endsWith("..."));
+        assertEquals(StatementMetrics.hash(script.getCqlStatements().get(1)), insert.getHash());
+    }
+
+    @Test
+    public void keepsMetricsUpToTheFailedStatement() {
+        CqlScript script = new CqlScript("CREATE TABLE test1 (key text PRIMARY KEY);\n"
+                + "INSERT INTO test2 (key) VALUES ('a');\nINSERT INTO test1 (key) VALUES ('b');\n");
+
+        List<StatementMetrics> metrics = new ArrayList<>();
+        try {
+            script.execute(session("test2"), metrics);
+            fail();
+        } catch (InvalidQueryException e) {
+            assertEquals(2, metrics.size());
+            assertEquals(0, metrics.get(0).getIndex());
+            assertEquals(1, metrics.get(0).getRetries());
+
+            StatementMetrics failed = metrics.get(1);
+            assertEquals(1, failed.getIndex());
+            assertEquals("INSERT INTO test2 (key) VALUES ('a')", failed.getStatement());
+            assertTrue(failed.getLatencyNanos() > 0);
+            assertNull(failed.getCoordinator());
+            assertEquals(0, failed.getRetries());
+            assertFalse(failed.isSchemaInAgreement());
+        }
+    }
+
+    /**
+     * @param failingTable The table statements fail on. {@code null} if none.
+     * @return A session acknowledging statements after one retry, without schema agreement.
+     */
+    private static CqlSession session(String failingTable) {
+        ExecutionInfo info = (ExecutionInfo) Proxy.newProxyInstance(CqlScriptTest.class.getClassLoader(),
+                new Class<?>[]{ExecutionInfo.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getCoordinator":
+                            return null;
+                        case "getErrors":
+                            return Collections.<Map.Entry<?, ?>>singletonList(
+                                    new AbstractMap.SimpleEntry<>(null, new RuntimeException("timeout")));
+                        case "isSchemaInAgreement":
+                            return false;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        ResultSet resultSet = (ResultSet) Proxy.newProxyInstance(CqlScriptTest.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    if (!"getExecutionInfo".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return info;
+                });
+        return (CqlSession) Proxy.newProxyInstance(CqlScriptTest.class.getClassLoader(),
+                new Class<?>[]{CqlSession.class}, (proxy, method, args) -> {
+                    if (!"execute".equals(method.getName()) || !(args[0] instanceof String)) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    if (failingTable != null && ((String) args[0]).contains(failingTable)) {
+                        throw new InvalidQueryException(null, "unconfigured table " + failingTable);
+                    }
+                    return resultSet;
+                });
+    }
+}
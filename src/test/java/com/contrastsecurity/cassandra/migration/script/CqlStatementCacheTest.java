@@ -0,0 +1,76 @@
+package com.contrastsecurity.cassandra.migration.script;
+
+import com.contrastsecurity.cassandra.migration.utils.checksum.ChecksumAlgorithms;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test for CqlStatementCache.
+ */
+public class CqlStatementCacheTest {
+    private static final String SOURCE = "CREATE TABLE test1 (\n  key text PRIMARY KEY\n);\n\n"
+            + "-- comment\nINSERT INTO test1 (key) VALUES ('a');\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reusesStatementBoundaries() throws Exception {
+        CqlStatementCache cache = new CqlStatementCache(folder.newFolder("cache"));
+
+        CqlScript parsed = new CqlScript(SOURCE, null, 42L, ChecksumAlgorithms.CRC32, cache);
+        List<String> cached = cache.get(SOURCE, 42L, ChecksumAlgorithms.CRC32);
+
+        assertEquals(parsed.getCqlStatements(), cached);
+        assertEquals(new CqlScript(SOURCE).getCqlStatements(),
+                new CqlScript(SOURCE, null, 42L, ChecksumAlgorithms.CRC32, cache).getCqlStatements());
+    }
+
+    @Test
+    public void checksumMismatchMisses() throws Exception {
+        CqlStatementCache cache = new CqlStatementCache(folder.newFolder("cache"));
+
+        new CqlScript(SOURCE, null, 42L, ChecksumAlgorithms.CRC32, cache);
+
+        assertNull(cache.get(SOURCE, 43L, ChecksumAlgorithms.CRC32));
+        assertNull(cache.get(SOURCE + " ", 42L, ChecksumAlgorithms.CRC32));
+    }
+
+    @Test
+    public void algorithmMismatchMisses() throws Exception {
+        CqlStatementCache cache = new CqlStatementCache(folder.newFolder("cache"));
+
+        new CqlScript(SOURCE, null, 42L, ChecksumAlgorithms.CRC32, cache);
+
+        assertNull(cache.get(SOURCE, 42L, ChecksumAlgorithms.CRC32C));
+    }
+
+    @Test
+    public void keysOnTheFullChecksum() throws Exception {
+        CqlStatementCache cache = new CqlStatementCache(folder.newFolder("cache"));
+        long checksum = 0x123456789abcdef0L;
+
+        new CqlScript(SOURCE, null, checksum, ChecksumAlgorithms.CRC64, cache);
+
+        assertEquals(new CqlScript(SOURCE).getCqlStatements(), cache.get(SOURCE, checksum, ChecksumAlgorithms.CRC64));
+        assertNull(cache.get(SOURCE, checksum & 0xFFFFFFFFL, ChecksumAlgorithms.CRC64));
+        assertNull(cache.get(SOURCE, checksum ^ (1L << 63), ChecksumAlgorithms.CRC64));
+    }
+
+    @Test
+    public void cachesScriptsWithWindowsLineEndings() throws Exception {
+        CqlStatementCache cache = new CqlStatementCache(folder.newFolder("cache"));
+        String source = SOURCE.replace("\n", "\r\n");
+
+        CqlScript script = new CqlScript(source, null, 42L, ChecksumAlgorithms.CRC32, cache);
+
+        assertEquals(new CqlScript(source).getCqlStatements(), script.getCqlStatements());
+        assertEquals(script.getCqlStatements(), cache.get(source, 42L, ChecksumAlgorithms.CRC32));
+    }
+}
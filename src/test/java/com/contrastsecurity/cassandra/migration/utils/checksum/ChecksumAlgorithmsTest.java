@@ -0,0 +1,70 @@
+package com.contrastsecurity.cassandra.migration.utils.checksum;
+
+import com.contrastsecurity.cassandra.migration.CassandraMigrationException;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.zip.Checksum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Test for ChecksumAlgorithms.
+ */
+public class ChecksumAlgorithmsTest {
+    private static final byte[] CHECK = "123456789".getBytes(Charset.forName("UTF-8"));
+
+    @Test
+    public void checkValues() {
+        ClassLoader classLoader = getClass().getClassLoader();
+
+        assertEquals(0xCBF43926L, ChecksumAlgorithms.calculate(ChecksumAlgorithms.forName("crc32", classLoader), CHECK));
+        assertEquals(0x995DC9BBDF1939FAL, ChecksumAlgorithms.calculate(ChecksumAlgorithms.forName("CRC64", classLoader), CHECK));
+    }
+
+    @Test
+    public void crc32cCheckValue() {
+        ClassLoader classLoader = getClass().getClassLoader();
+        // java.util.zip.CRC32C only exists on Java 9+.
+        assumeTrue(ChecksumAlgorithms.getAll(classLoader).containsKey(ChecksumAlgorithms.CRC32C));
+
+        assertEquals(0xE3069283L, ChecksumAlgorithms.calculate(ChecksumAlgorithms.forName("CRC32C", classLoader), CHECK));
+    }
+
+    @Test
+    public void algorithmsAreLookedUpOnce() {
+        ClassLoader classLoader = getClass().getClassLoader();
+
+        assertSame(ChecksumAlgorithms.getAll(classLoader), ChecksumAlgorithms.getAll(classLoader));
+    }
+
+    @Test
+    public void crc64IncrementalUpdate() {
+        byte[] bytes = new byte[1027];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+
+        Checksum bulk = new Crc64();
+        bulk.update(bytes, 0, bytes.length);
+
+        Checksum single = new Crc64();
+        for (byte b : bytes) {
+            single.update(b);
+        }
+
+        Checksum split = new Crc64();
+        split.update(bytes, 0, 5);
+        split.update(bytes, 5, bytes.length - 5);
+
+        assertEquals(bulk.getValue(), single.getValue());
+        assertEquals(bulk.getValue(), split.getValue());
+    }
+
+    @Test(expected = CassandraMigrationException.class)
+    public void unknownAlgorithm() {
+        ChecksumAlgorithms.forName("MD4", getClass().getClassLoader());
+    }
+}
@@ -0,0 +1,61 @@
+package com.contrastsecurity.cassandra.migration.utils.scanner.classpath;
+
+import com.contrastsecurity.cassandra.migration.api.JavaMigration;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for ClassFileHeader.
+ */
+public class ClassFileHeaderTest {
+    private static final String DUMMY = "com/contrastsecurity/cassandra/migration/resolver/java/dummy/";
+
+    @Test
+    public void concreteMigration() throws Exception {
+        ClassFileHeader header = read(DUMMY + "V2__InterfaceBasedMigration");
+
+        assertEquals(DUMMY + "V2__InterfaceBasedMigration", header.getName());
+        assertEquals("java/lang/Object", header.getSuperName());
+        assertTrue(Arrays.asList(header.getInterfaces()).contains(JavaMigration.class.getName().replace('.', '/')));
+        assertTrue(header.isInstantiable());
+    }
+
+    @Test
+    public void superclass() throws Exception {
+        ClassFileHeader header = read(DUMMY + "V4__DummyExtendedAbstractJdbcMigration");
+
+        assertEquals(DUMMY + "DummyAbstractJavaMigration", header.getSuperName());
+        assertTrue(header.isInstantiable());
+    }
+
+    @Test
+    public void nonInstantiable() throws Exception {
+        assertFalse(read(DUMMY + "DummyAbstractJavaMigration").isInstantiable());
+        assertFalse(read(DUMMY + "SabotageEnum").isInstantiable());
+        assertFalse(read(JavaMigration.class.getName().replace('.', '/')).isInstantiable());
+        assertTrue(read(JavaMigration.class.getName().replace('.', '/')).isInterface());
+    }
+
+    @Test
+    public void anonymous() throws Exception {
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+
+        assertFalse(read(runnable.getClass().getName().replace('.', '/')).isInstantiable());
+    }
+
+    private ClassFileHeader read(String internalName) throws Exception {
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(internalName + ".class")) {
+            return ClassFileHeader.read(inputStream);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.contrastsecurity.cassandra.migration.utils.scanner.classpath;
+
+import com.contrastsecurity.cassandra.migration.utils.scanner.Resource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test for ClassPathIndex.
+ */
+public class ClassPathIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndRead() throws Exception {
+        ClassPathIndex index = new ClassPathIndex();
+        index.add("db/migration/V1__First.cql", "CRC32", 42L);
+        index.add("db/migration/sub/V2__Second.cql", "CRC64", -1L);
+        index.add("db/migrationother/V3__Third.cql", "CRC32", 43L);
+        index.add("db/migration/V4__Fourth.class");
+
+        StringWriter writer = new StringWriter();
+        index.write(writer);
+        ClassPathIndex read = ClassPathIndex.read(new ByteArrayInputStream(writer.toString().getBytes("UTF-8")));
+
+        assertEquals(new TreeSet<>(Arrays.asList("db/migration/V1__First.cql", "db/migration/V4__Fourth.class",
+                "db/migration/sub/V2__Second.cql")), read.findResourceNames("db/migration"));
+        assertEquals("CRC64", read.getChecksumAlgorithm("db/migration/sub/V2__Second.cql"));
+        assertEquals(Long.valueOf(-1L), read.getChecksum("db/migration/sub/V2__Second.cql"));
+        assertNull(read.getChecksum("db/migration/V4__Fourth.class"));
+    }
+
+    @Test
+    public void rootUrl() throws Exception {
+        assertEquals("jar:file:/app.jar!/",
+                ClassPathIndex.getRootUrl("db/migration", new URL("jar:file:/app.jar!/db/migration")));
+        assertEquals("file:/classes/",
+                ClassPathIndex.getRootUrl("db/migration", new URL("file:/classes/db/migration/")));
+        assertNull(ClassPathIndex.getRootUrl("db/migration", new URL("file:/classes/other")));
+    }
+
+    @Test
+    public void scannerUsesIndex() throws Exception {
+        File root = folder.getRoot();
+        long now = System.currentTimeMillis();
+        File location = new File(root, "db/indexed");
+        location.mkdirs();
+        File script = new File(location, "V1__Indexed.cql");
+        script.createNewFile();
+        script.setLastModified(now - 20000);
+        location.setLastModified(now - 20000);
+        writeIndex(root, now - 10000);
+
+        Resource[] resources = scan(root);
+
+        assertEquals(1, resources.length);
+        assertEquals("db/indexed/V1__Indexed.cql", resources[0].getLocation());
+        assertEquals(Long.valueOf(42L), ((ClassPathResource) resources[0]).getIndexedChecksum());
+    }
+
+    @Test
+    public void scannerIgnoresStaleIndex() throws Exception {
+        File root = folder.getRoot();
+        long now = System.currentTimeMillis();
+        File location = new File(root, "db/indexed");
+        location.mkdirs();
+        File script = new File(location, "V1__Indexed.cql");
+        script.createNewFile();
+        script.setLastModified(now - 20000);
+        writeIndex(root, now - 10000);
+        // Copied after the index was generated.
+        new File(location, "V2__NotIndexed.cql").createNewFile();
+
+        Resource[] resources = scan(root);
+
+        assertEquals(2, resources.length);
+        assertEquals("db/indexed/V1__Indexed.cql", resources[0].getLocation());
+        assertNull(((ClassPathResource) resources[0]).getIndexedChecksum());
+        assertEquals("db/indexed/V2__NotIndexed.cql", resources[1].getLocation());
+    }
+
+    private static void writeIndex(File root, long lastModified) throws Exception {
+        File indexFile = new File(root, ClassPathIndex.LOCATION);
+        indexFile.getParentFile().mkdirs();
+        ClassPathIndex index = new ClassPathIndex();
+        index.add("db/indexed/V1__Indexed.cql", "CRC32", 42L);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(indexFile), "UTF-8")) {
+            index.write(writer);
+        }
+        indexFile.setLastModified(lastModified);
+    }
+
+    private static Resource[] scan(File root) throws Exception {
+        ClassLoader classLoader = new URLClassLoader(new URL[]{root.toURI().toURL()}, null);
+        return new ClassPathScanner(classLoader).scanForResources("db/indexed", "V", ".cql");
+    }
+}
@@ -0,0 +1,76 @@
+package com.contrastsecurity.cassandra.migration.utils.scanner.classpath;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test for JarFileClassPathLocationScanner.
+ */
+public class JarFileLocationScannerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void findResourceNamesFromEntries() {
+        String[] entries = {"db/", "db/migration/", "db/migration/V1__First.cql", "db/migration/sub/V2__Second.cql",
+                "db/migration2/V3__Third.cql", "db/migratio/V4__Fourth.cql"};
+        Arrays.sort(entries);
+
+        Set<String> resourceNames = JarFileClassPathLocationScanner.findResourceNamesFromEntries(entries, "", "db/migration");
+
+        assertEquals(new TreeSet<>(Arrays.asList("db/migration/", "db/migration/V1__First.cql",
+                "db/migration/sub/V2__Second.cql")), resourceNames);
+    }
+
+    @Test
+    public void findResourceNamesFromEntriesAppliesFilter() {
+        String[] entries = {"db/migration/", "db/migration/V1__First.cql", "db/migration/V1__First.txt",
+                "db/migration/sub/V2__Second.cql", "db/migration/V.cql", "db/migration/Vsub/README.cql",
+                "db/migration/sub/V/README.txt"};
+        Arrays.sort(entries);
+
+        Set<String> resourceNames = JarFileClassPathLocationScanner.findResourceNamesFromEntries(entries, "",
+                "db/migration", ResourceNameFilter.forFilename("V", ".cql"));
+
+        assertEquals(new TreeSet<>(Arrays.asList("db/migration/V1__First.cql", "db/migration/sub/V2__Second.cql")),
+                resourceNames);
+    }
+
+    @Test
+    public void entriesAreReadOncePerJar() throws Exception {
+        File jar = folder.newFile("migrations.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("db/a/"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("db/b/"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("db/a/V1__First.cql"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("db/b/V2__Second.cql"));
+            out.closeEntry();
+        }
+
+        JarFileClassPathLocationScanner scanner = new JarFileClassPathLocationScanner();
+        String jarUrl = "jar:" + jar.toURI().toURL().toExternalForm() + "!/";
+
+        assertEquals(new TreeSet<>(Arrays.asList("db/a/", "db/a/V1__First.cql")),
+                scanner.findResourceNames("db/a", new URL(jarUrl + "db/a/")));
+
+        // Served from the cache: the jar is gone.
+        jar.delete();
+        assertEquals(new TreeSet<>(Arrays.asList("db/b/", "db/b/V2__Second.cql")),
+                scanner.findResourceNames("db/b", new URL(jarUrl + "db/b/")));
+    }
+}
@@ -0,0 +1,213 @@
+package com.contrastsecurity.cassandra.migration.utils.scanner.classpath;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for NestedJarClassPathLocationScanner.
+ */
+public class NestedJarLocationScannerTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte[] FIRST = "CREATE TABLE first (id int PRIMARY KEY);".getBytes(UTF8);
+    private static final byte[] SECOND = "CREATE TABLE second (id int PRIMARY KEY);".getBytes(UTF8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void isNested() throws Exception {
+        assertTrue(NestedJarClassPathLocationScanner.isNested(
+                new URL("jar:file:/app.jar!/BOOT-INF/lib/lib.jar!/db/migration")));
+        assertTrue(NestedJarClassPathLocationScanner.isNested(
+                nestedUrl("jar:nested:/app.jar/!BOOT-INF/lib/lib.jar!/db/migration")));
+        assertFalse(NestedJarClassPathLocationScanner.isNested(new URL("jar:file:/lib.jar!/db/migration")));
+        assertFalse(NestedJarClassPathLocationScanner.isNested(new URL("file:/db/migration")));
+    }
+
+    @Test
+    public void readsStoredNestedJarInPlace() throws Exception {
+        File outer = createFatJar(ZipEntry.STORED);
+        String url = "jar:" + outer.toURI().toURL().toExternalForm() + "!/BOOT-INF/lib/lib.jar!/db/migration";
+
+        NestedJarClassPathLocationScanner scanner = new NestedJarClassPathLocationScanner();
+        assertEquals(new TreeSet<>(Arrays.asList("db/migration/", "db/migration/V1__First.cql",
+                "db/migration/sub/V2__Second.cql")), scanner.findResourceNames("db/migration", new URL(url)));
+
+        NestedJarFile nestedJar = scanner.getNestedJar(new URL(url));
+        assertArrayEquals(FIRST, nestedJar.read("db/migration/V1__First.cql"));
+        assertArrayEquals(SECOND, nestedJar.read("db/migration/sub/V2__Second.cql"));
+        nestedJar.close();
+        assertArrayEquals(FIRST, nestedJar.read("db/migration/V1__First.cql"));
+        nestedJar.close();
+    }
+
+    @Test
+    public void streamsCompressedNestedJar() throws Exception {
+        File outer = createFatJar(ZipEntry.DEFLATED);
+        URL url = nestedUrl("jar:nested:" + outer.getAbsolutePath() + "/!BOOT-INF/lib/lib.jar!/db/migration");
+
+        NestedJarClassPathLocationScanner scanner = new NestedJarClassPathLocationScanner();
+        assertEquals(new TreeSet<>(Arrays.asList("db/migration/", "db/migration/V1__First.cql",
+                "db/migration/sub/V2__Second.cql")), scanner.findResourceNames("db/migration", url));
+
+        NestedJarResource resource = new NestedJarResource("db/migration/sub/V2__Second.cql",
+                getClass().getClassLoader(), scanner.getNestedJar(url), null, null);
+        assertTrue(resource.exists());
+        assertArrayEquals(SECOND, resource.loadAsBytes());
+        assertArrayEquals(FIRST, scanner.getNestedJar(url).read("db/migration/V1__First.cql"));
+    }
+
+    @Test
+    public void streamsEntriesOfStoredNestedJarInPlace() throws Exception {
+        File outer = createFatJar(ZipEntry.STORED);
+        URL url = new URL("jar:" + outer.toURI().toURL().toExternalForm() + "!/BOOT-INF/lib/lib.jar!/db/migration");
+        NestedJarFile nestedJar = new NestedJarClassPathLocationScanner().getNestedJar(url);
+
+        // Interleaved reads of a deflated and a stored entry through the shared handle.
+        try (InputStream first = nestedJar.openStream("db/migration/V1__First.cql");
+             InputStream second = nestedJar.openStream("db/migration/sub/V2__Second.cql")) {
+            ByteArrayOutputStream firstContent = new ByteArrayOutputStream();
+            ByteArrayOutputStream secondContent = new ByteArrayOutputStream();
+            byte[] buffer = new byte[7];
+            int firstCount = 0;
+            int secondCount = 0;
+            while (firstCount >= 0 || secondCount >= 0) {
+                if (firstCount >= 0 && (firstCount = first.read(buffer)) > 0) {
+                    firstContent.write(buffer, 0, firstCount);
+                }
+                if (secondCount >= 0 && (secondCount = second.read(buffer)) > 0) {
+                    secondContent.write(buffer, 0, secondCount);
+                }
+            }
+            assertArrayEquals(FIRST, firstContent.toByteArray());
+            assertArrayEquals(SECOND, secondContent.toByteArray());
+        }
+
+        NestedJarResource resource = new NestedJarResource("db/migration/V1__First.cql",
+                getClass().getClassLoader(), nestedJar, null, null);
+        nestedJar.close();
+        try (InputStream in = resource.loadAsStream()) {
+            assertArrayEquals(FIRST, readAll(in));
+        }
+        nestedJar.close();
+    }
+
+    @Test
+    public void streamsEntriesOfCompressedNestedJar() throws Exception {
+        File outer = createFatJar(ZipEntry.DEFLATED);
+        URL url = nestedUrl("jar:nested:" + outer.getAbsolutePath() + "/!BOOT-INF/lib/lib.jar!/db/migration");
+        NestedJarFile nestedJar = new NestedJarClassPathLocationScanner().getNestedJar(url);
+
+        try (InputStream in = nestedJar.openStream("db/migration/V1__First.cql")) {
+            assertArrayEquals(FIRST, readAll(in));
+        }
+        try (InputStream in = nestedJar.openStream("db/migration/sub/V2__Second.cql")) {
+            assertArrayEquals(SECOND, readAll(in));
+        }
+        try {
+            nestedJar.openStream("db/migration/V3__Missing.cql");
+            fail();
+        } catch (FileNotFoundException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("db/migration/V3__Missing.cql"));
+        }
+    }
+
+    @Test
+    public void missingEntryDoesNotExist() throws Exception {
+        File outer = createFatJar(ZipEntry.STORED);
+        URL url = new URL("jar:" + outer.toURI().toURL().toExternalForm() + "!/BOOT-INF/lib/lib.jar!/db/migration");
+
+        NestedJarResource resource = new NestedJarResource("db/migration/V3__Missing.cql",
+                getClass().getClassLoader(), new NestedJarClassPathLocationScanner().getNestedJar(url), null, null);
+        assertFalse(resource.exists());
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[5];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            content.write(buffer, 0, count);
+        }
+        return content.toByteArray();
+    }
+
+    /**
+     * Creates a URL in the format of the Spring Boot nested jar handler, which isn't registered in tests.
+     */
+    private static URL nestedUrl(String spec) throws Exception {
+        return new URL(null, spec, new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(URL u) {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    /**
+     * Creates a fat jar holding lib.jar in BOOT-INF/lib, with this compression method.
+     */
+    private File createFatJar(int nestedMethod) throws Exception {
+        ByteArrayOutputStream lib = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(lib)) {
+            out.putNextEntry(new ZipEntry("db/migration/"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("db/migration/V1__First.cql"));
+            out.write(FIRST);
+            out.closeEntry();
+            ZipEntry stored = new ZipEntry("db/migration/sub/V2__Second.cql");
+            setStored(stored, SECOND);
+            out.putNextEntry(stored);
+            out.write(SECOND);
+            out.closeEntry();
+        }
+        byte[] libBytes = lib.toByteArray();
+
+        File outer = folder.newFile("app.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(outer))) {
+            out.putNextEntry(new ZipEntry("BOOT-INF/classes/application.properties"));
+            out.write("key=value".getBytes(UTF8));
+            out.closeEntry();
+            ZipEntry nested = new ZipEntry("BOOT-INF/lib/lib.jar");
+            if (nestedMethod == ZipEntry.STORED) {
+                setStored(nested, libBytes);
+            }
+            out.putNextEntry(nested);
+            out.write(libBytes);
+            out.closeEntry();
+        }
+        return outer;
+    }
+
+    private static void setStored(ZipEntry entry, byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+    }
+}
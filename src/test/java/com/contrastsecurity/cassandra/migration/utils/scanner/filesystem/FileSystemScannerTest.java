@@ -0,0 +1,105 @@
+package com.contrastsecurity.cassandra.migration.utils.scanner.filesystem;
+
+import com.contrastsecurity.cassandra.migration.utils.scanner.Resource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test for FileSystemScanner.
+ */
+public class FileSystemScannerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void scanForResources() throws Exception {
+        final String path = createTree();
+
+        Resource[] resources = new FileSystemScanner().scanForResources(path, "V", ".cql");
+
+        assertEquals(3, resources.length);
+        assertEquals(new File(path, "V1__First.cql").getPath(), resources[0].getLocation());
+        assertEquals(new File(path, "a/V2__Second.cql").getPath(), resources[1].getLocation());
+        assertEquals(new File(path, "a/b/V3__Third.cql").getPath(), resources[2].getLocation());
+    }
+
+    @Test
+    public void scanForResourcesInParallel() throws Exception {
+        final String path = createTree();
+
+        Resource[] sequential = new FileSystemScanner().scanForResources(path, "V", ".cql");
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Resource[] parallel = pool.submit(new Callable<Resource[]>() {
+                @Override
+                public Resource[] call() throws Exception {
+                    return new FileSystemScanner().scanForResources(path, "V", ".cql");
+                }
+            }).get();
+
+            assertArrayEquals(locations(sequential), locations(parallel));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void symbolicLinkLoopsAreSkipped() throws Exception {
+        final String path = createTree();
+        File root = new File(path);
+        Files.createSymbolicLink(new File(root, "a/b/toRoot").toPath(), root.toPath());
+        Files.createSymbolicLink(new File(root, "a/toA").toPath(), new File(root, "a").toPath());
+
+        Resource[] sequential = new FileSystemScanner().scanForResources(path, "V", ".cql");
+        assertEquals(3, sequential.length);
+
+        Resource[] parallel = scanInPool(path);
+        assertArrayEquals(locations(sequential), locations(parallel));
+    }
+
+    private Resource[] scanInPool(final String path) throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            return pool.submit(new Callable<Resource[]>() {
+                @Override
+                public Resource[] call() throws Exception {
+                    return new FileSystemScanner().scanForResources(path, "V", ".cql");
+                }
+            }).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private String[] locations(Resource[] resources) {
+        String[] locations = new String[resources.length];
+        for (int i = 0; i < resources.length; i++) {
+            locations[i] = resources[i].getLocation();
+        }
+        return locations;
+    }
+
+    private String createTree() throws Exception {
+        File root = folder.newFolder("migrations");
+        new File(root, "a/b").mkdirs();
+        new File(root, "c").mkdirs();
+        new File(root, "V1__First.cql").createNewFile();
+        new File(root, "README.txt").createNewFile();
+        new File(root, "V.cql").createNewFile();
+        new File(root, "a/V2__Second.cql").createNewFile();
+        new File(root, "a/V2__Second.cql.bak").createNewFile();
+        new File(root, "a/b/V3__Third.cql").createNewFile();
+        new File(root, "c/notes.cql").createNewFile();
+        return root.getPath();
+    }
+}